@@ -0,0 +1,622 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.datamodel;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import oss.jthinker.graphs.OrderingLevel;
+
+/**
+ * Codec of the compact binary diagram format.
+ *
+ * File starts with the {@link #MAGIC} bytes and a version byte, then goes
+ * a header with diagram's type, options, table of all distinct strings
+ * (contents, comments and group names) and a directory of blocks. Each
+ * block holds up to {@link #BLOCK_SIZE} consecutive nodes, edges or legs,
+ * packed with variable-length integers. As block's location is known
+ * from the directory, blocks are encoded and decoded independently on
+ * the fork/join pool.
+ *
+ * @author iappel
+ */
+public class BinaryDiagramCodec {
+    /**
+     * Leading bytes of any binary diagram file.
+     */
+    public static final byte[] MAGIC = {'J', 'T', 'K', 'B'};
+
+    /**
+     * Usual suffix of binary diagram files.
+     */
+    public static final String SUFFIX = ".jthinkerb";
+
+    private static final int VERSION = 1;
+    private static final int BLOCK_SIZE = 4096;
+
+    private static final byte NODE_BLOCK = 0;
+    private static final byte EDGE_BLOCK = 1;
+    private static final byte LEG_BLOCK = 2;
+
+    private static final int FLAG_EDITABLE = 1;
+    private static final int FLAG_GROUP = 2;
+    private static final int FLAG_CENTER = 4;
+    private static final int FLAG_CUSTOM_COLOR = 8;
+    private static final int COLOR_SHIFT = 4;
+
+    private static final Color[] COLORS = {
+        Color.WHITE, Color.CYAN, Color.YELLOW, Color.PINK, Color.GREEN
+    };
+
+    private static final BorderType[] BORDERS = BorderType.values();
+
+    private BinaryDiagramCodec() {
+    }
+
+    /**
+     * Checks does the file start with binary diagram's magic bytes.
+     *
+     * @param f file to check
+     * @return true if file is a binary diagram and false otherwise
+     * @throws IOException on I/O errors of reading the file
+     */
+    public static boolean isBinary(File f) throws IOException {
+        InputStream stream = new FileInputStream(f);
+        try {
+            byte[] head = new byte[MAGIC.length];
+            int read = 0;
+            while (read < head.length) {
+                int count = stream.read(head, read, head.length - read);
+                if (count == -1) {
+                    return false;
+                }
+                read += count;
+            }
+            return Arrays.equals(head, MAGIC);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Loads a diagram specification from binary file.
+     *
+     * @param f file to load
+     * @return diagram specification
+     * @throws IOException on I/O errors or malformed data
+     */
+    public static DiagramDataSource load(File f) throws IOException {
+        return load(f, new DataInterner());
+    }
+
+    /**
+     * Loads a diagram specification from binary file, sharing equal node
+     * attributes via the given interner.
+     *
+     * @param f file to load
+     * @param interner pool of shared attribute values
+     * @return diagram specification
+     * @throws IOException on I/O errors or malformed data
+     */
+    public static DiagramDataSource load(File f, DataInterner interner)
+    throws IOException {
+        long length = f.length();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("File is too large: " + f);
+        }
+        byte[] data = new byte[(int) length];
+        DataInputStream stream = new DataInputStream(new FileInputStream(f));
+        try {
+            stream.readFully(data);
+        } finally {
+            stream.close();
+        }
+        return decode(data, interner);
+    }
+
+    /**
+     * Saves a diagram specification into binary file.
+     *
+     * @param source diagram to save
+     * @param f file to save into
+     * @throws IOException on I/O errors
+     */
+    public static void save(DiagramDataSource source, File f) throws IOException {
+        OutputStream stream = new BufferedOutputStream(new FileOutputStream(f), 65536);
+        try {
+            encode(source, stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    // -------------------------------------------------------------------
+    // Encoding
+    // -------------------------------------------------------------------
+
+    /**
+     * Writes diagram specification in binary form into the stream.
+     *
+     * @param source diagram to save
+     * @param stream stream to write into
+     * @throws IOException on I/O errors
+     */
+    public static void encode(DiagramDataSource source, OutputStream stream)
+    throws IOException {
+        final List<JNodeData> nodes = source.getNodeData();
+        final List<JEdgeData> edges = source.getEdgeData();
+        final List<JLegData> legs = source.getLegData();
+
+        final Map<String, Integer> strings = new HashMap<String, Integer>();
+        List<String> table = new ArrayList<String>();
+        for (JNodeData node : nodes) {
+            register(node.getContent(), strings, table);
+            register(node.getComment(), strings, table);
+            if (node.getGroup() != null) {
+                register(node.getGroup(), strings, table);
+            }
+        }
+
+        List<Block> blocks = new ArrayList<Block>();
+        split(NODE_BLOCK, nodes.size(), blocks);
+        split(EDGE_BLOCK, edges.size(), blocks);
+        split(LEG_BLOCK, legs.size(), blocks);
+
+        final Block[] array = blocks.toArray(new Block[blocks.size()]);
+        runBlocks(array, new BlockTask() {
+            public void run(Block block) {
+                ByteWriter out = new ByteWriter();
+                for (int i = block.first; i < block.first + block.count; i++) {
+                    switch (block.kind) {
+                        case NODE_BLOCK:
+                            writeNode(nodes.get(i), strings, out);
+                            break;
+                        case EDGE_BLOCK:
+                            writeEdge(edges.get(i), out);
+                            break;
+                        default:
+                            writeLeg(legs.get(i), out);
+                    }
+                }
+                block.data = out;
+            }
+        });
+
+        ByteWriter header = new ByteWriter();
+        header.write(MAGIC, 0, MAGIC.length);
+        header.write(VERSION);
+        header.writeString(source.getDiagramType().name());
+        DiagramOptionData options = source.getOptions();
+        if (options == null) {
+            header.write(0);
+        } else {
+            header.write(1 | (options.numbering ? 2 : 0));
+            header.writeString(options.orderingLevel == null ? "" : options.orderingLevel.name());
+        }
+        header.writeVarint(table.size());
+        for (String s : table) {
+            header.writeString(s);
+        }
+        header.writeVarint(nodes.size());
+        header.writeVarint(edges.size());
+        header.writeVarint(legs.size());
+        header.writeVarint(array.length);
+        for (Block block : array) {
+            header.write(block.kind);
+            header.writeVarint(block.first);
+            header.writeVarint(block.count);
+            header.writeVarint(block.data.size());
+        }
+        header.writeTo(stream);
+        for (Block block : array) {
+            block.data.writeTo(stream);
+        }
+        stream.flush();
+    }
+
+    private static void register(String s, Map<String, Integer> strings,
+                                 List<String> table) {
+        if (!strings.containsKey(s)) {
+            strings.put(s, table.size());
+            table.add(s);
+        }
+    }
+
+    private static void split(byte kind, int size, List<Block> blocks) {
+        for (int first = 0; first < size; first += BLOCK_SIZE) {
+            blocks.add(new Block(kind, first, Math.min(BLOCK_SIZE, size - first)));
+        }
+    }
+
+    private static void writeNode(JNodeData node, Map<String, Integer> strings,
+                                  ByteWriter out) {
+        int flags = 0;
+        if (node.isEditable()) {
+            flags |= FLAG_EDITABLE;
+        }
+        if (node.getGroup() != null) {
+            flags |= FLAG_GROUP;
+        }
+        Point center = node.getSlideCenter();
+        if (center != null) {
+            flags |= FLAG_CENTER;
+        }
+        int colorCode = Arrays.asList(COLORS).indexOf(node.getBackground());
+        if (colorCode == -1) {
+            flags |= FLAG_CUSTOM_COLOR;
+        } else {
+            flags |= colorCode << COLOR_SHIFT;
+        }
+        out.write(node.getBorderType().ordinal());
+        out.write(flags);
+        if (center != null) {
+            out.writeSignedVarint(center.x);
+            out.writeSignedVarint(center.y);
+        }
+        if (colorCode == -1) {
+            out.writeInt(node.getBackground().getRGB());
+        }
+        out.writeVarint(strings.get(node.getContent()));
+        out.writeVarint(strings.get(node.getComment()));
+        if (node.getGroup() != null) {
+            out.writeVarint(strings.get(node.getGroup()));
+        }
+    }
+
+    private static void writeEdge(JEdgeData edge, ByteWriter out) {
+        out.writeVarint(edge.idxA);
+        out.writeVarint((edge.idxZ << 1) | (edge.conflict ? 1 : 0));
+    }
+
+    private static void writeLeg(JLegData leg, ByteWriter out) {
+        out.writeVarint(leg.idxA);
+        out.writeVarint(leg.idxZ);
+    }
+
+    // -------------------------------------------------------------------
+    // Decoding
+    // -------------------------------------------------------------------
+
+    /**
+     * Decodes diagram specification from its binary form.
+     *
+     * @param data binary diagram
+     * @return diagram specification
+     * @throws IOException on malformed data
+     */
+    public static DiagramDataSource decode(byte[] data) throws IOException {
+        return decode(data, new DataInterner());
+    }
+
+    /**
+     * Decodes diagram specification from its binary form, sharing equal
+     * node attributes via the given interner.
+     *
+     * @param data binary diagram
+     * @param interner pool of shared attribute values
+     * @return diagram specification
+     * @throws IOException on malformed data
+     */
+    public static DiagramDataSource decode(byte[] data, final DataInterner interner)
+    throws IOException {
+        try {
+            return doDecode(data, interner);
+        } catch (IndexOutOfBoundsException ex) {
+            throw new IOException("Truncated binary diagram", ex);
+        } catch (NegativeArraySizeException ex) {
+            throw new IOException("Malformed binary diagram", ex);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Malformed binary diagram", ex);
+        }
+    }
+
+    private static DiagramDataSource doDecode(byte[] data, final DataInterner interner)
+    throws IOException {
+        final ByteReader in = new ByteReader(data, 0);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (in.read() != MAGIC[i]) {
+                throw new IOException("Not a binary diagram");
+            }
+        }
+        int version = in.read();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary diagram version " + version);
+        }
+
+        DiagramType type = DiagramType.valueOf(in.readString());
+        DummyDiagramDataSource container = new DummyDiagramDataSource(type);
+        int optionFlags = in.read();
+        if ((optionFlags & 1) != 0) {
+            String level = in.readString();
+            container.set(new DiagramOptionData((optionFlags & 2) != 0,
+                    level.length() == 0 ? null : OrderingLevel.valueOf(level)));
+        }
+
+        final String[] table = new String[in.readVarint()];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = interner.intern(in.readString());
+        }
+
+        final JNodeData[] nodes = new JNodeData[in.readVarint()];
+        final JEdgeData[] edges = new JEdgeData[in.readVarint()];
+        final JLegData[] legs = new JLegData[in.readVarint()];
+
+        Block[] blocks = new Block[in.readVarint()];
+        for (int i = 0; i < blocks.length; i++) {
+            byte kind = (byte) in.read();
+            int first = in.readVarint();
+            int count = in.readVarint();
+            blocks[i] = new Block(kind, first, count);
+            blocks[i].length = in.readVarint();
+            int size = kind == NODE_BLOCK ? nodes.length :
+                       kind == EDGE_BLOCK ? edges.length : legs.length;
+            if (kind < NODE_BLOCK || kind > LEG_BLOCK || first + count > size) {
+                throw new IOException("Malformed block directory");
+            }
+        }
+        int offset = in.position();
+        for (Block block : blocks) {
+            block.offset = offset;
+            offset += block.length;
+        }
+        if (offset > data.length) {
+            throw new IOException("Truncated binary diagram");
+        }
+
+        final byte[] bytes = data;
+        runBlocks(blocks, new BlockTask() {
+            public void run(Block block) {
+                ByteReader reader = new ByteReader(bytes, block.offset);
+                for (int i = block.first; i < block.first + block.count; i++) {
+                    switch (block.kind) {
+                        case NODE_BLOCK:
+                            nodes[i] = readNode(reader, table, interner);
+                            break;
+                        case EDGE_BLOCK:
+                            int idxA = reader.readVarint();
+                            int idxZ = reader.readVarint();
+                            edges[i] = new JEdgeData(idxA, idxZ >>> 1, (idxZ & 1) != 0);
+                            break;
+                        default:
+                            legs[i] = new JLegData(reader.readVarint(), reader.readVarint());
+                    }
+                }
+            }
+        });
+
+        for (JNodeData node : nodes) {
+            checkDecoded(node);
+            container.add(node);
+        }
+        for (JEdgeData edge : edges) {
+            checkDecoded(edge);
+            container.add(edge);
+        }
+        for (JLegData leg : legs) {
+            checkDecoded(leg);
+            container.add(leg);
+        }
+        return container;
+    }
+
+    private static void checkDecoded(Object item) throws IOException {
+        if (item == null) {
+            throw new IOException("Block directory doesn't cover all items");
+        }
+    }
+
+    private static JNodeData readNode(ByteReader in, String[] table,
+                                      DataInterner interner) {
+        BorderType border = BORDERS[in.read()];
+        int flags = in.read();
+        Point center = null;
+        if ((flags & FLAG_CENTER) != 0) {
+            int x = in.readSignedVarint();
+            int y = in.readSignedVarint();
+            center = new Point(x, y);
+        }
+        Color color;
+        if ((flags & FLAG_CUSTOM_COLOR) != 0) {
+            color = interner.intern(new Color(in.readInt(), true));
+        } else {
+            color = COLORS[flags >>> COLOR_SHIFT];
+        }
+        String content = table[in.readVarint()];
+        String comment = table[in.readVarint()];
+        String group = null;
+        if ((flags & FLAG_GROUP) != 0) {
+            group = table[in.readVarint()];
+        }
+        return new JNodeData(border, (flags & FLAG_EDITABLE) != 0, content,
+                center, color, comment, group);
+    }
+
+    // -------------------------------------------------------------------
+    // Blocks and their parallel processing
+    // -------------------------------------------------------------------
+
+    private static class Block {
+        final byte kind;
+        final int first;
+        final int count;
+        int offset, length;
+        ByteWriter data;
+
+        Block(byte kind, int first, int count) {
+            this.kind = kind;
+            this.first = first;
+            this.count = count;
+        }
+    }
+
+    private interface BlockTask {
+        void run(Block block);
+    }
+
+    private static class BlockAction extends RecursiveAction {
+        private final Block[] blocks;
+        private final int from, to;
+        private final BlockTask task;
+
+        BlockAction(Block[] blocks, int from, int to, BlockTask task) {
+            this.blocks = blocks;
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                task.run(blocks[from]);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BlockAction(blocks, from, middle, task),
+                          new BlockAction(blocks, middle, to, task));
+            }
+        }
+    }
+
+    private static void runBlocks(Block[] blocks, BlockTask task) {
+        if (blocks.length == 1) {
+            task.run(blocks[0]);
+        } else if (blocks.length > 1) {
+            ForkJoinPool.commonPool().invoke(new BlockAction(blocks, 0, blocks.length, task));
+        }
+    }
+
+    // -------------------------------------------------------------------
+    // Varint-capable byte buffers
+    // -------------------------------------------------------------------
+
+    static class ByteWriter extends ByteArrayOutputStream {
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        void writeSignedVarint(int value) {
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        void writeString(String s) {
+            byte[] utf;
+            try {
+                utf = s.getBytes("UTF-8");
+            } catch (UnsupportedEncodingException ex) {
+                throw new RuntimeException(ex);
+            }
+            writeVarint(utf.length);
+            write(utf, 0, utf.length);
+        }
+    }
+
+    static class ByteReader {
+        private final byte[] data;
+        private int position;
+
+        ByteReader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        int position() {
+            return position;
+        }
+
+        int read() {
+            return data[position++] & 0xFF;
+        }
+
+        int readVarint() {
+            int result = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = read();
+                result |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        int readSignedVarint() {
+            int value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readInt() {
+            return (read() << 24) | (read() << 16) | (read() << 8) | read();
+        }
+
+        String readString() {
+            int length = readVarint();
+            if (length < 0 || position + length > data.length) {
+                throw new IndexOutOfBoundsException("String exceeds data");
+            }
+            String result;
+            try {
+                result = new String(data, position, length, "UTF-8");
+            } catch (UnsupportedEncodingException ex) {
+                throw new RuntimeException(ex);
+            }
+            position += length;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.datamodel;
+
+import java.awt.Color;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Flyweight pool of node attributes. Diagrams, that were built from
+ * imported data, tend to repeat the same statements, comments, group
+ * names and colors many times, interning makes all equal values share
+ * one instance.
+ *
+ * Interner is thread-safe, so it can be shared by parallel loaders.
+ * Points are not interned as they're mutable.
+ *
+ * @author iappel
+ */
+public class DataInterner {
+    // Approximate shallow sizes with compressed references
+    private static final int STRING_SIZE = 24;
+    private static final int ARRAY_HEADER_SIZE = 16;
+    private static final int COLOR_SIZE = 32;
+
+    private final ConcurrentMap<String, String> _strings =
+            new ConcurrentHashMap<String, String>();
+    private final ConcurrentMap<Color, Color> _colors =
+            new ConcurrentHashMap<Color, Color>();
+    private final AtomicLong _savedBytes = new AtomicLong();
+
+    /**
+     * Creates a new interner with the canonical node colors preloaded.
+     */
+    public DataInterner() {
+        for (Color color : new Color[] {Color.WHITE, Color.CYAN,
+                Color.YELLOW, Color.PINK, Color.GREEN}) {
+            _colors.put(color, color);
+        }
+    }
+
+    /**
+     * Returns the shared instance of a string.
+     *
+     * @param value string to intern, may be null
+     * @return shared string equal to the given one
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String result = _strings.putIfAbsent(value, value);
+        if (result == null) {
+            return value;
+        }
+        if (result != value) {
+            _savedBytes.addAndGet(align(STRING_SIZE) +
+                    align(ARRAY_HEADER_SIZE + 2L * value.length()));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the shared instance of a color.
+     *
+     * @param value color to intern, may be null
+     * @return shared color equal to the given one
+     */
+    public Color intern(Color value) {
+        if (value == null) {
+            return null;
+        }
+        Color result = _colors.putIfAbsent(value, value);
+        if (result == null) {
+            return value;
+        }
+        if (result != value) {
+            _savedBytes.addAndGet(COLOR_SIZE);
+        }
+        return result;
+    }
+
+    /**
+     * Returns node's specification, that uses shared instances of the
+     * strings and the color.
+     *
+     * @param node node's specification
+     * @return equal node's specification with interned attributes
+     */
+    public JNodeData intern(JNodeData node) {
+        return node.clone(intern(node.getContent()), node.getSlideCenter(),
+                intern(node.getBackground()), intern(node.getComment()),
+                intern(node.getGroup()));
+    }
+
+    /**
+     * Returns approximate amount of heap, that was saved by interning,
+     * in bytes.
+     *
+     * @return number of bytes saved
+     */
+    public long getSavedBytes() {
+        return _savedBytes.get();
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
@@ -32,12 +32,16 @@
 package oss.jthinker.datamodel;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import org.w3c.dom.Element;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.xml.parsers.ParserConfigurationException;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
@@ -49,12 +53,16 @@ import org.xml.sax.SAXException;
  * @author iappel
  */
 public class DiagramData implements XMLStored, DiagramDataSource {
+    private static Logger logger = Logger.getAnonymousLogger();
+
     private final List<JNodeData> _nodes = new ArrayList<JNodeData>();
     private final List<JEdgeData> _edges = new ArrayList<JEdgeData>();
     private final List<JLegData> _legs = new ArrayList<JLegData>();
     private final DiagramType _type;
     private final DiagramOptionData _options = new DiagramOptionData();
     private final File _file;
+    private DiagramJournal.Ids _journalIds;
+    private long _fingerprint;
 
     /**
      * Creates a new empty DiagramSpec instance.
@@ -68,7 +76,9 @@ public class DiagramData implements XMLStored, DiagramDataSource {
 
     /**
      * Creates a new DiagramSpec instance and loads information from
-     * file.
+     * file. Both XML and binary diagram files are accepted, format is
+     * detected by the file's leading bytes. Edits from the file's
+     * journal, if there is one, are applied as well.
      *
      * @param file file to load
      * @throws SAXException where there are problems parsing the file
@@ -77,9 +87,33 @@ public class DiagramData implements XMLStored, DiagramDataSource {
     public DiagramData(File file)
     throws SAXException, IOException, ParserConfigurationException {
         _file = file;
-        DiagramDataSource data = XMLUtils.load(file);
+        DataInterner interner = new DataInterner();
+        DiagramDataSource data;
+        if (BinaryDiagramCodec.isBinary(file)) {
+            data = BinaryDiagramCodec.load(file, interner);
+        } else {
+            data = XMLUtils.load(file, interner);
+        }
+        DiagramJournal.Replay replay = DiagramJournal.replay(data, file, interner);
+        if (replay != null) {
+            data = replay;
+            _journalIds = replay.getIds();
+        }
         _type = data.getDiagramType();
         load(data);
+        logger.log(Level.FINE, "Interning saved {0} bytes loading {1}",
+                new Object[] {interner.getSavedBytes(), file});
+    }
+
+    /**
+     * Returns journal ids of diagram's items, when diagram was restored
+     * with a journal.
+     *
+     * @return journal ids of diagram's items or null if no journal was
+     * applied and ids are equal to indexes
+     */
+    public DiagramJournal.Ids getJournalIds() {
+        return _journalIds;
     }
 
     public final void load(DiagramDataSource datasource) {
@@ -90,18 +124,52 @@ public class DiagramData implements XMLStored, DiagramDataSource {
         _legs.clear();
         _legs.addAll(datasource.getLegData());
         _options.fill(datasource.getOptions());
+        _fingerprint = 0;
+    }
+
+    /**
+     * Returns 64-bit fingerprint of the whole diagram. Fingerprint of
+     * nodes, edges and legs is aggregated from fingerprints of the
+     * items on the first call and cached until the next {@link #load};
+     * options are mixed in on each call, as they may be changed in place.
+     * Diagrams with different fingerprints are different, equal
+     * fingerprints still need the items to be compared.
+     *
+     * @return structural fingerprint
+     */
+    public long fingerprint() {
+        long result = _fingerprint;
+        if (result == 0) {
+            result = Fingerprint.mix(Fingerprint.SEED, _type.ordinal());
+            result = Fingerprint.mix(result, _nodes.size());
+            for (JNodeData node : _nodes) {
+                result = Fingerprint.mix(result, node.fingerprint());
+            }
+            result = Fingerprint.mix(result, _edges.size());
+            for (JEdgeData edge : _edges) {
+                result = Fingerprint.mix(result, edge.fingerprint());
+            }
+            result = Fingerprint.mix(result, _legs.size());
+            for (JLegData leg : _legs) {
+                result = Fingerprint.mix(result, leg.fingerprint());
+            }
+            _fingerprint = result;
+        }
+        return Fingerprint.mix(result, _options.fingerprint());
     }
     
     @Override
     /** {@inheritDoc} */
     public boolean equals(Object obj) {
         if (obj instanceof DiagramData) {
-            DiagramData spec = (DiagramData)obj;
-            return _nodes.equals(spec._nodes) &&
-                   _edges.equals(spec._edges) &&
-                   _legs.equals(spec._legs) &&
-                   _type.equals(spec._type) &&
-                   _options.equals(spec._options);
+            DiagramData data = (DiagramData)obj;
+            // Fingerprints only reject quickly, they may collide
+            return data.fingerprint() == fingerprint() &&
+                   data._type == _type &&
+                   data._nodes.equals(_nodes) &&
+                   data._edges.equals(_edges) &&
+                   data._legs.equals(_legs) &&
+                   data._options.equals(_options);
         } else {
             return super.equals(obj);
         }
@@ -110,8 +178,7 @@ public class DiagramData implements XMLStored, DiagramDataSource {
     @Override
     /** {@inheritDoc} */
     public int hashCode() {
-        return _nodes.hashCode() + _edges.hashCode() +
-               _legs.hashCode() + _type.hashCode() + _options.hashCode();
+        return Fingerprint.fold(fingerprint());
     }
 
     /** {@inheritDoc} */
@@ -131,6 +198,22 @@ public class DiagramData implements XMLStored, DiagramDataSource {
         return result;
     }
 
+    /** {@inheritDoc} */
+    public void saveToXML(XMLWriter writer) throws IOException {
+        writer.startElement("diagram").attribute("type", _type.toString());
+        for (JNodeData spec : _nodes) {
+            spec.saveToXML(writer);
+        }
+        for (JEdgeData spec : _edges) {
+            spec.saveToXML(writer);
+        }
+        for (JLegData spec : _legs) {
+            spec.saveToXML(writer);
+        }
+        _options.saveToXML(writer);
+        writer.endElement();
+    }
+
     public List<JNodeData> getNodeData() {
         return Collections.unmodifiableList(_nodes);
     }
@@ -155,8 +238,40 @@ public class DiagramData implements XMLStored, DiagramDataSource {
         return _file;
     }
 
-    public void save(File f) throws FileNotFoundException {
-        XMLUtils.save(this, f);
+    /**
+     * Saves the diagram into a file, format is chosen by the file's
+     * suffix. Diagram is written into a temporary file first, that then
+     * replaces the target, so the target is never left half-written.
+     * Journal of the replaced file is discarded.
+     *
+     * @param f file to save into
+     * @throws IOException on I/O errors
+     */
+    public void save(File f) throws IOException {
+        File dir = f.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile("." + f.getName() + ".", ".tmp", dir);
+        boolean moved = false;
+        try {
+            if (f.getName().endsWith(BinaryDiagramCodec.SUFFIX)) {
+                BinaryDiagramCodec.save(this, temp);
+            } else {
+                XMLUtils.save(this, temp);
+            }
+            try {
+                Files.move(temp.toPath(), f.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp.toPath(), f.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+        } finally {
+            if (!moved) {
+                temp.delete();
+            }
+        }
+        DiagramJournal.discard(f);
     }
 
     public String renderXML() {
@@ -0,0 +1,571 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.datamodel;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import oss.jthinker.graphs.OrderingLevel;
+
+/**
+ * Append-only journal of diagram edits, that is kept beside diagram's
+ * snapshot file.
+ *
+ * Journal addresses nodes, edges and legs by ids, that stay stable
+ * while the diagram is edited: items of the snapshot have ids equal to
+ * their indexes, new items get ids past all the used ones. Each batch
+ * of edits is appended as a single checksummed record, so a batch that
+ * was only partially written is dropped as a whole on load. Header of
+ * the journal stores length and modification time of the snapshot it
+ * was started against, journal of any other snapshot is ignored.
+ *
+ * @author iappel
+ */
+public class DiagramJournal {
+    /**
+     * Suffix, that is appended to snapshot's name to get journal's name.
+     */
+    public static final String SUFFIX = ".journal";
+
+    private static final byte[] MAGIC = {'J', 'T', 'K', 'J'};
+    private static final int VERSION = 1;
+    private static final long MIN_COMPACTION_SIZE = 65536;
+
+    private static final int SET_NODE = 1;
+    private static final int MOVE_NODE = 2;
+    private static final int REMOVE_NODE = 3;
+    private static final int SET_EDGE = 4;
+    private static final int REMOVE_EDGE = 5;
+    private static final int SET_LEG = 6;
+    private static final int REMOVE_LEG = 7;
+    private static final int SET_OPTIONS = 8;
+
+    private static final BorderType[] BORDERS = BorderType.values();
+
+    private final BinaryDiagramCodec.ByteWriter _ops =
+            new BinaryDiagramCodec.ByteWriter();
+
+    /**
+     * Ids of the replayed diagram's items.
+     */
+    public static class Ids {
+        /** Ids of nodes in the order of their indexes. */
+        public final int[] nodes;
+        /** Ids of edges in the order of their indexes. */
+        public final int[] edges;
+        /** Ids of legs in the order of their indexes. */
+        public final int[] legs;
+        /** Least ids, that were never used for nodes, edges and legs. */
+        public final int nextNode, nextEdge, nextLeg;
+
+        Ids(int[] nodes, int[] edges, int[] legs,
+            int nextNode, int nextEdge, int nextLeg) {
+            this.nodes = nodes;
+            this.edges = edges;
+            this.legs = legs;
+            this.nextNode = nextNode;
+            this.nextEdge = nextEdge;
+            this.nextLeg = nextLeg;
+        }
+    }
+
+    /**
+     * Diagram, that was restored from a snapshot and its journal.
+     */
+    public static class Replay extends DummyDiagramDataSource {
+        private Ids ids;
+
+        Replay(DiagramType type) {
+            super(type);
+        }
+
+        /**
+         * Returns ids of the restored items, that further journal
+         * records should use.
+         *
+         * @return ids of the restored items
+         */
+        public Ids getIds() {
+            return ids;
+        }
+    }
+
+    /**
+     * Records node's creation or change of any of node's attributes.
+     *
+     * @param id node's id
+     * @param data node's new specification
+     */
+    public void setNode(int id, JNodeData data) {
+        _ops.write(SET_NODE);
+        _ops.writeVarint(id);
+        _ops.write(data.getBorderType().ordinal());
+        _ops.write((data.isEditable() ? 1 : 0) | (data.getGroup() != null ? 2 : 0));
+        writePoint(data.getSlideCenter());
+        _ops.writeInt(data.getBackground().getRGB());
+        _ops.writeString(data.getContent());
+        _ops.writeString(data.getComment());
+        if (data.getGroup() != null) {
+            _ops.writeString(data.getGroup());
+        }
+    }
+
+    /**
+     * Records node's move.
+     *
+     * @param id node's id
+     * @param center node's new center
+     */
+    public void moveNode(int id, Point center) {
+        _ops.write(MOVE_NODE);
+        _ops.writeVarint(id);
+        writePoint(center);
+    }
+
+    /**
+     * Records node's removal.
+     *
+     * @param id node's id
+     */
+    public void removeNode(int id) {
+        _ops.write(REMOVE_NODE);
+        _ops.writeVarint(id);
+    }
+
+    /**
+     * Records edge's creation or change.
+     *
+     * @param id edge's id
+     * @param nodeA id of edge's start node
+     * @param nodeZ id of edge's end node
+     * @param conflict is edge displayed as a conflict
+     */
+    public void setEdge(int id, int nodeA, int nodeZ, boolean conflict) {
+        _ops.write(SET_EDGE);
+        _ops.writeVarint(id);
+        _ops.writeVarint(nodeA);
+        _ops.writeVarint((nodeZ << 1) | (conflict ? 1 : 0));
+    }
+
+    /**
+     * Records edge's removal.
+     *
+     * @param id edge's id
+     */
+    public void removeEdge(int id) {
+        _ops.write(REMOVE_EDGE);
+        _ops.writeVarint(id);
+    }
+
+    /**
+     * Records leg's creation.
+     *
+     * @param id leg's id
+     * @param node id of leg's node
+     * @param edge id of leg's edge
+     */
+    public void setLeg(int id, int node, int edge) {
+        _ops.write(SET_LEG);
+        _ops.writeVarint(id);
+        _ops.writeVarint(node);
+        _ops.writeVarint(edge);
+    }
+
+    /**
+     * Records leg's removal.
+     *
+     * @param id leg's id
+     */
+    public void removeLeg(int id) {
+        _ops.write(REMOVE_LEG);
+        _ops.writeVarint(id);
+    }
+
+    /**
+     * Records diagram's options.
+     *
+     * @param options diagram's options
+     */
+    public void setOptions(DiagramOptionData options) {
+        _ops.write(SET_OPTIONS);
+        _ops.write(options.numbering ? 1 : 0);
+        _ops.writeString(options.orderingLevel == null ? "" : options.orderingLevel.name());
+    }
+
+    private void writePoint(Point point) {
+        _ops.writeSignedVarint(point.x);
+        _ops.writeSignedVarint(point.y);
+    }
+
+    /**
+     * Adds all records of another journal batch after the records of
+     * this one.
+     *
+     * @param batch records to add
+     */
+    public void append(DiagramJournal batch) {
+        _ops.write(batch._ops.toByteArray(), 0, batch._ops.size());
+    }
+
+    /**
+     * Returns true if there are no records pending.
+     *
+     * @return true if there are no records pending
+     */
+    public boolean isEmpty() {
+        return _ops.size() == 0;
+    }
+
+    /**
+     * Drops all pending records.
+     */
+    public void clear() {
+        _ops.reset();
+    }
+
+    /**
+     * Returns journal file of the given snapshot.
+     *
+     * @param snapshot diagram's snapshot file
+     * @return journal file of the snapshot
+     */
+    public static File journalFile(File snapshot) {
+        return new File(snapshot.getPath() + SUFFIX);
+    }
+
+    /**
+     * Deletes journal of the given snapshot.
+     *
+     * @param snapshot diagram's snapshot file
+     * @throws IOException when existing journal can't be deleted
+     */
+    public static void discard(File snapshot) throws IOException {
+        File journal = journalFile(snapshot);
+        if (journal.exists() && !journal.delete()) {
+            throw new IOException("Unable to delete " + journal);
+        }
+    }
+
+    /**
+     * Appends all pending records to the snapshot's journal as one batch
+     * and clears them. Nothing is written when snapshot differs from the
+     * one that the journal was started against or when the journal grew
+     * large enough to be folded into a new snapshot; caller should save
+     * a new snapshot then.
+     *
+     * @param snapshot diagram's snapshot file
+     * @param length expected length of the snapshot
+     * @param modified expected modification time of the snapshot
+     * @return true if records were appended and false if a new snapshot
+     * is required
+     * @throws IOException on I/O errors
+     */
+    public boolean appendTo(File snapshot, long length, long modified)
+    throws IOException {
+        if (snapshot.length() != length || snapshot.lastModified() != modified) {
+            return false;
+        }
+        File journal = journalFile(snapshot);
+        boolean exists = journal.exists();
+        if (exists && !matches(journal, length, modified)) {
+            return false;
+        }
+        long journalLength = exists ? journal.length() : 0;
+        if (journalLength + _ops.size() > Math.max(MIN_COMPACTION_SIZE, length / 2)) {
+            return false;
+        }
+        if (isEmpty()) {
+            return true;
+        }
+
+        BinaryDiagramCodec.ByteWriter record = new BinaryDiagramCodec.ByteWriter();
+        if (!exists) {
+            DataOutputStream header = new DataOutputStream(record);
+            header.write(MAGIC);
+            header.write(VERSION);
+            header.writeLong(length);
+            header.writeLong(modified);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(_ops.toByteArray());
+        record.writeVarint(_ops.size());
+        _ops.writeTo(record);
+        record.writeInt((int) crc.getValue());
+
+        FileOutputStream stream = new FileOutputStream(journal, true);
+        try {
+            record.writeTo(stream);
+            stream.getFD().sync();
+        } finally {
+            stream.close();
+        }
+        clear();
+        return true;
+    }
+
+    private static boolean matches(File journal, long length, long modified)
+    throws IOException {
+        DataInputStream stream = new DataInputStream(new FileInputStream(journal));
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            stream.readFully(magic);
+            return Arrays.equals(magic, MAGIC) && stream.read() == VERSION &&
+                   stream.readLong() == length && stream.readLong() == modified;
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Applies snapshot's journal to the diagram loaded from the snapshot.
+     *
+     * @param snapshotData diagram loaded from the snapshot
+     * @param snapshot diagram's snapshot file
+     * @return restored diagram or null if there is no journal for the
+     * snapshot
+     * @throws IOException on I/O errors or malformed journal records
+     */
+    public static Replay replay(DiagramDataSource snapshotData, File snapshot)
+    throws IOException {
+        return replay(snapshotData, snapshot, new DataInterner());
+    }
+
+    /**
+     * Applies snapshot's journal to the diagram loaded from the snapshot,
+     * sharing equal node attributes via the given interner.
+     *
+     * @param snapshotData diagram loaded from the snapshot
+     * @param snapshot diagram's snapshot file
+     * @param interner pool of shared attribute values
+     * @return restored diagram or null if there is no journal for the
+     * snapshot
+     * @throws IOException on I/O errors or malformed journal records
+     */
+    public static Replay replay(DiagramDataSource snapshotData, File snapshot,
+                                DataInterner interner)
+    throws IOException {
+        File journal = journalFile(snapshot);
+        if (!journal.exists() ||
+            !matches(journal, snapshot.length(), snapshot.lastModified())) {
+            return null;
+        }
+        byte[] data = new byte[(int) journal.length()];
+        DataInputStream stream = new DataInputStream(new FileInputStream(journal));
+        try {
+            stream.readFully(data);
+        } finally {
+            stream.close();
+        }
+
+        List<JNodeData> nodes = new ArrayList<JNodeData>(snapshotData.getNodeData());
+        List<JEdgeData> edges = new ArrayList<JEdgeData>(snapshotData.getEdgeData());
+        List<JLegData> legs = new ArrayList<JLegData>(snapshotData.getLegData());
+        DiagramOptionData options = snapshotData.getOptions();
+
+        int position = MAGIC.length + 1 + 16;
+        CRC32 crc = new CRC32();
+        while (position < data.length) {
+            BinaryDiagramCodec.ByteReader in =
+                    new BinaryDiagramCodec.ByteReader(data, position);
+            int size, start;
+            try {
+                size = in.readVarint();
+                start = in.position();
+                if (size < 0 || start + size + 4 > data.length) {
+                    break;
+                }
+                crc.reset();
+                crc.update(data, start, size);
+                in = new BinaryDiagramCodec.ByteReader(data, start + size);
+                if (in.readInt() != (int) crc.getValue()) {
+                    break;
+                }
+            } catch (IndexOutOfBoundsException ex) {
+                break;
+            }
+            try {
+                options = apply(new BinaryDiagramCodec.ByteReader(data, start),
+                        start + size, nodes, edges, legs, options, interner);
+            } catch (RuntimeException ex) {
+                throw new IOException("Malformed journal record", ex);
+            }
+            position = start + size + 4;
+        }
+
+        return compact(snapshotData.getDiagramType(), nodes, edges, legs, options);
+    }
+
+    private static DiagramOptionData apply(BinaryDiagramCodec.ByteReader in, int end,
+            List<JNodeData> nodes, List<JEdgeData> edges, List<JLegData> legs,
+            DiagramOptionData options, DataInterner interner) {
+        while (in.position() < end) {
+            int op = in.read();
+            switch (op) {
+                case SET_NODE:
+                    set(nodes, in.readVarint(), readNode(in, interner));
+                    break;
+                case MOVE_NODE: {
+                    int id = in.readVarint();
+                    Point center = readPoint(in);
+                    JNodeData node = nodes.get(id);
+                    nodes.set(id, node.clone(node.getContent(), center,
+                            node.getBackground(), node.getComment(), node.getGroup()));
+                    break;
+                }
+                case REMOVE_NODE:
+                    set(nodes, in.readVarint(), null);
+                    break;
+                case SET_EDGE: {
+                    int id = in.readVarint();
+                    int idxA = in.readVarint();
+                    int idxZ = in.readVarint();
+                    set(edges, id, new JEdgeData(idxA, idxZ >>> 1, (idxZ & 1) != 0));
+                    break;
+                }
+                case REMOVE_EDGE:
+                    set(edges, in.readVarint(), null);
+                    break;
+                case SET_LEG: {
+                    int id = in.readVarint();
+                    int idxA = in.readVarint();
+                    set(legs, id, new JLegData(idxA, in.readVarint()));
+                    break;
+                }
+                case REMOVE_LEG:
+                    set(legs, in.readVarint(), null);
+                    break;
+                case SET_OPTIONS: {
+                    boolean numbering = in.read() != 0;
+                    String level = in.readString();
+                    options = new DiagramOptionData(numbering,
+                            level.length() == 0 ? null : OrderingLevel.valueOf(level));
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown operation " + op);
+            }
+        }
+        return options;
+    }
+
+    private static <T> void set(List<T> list, int id, T value) {
+        while (list.size() <= id) {
+            list.add(null);
+        }
+        list.set(id, value);
+    }
+
+    private static Point readPoint(BinaryDiagramCodec.ByteReader in) {
+        int x = in.readSignedVarint();
+        int y = in.readSignedVarint();
+        return new Point(x, y);
+    }
+
+    private static JNodeData readNode(BinaryDiagramCodec.ByteReader in,
+                                      DataInterner interner) {
+        BorderType border = BORDERS[in.read()];
+        int flags = in.read();
+        Point center = readPoint(in);
+        Color color = interner.intern(new Color(in.readInt(), true));
+        String content = interner.intern(in.readString());
+        String comment = interner.intern(in.readString());
+        String group = (flags & 2) != 0 ? interner.intern(in.readString()) : null;
+        return new JNodeData(border, (flags & 1) != 0, content, center,
+                color, comment, group);
+    }
+
+    // Drops removed items and items, that refer to removed ones, and
+    // renumbers the rest.
+    private static Replay compact(DiagramType type, List<JNodeData> nodes,
+            List<JEdgeData> edges, List<JLegData> legs, DiagramOptionData options) {
+        Replay result = new Replay(type);
+        result.set(options);
+
+        int[] nodeIndex = new int[nodes.size()];
+        int[] nodeIds = new int[nodes.size()];
+        int count = 0;
+        for (int id = 0; id < nodes.size(); id++) {
+            nodeIndex[id] = -1;
+            if (nodes.get(id) != null) {
+                nodeIndex[id] = count;
+                nodeIds[count++] = id;
+                result.add(nodes.get(id));
+            }
+        }
+        nodeIds = Arrays.copyOf(nodeIds, count);
+
+        int[] edgeIndex = new int[edges.size()];
+        int[] edgeIds = new int[edges.size()];
+        count = 0;
+        for (int id = 0; id < edges.size(); id++) {
+            edgeIndex[id] = -1;
+            JEdgeData edge = edges.get(id);
+            if (edge != null && alive(nodeIndex, edge.idxA) && alive(nodeIndex, edge.idxZ)) {
+                edgeIndex[id] = count;
+                edgeIds[count++] = id;
+                result.add(new JEdgeData(nodeIndex[edge.idxA], nodeIndex[edge.idxZ],
+                        edge.conflict));
+            }
+        }
+        edgeIds = Arrays.copyOf(edgeIds, count);
+
+        int[] legIds = new int[legs.size()];
+        count = 0;
+        for (int id = 0; id < legs.size(); id++) {
+            JLegData leg = legs.get(id);
+            if (leg != null && alive(nodeIndex, leg.idxA) && alive(edgeIndex, leg.idxZ)) {
+                legIds[count++] = id;
+                result.add(new JLegData(nodeIndex[leg.idxA], edgeIndex[leg.idxZ]));
+            }
+        }
+        legIds = Arrays.copyOf(legIds, count);
+
+        result.ids = new Ids(nodeIds, edgeIds, legIds,
+                nodes.size(), edges.size(), legs.size());
+        return result;
+    }
+
+    private static boolean alive(int[] index, int id) {
+        return id >= 0 && id < index.length && index[id] != -1;
+    }
+}
@@ -31,6 +31,7 @@
 
 package oss.jthinker.datamodel;
 
+import java.io.IOException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
@@ -79,6 +80,17 @@ public class DiagramOptionData implements XMLStored {
         }
     }
 
+    /**
+     * Creates a new instance of DiagramOptionSpec with given values.
+     *
+     * @param numbering should nodes be numbered
+     * @param orderingLevel layout policy of the diagram
+     */
+    DiagramOptionData(boolean numbering, OrderingLevel orderingLevel) {
+        this.numbering = numbering;
+        this.orderingLevel = orderingLevel;
+    }
+
     @Override
     /** {@inheritDoc} */
     public boolean equals(Object obj) {
@@ -97,6 +109,18 @@ public class DiagramOptionData implements XMLStored {
         return (numbering ? 42 : -11) * (2 * orderingLevel.hashCode() + 1);
     }
     
+    /**
+     * Returns 64-bit fingerprint of the options. Options are mutable,
+     * so fingerprint is computed on each call.
+     *
+     * @return structural fingerprint
+     */
+    public long fingerprint() {
+        long result = Fingerprint.mix(Fingerprint.SEED, numbering);
+        return Fingerprint.mix(result,
+                orderingLevel == null ? -1 : orderingLevel.ordinal());
+    }
+
     /**
      * Copies values from some other DiagramOptionSpec instance.
      * 
@@ -123,4 +147,18 @@ public class DiagramOptionData implements XMLStored {
         section.appendChild(option);
         return section;
     }
+
+    /** {@inheritDoc} */
+    public void saveToXML(XMLWriter writer) throws IOException {
+        writer.startElement("options");
+        writer.startElement("option")
+              .attribute("name", "numbering")
+              .attribute("value", Boolean.toString(numbering))
+              .endElement();
+        writer.startElement("option")
+              .attribute("name", "ordering-level")
+              .attribute("value", orderingLevel.toString())
+              .endElement();
+        writer.endElement();
+    }
 }
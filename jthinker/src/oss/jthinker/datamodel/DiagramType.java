@@ -79,6 +79,16 @@ public enum DiagramType {
         return conflictAllowed;
     }
 
+    /**
+     * Checks whether diagrams of this type should be kept free of cycles,
+     * links that close a loop are rejected then.
+     *
+     * @return true if cycles are not allowed in diagrams of this type
+     */
+    public boolean isAcyclic() {
+        return this == CURRENT_REALITY_TREE || this == TRANSITION_TREE;
+    }
+
     private static <T> List<T> wrap(T... values) {
         List<T> result = new ArrayList<T>();
         result.addAll(Arrays.asList(values));
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.datamodel;
+
+/**
+ * Helpers for computing 64-bit structural fingerprints of diagram data.
+ * A fingerprint is built by feeding values one by one into a running
+ * hash, so for lists it depends on the order of items.
+ *
+ * @author iappel
+ */
+final class Fingerprint {
+    static final long SEED = 0xCBF29CE484222325L;
+    private static final long PRIME = 0x100000001B3L;
+
+    private Fingerprint() {
+    }
+
+    /**
+     * Adds a number to the running hash.
+     *
+     * @param hash running hash
+     * @param value value to add
+     * @return updated hash
+     */
+    static long mix(long hash, long value) {
+        hash ^= value;
+        hash *= 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * Adds a boolean to the running hash.
+     *
+     * @param hash running hash
+     * @param value value to add
+     * @return updated hash
+     */
+    static long mix(long hash, boolean value) {
+        return mix(hash, value ? 1 : 2);
+    }
+
+    /**
+     * Adds a string to the running hash. Null is distinct from empty
+     * string.
+     *
+     * @param hash running hash
+     * @param value value to add
+     * @return updated hash
+     */
+    static long mix(long hash, String value) {
+        if (value == null) {
+            return mix(hash, -1L);
+        }
+        long h = SEED;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * PRIME;
+        }
+        return mix(mix(hash, h), value.length());
+    }
+
+    /**
+     * Folds fingerprint into a hash code.
+     *
+     * @param fingerprint fingerprint to fold
+     * @return hash code
+     */
+    static int fold(long fingerprint) {
+        return (int)(fingerprint ^ (fingerprint >>> 32));
+    }
+}
@@ -31,6 +31,7 @@
 
 package oss.jthinker.datamodel;
 
+import java.io.IOException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
@@ -92,6 +93,16 @@ public class JEdgeData implements XMLStored {
         return idxA + 42 * idxZ;
     }    
 
+    /**
+     * Returns 64-bit fingerprint of the edge's data.
+     *
+     * @return structural fingerprint
+     */
+    public long fingerprint() {
+        return Fingerprint.mix(Fingerprint.mix(Fingerprint.mix(
+                Fingerprint.SEED, idxA), idxZ), conflict);
+    }
+
     /** {@inheritDoc} */
     public Element saveToXML(Document document) {
         Element result = document.createElement("edge");
@@ -100,4 +111,13 @@ public class JEdgeData implements XMLStored {
         result.setAttribute("conflict", Boolean.toString(conflict));
         return result;
     }
+
+    /** {@inheritDoc} */
+    public void saveToXML(XMLWriter writer) throws IOException {
+        writer.startElement("edge")
+              .attribute("start",    Integer.toString(idxA))
+              .attribute("end",      Integer.toString(idxZ))
+              .attribute("conflict", Boolean.toString(conflict))
+              .endElement();
+    }
 }
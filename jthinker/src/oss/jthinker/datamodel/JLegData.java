@@ -31,6 +31,7 @@
 
 package oss.jthinker.datamodel;
 
+import java.io.IOException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
@@ -86,6 +87,15 @@ public class JLegData implements XMLStored {
         return idxA + 42 * idxZ;
     }
 
+    /**
+     * Returns 64-bit fingerprint of the leg's data.
+     *
+     * @return structural fingerprint
+     */
+    public long fingerprint() {
+        return Fingerprint.mix(Fingerprint.mix(Fingerprint.SEED, idxA), idxZ);
+    }
+
     /** {@inheritDoc} */
     public Element saveToXML(Document document) {
         Element result = document.createElement("leg");
@@ -93,4 +103,12 @@ public class JLegData implements XMLStored {
         result.setAttribute("end",      Integer.toString(idxZ));
         return result;
     }
+
+    /** {@inheritDoc} */
+    public void saveToXML(XMLWriter writer) throws IOException {
+        writer.startElement("leg")
+              .attribute("start",    Integer.toString(idxA))
+              .attribute("end",      Integer.toString(idxZ))
+              .endElement();
+    }
 }
@@ -34,12 +34,12 @@ package oss.jthinker.datamodel;
 import oss.jthinker.swingutils.WindowUtils;
 import java.awt.Color;
 import java.awt.Point;
+import java.io.IOException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import oss.jthinker.widgets.JLabelBundle;
 
 /**
  * A {@link JNode} construction specification.
@@ -49,6 +49,7 @@ import oss.jthinker.widgets.JLabelBundle;
 public class JNodeData extends JSlideData implements XMLStored {
     private final boolean editable;
     private final String content, comment, groupName;
+    private long fingerprint;
 
     /**
      * Creates a new JNodeSpec instance.
@@ -111,15 +112,6 @@ public class JNodeData extends JSlideData implements XMLStored {
         return editable;
     }
     
-    /**
-     * Returns a component to put into the node.
-     * 
-     * @return a component to put into the node.
-     */
-    protected JLabelBundle createComponent() {
-        return new JLabelBundle(content);
-    }
-
     /**
      * Creates a new JNodeSpec with the same border type and editability,
      * but with other content and placement.
@@ -168,9 +160,12 @@ public class JNodeData extends JSlideData implements XMLStored {
     public boolean equals(Object obj) {
         if (obj instanceof JNodeData) {
             JNodeData nspec = (JNodeData)obj;
-            return nspec.editable == editable &&
+            return nspec.fingerprint() == fingerprint() &&
+                    nspec.editable == editable &&
                     nspec.content.equals(content) &&
                     nspec.comment.equals(comment) &&
+                    (groupName == null ? nspec.groupName == null
+                                       : groupName.equals(nspec.groupName)) &&
                     super.equals(obj);
         } else {
             return super.equals(obj);
@@ -180,7 +175,30 @@ public class JNodeData extends JSlideData implements XMLStored {
     @Override
     /** {@inheritDoc} */
     public int hashCode() {
-        return super.hashCode() + content.hashCode() + comment.hashCode();
+        return Fingerprint.fold(fingerprint());
+    }
+
+    /**
+     * Returns 64-bit fingerprint of the node's data. Fingerprint is
+     * computed on the first call and cached afterwards.
+     *
+     * @return structural fingerprint
+     */
+    public long fingerprint() {
+        long result = fingerprint;
+        if (result == 0) {
+            Point center = getSlideCenter();
+            result = Fingerprint.mix(Fingerprint.SEED, getBorderType().ordinal());
+            result = Fingerprint.mix(result, editable);
+            result = Fingerprint.mix(result, center.x);
+            result = Fingerprint.mix(result, center.y);
+            result = Fingerprint.mix(result, getBackground().getRGB());
+            result = Fingerprint.mix(result, content);
+            result = Fingerprint.mix(result, comment);
+            result = Fingerprint.mix(result, groupName);
+            fingerprint = result;
+        }
+        return result;
     }
 
     /** {@inheritDoc} */
@@ -211,6 +229,21 @@ public class JNodeData extends JSlideData implements XMLStored {
         return result;
     }
 
+    /** {@inheritDoc} */
+    public void saveToXML(XMLWriter writer) throws IOException {
+        writer.startElement("node")
+              .attribute("type", getBorderType().toString())
+              .attribute("editable", Boolean.toString(editable));
+        XMLUtils.saveToXML(getSlideCenter(), writer);
+        writer.startElement("content").attribute("text", content).endElement();
+        writer.startElement("comment").attribute("text", comment).endElement();
+        XMLUtils.saveToXML(getBackground(), writer);
+        if (groupName != null) {
+            writer.startElement("group-name").attribute("text", groupName).endElement();
+        }
+        writer.endElement();
+    }
+
     /**
      * Loads a specification from XML data.
      * 
@@ -34,7 +34,6 @@ package oss.jthinker.datamodel;
 import oss.jthinker.swingutils.WindowUtils;
 import java.awt.Color;
 import java.awt.Point;
-import javax.swing.JComponent;
 import oss.jthinker.widgets.BorderBuilder;
 import oss.jthinker.widgets.JSlide;
 
@@ -47,7 +46,6 @@ public abstract class JSlideData {
     private final Point slideCenter;
     private final BorderType borderType;
     private final Color background;
-    private JComponent component = null;
     
     /**
      * Creates a new JSlideSpec instance.
@@ -62,25 +60,6 @@ public abstract class JSlideData {
         background = color == null ? WindowUtils.getDefaultBackground() : color;
     }
     
-    /**
-     * Returns component to be used in slide.
-     * 
-     * @return component to be used in slide.
-     */
-    protected abstract JComponent createComponent();
-
-    /**
-     * Returns component to be used in slide.
-     * 
-     * @return component to be used in slide.
-     */    
-    public final JComponent getComponent() {
-        if (component == null) {
-            component = createComponent();
-        }
-        return component;
-    }
-    
     /**
      * Returns border builder to be used to construct the node component.
      * 
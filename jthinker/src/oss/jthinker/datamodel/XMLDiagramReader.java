@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.datamodel;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import oss.jthinker.graphs.OrderingLevel;
+
+/**
+ * Single-pass pull-parser loader of the diagram XML format. Produces
+ * the same data objects as {@link XMLUtils#decodeXML} does, but reads
+ * them straight from the stream without building a DOM tree, so only
+ * the element being parsed is held in memory.
+ *
+ * @author iappel
+ */
+public class XMLDiagramReader {
+    private static final XMLInputFactory factory = createFactory();
+
+    private final XMLStreamReader reader;
+    private final DataInterner interner;
+
+    /**
+     * Creates a new reader over the given stream. Stream is expected to
+     * contain UTF-8 encoded XML data, leading whitespace is skipped.
+     *
+     * @param stream stream to read
+     * @throws IOException on I/O errors of reading the stream
+     * @throws XMLStreamException when parser can't be created
+     */
+    public XMLDiagramReader(InputStream stream)
+    throws IOException, XMLStreamException {
+        this(stream, new DataInterner());
+    }
+
+    /**
+     * Creates a new reader over the given stream, that shares equal
+     * node attributes via the given interner.
+     *
+     * @param stream stream to read
+     * @param interner pool of shared attribute values
+     * @throws IOException on I/O errors of reading the stream
+     * @throws XMLStreamException when parser can't be created
+     */
+    public XMLDiagramReader(InputStream stream, DataInterner interner)
+    throws IOException, XMLStreamException {
+        reader = factory.createXMLStreamReader(skipWhitespace(stream), "UTF-8");
+        this.interner = interner;
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory result = XMLInputFactory.newInstance();
+        result.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        result.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        result.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return result;
+    }
+
+    // Old loader trimmed the file before parsing, so files with
+    // whitespace before the XML declaration are tolerated here as well.
+    private static InputStream skipWhitespace(InputStream stream)
+    throws IOException {
+        PushbackInputStream result = new PushbackInputStream(stream, 1);
+        int c;
+        do {
+            c = result.read();
+        } while (c == ' ' || c == '\t' || c == '\r' || c == '\n');
+        if (c != -1) {
+            result.unread(c);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the whole diagram from the stream.
+     *
+     * @return diagram specification
+     * @throws XMLStreamException on parsing errors
+     */
+    public DiagramDataSource read() throws XMLStreamException {
+        try {
+            reader.nextTag();
+            if (!reader.getLocalName().equals("diagram")) {
+                throw new IllegalArgumentException(reader.getLocalName());
+            }
+            String typeStr = reader.getAttributeValue(null, "type");
+            if (typeStr == null) {
+                throw new IllegalArgumentException("Diagram type missing");
+            }
+            DiagramType type = DiagramType.valueOf(typeStr);
+            DummyDiagramDataSource container = new DummyDiagramDataSource(type);
+
+            while (nextChild()) {
+                String name = reader.getLocalName();
+                if (name.equals("node")) {
+                    container.add(readNode());
+                } else if (name.equals("edge")) {
+                    container.add(readEdge());
+                } else if (name.equals("leg")) {
+                    container.add(readLeg());
+                } else if (name.equals("options")) {
+                    container.set(readOptions());
+                } else {
+                    skipElement();
+                }
+            }
+            return container;
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Moves to the next child element of the current element. Returns
+    // false when the end of the current element is reached instead.
+    private boolean nextChild() throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void skipElement() throws XMLStreamException {
+        while (nextChild()) {
+            skipElement();
+        }
+    }
+
+    private String attribute(String name) {
+        String value = reader.getAttributeValue(null, name);
+        if (value == null) {
+            throw new NullPointerException(reader.getLocalName() + "@" + name);
+        }
+        return value;
+    }
+
+    private JNodeData readNode() throws XMLStreamException {
+        BorderType type = BorderType.valueOf(attribute("type"));
+        boolean edit = Boolean.valueOf(attribute("editable"));
+
+        String content = null;
+        Point center = null;
+        Color color = null;
+        String comment = null;
+        String nodeGroup = null;
+
+        while (nextChild()) {
+            String name = reader.getLocalName();
+            if (name.equals("content")) {
+                content = interner.intern(attribute("text"));
+            } else if (name.equals("color")) {
+                color = XMLUtils.toColor(attribute("name"));
+            } else if (name.equals("comment")) {
+                comment = interner.intern(attribute("text"));
+            } else if (name.equals("center")) {
+                int x = Integer.parseInt(attribute("x"));
+                int y = Integer.parseInt(attribute("y"));
+                center = new Point(x, y);
+            } else if (name.equals("group-name")) {
+                nodeGroup = interner.intern(attribute("text"));
+            }
+            skipElement();
+        }
+
+        if (!edit) {
+            content = "";
+        }
+
+        return new JNodeData(type, edit, content, center, color, comment, nodeGroup);
+    }
+
+    private JEdgeData readEdge() throws XMLStreamException {
+        int idxA = Integer.parseInt(attribute("start"));
+        int idxZ = Integer.parseInt(attribute("end"));
+        boolean conflict = "true".equals(reader.getAttributeValue(null, "conflict"));
+        skipElement();
+        return new JEdgeData(idxA, idxZ, conflict);
+    }
+
+    private JLegData readLeg() throws XMLStreamException {
+        int idxA = Integer.parseInt(attribute("start"));
+        int idxZ = Integer.parseInt(attribute("end"));
+        skipElement();
+        return new JLegData(idxA, idxZ);
+    }
+
+    private DiagramOptionData readOptions() throws XMLStreamException {
+        boolean numbering = false;
+        OrderingLevel orderingLevel = null;
+        while (nextChild()) {
+            if (reader.getAttributeCount() != 0) {
+                String name = attribute("name");
+                String value = attribute("value");
+                if (name.equals("numbering")) {
+                    numbering = Boolean.parseBoolean(value);
+                } else if (name.equals("ordering-level")) {
+                    orderingLevel = OrderingLevel.valueOf(value);
+                }
+            }
+            skipElement();
+        }
+        return new DiagramOptionData(numbering, orderingLevel);
+    }
+}
@@ -31,6 +31,7 @@
 
 package oss.jthinker.datamodel;
 
+import java.io.IOException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -47,4 +48,14 @@ public interface XMLStored {
      * @return {@link Element} that represents entity's data.
      */
     Element saveToXML(Document document);
+
+    /**
+     * Writes entity's data straight into the XML stream. Produces the
+     * same elements as {@link #saveToXML(Document)} does, but without
+     * building them in memory first.
+     *
+     * @param writer stream to write into
+     * @throws IOException on I/O errors
+     */
+    void saveToXML(XMLWriter writer) throws IOException;
 }
@@ -32,26 +32,24 @@ package oss.jthinker.datamodel;
 
 import java.awt.Color;
 import java.awt.Point;
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
 import java.io.Writer;
-import javax.swing.JOptionPane;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLStreamException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
@@ -73,6 +71,20 @@ public class XMLUtils {
         return result;
     }
 
+    /**
+     * Writes a center point into the XML stream.
+     *
+     * @param p point to write
+     * @param writer stream to write into
+     * @throws IOException on I/O errors
+     */
+    public static void saveToXML(Point p, XMLWriter writer) throws IOException {
+        writer.startElement("center")
+              .attribute("x", Integer.toString(p.x))
+              .attribute("y", Integer.toString(p.y))
+              .endElement();
+    }
+
     public static Point toPoint(Node n) {
         if (!n.getNodeName().equals("center")) {
             throw new IllegalArgumentException(n.getNodeName());
@@ -85,25 +97,42 @@ public class XMLUtils {
 
     public static Element toXML(Color c, Document document) {
         Element result = document.createElement("color");
-        
-        String name;
+        result.setAttribute("name", toColorName(c));
+        return result;
+    }
+
+    /**
+     * Writes a color into the XML stream.
+     *
+     * @param c color to write
+     * @param writer stream to write into
+     * @throws IOException on I/O errors
+     */
+    public static void saveToXML(Color c, XMLWriter writer) throws IOException {
+        writer.startElement("color").attribute("name", toColorName(c)).endElement();
+    }
+
+    /**
+     * Returns the name under which the color is stored in XML. Colors
+     * other than the five canonical ones are stored as white.
+     *
+     * @param c color to convert
+     * @return stored name of the color
+     */
+    public static String toColorName(Color c) {
         if (c.equals(Color.WHITE)) {
-            name = "white";
+            return "white";
         } else if (c.equals(Color.CYAN)) {
-            name = "cyan";
+            return "cyan";
         } else if (c.equals(Color.YELLOW)) {
-            name = "yellow";
+            return "yellow";
         } else if (c.equals(Color.PINK)) {
-            name = "pink";
+            return "pink";
         } else if (c.equals(Color.GREEN)) {
-            name = "green";
+            return "green";
         } else {
-            name = "white";
+            return "white";
         }
-        
-        result.setAttribute("name", name);
-        
-        return result;
     }
 
     public static Color toColor(Node n) {
@@ -111,7 +140,17 @@ public class XMLUtils {
             throw new IllegalArgumentException(n.getNodeName());
         }
         NamedNodeMap map = n.getAttributes();
-        String s = map.getNamedItem("name").getNodeValue();
+        return toColor(map.getNamedItem("name").getNodeValue());
+    }
+
+    /**
+     * Converts a stored color name back to one of the canonical colors.
+     * Unknown names are treated as white.
+     *
+     * @param s stored name of the color
+     * @return canonical color instance
+     */
+    public static Color toColor(String s) {
         if (s.equals("white")) {
             return Color.WHITE;
         } else if (s.equals("green")) {
@@ -182,9 +221,61 @@ public class XMLUtils {
      */
     public static DiagramDataSource load(File f)
     throws SAXException, IOException, ParserConfigurationException {
-        String content = loadFile(f);
-        Node xmlNode = parseXML(content);
-        return decodeXML(xmlNode);
+        return load(f, new DataInterner());
+    }
+
+    /**
+     * Loads a diagram specification from XML file, sharing equal node
+     * attributes via the given interner.
+     *
+     * @param f XML file
+     * @param interner pool of shared attribute values
+     * @return diagram specification
+     * @throws SAXException on parsing errors
+     * @throws IOException on I/O errors of loading a file
+     */
+    public static DiagramDataSource load(File f, DataInterner interner)
+    throws SAXException, IOException {
+        InputStream stream = new BufferedInputStream(new FileInputStream(f));
+        try {
+            return load(stream, interner);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Loads a diagram specification from XML stream. Stream is parsed
+     * in a single pass with {@link XMLDiagramReader}, no intermediate
+     * DOM tree is built.
+     *
+     * @param stream stream with XML data
+     * @return diagram specification
+     * @throws SAXException on parsing errors
+     * @throws IOException on I/O errors of reading the stream
+     */
+    public static DiagramDataSource load(InputStream stream)
+    throws SAXException, IOException {
+        return load(stream, new DataInterner());
+    }
+
+    /**
+     * Loads a diagram specification from XML stream, sharing equal node
+     * attributes via the given interner.
+     *
+     * @param stream stream with XML data
+     * @param interner pool of shared attribute values
+     * @return diagram specification
+     * @throws SAXException on parsing errors
+     * @throws IOException on I/O errors of reading the stream
+     */
+    public static DiagramDataSource load(InputStream stream, DataInterner interner)
+    throws SAXException, IOException {
+        try {
+            return new XMLDiagramReader(stream, interner).read();
+        } catch (XMLStreamException ex) {
+            throw new SAXException(ex);
+        }
     }
 
     public static String loadFile(File f)
@@ -196,63 +287,68 @@ public class XMLUtils {
         return new String(cData).trim();
     }
 
-    public static void saveToStream(XMLStored object, Writer printer) {
-        Document doc;
-        Transformer writer;
-
-        try {
-            writer = TransformerFactory.newInstance().newTransformer();
-            DocumentBuilder builder =
-                DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            doc = builder.newDocument();
-            Element data = object.saveToXML(doc);
-            doc.appendChild(data);
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(null, ex,
-                    "Unable to save file due to internal problems",
-                    JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        DOMSource source = new DOMSource(doc);
-        StreamResult result = new StreamResult(printer);
-
-        writer.setOutputProperty(OutputKeys.INDENT, "yes");
+    /**
+     * Writes an XML document with the entity's data into the character
+     * stream. Elements are written one by one as they're produced, no
+     * intermediate DOM tree is built.
+     *
+     * @param object entity to save
+     * @param printer stream to write into
+     * @throws IOException on I/O errors
+     */
+    public static void saveToStream(XMLStored object, Writer printer)
+    throws IOException {
+        XMLWriter writer = new XMLWriter(printer);
+        writer.startDocument();
+        object.saveToXML(writer);
+        writer.endDocument();
+    }
 
+    /**
+     * Writes an UTF-8 encoded XML document with the entity's data into
+     * the byte stream.
+     *
+     * @param object entity to save
+     * @param stream stream to write into
+     * @throws IOException on I/O errors
+     */
+    public static void saveToStream(XMLStored object, OutputStream stream)
+    throws IOException {
+        Writer printer;
         try {
-            writer.transform(source, result);
-        } catch (TransformerException ex) {
-            JOptionPane.showMessageDialog(null, ex,
-                    "Unable to save file due to internal problems",
-                    JOptionPane.ERROR_MESSAGE);
-            return;
+            printer = new OutputStreamWriter(stream, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new RuntimeException(ex);
         }
+        saveToStream(object, new BufferedWriter(printer, BUFFER_SIZE));
     }
 
+    private static final int BUFFER_SIZE = 65536;
+
     /**
      * Saves a diagram specification into an XML file.
      *
      * @param f file to use
-     * @throws FileNotFoundException if the file exists but is a directory
-     *                   rather than a regular file, does not exist but cannot
-     *                   be created, or cannot be opened for any other reason
-     * {@see FileOutputStream}
+     * @throws IOException on I/O errors, including the ones of opening
+     * the file {@see FileOutputStream}
      */
-    public static void save(XMLStored stored, File f) throws FileNotFoundException {
+    public static void save(XMLStored stored, File f) throws IOException {
+        OutputStream stream = new FileOutputStream(f);
         try {
-            PrintWriter printer = new PrintWriter(f, "UTF-8");
-            saveToStream(stored, printer);
-	} catch (Exception ex) {
-	    JOptionPane.showMessageDialog(null, ex,
-		    "Unable to save file due to internal problems",
-		    JOptionPane.ERROR_MESSAGE);
-	    return;
-	}
+            saveToStream(stored, stream);
+        } finally {
+            stream.close();
+        }
     }
 
     public static String renderXML(XMLStored stored) {
         StringWriter writer = new StringWriter();
-        saveToStream(stored, writer);
+        try {
+            saveToStream(stored, writer);
+        } catch (IOException ex) {
+            // StringWriter never fails
+            throw new RuntimeException(ex);
+        }
         return writer.toString();
     }
 }
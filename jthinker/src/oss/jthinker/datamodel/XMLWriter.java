@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.datamodel;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimalistic streaming XML writer. Writes elements straight to the
+ * underlying {@link Writer} as they come, indenting nested elements by
+ * four spaces. Unlike {@link javax.xml.stream.XMLStreamWriter} it escapes
+ * line breaks and tabs inside attribute values, so that multiline node
+ * content survives attribute value normalization on load.
+ *
+ * @author iappel
+ */
+public class XMLWriter {
+    private static final String INDENT = "    ";
+
+    private final Writer out;
+    private final List<String> elements = new ArrayList<String>();
+    private boolean tagOpen = false;
+    private boolean hasChildren = false;
+
+    /**
+     * Creates a new XMLWriter instance.
+     *
+     * @param out writer to put data into
+     */
+    public XMLWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes an XML declaration.
+     *
+     * @throws IOException on I/O errors
+     */
+    public void startDocument() throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+    }
+
+    /**
+     * Starts a new element, nested into the current one.
+     *
+     * @param name element's name
+     * @return this writer
+     * @throws IOException on I/O errors
+     */
+    public XMLWriter startElement(String name) throws IOException {
+        if (tagOpen) {
+            out.write('>');
+        }
+        out.write('\n');
+        for (int i = 0; i < elements.size(); i++) {
+            out.write(INDENT);
+        }
+        out.write('<');
+        out.write(name);
+        elements.add(name);
+        tagOpen = true;
+        hasChildren = false;
+        return this;
+    }
+
+    /**
+     * Adds an attribute to the element that was started last.
+     *
+     * @param name attribute's name
+     * @param value attribute's value
+     * @return this writer
+     * @throws IOException on I/O errors
+     */
+    public XMLWriter attribute(String name, String value) throws IOException {
+        if (!tagOpen) {
+            throw new IllegalStateException("No element to add attribute to");
+        }
+        out.write(' ');
+        out.write(name);
+        out.write("=\"");
+        escape(value);
+        out.write('"');
+        return this;
+    }
+
+    /**
+     * Closes the current element.
+     *
+     * @return this writer
+     * @throws IOException on I/O errors
+     */
+    public XMLWriter endElement() throws IOException {
+        String name = elements.remove(elements.size() - 1);
+        if (tagOpen) {
+            out.write("/>");
+        } else {
+            if (hasChildren) {
+                out.write('\n');
+                for (int i = 0; i < elements.size(); i++) {
+                    out.write(INDENT);
+                }
+            }
+            out.write("</");
+            out.write(name);
+            out.write('>');
+        }
+        tagOpen = false;
+        hasChildren = true;
+        return this;
+    }
+
+    /**
+     * Closes all elements that are still open and flushes the output.
+     *
+     * @throws IOException on I/O errors
+     */
+    public void endDocument() throws IOException {
+        while (!elements.isEmpty()) {
+            endElement();
+        }
+        out.write('\n');
+        out.flush();
+    }
+
+    private void escape(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    out.write("&amp;");
+                    break;
+                case '<':
+                    out.write("&lt;");
+                    break;
+                case '>':
+                    out.write("&gt;");
+                    break;
+                case '"':
+                    out.write("&quot;");
+                    break;
+                case '\n':
+                    out.write("&#10;");
+                    break;
+                case '\r':
+                    out.write("&#13;");
+                    break;
+                case '\t':
+                    out.write("&#9;");
+                    break;
+                default:
+                    out.write(c);
+            }
+        }
+    }
+}
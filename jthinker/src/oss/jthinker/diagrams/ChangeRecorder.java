@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.diagrams;
+
+import java.awt.Point;
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import oss.jthinker.datamodel.DiagramJournal;
+import oss.jthinker.datamodel.DiagramOptionData;
+import oss.jthinker.datamodel.JNodeData;
+import oss.jthinker.swingutils.WindowUtils;
+import oss.jthinker.widgets.JEdge;
+import oss.jthinker.widgets.JLeg;
+import oss.jthinker.widgets.JNode;
+
+/**
+ * Recorder of diagram's edits since the last save, that turns them into
+ * {@link DiagramJournal} records, so that saving a diagram takes time
+ * proportional to the size of the change rather than to the size of the
+ * diagram.
+ *
+ * Structural changes are recorded as they happen, while moves and
+ * attribute changes only mark nodes as dirty, so that a node that was
+ * dragged around or edited many times is written just once.
+ * <p>
+ * Recorder also keeps a running fingerprint of the diagram, that is the
+ * sum of fingerprints of its items. Changed item's part of the sum is
+ * replaced as the item changes, so the fingerprint is kept up to date in
+ * time proportional to the size of the change as well.
+ *
+ * @author iappel
+ */
+public class ChangeRecorder {
+    private final Map<JNode, Integer> _nodeIds = new HashMap<JNode, Integer>();
+    private final Map<JEdge, Integer> _edgeIds = new HashMap<JEdge, Integer>();
+    private final Map<JLeg, Integer> _legIds = new HashMap<JLeg, Integer>();
+    private final Map<JNode, Point> _centers = new HashMap<JNode, Point>();
+    private final Set<JNode> _moved = new LinkedHashSet<JNode>();
+    private final Set<JNode> _edited = new LinkedHashSet<JNode>();
+    private DiagramJournal _journal = new DiagramJournal();
+
+    private final Map<Object, Long> _parts = new HashMap<Object, Long>();
+    private final Set<JNode> _unhashed = new LinkedHashSet<JNode>();
+    private long _fingerprint;
+
+    private int _nextNodeId, _nextEdgeId, _nextLegId;
+    private File _snapshot;
+
+    /**
+     * Records node's addition.
+     *
+     * @param node added node
+     */
+    public void nodeAdded(JNode node) {
+        _nodeIds.put(node, _nextNodeId++);
+        _edited.add(node);
+        _unhashed.add(node);
+    }
+
+    /**
+     * Records node's removal. Edges and legs of the node should be
+     * already removed.
+     *
+     * @param node removed node
+     */
+    public void nodeRemoved(JNode node) {
+        Integer id = _nodeIds.remove(node);
+        if (id != null) {
+            _centers.remove(node);
+            _moved.remove(node);
+            _edited.remove(node);
+            _unhashed.remove(node);
+            dropPart(node);
+            _journal.removeNode(id);
+        }
+    }
+
+    /**
+     * Marks node as moved.
+     *
+     * @param node moved node
+     */
+    public void nodeMoved(JNode node) {
+        if (_nodeIds.containsKey(node)) {
+            _unhashed.add(node);
+            if (!_edited.contains(node)) {
+                _moved.add(node);
+            }
+        }
+    }
+
+    /**
+     * Marks node as changed.
+     *
+     * @param node changed node
+     */
+    public void nodeEdited(JNode node) {
+        if (_nodeIds.containsKey(node)) {
+            _moved.remove(node);
+            _edited.add(node);
+            _unhashed.add(node);
+        }
+    }
+
+    /**
+     * Records edge's addition.
+     *
+     * @param edge added edge
+     */
+    public void edgeAdded(JEdge edge) {
+        int id = _nextEdgeId++;
+        _edgeIds.put(edge, id);
+        edgeEdited(edge);
+    }
+
+    /**
+     * Records change of edge's conflict state.
+     *
+     * @param edge changed edge
+     */
+    public void edgeEdited(JEdge edge) {
+        Integer id = _edgeIds.get(edge);
+        if (id != null) {
+            int idA = _nodeIds.get(edge.getPeerA());
+            int idZ = _nodeIds.get(edge.getPeerZ());
+            _journal.setEdge(id, idA, idZ, edge.isConflict());
+            setPart(edge, edgePart(id, idA, idZ, edge.isConflict()));
+        }
+    }
+
+    /**
+     * Records edge's removal. Legs of the edge should be already removed.
+     *
+     * @param edge removed edge
+     */
+    public void edgeRemoved(JEdge edge) {
+        Integer id = _edgeIds.remove(edge);
+        if (id != null) {
+            dropPart(edge);
+            _journal.removeEdge(id);
+        }
+    }
+
+    /**
+     * Records leg's addition.
+     *
+     * @param leg added leg
+     */
+    public void legAdded(JLeg leg) {
+        int id = _nextLegId++;
+        _legIds.put(leg, id);
+        int idA = _nodeIds.get(leg.getPeerA());
+        int idZ = _edgeIds.get(leg.getPeerZ());
+        _journal.setLeg(id, idA, idZ);
+        setPart(leg, legPart(id, idA, idZ));
+    }
+
+    /**
+     * Records leg's removal.
+     *
+     * @param leg removed leg
+     */
+    public void legRemoved(JLeg leg) {
+        Integer id = _legIds.remove(leg);
+        if (id != null) {
+            dropPart(leg);
+            _journal.removeLeg(id);
+        }
+    }
+
+    /**
+     * Turns all recorded changes into a journal batch for the given file
+     * and starts recording anew. Batch is only made when the file is the
+     * snapshot, that recorder was reset against.
+     *
+     * @param file file to save the diagram into
+     * @param options current diagram's options
+     * @return batch of journal records or null if a new snapshot should
+     * be saved instead
+     */
+    public DiagramJournal takeBatch(File file, DiagramOptionData options) {
+        if (_snapshot == null || !_snapshot.equals(file)) {
+            return null;
+        }
+        for (JNode node : _edited) {
+            JNodeData spec = node.getNodeSpec();
+            _journal.setNode(_nodeIds.get(node), spec);
+            _centers.put(node, spec.getSlideCenter());
+        }
+        // Nodes get moved by layout engine without actual changes
+        // of their positions quite often, such moves are not recorded
+        for (JNode node : _moved) {
+            Point center = WindowUtils.computeCenterPoint(node);
+            if (!center.equals(_centers.get(node))) {
+                _journal.moveNode(_nodeIds.get(node), center);
+                _centers.put(node, center);
+            }
+        }
+        _journal.setOptions(options);
+        _edited.clear();
+        _moved.clear();
+        DiagramJournal result = _journal;
+        _journal = new DiagramJournal();
+        return result;
+    }
+
+    /**
+     * Forgets all recorded changes and starts recording against the
+     * given snapshot.
+     *
+     * @param snapshot file, that current diagram's state is stored in or
+     * null if it's not stored anywhere
+     * @param ids journal ids of diagram's items or null if ids are equal
+     * to items' indexes
+     * @param nodes diagram's nodes in the order of their indexes
+     * @param edges diagram's edges in the order of their indexes
+     * @param legs diagram's legs in the order of their indexes
+     */
+    public void reset(File snapshot, DiagramJournal.Ids ids,
+            List<JNode> nodes, List<JEdge> edges, List<JLeg> legs) {
+        _journal.clear();
+        _centers.clear();
+        _moved.clear();
+        _edited.clear();
+        _nodeIds.clear();
+        _edgeIds.clear();
+        _legIds.clear();
+        _parts.clear();
+        _unhashed.clear();
+        _fingerprint = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            _nodeIds.put(nodes.get(i), ids == null ? i : ids.nodes[i]);
+            _centers.put(nodes.get(i), WindowUtils.computeCenterPoint(nodes.get(i)));
+            _unhashed.add(nodes.get(i));
+        }
+        for (int i = 0; i < edges.size(); i++) {
+            JEdge edge = edges.get(i);
+            int id = ids == null ? i : ids.edges[i];
+            _edgeIds.put(edge, id);
+            setPart(edge, edgePart(id, _nodeIds.get(edge.getPeerA()),
+                    _nodeIds.get(edge.getPeerZ()), edge.isConflict()));
+        }
+        for (int i = 0; i < legs.size(); i++) {
+            JLeg leg = legs.get(i);
+            int id = ids == null ? i : ids.legs[i];
+            _legIds.put(leg, id);
+            setPart(leg, legPart(id, _nodeIds.get(leg.getPeerA()),
+                    _edgeIds.get(leg.getPeerZ())));
+        }
+        _nextNodeId = ids == null ? nodes.size() : ids.nextNode;
+        _nextEdgeId = ids == null ? edges.size() : ids.nextEdge;
+        _nextLegId = ids == null ? legs.size() : ids.nextLeg;
+
+        _snapshot = snapshot;
+    }
+
+    /**
+     * Returns 64-bit fingerprint of the current diagram. Only the nodes
+     * changed since the last call are fingerprinted anew. Fingerprint
+     * depends on items' journal ids, so it changes on {@link #reset}.
+     *
+     * @param options current diagram's options
+     * @return structural fingerprint
+     */
+    public long fingerprint(DiagramOptionData options) {
+        for (JNode node : _unhashed) {
+            long part = mix(mix(1, _nodeIds.get(node)),
+                            node.getNodeSpec().fingerprint());
+            setPart(node, part);
+        }
+        _unhashed.clear();
+        return mix(_fingerprint, options.fingerprint());
+    }
+
+    private void setPart(Object item, long part) {
+        Long old = _parts.put(item, part);
+        _fingerprint += part - (old == null ? 0 : old);
+    }
+
+    private void dropPart(Object item) {
+        Long old = _parts.remove(item);
+        if (old != null) {
+            _fingerprint -= old;
+        }
+    }
+
+    private static long edgePart(int id, int idA, int idZ, boolean conflict) {
+        return mix(mix(mix(mix(2, id), idA), idZ), conflict ? 1 : 2);
+    }
+
+    private static long legPart(int id, int idA, int idZ) {
+        return mix(mix(mix(3, id), idA), idZ);
+    }
+
+    private static long mix(long hash, long value) {
+        hash ^= value;
+        hash *= 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+}
@@ -31,17 +31,23 @@
 
 package oss.jthinker.diagrams;
 
+import oss.jthinker.datamodel.DataInterner;
 import oss.jthinker.datamodel.DiagramData;
+import oss.jthinker.datamodel.DiagramJournal;
 import oss.jthinker.datamodel.JLegData;
 import oss.jthinker.datamodel.JEdgeData;
 import oss.jthinker.datamodel.DiagramType;
 import java.awt.Dimension;
 import java.awt.Rectangle;
+import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import oss.jthinker.datamodel.DiagramDataSource;
 import oss.jthinker.swingutils.SwingMapping;
@@ -56,7 +62,12 @@ import oss.jthinker.widgets.JLeg;
 import oss.jthinker.datamodel.JNodeData;
 
 /**
- * Container for sorted holding of components.
+ * Container for sorted holding of components. Edges of each node and
+ * legs of each node and edge are indexed, so neighbourhood queries take
+ * time proportional to the number of neighbours. Edges are also indexed
+ * by their endpoints, so {@link #connection} takes constant time, and
+ * nodes without incoming edges are tracked, so sources can be sampled
+ * without visiting every node.
  *
  * @author iappel
  */
@@ -65,7 +76,15 @@ implements DiagramDataSource {
     private final GappedArray<JNode> _nodes = new GappedArray<JNode>();
     private final GappedArray<JEdge> _edges = new GappedArray<JEdge>();
     private final GappedArray<JLeg> _legs = new GappedArray<JLeg>();
+    private final Map<JNode, Set<JEdge>> _outEdges = new HashMap<JNode, Set<JEdge>>();
+    private final Map<JNode, Set<JEdge>> _inEdges = new HashMap<JNode, Set<JEdge>>();
+    private final Map<JNode, Set<JLeg>> _nodeLegs = new HashMap<JNode, Set<JLeg>>();
+    private final Map<JEdge, Set<JLeg>> _edgeLegs = new HashMap<JEdge, Set<JLeg>>();
+    private final Map<Pair<JNode, JNode>, JEdge> _connections = new HashMap<Pair<JNode, JNode>, JEdge>();
+    private final List<JNode> _sources = new ArrayList<JNode>();
+    private final Map<JNode, Integer> _sourceIndex = new HashMap<JNode, Integer>();
     protected final DiagramView _view;
+    protected final ChangeRecorder _changes = new ChangeRecorder();
     protected final DiagramType _type;
     protected boolean _numberingEnabled;
     
@@ -87,8 +106,10 @@ implements DiagramDataSource {
      */
     public void add(JNode node) {
         _nodes.add(node);
+        markSource(node, inDegree(node) == 0);
         _view.add(node);
         node.enableNumbering(_numberingEnabled);
+        _changes.nodeAdded(node);
     }
     
     /**
@@ -105,7 +126,10 @@ implements DiagramDataSource {
         for (JLeg leg : getLegs(node)) {
             remove(leg);
         }
+        markSource(node, false);
         _view.remove(node);
+        _changes.nodeRemoved(node);
+        node.recycle();
     }
 
     /**
@@ -120,7 +144,12 @@ implements DiagramDataSource {
                 cz = _nodes.contains(edge.getPeerZ());
         if (ca && cz) {
             _edges.add(edge);
+            link(_outEdges, edge.getPeerA(), edge);
+            link(_inEdges, edge.getPeerZ(), edge);
+            _connections.put(endpoints(edge), edge);
+            markSource(edge.getPeerZ(), false);
             _view.add(edge);
+            _changes.edgeAdded(edge);
         } else {
             String msg = "Nodes for edge must be already contained";
             throw new IllegalArgumentException(msg);
@@ -139,7 +168,10 @@ implements DiagramDataSource {
                 cz = _edges.contains(leg.getPeerZ());
         if (ca && cz) {
             _legs.add(leg);
+            link(_nodeLegs, leg.getPeerA(), leg);
+            link(_edgeLegs, leg.getPeerZ(), leg);
             _view.add(leg);
+            _changes.legAdded(leg);
         } else {
             String msg = "Ends for leg must be already contained";
             throw new IllegalArgumentException(msg);
@@ -160,7 +192,14 @@ implements DiagramDataSource {
                 remove(leg);
             }
             _edges.remove(edge);
+            unlink(_outEdges, edge.getPeerA(), edge);
+            unlink(_inEdges, edge.getPeerZ(), edge);
+            disconnect(edge);
+            if (inDegree(edge.getPeerZ()) == 0 && _nodes.contains(edge.getPeerZ())) {
+                markSource(edge.getPeerZ(), true);
+            }
             _view.remove(edge);
+            _changes.edgeRemoved(edge);
         }
     }
 
@@ -173,7 +212,90 @@ implements DiagramDataSource {
     public void remove(JLeg leg) {
         leg.getPeerA().unwatch(leg);
         _legs.remove(leg);
+        unlink(_nodeLegs, leg.getPeerA(), leg);
+        unlink(_edgeLegs, leg.getPeerZ(), leg);
         _view.remove(leg);
+        _changes.legRemoved(leg);
+    }
+
+    /** {@inheritDoc} */
+    public void onNodeEdited(JNode node) {
+        _changes.nodeEdited(node);
+    }
+
+    /** {@inheritDoc} */
+    public void onEdgeEdited(JEdge edge) {
+        _changes.edgeEdited(edge);
+    }
+
+    /**
+     * Forgets all the changes recorded and starts recording them
+     * against the given snapshot.
+     *
+     * @param snapshot file, that current state of the diagram is stored
+     * in or null if it's not stored anywhere
+     * @param ids journal ids of the items or null if ids are equal to
+     * item's indexes
+     */
+    protected void resetChanges(File snapshot, DiagramJournal.Ids ids) {
+        _changes.reset(snapshot, ids, _nodes.getContent(),
+                _edges.getContent(), _legs.getContent());
+    }
+
+    private static <K, V> void link(Map<K, Set<V>> index, K key, V value) {
+        Set<V> values = index.get(key);
+        if (values == null) {
+            values = new LinkedHashSet<V>();
+            index.put(key, values);
+        }
+        values.add(value);
+    }
+
+    private static <K, V> void unlink(Map<K, Set<V>> index, K key, V value) {
+        Set<V> values = index.get(key);
+        if (values != null && values.remove(value) && values.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    // Sources are kept in a list for random access, removal swaps the
+    // last source into the freed place
+    private void markSource(JNode node, boolean source) {
+        Integer index = _sourceIndex.get(node);
+        if (source && index == null) {
+            _sourceIndex.put(node, _sources.size());
+            _sources.add(node);
+        } else if (!source && index != null) {
+            _sourceIndex.remove(node);
+            JNode last = _sources.remove(_sources.size() - 1);
+            if (last != node) {
+                _sources.set(index, last);
+                _sourceIndex.put(last, index);
+            }
+        }
+    }
+
+    // Another edge between the same nodes takes the place of removed one
+    private void disconnect(JEdge edge) {
+        Pair<JNode, JNode> key = endpoints(edge);
+        if (_connections.get(key) != edge) {
+            return;
+        }
+        _connections.remove(key);
+        Set<JEdge> parallel = _outEdges.get(edge.getPeerA());
+        if (parallel != null) {
+            for (JEdge other : parallel) {
+                if (other.getPeerZ() == edge.getPeerZ()) {
+                    _connections.put(key, other);
+                    break;
+                }
+            }
+        }
+    }
+
+    private static <K, V> Set<V> lookup(Map<K, Set<V>> index, K key) {
+        Set<V> values = index.get(key);
+        return values == null ? new HashSet<V>() : new HashSet<V>(values);
     }
 
     /**
@@ -184,11 +306,10 @@ implements DiagramDataSource {
      * @return list of the connected edges.
      */
     public Set<JEdge> getEdges(JNode node) {
-        HashSet<JEdge> result = new HashSet<JEdge>();
-        for (JEdge e : _edges) {
-            if (e.getPeerA().equals(node) || e.getPeerZ().equals(node)) {
-                result.add(e);
-            }
+        Set<JEdge> result = lookup(_outEdges, node);
+        Set<JEdge> incoming = _inEdges.get(node);
+        if (incoming != null) {
+            result.addAll(incoming);
         }
         return result;
     }
@@ -200,13 +321,7 @@ implements DiagramDataSource {
      * @return list of the connected legs
      */
     public Set<JLeg> getLegs(JNode node) {
-        HashSet<JLeg> result = new HashSet<JLeg>();
-        for (JLeg l : _legs) {
-            if (l.getPeerA().equals(node)) {
-                result.add(l);
-            }
-        }
-        return result;
+        return lookup(_nodeLegs, node);
     }
 
     /**
@@ -216,47 +331,35 @@ implements DiagramDataSource {
      * @return list of the connected legs
      */
     public Set<JLeg> getLegs(JEdge edge) {
-        HashSet<JLeg> result = new HashSet<JLeg>();
-        for (JLeg l : _legs) {
-            if (l.getPeerZ().equals(edge)) {
-                result.add(l);
-            }
-        }
-        return result;
+        return lookup(_edgeLegs, edge);
     }    
 
-    private JEdgeData getEdgeSpec(JEdge edge) {
-        if (_edges.locate(edge) == -1) {
-            throw new IllegalArgumentException("edge must be held by holder");
-        }
-        int idxA = _nodes.locate(edge.getPeerA());
-        int idxZ = _nodes.locate(edge.getPeerZ());
-        return new JEdgeData(idxA, idxZ, edge.isConflict());
-    }
-    
-    private JLegData getLegSpec(JLeg leg) {
-        if (_legs.locate(leg) == -1) {
-            throw new IllegalArgumentException("leg must be held by holder");
+    private <T> Map<T, Integer> indexes(GappedArray<T> array) {
+        Map<T, Integer> result = new HashMap<T, Integer>();
+        int index = 0;
+        for (T item : array) {
+            result.put(item, index++);
         }
-        int idxA = _nodes.locate(leg.getPeerA());
-        int idxZ = _edges.locate(leg.getPeerZ());
-        return new JLegData(idxA, idxZ);
+        return result;
     }
-    
+
     public List<JEdgeData> getEdgeData() {
-        _nodes.relax();
+        Map<JNode, Integer> nodes = indexes(_nodes);
         List<JEdgeData> result = new ArrayList<JEdgeData>();
         for (JEdge edge : _edges) {
-            result.add(getEdgeSpec(edge));
+            int idxA = nodes.get(edge.getPeerA());
+            int idxZ = nodes.get(edge.getPeerZ());
+            result.add(new JEdgeData(idxA, idxZ, edge.isConflict()));
         }
         return result;
     }
 
     public List<JLegData> getLegData() {
-        _nodes.relax();
+        Map<JNode, Integer> nodes = indexes(_nodes);
+        Map<JEdge, Integer> edges = indexes(_edges);
         List<JLegData> result = new ArrayList<JLegData>();
-        for (JLeg edge : _legs) {
-            result.add(getLegSpec(edge));
+        for (JLeg leg : _legs) {
+            result.add(new JLegData(nodes.get(leg.getPeerA()), edges.get(leg.getPeerZ())));
         }
         return result;
     }
@@ -264,8 +367,9 @@ implements DiagramDataSource {
     public List<JNodeData> getNodeData() {
         _nodes.relax();
         ArrayList<JNodeData> list = new ArrayList<JNodeData>();
+        DataInterner interner = new DataInterner();
         for (JNode node : _nodes) {
-            list.add(node.getNodeSpec());
+            list.add(node.getNodeSpec(interner));
         }
         return list;
     }
@@ -351,7 +455,55 @@ implements DiagramDataSource {
 
     /** {@inheritDoc} */
     public int nodeCount() {
-        return getAllNodes().size();
+        return _nodes.size();
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public int edgeCount() {
+        return _edges.size();
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public int inDegree(JNode node) {
+        Set<JEdge> edges = _inEdges.get(node);
+        return edges == null ? 0 : edges.size();
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public int outDegree(JNode node) {
+        Set<JEdge> edges = _outEdges.get(node);
+        return edges == null ? 0 : edges.size();
+    }
+
+    /**
+     * Returns all nodes without incoming edges as a read-only live view.
+     * 
+     * @return list of all sources
+     */
+    @Override
+    public List<JNode> getAllSources() {
+        return Collections.unmodifiableList(_sources);
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public boolean isNodeModelled(JNode node) {
+        return _nodes.contains(node);
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public boolean isEdgeModelled(JEdge edge) {
+        return _edges.contains(edge);
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public JEdge connection(JNode node1, JNode node2) {
+        return _connections.get(new Pair<JNode, JNode>(node1, node2));
     }
 
     /** {@inheritDoc} */
@@ -366,9 +518,10 @@ implements DiagramDataSource {
 
     /** {@inheritDoc} */    
     public Collection<JNode> getIncomeNodes(JNode target) {
-        Collection<JNode> result = new LinkedList<JNode>();
-        for (JEdge edge : _edges) {
-            if (edge.getPeerZ() == target) {
+        Collection<JNode> result = new ArrayList<JNode>();
+        Set<JEdge> edges = _inEdges.get(target);
+        if (edges != null) {
+            for (JEdge edge : edges) {
                 result.add(edge.getPeerA());
             }
         }
@@ -377,9 +530,10 @@ implements DiagramDataSource {
 
     /** {@inheritDoc} */    
     public Collection<JNode> getOutcomeNodes(JNode source) {
-        Collection<JNode> result = new LinkedList<JNode>();
-        for (JEdge edge : _edges) {
-            if (edge.getPeerA() == source) {
+        Collection<JNode> result = new ArrayList<JNode>();
+        Set<JEdge> edges = _outEdges.get(source);
+        if (edges != null) {
+            for (JEdge edge : edges) {
                 result.add(edge.getPeerZ());
             }
         }
@@ -388,12 +542,12 @@ implements DiagramDataSource {
 
     /** {@inheritDoc} */
     public Pair<JNode, JNode> endpoints(JEdge edge) {
-        return new Pair(edge.getPeerA(), edge.getPeerZ());
+        return new Pair<JNode, JNode>(edge.getPeerA(), edge.getPeerZ());
     }
 
     /** {@inheritDoc} */
     public Collection<JEdge> getAllEdges() {
-        return _edges.getContent();
+        return _edges.view();
     }
 
     public DiagramType getDiagramType() {
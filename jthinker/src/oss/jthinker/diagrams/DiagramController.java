@@ -32,15 +32,30 @@
 package oss.jthinker.diagrams;
 
 import oss.jthinker.datamodel.DiagramData;
+import oss.jthinker.datamodel.DiagramJournal;
 import oss.jthinker.datamodel.DiagramOptionData;
 import oss.jthinker.datamodel.JLegData;
 import oss.jthinker.datamodel.JEdgeData;
 import oss.jthinker.datamodel.DiagramType;
+import oss.jthinker.datamodel.NodeType;
+import java.awt.Color;
 import java.awt.Point;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.swing.SwingUtilities;
+import oss.jthinker.graphs.EdgeRouter;
 import oss.jthinker.graphs.GraphEngine;
+import oss.jthinker.graphs.LayoutWorker;
 import oss.jthinker.graphs.OrderingLevel;
+import oss.jthinker.graphs.ReachabilityIndex;
+import oss.jthinker.graphs.RootCauseAnalysis;
+import oss.jthinker.graphs.TopologicalOrder;
 import oss.jthinker.widgets.GroupHandler;
 import oss.jthinker.widgets.JEdge;
 import oss.jthinker.widgets.JLeg;
@@ -62,6 +77,13 @@ public class DiagramController extends ComponentContainer {
     private final GraphEngine<JNode> _graphEngine;
     private final JAttributeEditorContainer _editorContainer;
     private final WidgetFactory _widgetFactory;
+    private final DiagramSaver _saver;
+    private final ReachabilityIndex<JNode> _reachability;
+    private final TopologicalOrder<JNode> _order;
+    private final RootCauseAnalysis<JNode> _rootCauses;
+    private final EdgeRouter<JNode, JEdge> _router;
+    private final Set<JNode> _highlighted = new HashSet<JNode>();
+    private boolean _routingScheduled;
     
     /**
      * Creates a new component manager for given diagram's view and type.
@@ -73,8 +95,18 @@ public class DiagramController extends ComponentContainer {
         super(view, type);
         _groupHandler = new GroupHandler(view, this);
         _graphEngine = new GraphEngine<JNode>(this, OrderingLevel.SUPPRESS_OVERLAP);
+        _graphEngine.setWorker(new LayoutWorker<JNode>(this));
+        _reachability = new ReachabilityIndex<JNode>(this);
+        _order = new TopologicalOrder<JNode>(this);
+        _rootCauses = new RootCauseAnalysis<JNode>(this);
+        _router = new EdgeRouter<JNode, JEdge>(this);
         _editorContainer = view.getEditorContainer();
         _widgetFactory = new WidgetFactory(this);
+        _saver = new DiagramSaver(new DiagramSaver.SnapshotSource() {
+            public DiagramData takeSnapshot(File file) {
+                return DiagramController.this.takeSnapshot(file);
+            }
+        });
     }
 
     /** {@inheritDoc} */
@@ -94,8 +126,91 @@ public class DiagramController extends ComponentContainer {
         }
         JNode nodeA = edge.getPeerA();
         JNode nodeZ = edge.getPeerZ();
+        Collection<JLeg> legs = getLegs(edge);
         remove(edge);
-        add(_widgetFactory.produceEdge(nodeZ, nodeA));
+        if (acceptsLink(nodeZ, nodeA)) {
+            add(_widgetFactory.produceEdge(nodeZ, nodeA));
+        } else {
+            add(edge);
+            for (JLeg leg : legs) {
+                add(leg);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a link between two nodes can be added to the
+     * diagram. Links, that would close a loop, are refused in diagrams,
+     * which type is acyclic, and user is told so.
+     *
+     * @param nodeA start of the link
+     * @param nodeZ end of the link
+     * @return true if link can be added and false otherwise
+     */
+    public boolean acceptsLink(JNode nodeA, JNode nodeZ) {
+        if (!_type.isAcyclic() || _order.insert(nodeA, nodeZ)) {
+            return true;
+        }
+        _view.showWarning("This link would close a loop, loops are not " +
+                "allowed in a " + _type.getTitle() + ".");
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    public void onNodeHovered(JNode node, boolean hovered) {
+        // Causes and effects of the hovered node show its causal chains
+        Set<JNode> chains = new HashSet<JNode>();
+        if (hovered && isNodeModelled(node)) {
+            chains.addAll(_reachability.ancestors(node));
+            chains.addAll(_reachability.descendants(node));
+            chains.remove(node);
+        }
+        highlight(chains);
+    }
+
+    /**
+     * Highlights given nodes, highlighting of other nodes is cleared.
+     *
+     * @param nodes nodes to highlight
+     */
+    public void highlight(Collection<JNode> nodes) {
+        for (JNode other : _highlighted) {
+            other.setHighlighted(false);
+        }
+        _highlighted.clear();
+        for (JNode node : nodes) {
+            if (isNodeModelled(node)) {
+                _highlighted.add(node);
+                node.setHighlighted(true);
+            }
+        }
+    }
+
+    /**
+     * Returns root cause analysis of the diagram. Undesired effects,
+     * which are pink statements, are the effects to find causes for.
+     *
+     * @return root cause analysis
+     */
+    public RootCauseAnalysis<JNode> getRootCauses() {
+        List<JNode> effects = new ArrayList<JNode>();
+        for (JNode node : getAllNodes()) {
+            if (node.getBorderType() == NodeType.STATEMENT.getBorderType() &&
+                Color.PINK.equals(node.getColor())) {
+                effects.add(node);
+            }
+        }
+        _rootCauses.setEffects(effects);
+        return _rootCauses;
+    }
+
+    /**
+     * Returns reachability index of the diagram's nodes.
+     * 
+     * @return reachability index
+     */
+    public ReachabilityIndex<JNode> getReachability() {
+        return _reachability;
     }
 
     /** {@inheritDoc} */
@@ -115,6 +230,42 @@ public class DiagramController extends ComponentContainer {
         _view.dispatchMove();
         _groupHandler.updatePosition(node);
         _graphEngine.updatePosition(node);
+        _router.nodeMoved(node);
+        scheduleRouting();
+        _changes.nodeMoved(node);
+    }
+
+    // Routes are refreshed once after all the moves of current event,
+    // so nodes moved together get their edges rerouted in parallel
+    private void scheduleRouting() {
+        if (_routingScheduled) {
+            return;
+        }
+        _routingScheduled = true;
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                _routingScheduled = false;
+                applyRoutes();
+            }
+        });
+    }
+
+    private void applyRoutes() {
+        Map<JEdge, List<Point>> routes = _router.refresh();
+        for (Map.Entry<JEdge, List<Point>> entry : routes.entrySet()) {
+            if (contains(entry.getKey())) {
+                entry.getKey().setRoute(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns router of the diagram's edges.
+     * 
+     * @return edge router
+     */
+    public EdgeRouter<JNode, JEdge> getEdgeRouter() {
+        return _router;
     }
     
     /** {@inheritDoc} */
@@ -129,8 +280,9 @@ public class DiagramController extends ComponentContainer {
             return;
         }
         _view.disableMouseEdge(linkPeer);
-        JEdge edge = _widgetFactory.produceEdge(linkPeer, end);
-        add(edge);
+        if (acceptsLink(linkPeer, end)) {
+            add(_widgetFactory.produceEdge(linkPeer, end));
+        }
         linkPeer = null;
     }
     
@@ -180,6 +332,56 @@ public class DiagramController extends ComponentContainer {
             JLeg leg = _widgetFactory.produceLeg(nodes.get(a), edges.get(z));
             add(leg);
         }
+        resetChanges(spec.getFile(), spec.getJournalIds());
+        _saver.setSnapshot(spec.getFile());
+    }
+
+    /**
+     * Queues saving of the diagram into a file. When the file is the one
+     * that diagram was loaded from or last saved into, only the changes
+     * made since are appended to the file's journal. Otherwise, or when
+     * the journal grew too large, a complete snapshot is written. Only
+     * the snapshot is taken on the calling thread, encoding and writing
+     * are done in background.
+     *
+     * @param file file to save the diagram into
+     * @param callback receiver of the result
+     */
+    public void save(File file, DiagramSaver.Callback callback) {
+        DiagramJournal batch = _changes.takeBatch(file, getOptions());
+        if (batch == null) {
+            _saver.save(file, takeSnapshot(file), callback);
+        } else {
+            _saver.append(file, batch, callback);
+        }
+    }
+
+    /**
+     * Returns 64-bit fingerprint of the diagram. Fingerprint is kept up
+     * to date as the diagram changes, so this takes time proportional to
+     * the changes made since the last call. Fingerprint changes when a
+     * complete snapshot of the diagram is taken.
+     *
+     * @return structural fingerprint
+     */
+    public long getFingerprint() {
+        return _changes.fingerprint(getOptions());
+    }
+
+    private DiagramData takeSnapshot(File file) {
+        DiagramData result = getDiagramSpec();
+        resetChanges(file, null);
+        return result;
+    }
+
+    /**
+     * Waits until all queued saves of the diagram are finished.
+     *
+     * @return true if the last save succeeded and false otherwise
+     * @throws InterruptedException when waiting thread was interrupted
+     */
+    public boolean awaitSaved() throws InterruptedException {
+        return _saver.await();
     }
 
     /** {@inheritDoc} */
@@ -210,10 +412,70 @@ public class DiagramController extends ComponentContainer {
         return node;
     }
 
+    @Override
+    /** {@inheritDoc} */
+    public void add(JNode node) {
+        super.add(node);
+        _reachability.nodeAdded(node);
+        _order.nodeAdded(node);
+        _rootCauses.nodeAdded(node);
+        _router.nodeAdded(node);
+        _graphEngine.nodeAdded(node);
+        scheduleRouting();
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public void add(JEdge edge) {
+        super.add(edge);
+        _reachability.edgeAdded(edge.getPeerA(), edge.getPeerZ());
+        _order.edgeAdded(edge.getPeerA(), edge.getPeerZ());
+        _rootCauses.edgeAdded(edge.getPeerA(), edge.getPeerZ());
+        _router.edgeAdded(edge);
+        _graphEngine.nodesLinked(edge.getPeerA(), edge.getPeerZ());
+        scheduleRouting();
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public void remove(JEdge... edges) {
+        super.remove(edges);
+        for (JEdge edge : edges) {
+            _reachability.edgeRemoved(edge.getPeerA(), edge.getPeerZ());
+            _order.edgeRemoved(edge.getPeerA(), edge.getPeerZ());
+            _rootCauses.edgeRemoved(edge.getPeerA(), edge.getPeerZ());
+            _router.edgeRemoved(edge);
+        }
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public void remove(JNode node) {
+        _graphEngine.nodeRemoved(node);
+        super.remove(node);
+        _reachability.nodeRemoved(node);
+        _order.nodeRemoved(node);
+        _rootCauses.nodeRemoved(node);
+        _router.nodeRemoved(node);
+        scheduleRouting();
+        if (_highlighted.remove(node)) {
+            node.setHighlighted(false);
+        }
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public void onNodeEdited(JNode node) {
+        super.onNodeEdited(node);
+        _graphEngine.nodeResized(node);
+        _router.nodeMoved(node);
+        scheduleRouting();
+    }
+
     /** {@inheritDoc} */
     public void remove(JNode... nodes) {
         for (JNode node : nodes) {
-            super.remove(node);
+            remove(node);
         }
     }
  
@@ -35,6 +35,7 @@ import java.awt.Color;
 import java.awt.Point;
 import java.util.Collection;
 import java.util.Iterator;
+import javax.swing.JDialog;
 import javax.swing.JOptionPane;
 import oss.jthinker.graphs.GraphEngine;
 import oss.jthinker.datamodel.NodeType;
@@ -176,6 +177,18 @@ public class DiagramInteractor {
         }
     }
     
+    /**
+     * Shows candidate root causes of the diagram's undesired effects
+     * in a separate window.
+     */
+    public void rankRootCauses() {
+        JDialog dialog = new JDialog();
+        dialog.setTitle("Root causes");
+        dialog.add(new RootCausePanel(_view.getLinkController()));
+        dialog.pack();
+        dialog.setVisible(true);
+    }
+
     /**
      * Returns the interactor's {@see InteractorActionFactory}.
      * 
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.diagrams;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import oss.jthinker.datamodel.DiagramData;
+import oss.jthinker.datamodel.DiagramDataSource;
+import oss.jthinker.datamodel.DiagramOptionData;
+import oss.jthinker.datamodel.DiagramType;
+import oss.jthinker.datamodel.JEdgeData;
+import oss.jthinker.datamodel.JLegData;
+import oss.jthinker.datamodel.JNodeData;
+import oss.jthinker.graphs.GraphEngine;
+import oss.jthinker.graphs.NodeStore;
+import oss.jthinker.graphs.OrderingLevel;
+import oss.jthinker.widgets.NodeSizeEstimator;
+
+/**
+ * Re-layout of stored diagrams without any widgets. Diagram is copied
+ * into a {@link NodeStore} with node sizes given by a
+ * {@link NodeSizeEstimator}, so {@link GraphEngine} runs over it on
+ * headless systems as well.
+ *
+ * @author iappel
+ */
+public class DiagramRelayout {
+    private final NodeSizeEstimator _estimator;
+
+    /**
+     * Creates a new re-layout with the given size estimator.
+     *
+     * @param estimator estimator of node sizes
+     */
+    public DiagramRelayout(NodeSizeEstimator estimator) {
+        _estimator = estimator;
+    }
+
+    /**
+     * Lays out a diagram with the given policy. Layered and
+     * force-directed policies arrange the whole diagram, other policies
+     * except {@link OrderingLevel#OFF} only resolve overlaps.
+     *
+     * @param diagram diagram to lay out
+     * @param level layout policy
+     * @return copy of the diagram with nodes moved
+     */
+    public DiagramData relayout(final DiagramData diagram, OrderingLevel level) {
+        NodeStore store = _estimator.createStore(diagram);
+        GraphEngine<Integer> engine = new GraphEngine<Integer>(store, level);
+        if (level == OrderingLevel.LAYERED ||
+            level == OrderingLevel.FORCE_DIRECTED) {
+            engine.layout();
+        } else if (level != OrderingLevel.OFF) {
+            engine.resolveOverlaps();
+        }
+
+        final List<JNodeData> nodes = new ArrayList<JNodeData>(store.nodeCount());
+        for (int i = 0; i < store.nodeCount(); i++) {
+            nodes.add(store.getNodeData(i));
+        }
+        DiagramData result = new DiagramData(diagram.getDiagramType());
+        result.load(new DiagramDataSource() {
+            public DiagramType getDiagramType() {
+                return diagram.getDiagramType();
+            }
+
+            public List<JNodeData> getNodeData() {
+                return nodes;
+            }
+
+            public List<JEdgeData> getEdgeData() {
+                return diagram.getEdgeData();
+            }
+
+            public List<JLegData> getLegData() {
+                return diagram.getLegData();
+            }
+
+            public DiagramOptionData getOptions() {
+                return diagram.getOptions();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Lays out diagram files in place. First argument may name a layout
+     * policy, otherwise each diagram is laid out with its own policy.
+     *
+     * @param args optional policy followed by names of the files
+     * @throws Exception on errors of loading or saving a file
+     */
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        OrderingLevel level = null;
+        int first = 0;
+        if (args.length > 0) {
+            for (OrderingLevel value : OrderingLevel.values()) {
+                if (value.name().equals(args[0])) {
+                    level = value;
+                    first = 1;
+                }
+            }
+        }
+        if (first == args.length) {
+            System.err.println("Usage: DiagramRelayout [level] file...");
+            System.exit(1);
+        }
+        DiagramRelayout relayout = new DiagramRelayout(new NodeSizeEstimator());
+        for (int i = first; i < args.length; i++) {
+            File file = new File(args[i]);
+            DiagramData diagram = new DiagramData(file);
+            OrderingLevel current = level;
+            if (current == null) {
+                current = diagram.getOptions().orderingLevel;
+            }
+            if (current == null) {
+                current = OrderingLevel.SUPPRESS_OVERLAP;
+            }
+            relayout.relayout(diagram, current).save(file);
+        }
+    }
+}
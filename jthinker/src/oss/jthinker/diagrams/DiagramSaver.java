@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.diagrams;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.SwingUtilities;
+import oss.jthinker.datamodel.DiagramData;
+import oss.jthinker.datamodel.DiagramJournal;
+
+/**
+ * Writer of diagram's files, that does all encoding and I/O on a
+ * background thread.
+ *
+ * Snapshots and journal batches are taken on the event dispatch thread
+ * and are queued here. Requests, that were not started yet, coalesce:
+ * a new snapshot of a file replaces the queued one along with all its
+ * batches, and consecutive batches of a file are merged into one. When
+ * a batch can't be appended to the journal, a fresh snapshot is taken
+ * from the {@link SnapshotSource} and is saved instead. After a failed
+ * save batches of the file are not appended until a snapshot of it is
+ * saved again.
+ *
+ * @author iappel
+ */
+public class DiagramSaver {
+    /**
+     * Receiver of save results.
+     */
+    public interface Callback {
+        /**
+         * Called when diagram was saved.
+         *
+         * @param file file, that diagram was saved into
+         */
+        void saved(File file);
+
+        /**
+         * Called when diagram could not be saved.
+         *
+         * @param file file, that diagram was saved into
+         * @param error cause of the failure
+         */
+        void failed(File file, Throwable error);
+    }
+
+    /**
+     * Provider of diagram's complete snapshots.
+     */
+    public interface SnapshotSource {
+        /**
+         * Takes a complete snapshot of the diagram, that is going to be
+         * saved into the given file.
+         *
+         * @param file file, that snapshot will be saved into
+         * @return diagram's snapshot
+         */
+        DiagramData takeSnapshot(File file);
+    }
+
+    private static class Job {
+        final File file;
+        DiagramData snapshot;
+        DiagramJournal batch;
+        final List<Callback> callbacks = new ArrayList<Callback>();
+
+        Job(File file) {
+            this.file = file;
+        }
+    }
+
+    private static final ExecutorService executor =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread result = new Thread(r, "Diagram saver");
+            result.setDaemon(true);
+            return result;
+        }
+    });
+
+    private static final Executor EVENT_DISPATCH = new Executor() {
+        public void execute(Runnable command) {
+            SwingUtilities.invokeLater(command);
+        }
+    };
+
+    private final SnapshotSource _source;
+    private final Executor _callbackExecutor;
+    private final LinkedList<Job> _pending = new LinkedList<Job>();
+    private boolean _running, _failed;
+    private final LinkedList<Runnable> _requests = new LinkedList<Runnable>();
+    private int _requested;
+
+    // Snapshot, that the journal is appended to. Guarded by this, but
+    // files are only touched without holding the lock, so that callers
+    // on the event dispatch thread don't wait for disk.
+    private File _snapshot;
+    private long _snapshotLength, _snapshotModified;
+
+    /**
+     * Creates a new saver, that reports results on the event dispatch
+     * thread.
+     *
+     * @param source provider of diagram's snapshots
+     */
+    public DiagramSaver(SnapshotSource source) {
+        this(source, EVENT_DISPATCH);
+    }
+
+    /**
+     * Creates a new saver.
+     *
+     * @param source provider of diagram's snapshots, that is called
+     * via callback executor
+     * @param callbackExecutor executor to report results with
+     */
+    public DiagramSaver(SnapshotSource source, Executor callbackExecutor) {
+        _source = source;
+        _callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Tells the saver, that diagram was loaded from the given snapshot,
+     * so journal batches can be appended to it.
+     *
+     * @param snapshot snapshot file or null
+     */
+    public void setSnapshot(File snapshot) {
+        stamp(snapshot);
+    }
+
+    private void stamp(File snapshot) {
+        long length = 0, modified = 0;
+        if (snapshot != null) {
+            length = snapshot.length();
+            modified = snapshot.lastModified();
+        }
+        synchronized (this) {
+            _snapshot = snapshot;
+            _snapshotLength = length;
+            _snapshotModified = modified;
+        }
+    }
+
+    /**
+     * Queues saving of diagram's complete snapshot.
+     *
+     * @param file file to save into
+     * @param snapshot diagram's snapshot
+     * @param callback receiver of the result
+     */
+    public synchronized void save(File file, DiagramData snapshot,
+                                  Callback callback) {
+        Job job = tail(file);
+        job.snapshot = snapshot;
+        job.batch = null;
+        job.callbacks.add(callback);
+        schedule();
+    }
+
+    /**
+     * Queues appending of a batch to the file's journal.
+     *
+     * @param file file to save into
+     * @param batch journal records
+     * @param callback receiver of the result
+     */
+    public synchronized void append(File file, DiagramJournal batch,
+                                    Callback callback) {
+        Job job = tail(file);
+        if (job.batch == null) {
+            job.batch = batch;
+        } else {
+            job.batch.append(batch);
+        }
+        job.callbacks.add(callback);
+        schedule();
+    }
+
+    private Job tail(File file) {
+        if (!_pending.isEmpty() && _pending.getLast().file.equals(file)) {
+            return _pending.getLast();
+        }
+        Job job = new Job(file);
+        _pending.add(job);
+        return job;
+    }
+
+    private void schedule() {
+        if (!_running) {
+            _running = true;
+            executor.execute(new Runnable() {
+                public void run() {
+                    drain();
+                }
+            });
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Job job;
+            synchronized (this) {
+                job = _pending.poll();
+                if (job == null) {
+                    _running = false;
+                    notifyAll();
+                    return;
+                }
+            }
+            run(job);
+        }
+    }
+
+    private void run(final Job job) {
+        try {
+            if (job.snapshot != null) {
+                job.snapshot.save(job.file);
+                stamp(job.file);
+            }
+            if (job.batch != null) {
+                File snapshot;
+                long length, modified;
+                synchronized (this) {
+                    snapshot = _snapshot;
+                    length = _snapshotLength;
+                    modified = _snapshotModified;
+                }
+                // Appending to the journal leaves the snapshot itself
+                // intact, so its stamp stays valid afterwards
+                boolean appended = job.file.equals(snapshot) &&
+                        job.batch.appendTo(job.file, length, modified);
+                if (!appended) {
+                    resave(job);
+                    return;
+                }
+            }
+            synchronized (this) {
+                _failed = false;
+            }
+            _callbackExecutor.execute(new Runnable() {
+                public void run() {
+                    for (Callback callback : job.callbacks) {
+                        callback.saved(job.file);
+                    }
+                }
+            });
+        } catch (final Throwable t) {
+            // Failed write may leave a partial record or lose the records
+            // later batches refer to, so the next save must be a snapshot
+            synchronized (this) {
+                _failed = true;
+                if (job.file.equals(_snapshot)) {
+                    _snapshot = null;
+                }
+            }
+            _callbackExecutor.execute(new Runnable() {
+                public void run() {
+                    for (Callback callback : job.callbacks) {
+                        callback.failed(job.file, t);
+                    }
+                }
+            });
+        }
+    }
+
+    // Batch was made against a snapshot, that was replaced or whose
+    // journal has grown too large. Queued batches of the same file are
+    // dropped, as a fresh snapshot will contain their changes as well.
+    private void resave(Job job) {
+        final File file = job.file;
+        final List<Callback> callbacks = new ArrayList<Callback>(job.callbacks);
+        synchronized (this) {
+            Iterator<Job> iterator = _pending.iterator();
+            while (iterator.hasNext()) {
+                Job pending = iterator.next();
+                if (pending.file.equals(file) && pending.snapshot == null) {
+                    callbacks.addAll(pending.callbacks);
+                    iterator.remove();
+                }
+            }
+            // Keeps awaiters waiting until the snapshot is queued
+            _requested++;
+            _requests.add(new Runnable() {
+                public void run() {
+                    DiagramData snapshot = null;
+                    try {
+                        snapshot = _source.takeSnapshot(file);
+                    } finally {
+                        synchronized (DiagramSaver.this) {
+                            _requested--;
+                            if (snapshot != null) {
+                                Job job = tail(file);
+                                job.snapshot = snapshot;
+                                job.batch = null;
+                                job.callbacks.addAll(callbacks);
+                                schedule();
+                            }
+                            DiagramSaver.this.notifyAll();
+                        }
+                    }
+                }
+            });
+            notifyAll();
+        }
+        _callbackExecutor.execute(new Runnable() {
+            public void run() {
+                Runnable request = takeRequest();
+                if (request != null) {
+                    request.run();
+                }
+            }
+        });
+    }
+
+    private synchronized Runnable takeRequest() {
+        return _requests.poll();
+    }
+
+    /**
+     * Waits until all queued saves are finished. When a fresh snapshot
+     * is needed meanwhile, it's taken on the waiting thread, so this may
+     * be called from the event dispatch thread as well.
+     *
+     * @return true if the last save succeeded and false otherwise
+     * @throws InterruptedException when waiting thread was interrupted
+     */
+    public boolean await() throws InterruptedException {
+        while (true) {
+            Runnable request;
+            synchronized (this) {
+                while ((_running || _requested > 0) && _requests.isEmpty()) {
+                    wait();
+                }
+                if (_requests.isEmpty()) {
+                    return !_failed;
+                }
+                request = takeRequest();
+            }
+            request.run();
+        }
+    }
+
+    /**
+     * Waits until saves of all diagrams, that were queued before, are
+     * finished.
+     *
+     * @throws InterruptedException when waiting thread was interrupted
+     */
+    public static void flush() throws InterruptedException {
+        try {
+            executor.submit(new Runnable() {
+                public void run() {
+                }
+            }).get();
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
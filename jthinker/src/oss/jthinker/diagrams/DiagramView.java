@@ -128,6 +128,13 @@ public interface DiagramView extends JBackground {
      */
     void editNode(JNode node);
 
+    /**
+     * Tells user that an action was refused.
+     *
+     * @param message explanation to show
+     */
+    void showWarning(String message);
+
     /**
      * Returns view's graph calculations engine.
      * 
@@ -93,6 +93,19 @@ public class InteractorActionFactory {
         };
     }
     
+    /**
+     * Creates a "Rank root causes" action.
+     * 
+     * @return a "Rank root causes" action
+     */    
+    public AbstractAction makeRootCausesAction() {
+        return new AbstractAction("Rank root causes") {
+            public void actionPerformed(ActionEvent e) {
+                _interactor.rankRootCauses();
+            }
+        };
+    }
+    
     private static JToolBar createToolBar(DiagramView diagram) {
         DiagramInteractor interactor = new DiagramInteractor(diagram);
         InteractorActionFactory actionFactory = interactor.getActionFactory();
@@ -105,6 +118,8 @@ public class InteractorActionFactory {
                 toolBar.add(actionFactory.makeReasonsAction());
                 toolBar.addSeparator();;
                 toolBar.add(actionFactory.makeEllipseAction());
+                toolBar.addSeparator();
+                toolBar.add(actionFactory.makeRootCausesAction());
                 return toolBar;
             default:
         }
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.diagrams;
+
+import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import javax.swing.AbstractAction;
+import javax.swing.JButton;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableRowSorter;
+import oss.jthinker.graphs.RootCauseAnalysis;
+import oss.jthinker.widgets.JNode;
+
+/**
+ * Table of candidate root causes of the diagram's undesired effects.
+ * Rows may be sorted by any column, selecting a row highlights the node
+ * together with the effects it leads to.
+ *
+ * @author iappel
+ */
+public class RootCausePanel extends JPanel {
+    private static final String[] COLUMNS = {"Cause", "Effects", "Depth"};
+
+    private final DiagramController _controller;
+    private final ScoreModel _model = new ScoreModel();
+    private final JTable _table = new JTable(_model);
+
+    private class ScoreModel extends AbstractTableModel {
+        private List<RootCauseAnalysis.Score<JNode>> scores =
+                new ArrayList<RootCauseAnalysis.Score<JNode>>();
+
+        /** {@inheritDoc} */
+        public int getRowCount() {
+            return scores.size();
+        }
+
+        /** {@inheritDoc} */
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        /** {@inheritDoc} */
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        /** {@inheritDoc} */
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? String.class : Integer.class;
+        }
+
+        /** {@inheritDoc} */
+        public Object getValueAt(int row, int column) {
+            RootCauseAnalysis.Score<JNode> score = scores.get(row);
+            switch (column) {
+                case 0:
+                    return score.getNode().getContent();
+                case 1:
+                    return score.getEffects();
+                default:
+                    return score.getDepth();
+            }
+        }
+    }
+
+    /**
+     * Creates a new panel for the given diagram.
+     *
+     * @param controller diagram's controller
+     */
+    public RootCausePanel(DiagramController controller) {
+        super(new BorderLayout());
+        _controller = controller;
+        _table.setRowSorter(new TableRowSorter<ScoreModel>(_model));
+        _table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        _table.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
+            public void valueChanged(ListSelectionEvent e) {
+                if (!e.getValueIsAdjusting()) {
+                    highlightSelected();
+                }
+            }
+        });
+        add(new JScrollPane(_table), BorderLayout.CENTER);
+        add(new JButton(new AbstractAction("Refresh") {
+            public void actionPerformed(ActionEvent e) {
+                refresh();
+            }
+        }), BorderLayout.SOUTH);
+        refresh();
+    }
+
+    /**
+     * Reloads scores from the diagram's root cause analysis.
+     */
+    public void refresh() {
+        _model.scores = _controller.getRootCauses().getScores();
+        _model.fireTableDataChanged();
+    }
+
+    private void highlightSelected() {
+        int row = _table.getSelectedRow();
+        if (row < 0) {
+            List<JNode> none = Collections.emptyList();
+            _controller.highlight(none);
+            return;
+        }
+        JNode node = _model.scores.get(_table.convertRowIndexToModel(row)).getNode();
+        Set<JNode> chain = _controller.getRootCauses().getEffects(node);
+        chain.add(node);
+        _controller.highlight(chain);
+    }
+}
@@ -33,9 +33,12 @@ package oss.jthinker.graphs;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import oss.jthinker.util.Pair;
 import oss.jthinker.util.UPair;
 
@@ -49,38 +52,39 @@ import oss.jthinker.util.UPair;
 public abstract class AbstractGraphModel<nodeT, edgeT> implements GraphModel<nodeT, edgeT> {
     /** {@inheritDoc} */
     public List<nodeT> getRandomSources(int count) {
-        List<nodeT> allSources = getAllSources();
-        Random rng = new Random();
-        if (allSources.size() < count) {
-            return null;
-        } else if (allSources.size() == count) {
-            return allSources;
-        }
-        List<nodeT> result = new ArrayList<nodeT>();
-        for (int i=0;i<count;i++) {
-            int index = rng.nextInt(allSources.size());
-            result.add(allSources.remove(index));
-        }
-        return result;
+        return pickRandom(getAllSources(), count);
     }
    
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc}
+     * Nodes are visited in random order by a lazy Fisher-Yates shuffle
+     * and checked with {@link #inDegree}, so incoming nodes are only
+     * collected for the picked node.
+     */
     public synchronized Pair<nodeT, List<nodeT>> getRandomIncomings(int count) {
-        List<nodeT> nodesList = asList(getAllNodes());
-        Random rng = new Random();
-        while (!nodesList.isEmpty()) {
-            int index = rng.nextInt(nodesList.size());
-            nodeT target = nodesList.remove(index);
-            List<nodeT> incomeList = asList(getIncomeNodes(target));
-            if (incomeList.size() < count) {
-                continue;
+        List<nodeT> nodes = new ArrayList<nodeT>(getAllNodes());
+        ThreadLocalRandom rng = ThreadLocalRandom.current();
+        for (int left = nodes.size(); left > 0; left--) {
+            int index = rng.nextInt(left);
+            nodeT target = nodes.set(index, nodes.get(left - 1));
+            if (inDegree(target) >= count) {
+                List<nodeT> result = pickRandom(getIncomeNodes(target), count);
+                return new Pair<nodeT, List<nodeT>>(target, result);
             }
-            List<nodeT> result = pickRandom(incomeList, count);
-            return new Pair<nodeT, List<nodeT>>(target, result);
         }
         return null;
     }
 
+    /** {@inheritDoc} */
+    public int inDegree(nodeT node) {
+        return getIncomeNodes(node).size();
+    }
+
+    /** {@inheritDoc} */
+    public int outDegree(nodeT node) {
+        return getOutcomeNodes(node).size();
+    }
+
     /**
      * Converts a random collection to list by either casting
      * or creating a new list.
@@ -99,27 +103,50 @@ public abstract class AbstractGraphModel<nodeT, edgeT> implements GraphModel<nod
     }
     
     /**
-     * Picks a required number of elements from collection.
+     * Picks a required number of elements from collection. Collection
+     * itself is not modified. Random access lists are sampled with
+     * Floyd's algorithm in O(count), other collections with reservoir
+     * sampling in one pass.
      * 
      * @param stuff collection to pick elements from
      * @param count number of items to pick
      * @return list with <b>count</b> randomly picked elements from
-     * <b>stuff</b> or null if there are not enough elements
+     * <b>stuff</b> in random order or null if there are not enough
+     * elements
      */
     public static <Q> List<Q> pickRandom(Collection<Q> stuff, int count) {
-        if (stuff.size() < count) {
+        int size = stuff.size();
+        if (size < count) {
             return null;
         }
-        List<Q> converted = asList(stuff);
-        if (stuff.size() == count) {
-            return converted;
-        }
-        List<Q> result = new LinkedList<Q>();
-        Random rng = new Random();
-        for (int i=0;i<count;i++) {
-            int index = rng.nextInt(converted.size());
-            result.add(converted.remove(index));
+        ThreadLocalRandom rng = ThreadLocalRandom.current();
+        List<Q> result = new ArrayList<Q>(count);
+        if (stuff instanceof List && stuff instanceof RandomAccess) {
+            List<Q> list = (List<Q>)stuff;
+            Set<Integer> picked = new HashSet<Integer>();
+            for (int j = size - count; j < size; j++) {
+                int index = rng.nextInt(j + 1);
+                if (!picked.add(index)) {
+                    picked.add(j);
+                    index = j;
+                }
+                result.add(list.get(index));
+            }
+        } else {
+            int seen = 0;
+            for (Q item : stuff) {
+                if (seen < count) {
+                    result.add(item);
+                } else {
+                    int index = rng.nextInt(seen + 1);
+                    if (index < count) {
+                        result.set(index, item);
+                    }
+                }
+                seen++;
+            }
         }
+        Collections.shuffle(result, rng);
         return result;
     }
     
@@ -128,7 +155,7 @@ public abstract class AbstractGraphModel<nodeT, edgeT> implements GraphModel<nod
         List<nodeT> result = new ArrayList<nodeT>();
         
         for (nodeT target : getAllNodes()) {
-            if (getIncomeNodes(target).isEmpty()) {
+            if (inDegree(target) == 0) {
                 result.add(target);
             }
         }
@@ -0,0 +1,685 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import oss.jthinker.datamodel.DiagramDataSource;
+import oss.jthinker.datamodel.JEdgeData;
+import oss.jthinker.datamodel.JLegData;
+import oss.jthinker.datamodel.JNodeData;
+import oss.jthinker.util.IntList;
+import oss.jthinker.util.Mapping;
+import oss.jthinker.util.Pair;
+
+/**
+ * Immutable adjacency of a diagram in compressed sparse row form.
+ * Nodes, edges and legs are identified by their positions in the lists
+ * of the {@link DiagramDataSource} the index was built from. Index is
+ * built in O(V+E) and answers neighbour queries in O(degree), so
+ * analysis and layout code may use it on loaded files without creating
+ * any widgets. Index may also be taken as a snapshot of any
+ * {@link GraphModel}.
+ * <p>
+ * Besides {@link GraphModel} queries, index has queries that take and
+ * return primitive values. Collections of their results are appended
+ * to an {@link IntList} given by the caller, so they don't allocate.
+ * Outgoing edges of every node are sorted by their targets.
+ * <p>
+ * As a {@link GraphModel} the index places every node as a zero-sized
+ * rectangle in its center point; its mapping is read-only.
+ *
+ * @author iappel
+ */
+public class AdjacencyIndex extends AbstractGraphModel<Integer, Integer> {
+    private final int _nodeCount;
+    private final int[] _edgeA, _edgeZ;
+    private final int[] _outOffsets, _outEdges;
+    private final int[] _inOffsets, _inEdges;
+    // Nodes by descending in-degree, sources are the tail
+    private final int[] _byInDegree;
+    private final int _sourceCount;
+
+    private final int[] _legNode, _legEdge;
+    private final int[] _edgeLegOffsets, _edgeLegs;
+    private final int[] _nodeLegOffsets, _nodeLegs;
+
+    private final int[] _x, _y;
+
+    private final Mapping<Integer, Rectangle, Point> _mapping =
+            new Mapping<Integer, Rectangle, Point>() {
+        /** {@inheritDoc} */
+        public Rectangle fetch(Integer node) {
+            return new Rectangle(_x[node], _y[node], 0, 0);
+        }
+
+        /** {@inheritDoc} */
+        public Point convert(Rectangle value) {
+            return new Point(value.x + value.width / 2,
+                             value.y + value.height / 2);
+        }
+
+        /** {@inheritDoc} */
+        public void assign(Integer node, Rectangle value) {
+            throw new UnsupportedOperationException("Index is immutable");
+        }
+
+        /** {@inheritDoc} */
+        public void inject(Integer node, Point value) {
+            throw new UnsupportedOperationException("Index is immutable");
+        }
+    };
+
+    /**
+     * Builds an index of the given diagram.
+     *
+     * @param source diagram to index
+     * @throws IllegalArgumentException if an edge or a leg refers to
+     * a missing node or edge
+     */
+    public AdjacencyIndex(DiagramDataSource source) {
+        this(source.getNodeData(), source.getEdgeData(), source.getLegData());
+    }
+
+    /**
+     * Builds an index of given edges. Index has no legs and all its
+     * nodes are placed at the origin.
+     *
+     * @param nodeCount number of nodes
+     * @param edgeA start nodes of the edges
+     * @param edgeZ end nodes of the edges
+     * @throws IllegalArgumentException if an edge refers to a missing
+     * node or edge arrays differ in length
+     */
+    public AdjacencyIndex(int nodeCount, int[] edgeA, int[] edgeZ) {
+        this(nodeCount, edgeA.clone(), edgeZ.clone(), new int[0], new int[0],
+             new int[nodeCount], new int[nodeCount]);
+    }
+
+    private AdjacencyIndex(List<JNodeData> nodes, List<JEdgeData> edges,
+                           List<JLegData> legs) {
+        this(nodes.size(), edgeEnds(edges, true), edgeEnds(edges, false),
+             legEnds(legs, true), legEnds(legs, false),
+             centers(nodes, true), centers(nodes, false));
+    }
+
+    private AdjacencyIndex(int nodeCount, int[] edgeA, int[] edgeZ,
+                           int[] legNode, int[] legEdge, int[] x, int[] y) {
+        if (edgeA.length != edgeZ.length) {
+            throw new IllegalArgumentException("Edge ends don't match");
+        }
+        _nodeCount = nodeCount;
+        _x = x;
+        _y = y;
+        _edgeA = edgeA;
+        _edgeZ = edgeZ;
+        for (int i = 0; i < edgeA.length; i++) {
+            check(edgeA[i], nodeCount, "node");
+            check(edgeZ[i], nodeCount, "node");
+        }
+        _legNode = legNode;
+        _legEdge = legEdge;
+        for (int i = 0; i < legNode.length; i++) {
+            check(legNode[i], nodeCount, "node");
+            check(legEdge[i], edgeA.length, "edge");
+        }
+
+        // Grouping edges sorted by target keeps each node's edges sorted
+        _inOffsets = new int[nodeCount + 1];
+        _inEdges = group(_edgeZ, null, _inOffsets);
+        _outOffsets = new int[nodeCount + 1];
+        _outEdges = group(_edgeA, _inEdges, _outOffsets);
+        _nodeLegOffsets = new int[nodeCount + 1];
+        _nodeLegs = group(_legNode, null, _nodeLegOffsets);
+        _edgeLegOffsets = new int[_edgeA.length + 1];
+        _edgeLegs = group(_legEdge, null, _edgeLegOffsets);
+
+        int maxDegree = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            maxDegree = Math.max(maxDegree, inDegree(node));
+        }
+        int[] degrees = new int[nodeCount];
+        int sources = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            degrees[node] = maxDegree - inDegree(node);
+            if (inDegree(node) == 0) {
+                sources++;
+            }
+        }
+        _byInDegree = group(degrees, null, new int[maxDegree + 2]);
+        _sourceCount = sources;
+    }
+
+    /**
+     * Takes a snapshot of a graph model. Node indexes are positions in
+     * the given list of nodes, edge indexes follow the order of model's
+     * {@link GraphModel#getAllEdges}. Edges to nodes missing from the
+     * list are skipped. Nodes are placed in centers of their bounds.
+     *
+     * @param model model to take snapshot of
+     * @param nodes nodes of the model in order of their indexes
+     * @return snapshot of the model
+     */
+    public static <N, E> AdjacencyIndex snapshot(GraphModel<N, E> model,
+                                                 List<N> nodes) {
+        Map<N, Integer> index = new HashMap<N, Integer>();
+        Mapping<? super N, Rectangle, ?> mapping = model.getMapping();
+        int[] x = new int[nodes.size()], y = new int[nodes.size()];
+        for (N node : nodes) {
+            Rectangle rect = mapping.fetch(node);
+            x[index.size()] = rect.x + rect.width / 2;
+            y[index.size()] = rect.y + rect.height / 2;
+            index.put(node, index.size());
+        }
+        IntList edgeA = new IntList(model.edgeCount());
+        IntList edgeZ = new IntList(model.edgeCount());
+        for (E edge : model.getAllEdges()) {
+            Pair<N, N> ends = model.endpoints(edge);
+            Integer a = index.get(ends.first), z = index.get(ends.second);
+            if (a != null && z != null) {
+                edgeA.add(a);
+                edgeZ.add(z);
+            }
+        }
+        return new AdjacencyIndex(nodes.size(), edgeA.toArray(), edgeZ.toArray(),
+                new int[0], new int[0], x, y);
+    }
+
+    private static int[] edgeEnds(List<JEdgeData> edges, boolean start) {
+        int[] result = new int[edges.size()];
+        int i = 0;
+        for (JEdgeData edge : edges) {
+            result[i++] = start ? edge.idxA : edge.idxZ;
+        }
+        return result;
+    }
+
+    private static int[] legEnds(List<JLegData> legs, boolean start) {
+        int[] result = new int[legs.size()];
+        int i = 0;
+        for (JLegData leg : legs) {
+            result[i++] = start ? leg.idxA : leg.idxZ;
+        }
+        return result;
+    }
+
+    private static int[] centers(List<JNodeData> nodes, boolean horizontal) {
+        int[] result = new int[nodes.size()];
+        int i = 0;
+        for (JNodeData node : nodes) {
+            Point center = node.getSlideCenter();
+            result[i++] = horizontal ? center.x : center.y;
+        }
+        return result;
+    }
+
+    private static int check(int index, int limit, String what) {
+        if (index < 0 || index >= limit) {
+            throw new IllegalArgumentException("No " + what + " " + index);
+        }
+        return index;
+    }
+
+    // Counting sort of items by their keys. Items are taken in the given
+    // order or in order of indexes. Fills offsets so that items with key
+    // k are at [offsets[k], offsets[k+1]) of the result.
+    private static int[] group(int[] keys, int[] order, int[] offsets) {
+        for (int key : keys) {
+            offsets[key + 1]++;
+        }
+        for (int k = 1; k < offsets.length; k++) {
+            offsets[k] += offsets[k - 1];
+        }
+        int[] fill = offsets.clone();
+        int[] result = new int[keys.length];
+        for (int k = 0; k < keys.length; k++) {
+            int i = order == null ? k : order[k];
+            result[fill[keys[i]]++] = i;
+        }
+        return result;
+    }
+
+    /**
+     * Returns number of legs in the diagram.
+     *
+     * @return number of legs
+     */
+    public int legCount() {
+        return _legNode.length;
+    }
+
+    /**
+     * Returns number of edges starting in the node.
+     *
+     * @param node index of the node
+     * @return out-degree of the node
+     */
+    public int outDegree(int node) {
+        return _outOffsets[node + 1] - _outOffsets[node];
+    }
+
+    /**
+     * Returns number of edges ending in the node.
+     *
+     * @param node index of the node
+     * @return in-degree of the node
+     */
+    public int inDegree(int node) {
+        return _inOffsets[node + 1] - _inOffsets[node];
+    }
+
+    /**
+     * Returns indexes of the edges starting in the node.
+     *
+     * @param node index of the node
+     * @return outgoing edges
+     */
+    public List<Integer> outEdges(int node) {
+        return slice(_outEdges, _outOffsets, node, null);
+    }
+
+    /**
+     * Returns indexes of the edges ending in the node.
+     *
+     * @param node index of the node
+     * @return incoming edges
+     */
+    public List<Integer> inEdges(int node) {
+        return slice(_inEdges, _inOffsets, node, null);
+    }
+
+    /**
+     * Returns an edge starting in the node.
+     *
+     * @param node index of the node
+     * @param k number of the edge, less than node's out-degree
+     * @return index of the edge
+     */
+    public int outEdge(int node, int k) {
+        return _outEdges[_outOffsets[node] + k];
+    }
+
+    /**
+     * Returns an edge ending in the node.
+     *
+     * @param node index of the node
+     * @param k number of the edge, less than node's in-degree
+     * @return index of the edge
+     */
+    public int inEdge(int node, int k) {
+        return _inEdges[_inOffsets[node] + k];
+    }
+
+    /**
+     * Appends nodes, that the given node has edges to.
+     *
+     * @param node index of the node
+     * @param result list to append nodes to
+     * @return the result list
+     */
+    public IntList getOutcomeNodes(int node, IntList result) {
+        for (int i = _outOffsets[node]; i < _outOffsets[node + 1]; i++) {
+            result.add(_edgeZ[_outEdges[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Appends nodes, that have edges to the given node.
+     *
+     * @param node index of the node
+     * @param result list to append nodes to
+     * @return the result list
+     */
+    public IntList getIncomeNodes(int node, IntList result) {
+        for (int i = _inOffsets[node]; i < _inOffsets[node + 1]; i++) {
+            result.add(_edgeA[_inEdges[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Finds an edge between two nodes in O(log(degree)).
+     *
+     * @param nodeA start of the edge
+     * @param nodeZ end of the edge
+     * @return index of the edge or -1 if nodes are not connected
+     */
+    public int connection(int nodeA, int nodeZ) {
+        int lo = _outOffsets[nodeA], hi = _outOffsets[nodeA + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int target = _edgeZ[_outEdges[mid]];
+            if (target < nodeZ) {
+                lo = mid + 1;
+            } else if (target > nodeZ) {
+                hi = mid - 1;
+            } else {
+                return _outEdges[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns number of nodes without incoming edges.
+     *
+     * @return number of sources
+     */
+    public int sourceCount() {
+        return _sourceCount;
+    }
+
+    /**
+     * Appends all nodes without incoming edges.
+     *
+     * @param result list to append nodes to
+     * @return the result list
+     */
+    public IntList getAllSources(IntList result) {
+        for (int i = _nodeCount - _sourceCount; i < _nodeCount; i++) {
+            result.add(_byInDegree[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Appends a required number of randomly picked sources.
+     *
+     * @param count number of sources to pick
+     * @param result list to append nodes to
+     * @return false if there are not enough sources and true otherwise
+     */
+    public boolean getRandomSources(int count, IntList result) {
+        if (_sourceCount < count) {
+            return false;
+        }
+        pickRandom(_byInDegree, _nodeCount - _sourceCount, _sourceCount,
+                   count, result);
+        return true;
+    }
+
+    /**
+     * Picks a random node with at least the given number of incoming
+     * edges and appends that number of its randomly picked incoming
+     * nodes.
+     *
+     * @param count number of incoming nodes to pick
+     * @param result list to append incoming nodes to
+     * @return index of the picked node or -1 if there is no such node
+     */
+    public int getRandomIncomings(int count, IntList result) {
+        // Nodes of enough in-degree are a prefix of the sorted nodes
+        int lo = 0, hi = _nodeCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (inDegree(_byInDegree[mid]) >= count) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        if (lo == 0) {
+            return -1;
+        }
+        int target = _byInDegree[ThreadLocalRandom.current().nextInt(lo)];
+        int first = result.size();
+        pickRandom(_inEdges, _inOffsets[target], inDegree(target), count, result);
+        for (int i = first; i < result.size(); i++) {
+            result.set(i, _edgeA[result.get(i)]);
+        }
+        return target;
+    }
+
+    // Floyd's sampling of count items out of items[offset, offset+size),
+    // picked items are looked up in the result, which is short
+    private static void pickRandom(int[] items, int offset, int size,
+                                   int count, IntList result) {
+        ThreadLocalRandom rng = ThreadLocalRandom.current();
+        int first = result.size();
+        for (int j = size - count; j < size; j++) {
+            int k = rng.nextInt(j + 1);
+            boolean taken = false;
+            for (int i = first; i < result.size() && !taken; i++) {
+                taken = result.get(i) == items[offset + k];
+            }
+            result.add(items[offset + (taken ? j : k)]);
+        }
+    }
+
+    /**
+     * Returns indexes of the legs attached to the edge.
+     *
+     * @param edge index of the edge
+     * @return legs of the edge
+     */
+    public List<Integer> edgeLegs(int edge) {
+        return slice(_edgeLegs, _edgeLegOffsets, edge, null);
+    }
+
+    /**
+     * Returns indexes of the legs starting in the node.
+     *
+     * @param node index of the node
+     * @return legs of the node
+     */
+    public List<Integer> nodeLegs(int node) {
+        return slice(_nodeLegs, _nodeLegOffsets, node, null);
+    }
+
+    /**
+     * Returns index of the edge the leg is attached to.
+     *
+     * @param leg index of the leg
+     * @return index of leg's edge
+     */
+    public int legEdge(int leg) {
+        return _legEdge[leg];
+    }
+
+    /**
+     * Returns index of the node the leg starts in.
+     *
+     * @param leg index of the leg
+     * @return index of leg's node
+     */
+    public int legNode(int leg) {
+        return _legNode[leg];
+    }
+
+    /**
+     * Returns index of the node the edge starts in.
+     *
+     * @param edge index of the edge
+     * @return index of the source node
+     */
+    public int source(int edge) {
+        return _edgeA[edge];
+    }
+
+    /**
+     * Returns index of the node the edge ends in.
+     *
+     * @param edge index of the edge
+     * @return index of the target node
+     */
+    public int target(int edge) {
+        return _edgeZ[edge];
+    }
+
+    // Copies items [offsets[key], offsets[key+1]) of the array into
+    // a new list. When ends is given, each item is mapped through it.
+    private static List<Integer> slice(int[] items, int[] offsets,
+                                       int key, int[] ends) {
+        List<Integer> result = new ArrayList<Integer>(offsets[key + 1] - offsets[key]);
+        for (int i = offsets[key]; i < offsets[key + 1]; i++) {
+            result.add(ends == null ? items[i] : ends[items[i]]);
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    public List<Integer> getIncomeNodes(Integer target) {
+        return slice(_inEdges, _inOffsets, target, _edgeA);
+    }
+
+    /** {@inheritDoc} */
+    public List<Integer> getOutcomeNodes(Integer source) {
+        return slice(_outEdges, _outOffsets, source, _edgeZ);
+    }
+
+    /** {@inheritDoc} */
+    public Collection<Integer> getAllNodes() {
+        return range(_nodeCount);
+    }
+
+    /** {@inheritDoc} */
+    public Collection<Integer> getAllEdges() {
+        return range(_edgeA.length);
+    }
+
+    // Read-only view of indexes in [0, size).
+    private static Collection<Integer> range(final int size) {
+        return new AbstractCollection<Integer>() {
+            @Override
+            /** {@inheritDoc} */
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    private int next = 0;
+
+                    /** {@inheritDoc} */
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    /** {@inheritDoc} */
+                    public Integer next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        return next++;
+                    }
+
+                    /** {@inheritDoc} */
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            /** {@inheritDoc} */
+            public int size() {
+                return size;
+            }
+
+            @Override
+            /** {@inheritDoc} */
+            public boolean contains(Object o) {
+                return o instanceof Integer &&
+                       (Integer)o >= 0 && (Integer)o < size;
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    public int nodeCount() {
+        return _nodeCount;
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public int edgeCount() {
+        return _edgeA.length;
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public int inDegree(Integer node) {
+        return inDegree(node.intValue());
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public int outDegree(Integer node) {
+        return outDegree(node.intValue());
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public List<Integer> getAllSources() {
+        List<Integer> result = new ArrayList<Integer>();
+        for (int i = 0; i < _nodeCount; i++) {
+            if (inDegree(i) == 0) {
+                result.add(i);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public Integer connection(Integer node1, Integer node2) {
+        int result = connection(node1.intValue(), node2.intValue());
+        return result < 0 ? null : result;
+    }
+
+    /** {@inheritDoc} */
+    public Pair<Integer, Integer> endpoints(Integer edge) {
+        return new Pair<Integer, Integer>(_edgeA[edge], _edgeZ[edge]);
+    }
+
+    /** {@inheritDoc} */
+    public Mapping<Integer, Rectangle, Point> getMapping() {
+        return _mapping;
+    }
+
+    /** {@inheritDoc} */
+    public Dimension getAreaSize() {
+        int width = 0, height = 0;
+        for (int i = 0; i < _nodeCount; i++) {
+            width = Math.max(width, _x[i]);
+            height = Math.max(height, _y[i]);
+        }
+        return new Dimension(width, height);
+    }
+}
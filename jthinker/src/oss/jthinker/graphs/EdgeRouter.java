@@ -0,0 +1,762 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package oss.jthinker.graphs;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import oss.jthinker.util.IntList;
+import oss.jthinker.util.Mapping;
+import oss.jthinker.util.Pair;
+
+/**
+ * Router of graph's edges around the nodes. Every edge gets an
+ * orthogonal route, that leaves its start node from the middle of a
+ * side, keeps at least {@link #MARGIN} pixels away from all the other
+ * nodes and enters its end node in the middle of a side. Routes are
+ * searched with A* on a sparse visibility grid, which lines pass along
+ * the sides of the nodes around the edge, and every bend is penalized.
+ * <p>
+ * Router keeps its own snapshot of node bounds, indexed on a uniform
+ * grid, and caches the routes. Segments of the routes are indexed on
+ * the same grid, so a node change invalidates only the routes, that
+ * pass near the node's old or new bounds. Invalidated routes are
+ * recomputed by {@link #refresh}, in parallel on the common fork/join
+ * pool when there are many of them, or one by one by {@link #getRoute}.
+ * <p>
+ * Null route means, that no route was found, most often because edge's
+ * nodes overlap, and the edge is to be drawn as a straight line.
+ *
+ * @author iappel
+ * @param T type of node data
+ * @param E type of edge data
+ */
+public class EdgeRouter<T, E> {
+    /** Least distance between a route and the nodes it passes by. */
+    public static final int MARGIN = 10;
+
+    // Cost of a bend in pixels of route's length
+    private static final int BEND = 40;
+    private static final int CELL_SIZE = 128;
+    private static final int CHUNK = 8;
+    private static final int ATTEMPTS = 3;
+
+    private static class Route<T> {
+        final T nodeA, nodeZ;
+        List<Point> points;
+        List<Rectangle> hull = Collections.emptyList();
+        Set<Long> cells = Collections.emptySet();
+        boolean valid;
+
+        Route(T nodeA, T nodeZ) {
+            this.nodeA = nodeA;
+            this.nodeZ = nodeZ;
+        }
+    }
+
+    private final GraphModel<T, E> model;
+    private final Map<T, Rectangle> bounds = new HashMap<T, Rectangle>();
+    private final Map<Long, Set<T>> nodeCells = new HashMap<Long, Set<T>>();
+    private final Map<E, Route<T>> routes = new HashMap<E, Route<T>>();
+    private final Map<Long, Set<E>> routeCells = new HashMap<Long, Set<E>>();
+    private final Set<E> invalid = new LinkedHashSet<E>();
+    private boolean stale = true;
+
+    /**
+     * Creates a new router for the given graph.
+     *
+     * @param model graph, which edges are to be routed
+     */
+    public EdgeRouter(GraphModel<T, E> model) {
+        this.model = model;
+    }
+
+    /**
+     * Returns route of the edge, computing it when the cached one was
+     * invalidated.
+     *
+     * @param edge edge to route
+     * @return points of the route from start node's border to end
+     * node's border or null, when edge is to be drawn straight
+     */
+    public synchronized List<Point> getRoute(E edge) {
+        captureSnapshot();
+        Route<T> route = routes.get(edge);
+        if (route == null) {
+            throw new IllegalArgumentException(String.valueOf(edge));
+        }
+        if (!route.valid) {
+            invalid.remove(edge);
+            update(edge, route, computeRoute(route.nodeA, route.nodeZ));
+        }
+        return route.points;
+    }
+
+    /**
+     * Checks, does the edge have a valid route cached.
+     *
+     * @param edge edge to check
+     * @return true if edge's route does not need to be recomputed
+     */
+    public synchronized boolean isRouted(E edge) {
+        Route<T> route = routes.get(edge);
+        return !stale && route != null && route.valid;
+    }
+
+    /**
+     * Recomputes all routes, that were invalidated since last refresh.
+     * Many routes are recomputed in parallel.
+     *
+     * @return recomputed routes by their edges, null route means that
+     * edge is to be drawn straight
+     */
+    public synchronized Map<E, List<Point>> refresh() {
+        captureSnapshot();
+        if (invalid.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<E> batch = new ArrayList<E>(invalid);
+        invalid.clear();
+        List<List<Point>> computed = new ArrayList<List<Point>>(
+                Collections.<List<Point>>nCopies(batch.size(), null));
+        if (batch.size() > CHUNK) {
+            ForkJoinPool.commonPool().invoke(new RouteTask(batch, 0, batch.size(), computed));
+        } else {
+            new RouteTask(batch, 0, batch.size(), computed).compute();
+        }
+        Map<E, List<Point>> result = new LinkedHashMap<E, List<Point>>();
+        for (int i = 0; i < batch.size(); i++) {
+            E edge = batch.get(i);
+            update(edge, routes.get(edge), computed.get(i));
+            result.put(edge, computed.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Notifies router that an edge was added to the graph.
+     *
+     * @param edge edge that was added
+     */
+    public synchronized void edgeAdded(E edge) {
+        if (stale) {
+            return;
+        }
+        Pair<T, T> ends = model.endpoints(edge);
+        Route<T> old = routes.put(edge, new Route<T>(ends.first, ends.second));
+        if (old != null) {
+            unregister(edge, old);
+        }
+        invalid.add(edge);
+    }
+
+    /**
+     * Notifies router that an edge was removed from the graph.
+     *
+     * @param edge edge that was removed
+     */
+    public synchronized void edgeRemoved(E edge) {
+        if (stale) {
+            return;
+        }
+        Route<T> route = routes.remove(edge);
+        if (route != null) {
+            unregister(edge, route);
+        }
+        invalid.remove(edge);
+    }
+
+    /**
+     * Notifies router that a node was added to the graph. Routes, that
+     * pass near the node, are invalidated.
+     *
+     * @param node node that was added
+     */
+    public synchronized void nodeAdded(T node) {
+        if (stale) {
+            return;
+        }
+        Rectangle rect = model.getMapping().fetch(node);
+        bounds.put(node, rect);
+        index(node, rect, true);
+        invalidateNear(rect);
+    }
+
+    /**
+     * Notifies router that a node was removed from the graph. Routes,
+     * that passed near the node, are invalidated.
+     *
+     * @param node node that was removed
+     */
+    public synchronized void nodeRemoved(T node) {
+        if (stale) {
+            return;
+        }
+        Rectangle rect = bounds.remove(node);
+        if (rect != null) {
+            index(node, rect, false);
+            invalidateNear(rect);
+        }
+    }
+
+    /**
+     * Notifies router that a node was moved or resized. Routes, that
+     * pass near the node's old or new bounds, are invalidated.
+     *
+     * @param node node that was moved
+     */
+    public void nodeMoved(T node) {
+        nodesMoved(Collections.singleton(node));
+    }
+
+    /**
+     * Notifies router that several nodes were moved or resized at once.
+     * Routes, that pass near the nodes' old or new bounds, are
+     * invalidated.
+     *
+     * @param nodes nodes that were moved
+     */
+    public synchronized void nodesMoved(Collection<T> nodes) {
+        if (stale) {
+            return;
+        }
+        Mapping<? super T, Rectangle, ?> mapping = model.getMapping();
+        for (T node : nodes) {
+            Rectangle old = bounds.get(node);
+            if (old == null) {
+                continue;
+            }
+            Rectangle rect = mapping.fetch(node);
+            if (rect.equals(old)) {
+                continue;
+            }
+            index(node, old, false);
+            bounds.put(node, rect);
+            index(node, rect, true);
+            invalidateNear(old);
+            invalidateNear(rect);
+        }
+    }
+
+    /**
+     * Drops router's snapshot, so that it is taken anew and all the
+     * routes are recomputed on next use. Should be called when graph
+     * was changed without notifying the router.
+     */
+    public synchronized void reset() {
+        stale = true;
+    }
+
+    private void captureSnapshot() {
+        if (!stale) {
+            return;
+        }
+        bounds.clear();
+        nodeCells.clear();
+        routes.clear();
+        routeCells.clear();
+        invalid.clear();
+        Mapping<? super T, Rectangle, ?> mapping = model.getMapping();
+        for (T node : model.getAllNodes()) {
+            Rectangle rect = mapping.fetch(node);
+            bounds.put(node, rect);
+            index(node, rect, true);
+        }
+        for (E edge : model.getAllEdges()) {
+            Pair<T, T> ends = model.endpoints(edge);
+            routes.put(edge, new Route<T>(ends.first, ends.second));
+            invalid.add(edge);
+        }
+        stale = false;
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long)cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    // Keys of all grid cells, that the rectangle covers
+    private static void cells(Rectangle rect, Set<Long> out) {
+        int x0 = Math.floorDiv(rect.x, CELL_SIZE);
+        int y0 = Math.floorDiv(rect.y, CELL_SIZE);
+        int x1 = Math.floorDiv(rect.x + Math.max(rect.width, 1) - 1, CELL_SIZE);
+        int y1 = Math.floorDiv(rect.y + Math.max(rect.height, 1) - 1, CELL_SIZE);
+        for (int cx = x0; cx <= x1; cx++) {
+            for (int cy = y0; cy <= y1; cy++) {
+                out.add(key(cx, cy));
+            }
+        }
+    }
+
+    private void index(T node, Rectangle rect, boolean add) {
+        Set<Long> keys = new HashSet<Long>();
+        cells(rect, keys);
+        for (Long key : keys) {
+            Set<T> cell = nodeCells.get(key);
+            if (add) {
+                if (cell == null) {
+                    cell = new HashSet<T>();
+                    nodeCells.put(key, cell);
+                }
+                cell.add(node);
+            } else if (cell != null) {
+                cell.remove(node);
+                if (cell.isEmpty()) {
+                    nodeCells.remove(key);
+                }
+            }
+        }
+    }
+
+    private Set<T> nodesIn(Rectangle area) {
+        Set<Long> keys = new HashSet<Long>();
+        cells(area, keys);
+        Set<T> result = new HashSet<T>();
+        for (Long key : keys) {
+            Set<T> cell = nodeCells.get(key);
+            if (cell == null) {
+                continue;
+            }
+            for (T node : cell) {
+                if (bounds.get(node).intersects(area)) {
+                    result.add(node);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void invalidateNear(Rectangle rect) {
+        Set<Long> keys = new HashSet<Long>();
+        cells(rect, keys);
+        for (Long key : keys) {
+            Set<E> cell = routeCells.get(key);
+            if (cell == null) {
+                continue;
+            }
+            for (E edge : cell) {
+                Route<T> route = routes.get(edge);
+                if (!route.valid) {
+                    continue;
+                }
+                for (Rectangle part : route.hull) {
+                    if (part.intersects(rect)) {
+                        route.valid = false;
+                        invalid.add(edge);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void unregister(E edge, Route<T> route) {
+        for (Long key : route.cells) {
+            Set<E> cell = routeCells.get(key);
+            if (cell != null) {
+                cell.remove(edge);
+                if (cell.isEmpty()) {
+                    routeCells.remove(key);
+                }
+            }
+        }
+        route.cells = Collections.emptySet();
+        route.hull = Collections.emptyList();
+    }
+
+    // Replaces edge's route and indexes segments of the new one
+    private void update(E edge, Route<T> route, List<Point> points) {
+        unregister(edge, route);
+        route.points = points;
+        route.valid = true;
+        List<Point> line = points;
+        if (line == null) {
+            Rectangle rectA = bounds.get(route.nodeA);
+            Rectangle rectZ = bounds.get(route.nodeZ);
+            if (rectA == null || rectZ == null) {
+                return;
+            }
+            line = Arrays.asList(center(rectA), center(rectZ));
+        }
+        List<Rectangle> hull = new ArrayList<Rectangle>();
+        Set<Long> keys = new HashSet<Long>();
+        for (int i = 1; i < line.size(); i++) {
+            Rectangle part = new Rectangle(line.get(i - 1));
+            part.add(line.get(i));
+            // Nodes at exactly the margin away are near the route too
+            part.grow(MARGIN + 1, MARGIN + 1);
+            hull.add(part);
+            cells(part, keys);
+        }
+        for (Long key : keys) {
+            Set<E> cell = routeCells.get(key);
+            if (cell == null) {
+                cell = new HashSet<E>();
+                routeCells.put(key, cell);
+            }
+            cell.add(edge);
+        }
+        route.hull = hull;
+        route.cells = keys;
+    }
+
+    private static Point center(Rectangle rect) {
+        return new Point(rect.x + rect.width / 2, rect.y + rect.height / 2);
+    }
+
+    // Only reads the snapshot, so it is safe to call from several threads
+    private List<Point> computeRoute(T nodeA, T nodeZ) {
+        Rectangle rectA = bounds.get(nodeA);
+        Rectangle rectZ = bounds.get(nodeZ);
+        if (rectA == null || rectZ == null || nodeA.equals(nodeZ) ||
+            rectA.intersects(rectZ)) {
+            return null;
+        }
+        Rectangle span = rectA.union(rectZ);
+        int pad = 4 * MARGIN;
+        for (int i = 0; i < ATTEMPTS; i++) {
+            Rectangle region = new Rectangle(span);
+            region.grow(pad, pad);
+            List<Point> result = search(nodeA, nodeZ, region);
+            if (result != null) {
+                return result;
+            }
+            pad *= 4;
+        }
+        return null;
+    }
+
+    private List<Point> search(T nodeA, T nodeZ, Rectangle region) {
+        Rectangle rectA = bounds.get(nodeA);
+        Rectangle rectZ = bounds.get(nodeZ);
+        Point start = center(rectA), end = center(rectZ);
+        List<Rectangle> obstacles = new ArrayList<Rectangle>();
+        IntList xl = new IntList(), yl = new IntList();
+        xl.add(start.x);
+        xl.add(end.x);
+        yl.add(start.y);
+        yl.add(end.y);
+        addSides(xl, yl, region, 0);
+        addSides(xl, yl, rectA, MARGIN);
+        addSides(xl, yl, rectZ, MARGIN);
+        for (T node : nodesIn(region)) {
+            if (node.equals(nodeA) || node.equals(nodeZ)) {
+                continue;
+            }
+            Rectangle rect = new Rectangle(bounds.get(node));
+            rect.grow(MARGIN, MARGIN);
+            obstacles.add(rect);
+            addSides(xl, yl, rect, 0);
+        }
+        Grid grid = new Grid(lines(xl, region.x, region.x + region.width),
+                             lines(yl, region.y, region.y + region.height));
+        // Edge's own nodes may only be crossed from their centers
+        grid.block(rectA);
+        grid.block(rectZ);
+        int from = grid.indexOf(start), to = grid.indexOf(end);
+        grid.unblockArms(rectA, from);
+        grid.unblockArms(rectZ, to);
+        for (Rectangle rect : obstacles) {
+            grid.block(rect);
+        }
+        int[] path = grid.search(from, to);
+        if (path == null) {
+            return null;
+        }
+        List<Point> result = new ArrayList<Point>();
+        for (int i = 0; i < path.length; i++) {
+            Point p = grid.point(path[i]);
+            if (i > 0 && i < path.length - 1) {
+                Point prev = grid.point(path[i - 1]);
+                Point next = grid.point(path[i + 1]);
+                if ((prev.x == p.x && p.x == next.x) ||
+                    (prev.y == p.y && p.y == next.y)) {
+                    continue;
+                }
+            }
+            result.add(p);
+        }
+        int last = result.size() - 1;
+        result.set(0, exit(rectA, start, result.get(1)));
+        result.set(last, exit(rectZ, end, result.get(last - 1)));
+        return result;
+    }
+
+    // Point, where route from the center towards the given point
+    // crosses the border of the rectangle
+    private static Point exit(Rectangle rect, Point center, Point toward) {
+        if (toward.x > center.x) {
+            return new Point(rect.x + rect.width, center.y);
+        } else if (toward.x < center.x) {
+            return new Point(rect.x, center.y);
+        } else if (toward.y > center.y) {
+            return new Point(center.x, rect.y + rect.height);
+        } else {
+            return new Point(center.x, rect.y);
+        }
+    }
+
+    private static void addSides(IntList xl, IntList yl, Rectangle rect, int margin) {
+        xl.add(rect.x - margin);
+        xl.add(rect.x + rect.width + margin);
+        yl.add(rect.y - margin);
+        yl.add(rect.y + rect.height + margin);
+    }
+
+    // Sorted distinct coordinates within [lo, hi]
+    private static int[] lines(IntList list, int lo, int hi) {
+        list.sort();
+        IntList result = new IntList(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            int value = list.get(i);
+            if (value < lo || value > hi) {
+                continue;
+            }
+            if (result.isEmpty() || result.get(result.size() - 1) != value) {
+                result.add(value);
+            }
+        }
+        return result.toArray();
+    }
+
+    /**
+     * Visibility grid of a single search. Points are numbered row by
+     * row, blocked points and segments between adjacent points are
+     * flagged.
+     */
+    private static class Grid {
+        final int[] xs, ys;
+        final int nx, ny;
+        final boolean[] point, horz, vert;
+
+        Grid(int[] xs, int[] ys) {
+            this.xs = xs;
+            this.ys = ys;
+            nx = xs.length;
+            ny = ys.length;
+            point = new boolean[nx * ny];
+            horz = new boolean[Math.max(nx - 1, 0) * ny];
+            vert = new boolean[nx * Math.max(ny - 1, 0)];
+        }
+
+        Point point(int p) {
+            return new Point(xs[p % nx], ys[p / nx]);
+        }
+
+        int indexOf(Point p) {
+            return Arrays.binarySearch(ys, p.y) * nx + Arrays.binarySearch(xs, p.x);
+        }
+
+        // Index of the first coordinate greater than value
+        private static int above(int[] values, int value) {
+            int i = Arrays.binarySearch(values, value);
+            return i < 0 ? -i - 1 : i + 1;
+        }
+
+        // Index of the last coordinate less than value
+        private static int below(int[] values, int value) {
+            int i = Arrays.binarySearch(values, value);
+            return i < 0 ? -i - 2 : i - 1;
+        }
+
+        // Flags points and segments strictly inside the rectangle
+        void block(Rectangle rect) {
+            mark(rect, -1, -1, true);
+        }
+
+        // Clears lines through the given point across the rectangle
+        void unblockArms(Rectangle rect, int p) {
+            mark(rect, p % nx, p / nx, false);
+        }
+
+        private void mark(Rectangle rect, int column, int row, boolean flag) {
+            int i0 = above(xs, rect.x), i1 = below(xs, rect.x + rect.width);
+            int j0 = above(ys, rect.y), j1 = below(ys, rect.y + rect.height);
+            for (int j = j0; j <= j1; j++) {
+                if (row >= 0 && j != row) {
+                    continue;
+                }
+                for (int i = Math.max(i0 - 1, 0); i <= Math.min(i1, nx - 2); i++) {
+                    horz[j * (nx - 1) + i] = flag;
+                }
+            }
+            for (int i = i0; i <= i1; i++) {
+                if (column >= 0 && i != column) {
+                    continue;
+                }
+                for (int j = Math.max(j0 - 1, 0); j <= Math.min(j1, ny - 2); j++) {
+                    vert[j * nx + i] = flag;
+                }
+            }
+            for (int j = j0; j <= j1; j++) {
+                for (int i = i0; i <= i1; i++) {
+                    if (row < 0 || j == row || i == column) {
+                        point[j * nx + i] = flag;
+                    }
+                }
+            }
+        }
+
+        // Neighbour of the point in the direction or -1 when blocked.
+        // Directions are: 0 is right, 1 is left, 2 is down, 3 is up.
+        private int step(int p, int dir) {
+            int i = p % nx, j = p / nx, q;
+            switch (dir) {
+                case 0:
+                    if (i + 1 >= nx || horz[j * (nx - 1) + i]) {
+                        return -1;
+                    }
+                    q = p + 1;
+                    break;
+                case 1:
+                    if (i == 0 || horz[j * (nx - 1) + i - 1]) {
+                        return -1;
+                    }
+                    q = p - 1;
+                    break;
+                case 2:
+                    if (j + 1 >= ny || vert[j * nx + i]) {
+                        return -1;
+                    }
+                    q = p + nx;
+                    break;
+                default:
+                    if (j == 0 || vert[(j - 1) * nx + i]) {
+                        return -1;
+                    }
+                    q = p - nx;
+                    break;
+            }
+            return point[q] ? -1 : q;
+        }
+
+        private int distance(int p, int q) {
+            return Math.abs(xs[p % nx] - xs[q % nx]) +
+                   Math.abs(ys[p / nx] - ys[q / nx]);
+        }
+
+        // A* over (point, direction) states, returns points of the
+        // cheapest path or null when there's none
+        int[] search(int from, int to) {
+            if (point[from] || point[to]) {
+                return null;
+            }
+            int states = nx * ny * 4;
+            int[] cost = new int[states];
+            int[] prev = new int[states];
+            Arrays.fill(cost, Integer.MAX_VALUE);
+            PriorityQueue<Long> queue = new PriorityQueue<Long>();
+            int guess = distance(from, to);
+            for (int dir = 0; dir < 4; dir++) {
+                cost[from * 4 + dir] = 0;
+                prev[from * 4 + dir] = -1;
+                queue.add(((long)guess << 32) | (from * 4 + dir));
+            }
+            while (!queue.isEmpty()) {
+                long top = queue.poll();
+                int state = (int)top;
+                int p = state >> 2, dir = state & 3;
+                if ((int)(top >>> 32) != cost[state] + distance(p, to)) {
+                    // Stale entry, state was reached cheaper since
+                    continue;
+                }
+                if (p == to) {
+                    IntList path = new IntList();
+                    for (int s = state; s != -1; s = prev[s]) {
+                        path.add(s >> 2);
+                    }
+                    int[] result = new int[path.size()];
+                    for (int k = 0; k < result.length; k++) {
+                        result[k] = path.get(result.length - 1 - k);
+                    }
+                    return result;
+                }
+                for (int next = 0; next < 4; next++) {
+                    if (next == (dir ^ 1)) {
+                        continue;
+                    }
+                    int q = step(p, next);
+                    if (q < 0) {
+                        continue;
+                    }
+                    int c = cost[state] + distance(p, q) + (next == dir ? 0 : BEND);
+                    int target = q * 4 + next;
+                    if (c < cost[target]) {
+                        cost[target] = c;
+                        prev[target] = state;
+                        queue.add(((long)(c + distance(q, to)) << 32) | target);
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    private class RouteTask extends RecursiveAction {
+        private final List<E> edges;
+        private final List<List<Point>> out;
+        private final int lo, hi;
+
+        RouteTask(List<E> edges, int lo, int hi, List<List<Point>> out) {
+            this.edges = edges;
+            this.lo = lo;
+            this.hi = hi;
+            this.out = out;
+        }
+
+        @Override
+        /** {@inheritDoc} */
+        protected void compute() {
+            if (hi - lo > CHUNK) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new RouteTask(edges, lo, mid, out),
+                          new RouteTask(edges, mid, hi, out));
+                return;
+            }
+            for (int k = lo; k < hi; k++) {
+                Route<T> route = routes.get(edges.get(k));
+                out.set(k, computeRoute(route.nodeA, route.nodeZ));
+            }
+        }
+    }
+}
@@ -0,0 +1,479 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import oss.jthinker.util.Mapping;
+
+/**
+ * Force-directed (Fruchterman-Reingold) layout. Linked nodes attract
+ * each other and all nodes repel each other. Repulsion is approximated
+ * with a Barnes-Hut quadtree, so each iteration takes O(n log n), and
+ * forces are computed in parallel on the common fork/join pool. Layout
+ * may be run over the whole bundle or relax only the neighbourhood of
+ * some changed nodes, the rest of the nodes stay in place.
+ *
+ * @author iappel
+ * @param T type of node data
+ */
+public class ForceLayout<T> {
+    private static final double EDGE_LENGTH = 180;
+    private static final double GRAVITY = 0.02;
+    private static final double THETA = 1.0;
+    private static final int ITERATIONS = 100;
+    private static final int RELAX_ITERATIONS = 40;
+    private static final int RELAX_HOPS = 2;
+    private static final int RELAX_LIMIT = 256;
+    private static final int MARGIN = 20;
+    private static final int CHUNK = 256;
+
+    private final NodeBundle<T> data;
+
+    private List<T> nodes;
+    private Map<T, Integer> index;
+    private int[] width, height;
+    private int[] adjStart, adjNodes;
+    private double[] x, y, dx, dy;
+    private int[] active;
+    private QuadTree fixedTree, activeTree;
+    private boolean relaxing;
+    private double gravityX, gravityY;
+
+    /**
+     * Creates a new layout of the given bundle.
+     *
+     * @param data bundle of nodes to lay out
+     */
+    public ForceLayout(NodeBundle<T> data) {
+        this.data = data;
+    }
+
+    /**
+     * Lays out all nodes of the bundle, starting from their current
+     * positions.
+     */
+    public void apply() {
+        load();
+        int n = nodes.size();
+        active = new int[n];
+        for (int i = 0; i < n; i++) {
+            active[i] = i;
+        }
+        relaxing = false;
+        fixedTree = null;
+        run(ITERATIONS, EDGE_LENGTH * 2);
+
+        double left = Double.MAX_VALUE, top = Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            left = Math.min(left, x[i] - width[i] / 2);
+            top = Math.min(top, y[i] - height[i] / 2);
+        }
+        for (int i = 0; i < n; i++) {
+            x[i] += MARGIN - left;
+            y[i] += MARGIN - top;
+        }
+        store(active);
+    }
+
+    /**
+     * Relaxes the neighbourhood of changed nodes. Nodes within a few
+     * links of the changed ones are moved, all others stay in place but
+     * still repel the moving ones.
+     *
+     * @param changed nodes that were added, moved or linked
+     * @return nodes that were moved
+     */
+    public List<T> relax(Collection<T> changed) {
+        load();
+        int n = nodes.size();
+        int[] hops = new int[n];
+        Arrays.fill(hops, -1);
+        int[] queue = new int[n];
+        int tail = 0;
+        for (T node : changed) {
+            Integer i = index.get(node);
+            if (i != null && hops[i] == -1) {
+                hops[i] = 0;
+                queue[tail++] = i;
+            }
+        }
+        for (int head = 0; head < tail && tail < RELAX_LIMIT; head++) {
+            int v = queue[head];
+            if (hops[v] == RELAX_HOPS) {
+                continue;
+            }
+            for (int k = adjStart[v]; k < adjStart[v + 1] && tail < RELAX_LIMIT; k++) {
+                int w = adjNodes[k];
+                if (hops[w] == -1) {
+                    hops[w] = hops[v] + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        active = Arrays.copyOf(queue, tail);
+        List<T> result = new ArrayList<T>();
+        if (tail == 0) {
+            return result;
+        }
+
+        int[] fixed = new int[n - tail];
+        int f = 0;
+        for (int i = 0; i < n; i++) {
+            if (hops[i] == -1) {
+                fixed[f++] = i;
+            }
+        }
+        fixedTree = f == 0 ? null : new QuadTree(x, y, fixed);
+        relaxing = true;
+        run(RELAX_ITERATIONS, EDGE_LENGTH / 2);
+        for (int i : active) {
+            result.add(nodes.get(i));
+        }
+        store(active);
+        return result;
+    }
+
+    private void load() {
+        nodes = AbstractGraphModel.asList(data.getAllNodes());
+        int n = nodes.size();
+        index = new HashMap<T, Integer>();
+        for (T node : nodes) {
+            index.put(node, index.size());
+        }
+        Mapping<? super T, Rectangle, ?> mapping = data.getMapping();
+        width = new int[n];
+        height = new int[n];
+        x = new double[n];
+        y = new double[n];
+        dx = new double[n];
+        dy = new double[n];
+        for (int i = 0; i < n; i++) {
+            Rectangle rect = mapping.fetch(nodes.get(i));
+            width[i] = rect.width;
+            height[i] = rect.height;
+            x[i] = rect.getCenterX();
+            y[i] = rect.getCenterY();
+        }
+
+        List<int[]> links = new ArrayList<int[]>();
+        for (int i = 0; i < n; i++) {
+            for (T peer : data.getOutcomeNodes(nodes.get(i))) {
+                Integer j = index.get(peer);
+                if (j != null && j != i) {
+                    links.add(new int[] {i, j});
+                }
+            }
+        }
+        int[] from = new int[2 * links.size()];
+        int[] to = new int[2 * links.size()];
+        for (int k = 0; k < links.size(); k++) {
+            int[] link = links.get(k);
+            from[2 * k] = to[2 * k + 1] = link[0];
+            to[2 * k] = from[2 * k + 1] = link[1];
+        }
+        adjStart = new int[n + 1];
+        for (int v : from) {
+            adjStart[v + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            adjStart[v + 1] += adjStart[v];
+        }
+        adjNodes = new int[from.length];
+        int[] fill = Arrays.copyOf(adjStart, n);
+        for (int k = 0; k < from.length; k++) {
+            adjNodes[fill[from[k]]++] = to[k];
+        }
+    }
+
+    private void store(int[] moved) {
+        Mapping<? super T, Rectangle, ?> mapping = data.getMapping();
+        for (int i : moved) {
+            T node = nodes.get(i);
+            Rectangle rect = mapping.fetch(node);
+            rect.setLocation((int)Math.round(x[i]) - rect.width / 2,
+                             (int)Math.round(y[i]) - rect.height / 2);
+            mapping.assign(node, rect);
+        }
+    }
+
+    private void run(int iterations, double temperature) {
+        // Coincident nodes would not push each other apart
+        for (int i : active) {
+            x[i] += ((i * 7919) % 13 - 6) * 0.01;
+            y[i] += ((i * 104729) % 11 - 5) * 0.01;
+        }
+        for (int iter = 0; iter < iterations; iter++) {
+            gravityX = gravityY = 0;
+            for (int i : active) {
+                gravityX += x[i];
+                gravityY += y[i];
+            }
+            gravityX /= active.length;
+            gravityY /= active.length;
+            activeTree = relaxing ? null : new QuadTree(x, y, active);
+
+            ForkJoinPool.commonPool().invoke(new ForceTask(0, active.length));
+
+            double limit = temperature * (1 - (double)iter / iterations) + 1;
+            for (int i : active) {
+                double length = Math.sqrt(dx[i] * dx[i] + dy[i] * dy[i]);
+                if (length > limit) {
+                    dx[i] *= limit / length;
+                    dy[i] *= limit / length;
+                }
+                x[i] += dx[i];
+                y[i] += dy[i];
+                if (relaxing) {
+                    // Others stay in place, so nodes are kept inside the area
+                    x[i] = Math.max(x[i], width[i] / 2);
+                    y[i] = Math.max(y[i], height[i] / 2);
+                }
+            }
+        }
+    }
+
+    private void computeForce(int i) {
+        double fx = 0, fy = 0;
+        double[] force = new double[2];
+        if (fixedTree != null) {
+            fixedTree.repulse(i, x[i], y[i], force);
+        }
+        if (activeTree != null) {
+            activeTree.repulse(i, x[i], y[i], force);
+        }
+        if (relaxing) {
+            for (int j : active) {
+                if (j != i) {
+                    repulse(x[i] - x[j], y[i] - y[j], 1, force);
+                }
+            }
+        } else {
+            force[0] += GRAVITY * (gravityX - x[i]);
+            force[1] += GRAVITY * (gravityY - y[i]);
+        }
+        for (int k = adjStart[i]; k < adjStart[i + 1]; k++) {
+            int j = adjNodes[k];
+            double ex = x[j] - x[i], ey = y[j] - y[i];
+            double d = Math.sqrt(ex * ex + ey * ey);
+            if (d > 0) {
+                // d^2 / k along the unit vector
+                fx += ex * d / EDGE_LENGTH;
+                fy += ey * d / EDGE_LENGTH;
+            }
+        }
+        dx[i] = force[0] + fx;
+        dy[i] = force[1] + fy;
+    }
+
+    // Adds repulsion k^2 / d of the given mass at the given offset
+    private static void repulse(double ox, double oy, double mass,
+                                double[] force) {
+        double d2 = ox * ox + oy * oy;
+        if (d2 < 0.01) {
+            d2 = 0.01;
+        }
+        double f = EDGE_LENGTH * EDGE_LENGTH * mass / d2;
+        force[0] += ox * f;
+        force[1] += oy * f;
+    }
+
+    private class ForceTask extends RecursiveAction {
+        private final int lo, hi;
+
+        ForceTask(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        /** {@inheritDoc} */
+        protected void compute() {
+            if (hi - lo <= CHUNK) {
+                for (int k = lo; k < hi; k++) {
+                    computeForce(active[k]);
+                }
+            } else {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new ForceTask(lo, mid), new ForceTask(mid, hi));
+            }
+        }
+    }
+
+    /**
+     * Barnes-Hut quadtree over node centers kept in flat arrays. Cells
+     * are squares; a leaf cell holds one body, or several when they are
+     * too close to be split.
+     */
+    private static class QuadTree {
+        private static final int MAX_DEPTH = 30;
+
+        private int size;
+        private double[] minX, minY, side, massX, massY, mass;
+        private int[] body, children;
+
+        QuadTree(double[] x, double[] y, int[] items) {
+            int capacity = 2 * items.length + 1;
+            minX = new double[capacity];
+            minY = new double[capacity];
+            side = new double[capacity];
+            massX = new double[capacity];
+            massY = new double[capacity];
+            mass = new double[capacity];
+            body = new int[capacity];
+            children = new int[4 * capacity];
+
+            double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE;
+            double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+            for (int i : items) {
+                x0 = Math.min(x0, x[i]);
+                y0 = Math.min(y0, y[i]);
+                x1 = Math.max(x1, x[i]);
+                y1 = Math.max(y1, y[i]);
+            }
+            cell(x0, y0, Math.max(Math.max(x1 - x0, y1 - y0), 1) * 1.0001);
+            for (int i : items) {
+                insert(i, x[i], y[i], x, y);
+            }
+        }
+
+        private int cell(double cx, double cy, double cs) {
+            if (size == side.length) {
+                int capacity = 2 * size;
+                minX = Arrays.copyOf(minX, capacity);
+                minY = Arrays.copyOf(minY, capacity);
+                side = Arrays.copyOf(side, capacity);
+                massX = Arrays.copyOf(massX, capacity);
+                massY = Arrays.copyOf(massY, capacity);
+                mass = Arrays.copyOf(mass, capacity);
+                body = Arrays.copyOf(body, capacity);
+                children = Arrays.copyOf(children, 4 * capacity);
+            }
+            int c = size++;
+            minX[c] = cx;
+            minY[c] = cy;
+            side[c] = cs;
+            body[c] = -1;
+            Arrays.fill(children, 4 * c, 4 * c + 4, -1);
+            return c;
+        }
+
+        private boolean isLeaf(int c) {
+            return children[4 * c] == -1 && children[4 * c + 1] == -1 &&
+                   children[4 * c + 2] == -1 && children[4 * c + 3] == -1;
+        }
+
+        private int child(int c, double px, double py) {
+            double half = side[c] / 2;
+            int q = (px >= minX[c] + half ? 1 : 0) + (py >= minY[c] + half ? 2 : 0);
+            if (children[4 * c + q] == -1) {
+                int created = cell(minX[c] + (q & 1) * half,
+                                   minY[c] + (q >> 1) * half, half);
+                children[4 * c + q] = created;
+            }
+            return children[4 * c + q];
+        }
+
+        private void insert(int i, double px, double py, double[] x, double[] y) {
+            int c = 0;
+            for (int depth = 0; ; depth++) {
+                if (isLeaf(c)) {
+                    if (mass[c] == 0 || depth == MAX_DEPTH) {
+                        if (mass[c] == 0) {
+                            body[c] = i;
+                        }
+                        add(c, px, py, 1);
+                        return;
+                    }
+                    // Push the resident body one level down
+                    int resident = body[c];
+                    int down = child(c, x[resident], y[resident]);
+                    body[down] = resident;
+                    add(down, massX[c] / mass[c], massY[c] / mass[c], mass[c]);
+                    body[c] = -1;
+                }
+                add(c, px, py, 1);
+                c = child(c, px, py);
+            }
+        }
+
+        private void add(int c, double px, double py, double m) {
+            massX[c] += px * m;
+            massY[c] += py * m;
+            mass[c] += m;
+        }
+
+        void repulse(int i, double px, double py, double[] force) {
+            int[] stack = new int[4 * MAX_DEPTH + 4];
+            int sp = 0;
+            stack[sp++] = 0;
+            while (sp > 0) {
+                int c = stack[--sp];
+                if (mass[c] == 0) {
+                    continue;
+                }
+                double cx = massX[c] / mass[c], cy = massY[c] / mass[c];
+                double ox = px - cx, oy = py - cy;
+                double d2 = ox * ox + oy * oy;
+                if (isLeaf(c)) {
+                    if (body[c] == i) {
+                        if (mass[c] == 1) {
+                            continue;
+                        }
+                        // Other bodies share the leaf, this one is excluded
+                        double m = mass[c] - 1;
+                        ox = px - (massX[c] - px) / m;
+                        oy = py - (massY[c] - py) / m;
+                        ForceLayout.repulse(ox, oy, m, force);
+                    } else {
+                        ForceLayout.repulse(ox, oy, mass[c], force);
+                    }
+                } else if (side[c] * side[c] < THETA * THETA * d2) {
+                    ForceLayout.repulse(ox, oy, mass[c], force);
+                } else {
+                    for (int q = 0; q < 4; q++) {
+                        if (children[4 * c + q] != -1) {
+                            stack[sp++] = children[4 * c + q];
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -33,13 +33,26 @@ package oss.jthinker.graphs;
 
 import java.awt.Dimension;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import oss.jthinker.swingutils.GeometryUtils;
+import oss.jthinker.util.Mapping;
 
 /**
- * Engine for graph optimizations.
+ * Engine for graph optimizations. Engine keeps a single overlap resolver
+ * for the bundle, that is built on first use and then kept in sync by
+ * {@link #nodeAdded}, {@link #nodeRemoved} and {@link #updatePosition}
+ * notifications. When a {@link LayoutWorker} is set, those notifications
+ * are passed to the worker instead and overlaps are resolved in
+ * background. Force-directed relaxation of added and linked nodes is
+ * then deferred to worker's foreground executor as well, so a burst of
+ * changes is relaxed in one pass over the bundle.
  * 
  * @author iappel
  * @param T type of node data
@@ -47,6 +60,12 @@ import oss.jthinker.swingutils.GeometryUtils;
 public class GraphEngine<T> {
     private final NodeBundle<T> data;
     private OrderingLevel level;
+    private OverlapResolver<T> resolver;
+    private LayoutWorker<T> worker;
+    private boolean layingOut;
+    // Nodes waiting for a deferred relaxation
+    private final Set<T> relaxPending = new LinkedHashSet<T>();
+    private boolean relaxScheduled;
 
     /**
      * Initializes a new GraphEngine instance.
@@ -67,11 +86,107 @@ public class GraphEngine<T> {
      */
     public synchronized void updatePosition(T node) {
         if (level == OrderingLevel.OFF) {
+            // Moves are not tracked, so the resolver would go stale
+            reset();
             return;
         }
-        OverlapResolver<T> resolver = initOverlapResolver();
-        resolver.fix(node);
-        resolver.resolve();
+        if (layingOut) {
+            // Whole bundle is being placed, resolver is rebuilt afterwards
+            return;
+        }
+        if (worker != null) {
+            worker.moved(node);
+        } else if (resolver == null) {
+            // First resolution also fixes overlaps the bundle had before
+            resolver = initOverlapResolver();
+            resolver.fix(node);
+            resolver.resolve();
+        } else {
+            resolver.moved(node);
+        }
+    }
+
+    /**
+     * Notifies engine that a node was added to the bundle.
+     *
+     * @param node node that was added
+     */
+    public synchronized void nodeAdded(T node) {
+        if (level == OrderingLevel.FORCE_DIRECTED) {
+            scheduleRelax(Collections.singleton(node));
+        } else if (worker != null) {
+            worker.added(node);
+        } else if (resolver != null) {
+            resolver.added(node);
+        }
+    }
+
+    /**
+     * Notifies engine that two nodes were linked.
+     *
+     * @param nodeA start of the link
+     * @param nodeZ end of the link
+     */
+    public synchronized void nodesLinked(T nodeA, T nodeZ) {
+        if (level == OrderingLevel.FORCE_DIRECTED) {
+            List<T> changed = new ArrayList<T>();
+            changed.add(nodeA);
+            changed.add(nodeZ);
+            scheduleRelax(changed);
+        }
+    }
+
+    /**
+     * Notifies engine that a node was removed from the bundle.
+     *
+     * @param node node that was removed
+     */
+    public synchronized void nodeRemoved(T node) {
+        if (worker != null) {
+            worker.removed(node);
+        } else if (resolver != null) {
+            resolver.removed(node);
+        }
+    }
+
+    /**
+     * Notifies engine that node's size has changed.
+     *
+     * @param node node that was resized
+     */
+    public synchronized void nodeResized(T node) {
+        if (level == OrderingLevel.OFF) {
+            return;
+        }
+        if (worker != null) {
+            worker.resized(node);
+        } else if (resolver != null) {
+            resolver.changed(node);
+        }
+    }
+
+    /**
+     * Drops the engine's resolver, so that it is rebuilt from the bundle
+     * on next use. Should be called when bundle was changed without
+     * notifying the engine.
+     */
+    public synchronized void reset() {
+        resolver = null;
+        if (worker != null) {
+            worker.reset();
+        }
+    }
+
+    /**
+     * Sets a worker to resolve overlaps in background. When worker is
+     * null, overlaps are resolved synchronously in
+     * {@link #updatePosition}.
+     *
+     * @param worker background worker or null
+     */
+    public synchronized void setWorker(LayoutWorker<T> worker) {
+        reset();
+        this.worker = worker;
     }
 
     /**
@@ -84,13 +199,105 @@ public class GraphEngine<T> {
     }
 
     /**
-     * Sets current layout policy.
+     * Sets current layout policy. Layered and force-directed policies
+     * arrange the whole bundle right away.
      * 
      * @param level layout policy to set.
      */    
-    public void setLevel(OrderingLevel level) {
+    public synchronized void setLevel(OrderingLevel level) {
         this.level = level;
-    }   
+        reset();
+        if (level == OrderingLevel.LAYERED ||
+            level == OrderingLevel.FORCE_DIRECTED) {
+            layout();
+        }
+    }
+
+    /**
+     * Arranges all nodes with {@link ForceLayout} when engine's level is
+     * {@link OrderingLevel#FORCE_DIRECTED} or in layers with
+     * {@link LayeredLayout} otherwise. Overlaps left are resolved.
+     */
+    public synchronized void layout() {
+        layingOut = true;
+        try {
+            if (level == OrderingLevel.FORCE_DIRECTED) {
+                new ForceLayout<T>(data).apply();
+            } else {
+                new LayeredLayout<T>(data).apply();
+            }
+            initOverlapResolver().resolve();
+        } finally {
+            layingOut = false;
+        }
+        reset();
+    }
+
+    /**
+     * Resolves all overlaps of the bundle's nodes at once.
+     */
+    public synchronized void resolveOverlaps() {
+        layingOut = true;
+        try {
+            initOverlapResolver().resolve();
+        } finally {
+            layingOut = false;
+        }
+        reset();
+    }
+
+    /**
+     * Relaxes force-directed layout around the changed nodes, the rest
+     * of the nodes stay in place. Does nothing unless engine's level is
+     * {@link OrderingLevel#FORCE_DIRECTED}.
+     *
+     * @param changed nodes that were added, moved or linked
+     */
+    public synchronized void relax(Collection<T> changed) {
+        if (level != OrderingLevel.FORCE_DIRECTED) {
+            return;
+        }
+        layingOut = true;
+        try {
+            Set<T> moved = new HashSet<T>(new ForceLayout<T>(data).relax(changed));
+            OverlapResolver<T> current = initOverlapResolver();
+            for (T node : data.getAllNodes()) {
+                if (!moved.contains(node)) {
+                    current.fix(node);
+                }
+            }
+            current.resolve();
+        } finally {
+            layingOut = false;
+        }
+        reset();
+    }
+
+    // Relaxes right away without a worker, otherwise coalesces changes
+    // until worker's foreground executor gets to them
+    private void scheduleRelax(Collection<T> changed) {
+        if (worker == null) {
+            relax(changed);
+            return;
+        }
+        relaxPending.addAll(changed);
+        if (!relaxScheduled) {
+            relaxScheduled = true;
+            worker.getForeground().execute(new Runnable() {
+                public void run() {
+                    relaxPending();
+                }
+            });
+        }
+    }
+
+    private synchronized void relaxPending() {
+        relaxScheduled = false;
+        List<T> changed = new ArrayList<T>(relaxPending);
+        relaxPending.clear();
+        // Nodes removed meanwhile are not in the bundle and are skipped
+        relax(changed);
+    }
 
     /**
      * Picks a free point for a node of given size that doesn't
@@ -102,10 +309,52 @@ public class GraphEngine<T> {
      * collection
      * @return center point for the new node
      */
-    public Point newNodePoint(Dimension nodeSize, Collection<T> nodes) {
-        OverlapResolver<T> resolver = initOverlapResolver();
-        resolver.fixEverything();
-        return resolver.newNodePoint(data.getAreaSize().width, nodeSize, nodes);
+    public synchronized Point newNodePoint(Dimension nodeSize, Collection<T> nodes) {
+        OverlapResolver<T> current = resolver;
+        if (current == null) {
+            current = initOverlapResolver();
+            current.fixEverything();
+            // Worker owns the resolution, so engine's resolver would go stale
+            if (worker == null) {
+                resolver = current;
+            }
+        }
+        return current.newNodePoint(data.getAreaSize().width, nodeSize, nodes);
+    }
+
+    /**
+     * Picks free points for many new nodes at once, so that they
+     * overlap neither any other nodes nor each other. Nodes are packed
+     * by a {@link SkylinePacker} in a single pass, which is much faster
+     * than picking the points one by one. This method also allows to
+     * specify several nodes, new nodes will be below them.
+     * 
+     * @param nodeSizes dimensions of the new nodes
+     * @param nodes new nodes should be below any of the nodes in this
+     * collection
+     * @return center points for the new nodes in order of their sizes
+     */
+    public synchronized List<Point> newNodePoints(List<Dimension> nodeSizes,
+                                                  Collection<T> nodes) {
+        Mapping<? super T, Rectangle, ?> mapping = data.getMapping();
+        List<Rectangle> occupied = new ArrayList<Rectangle>();
+        for (T node : data.getAllNodes()) {
+            occupied.add(mapping.fetch(node));
+        }
+        int top = 0;
+        for (T node : nodes) {
+            Rectangle rect = mapping.fetch(node);
+            top = Math.max(top, rect.y + rect.height + SkylinePacker.GAP);
+        }
+        // Empty area is filled to about twice as wide as high
+        long area = 0;
+        int width = data.getAreaSize().width;
+        for (Dimension size : nodeSizes) {
+            area += (long)(size.width + SkylinePacker.GAP) * (size.height + SkylinePacker.GAP);
+            width = Math.max(width, size.width);
+        }
+        width = Math.max(width, (int)Math.sqrt(2 * area));
+        return new SkylinePacker(width, top, occupied).pack(nodeSizes);
     }
 
     /**
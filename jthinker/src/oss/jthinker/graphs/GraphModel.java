@@ -56,9 +56,26 @@ public interface GraphModel<nodeT, edgeT> extends NodeBundle<nodeT> {
      * @return number of edges in modelled graph.
      */
     int edgeCount();
+
+    /**
+     * Returns number of edges ending in the node.
+     * 
+     * @param node node to check
+     * @return in-degree of the node
+     */
+    int inDegree(nodeT node);
+
+    /**
+     * Returns number of edges starting in the node.
+     * 
+     * @param node node to check
+     * @return out-degree of the node
+     */
+    int outDegree(nodeT node);
     
     /**
-     * Returns collection of all graph's edges.
+     * Returns collection of all graph's edges. Collection may be a live
+     * read-only view of the model, so it should not be modified.
      * 
      * @return collection of all graph's edges.
      */    
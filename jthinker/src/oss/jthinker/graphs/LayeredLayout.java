@@ -0,0 +1,645 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import oss.jthinker.util.Mapping;
+
+/**
+ * Layered (Sugiyama-style) layout of a directed graph. Cycles are broken
+ * by reversing DFS back edges, nodes are layered by the longest path to
+ * a sink, so that effects are on top and causes are below them, long
+ * edges are split by dummy nodes, crossings are reduced by barycentric
+ * sweeps and horizontal coordinates are assigned by the Brandes-Koepf
+ * method. All steps are linear or near-linear in the size of the graph.
+ *
+ * @author iappel
+ * @param T type of node data
+ */
+public class LayeredLayout<T> {
+    private static final int MARGIN = 20;
+    private static final int NODE_GAP = 30;
+    private static final int LAYER_GAP = 60;
+    private static final int DUMMY_WIDTH = 10;
+    private static final int SWEEPS = 4;
+
+    private final NodeBundle<T> data;
+
+    // Real nodes are [0, n), dummy nodes are [n, count)
+    private int n, count;
+    private int[] width, height, layerOf, pos;
+    private int[][] layers;
+    private int[] upStart, upNodes, downStart, downNodes;
+    private Set<Long> conflicts;
+
+    /**
+     * Creates a new layout of the given bundle.
+     *
+     * @param data bundle of nodes to lay out
+     */
+    public LayeredLayout(NodeBundle<T> data) {
+        this.data = data;
+    }
+
+    /**
+     * Computes the layout and moves all nodes to their new places.
+     */
+    public void apply() {
+        Mapping<? super T, Rectangle, ?> mapping = data.getMapping();
+        for (Map.Entry<T, Point> entry : compute().entrySet()) {
+            Rectangle rect = mapping.fetch(entry.getKey());
+            Point center = entry.getValue();
+            rect.setLocation(center.x - rect.width / 2,
+                             center.y - rect.height / 2);
+            mapping.assign(entry.getKey(), rect);
+        }
+    }
+
+    /**
+     * Computes the layout without moving any nodes.
+     *
+     * @return new center points of the nodes
+     */
+    public Map<T, Point> compute() {
+        List<T> nodes = AbstractGraphModel.asList(data.getAllNodes());
+        Map<T, Integer> index = new HashMap<T, Integer>();
+        for (T node : nodes) {
+            index.put(node, index.size());
+        }
+        n = nodes.size();
+
+        Mapping<? super T, Rectangle, ?> mapping = data.getMapping();
+        int[] sizes = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            Rectangle rect = mapping.fetch(nodes.get(i));
+            sizes[2 * i] = rect.width;
+            sizes[2 * i + 1] = rect.height;
+        }
+
+        int[][] out = new int[n][];
+        for (int i = 0; i < n; i++) {
+            Collection<T> peers = data.getOutcomeNodes(nodes.get(i));
+            int[] targets = new int[peers.size()];
+            int c = 0;
+            for (T peer : peers) {
+                Integer target = index.get(peer);
+                if (target != null && target != i) {
+                    targets[c++] = target;
+                }
+            }
+            out[i] = Arrays.copyOf(targets, c);
+        }
+
+        removeCycles(out);
+        int[] rank = rank(out);
+        split(out, rank, sizes);
+        orderLayers();
+        markConflicts();
+        int[] x = assignX();
+
+        int[] top = new int[layers.length];
+        int[] layerHeight = new int[layers.length];
+        for (int i = 0; i < n; i++) {
+            layerHeight[layerOf[i]] = Math.max(layerHeight[layerOf[i]], height[i]);
+        }
+        int y = MARGIN;
+        for (int l = 0; l < layers.length; l++) {
+            top[l] = y;
+            y += layerHeight[l] + LAYER_GAP;
+        }
+        int left = Integer.MAX_VALUE;
+        for (int v = 0; v < count; v++) {
+            left = Math.min(left, x[v] - width[v] / 2);
+        }
+
+        Map<T, Point> result = new HashMap<T, Point>();
+        for (int i = 0; i < n; i++) {
+            int l = layerOf[i];
+            result.put(nodes.get(i), new Point(x[i] - left + MARGIN,
+                    top[l] + layerHeight[l] / 2));
+        }
+        return result;
+    }
+
+    // Reverses back edges of an iterative DFS, so the graph becomes acyclic
+    private void removeCycles(int[][] out) {
+        byte[] state = new byte[n];
+        int[] stack = new int[n];
+        int[] next = new int[n];
+        List<int[]> reversed = new ArrayList<int[]>();
+        for (int start = 0; start < n; start++) {
+            if (state[start] != 0) {
+                continue;
+            }
+            int sp = 0;
+            stack[sp++] = start;
+            state[start] = 1;
+            while (sp > 0) {
+                int v = stack[sp - 1];
+                if (next[v] < out[v].length) {
+                    int w = out[v][next[v]++];
+                    if (state[w] == 0) {
+                        state[w] = 1;
+                        stack[sp++] = w;
+                    } else if (state[w] == 1) {
+                        reversed.add(new int[] {v, next[v] - 1});
+                    }
+                } else {
+                    state[v] = 2;
+                    sp--;
+                }
+            }
+        }
+        if (reversed.isEmpty()) {
+            return;
+        }
+        int[] extra = new int[n];
+        for (int[] edge : reversed) {
+            extra[out[edge[0]][edge[1]]]++;
+        }
+        Set<Long> drop = new HashSet<Long>();
+        for (int[] edge : reversed) {
+            drop.add(((long)edge[0] << 32) | edge[1]);
+        }
+        int[][] result = new int[n][];
+        int[] fill = new int[n];
+        for (int v = 0; v < n; v++) {
+            result[v] = new int[out[v].length + extra[v]];
+        }
+        for (int v = 0; v < n; v++) {
+            for (int k = 0; k < out[v].length; k++) {
+                int w = out[v][k];
+                if (drop.contains(((long)v << 32) | k)) {
+                    result[w][fill[w]++] = v;
+                } else {
+                    result[v][fill[v]++] = w;
+                }
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            out[v] = Arrays.copyOf(result[v], fill[v]);
+        }
+    }
+
+    // Longest path to a sink, so sinks are on layer 0
+    private int[] rank(int[][] out) {
+        int[] outDegree = new int[n];
+        int[] inCount = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            outDegree[v] = out[v].length;
+            for (int w : out[v]) {
+                inCount[w + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            inCount[v + 1] += inCount[v];
+        }
+        int[] inNodes = new int[inCount[n]];
+        int[] fill = Arrays.copyOf(inCount, n);
+        for (int v = 0; v < n; v++) {
+            for (int w : out[v]) {
+                inNodes[fill[w]++] = v;
+            }
+        }
+
+        int[] rank = new int[n];
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+        for (int v = 0; v < n; v++) {
+            if (outDegree[v] == 0) {
+                queue[tail++] = v;
+            }
+        }
+        while (head < tail) {
+            int v = queue[head++];
+            for (int k = inCount[v]; k < inCount[v + 1]; k++) {
+                int p = inNodes[k];
+                rank[p] = Math.max(rank[p], rank[v] + 1);
+                if (--outDegree[p] == 0) {
+                    queue[tail++] = p;
+                }
+            }
+        }
+        return rank;
+    }
+
+    // Splits long edges with dummy nodes and builds layers and
+    // up/down neighbour lists between adjacent layers
+    private void split(int[][] out, int[] rank, int[] sizes) {
+        int dummies = 0, segments = 0, height = 0;
+        for (int v = 0; v < n; v++) {
+            height = Math.max(height, rank[v] + 1);
+            for (int w : out[v]) {
+                dummies += rank[v] - rank[w] - 1;
+                segments += rank[v] - rank[w];
+            }
+        }
+        count = n + dummies;
+        width = new int[count];
+        this.height = new int[count];
+        layerOf = new int[count];
+        Arrays.fill(width, n, count, DUMMY_WIDTH);
+        for (int v = 0; v < n; v++) {
+            width[v] = sizes[2 * v];
+            this.height[v] = sizes[2 * v + 1];
+            layerOf[v] = rank[v];
+        }
+
+        int[] segTop = new int[segments];
+        int[] segBottom = new int[segments];
+        int s = 0, d = n;
+        for (int v = 0; v < n; v++) {
+            for (int w : out[v]) {
+                int upper = w;
+                for (int l = rank[w] + 1; l < rank[v]; l++) {
+                    layerOf[d] = l;
+                    segTop[s] = upper;
+                    segBottom[s++] = d;
+                    upper = d++;
+                }
+                segTop[s] = upper;
+                segBottom[s++] = v;
+            }
+        }
+
+        upStart = new int[count + 1];
+        upNodes = group(segBottom, segTop, upStart);
+        downStart = new int[count + 1];
+        downNodes = group(segTop, segBottom, downStart);
+
+        int[] layerSize = new int[height];
+        for (int v = 0; v < count; v++) {
+            layerSize[layerOf[v]]++;
+        }
+        layers = new int[height][];
+        for (int l = 0; l < height; l++) {
+            layers[l] = new int[layerSize[l]];
+        }
+        // Initial order: by breadth-first discovery from the top layer
+        pos = new int[count];
+        int[] fill = new int[height];
+        boolean[] seen = new boolean[count];
+        int[] queue = new int[count];
+        int tail = 0;
+        for (int v = 0; v < count; v++) {
+            if (layerOf[v] == 0) {
+                seen[v] = true;
+                queue[tail++] = v;
+            }
+        }
+        for (int v = 0; tail < count && v < count; v++) {
+            if (!seen[v] && upStart[v] == upStart[v + 1]) {
+                seen[v] = true;
+                queue[tail++] = v;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int v = queue[head];
+            int l = layerOf[v];
+            pos[v] = fill[l];
+            layers[l][fill[l]++] = v;
+            for (int k = downStart[v]; k < downStart[v + 1]; k++) {
+                int w = downNodes[k];
+                if (!seen[w]) {
+                    seen[w] = true;
+                    queue[tail++] = w;
+                }
+            }
+        }
+    }
+
+    private int[] group(int[] keys, int[] values, int[] offsets) {
+        for (int key : keys) {
+            offsets[key + 1]++;
+        }
+        for (int k = 1; k < offsets.length; k++) {
+            offsets[k] += offsets[k - 1];
+        }
+        int[] fill = offsets.clone();
+        int[] result = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[fill[keys[i]]++] = values[i];
+        }
+        return result;
+    }
+
+    // Barycentric crossing reduction, alternating downward and upward
+    private void orderLayers() {
+        final double[] key = new double[count];
+        Comparator<Integer> byKey = new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Double.compare(key[a], key[b]);
+            }
+        };
+        for (int sweep = 0; sweep < SWEEPS; sweep++) {
+            boolean down = sweep % 2 == 0;
+            for (int i = 1; i < layers.length; i++) {
+                int[] layer = layers[down ? i : layers.length - 1 - i];
+                int[] start = down ? upStart : downStart;
+                int[] peers = down ? upNodes : downNodes;
+                Integer[] order = new Integer[layer.length];
+                for (int k = 0; k < layer.length; k++) {
+                    int v = layer[k];
+                    order[k] = v;
+                    int degree = start[v + 1] - start[v];
+                    if (degree == 0) {
+                        key[v] = pos[v];
+                    } else {
+                        double sum = 0;
+                        for (int j = start[v]; j < start[v + 1]; j++) {
+                            sum += pos[peers[j]];
+                        }
+                        key[v] = sum / degree;
+                    }
+                }
+                Arrays.sort(order, byKey);
+                for (int k = 0; k < layer.length; k++) {
+                    layer[k] = order[k];
+                    pos[order[k]] = k;
+                }
+            }
+        }
+    }
+
+    private static long pair(int a, int b) {
+        return a < b ? ((long)a << 32) | b : ((long)b << 32) | a;
+    }
+
+    private boolean isDummy(int v) {
+        return v >= n;
+    }
+
+    // Marks segments that cross inner segments (between two dummies)
+    private void markConflicts() {
+        conflicts = new HashSet<Long>();
+        for (int l = 1; l < layers.length; l++) {
+            int[] layer = layers[l];
+            int k0 = 0, scan = 0;
+            for (int i = 0; i < layer.length; i++) {
+                int v = layer[i];
+                int inner = -1;
+                if (isDummy(v)) {
+                    for (int k = upStart[v]; k < upStart[v + 1]; k++) {
+                        if (isDummy(upNodes[k])) {
+                            inner = upNodes[k];
+                        }
+                    }
+                }
+                if (inner == -1 && i != layer.length - 1) {
+                    continue;
+                }
+                int k1 = inner == -1 ? layers[l - 1].length : pos[inner];
+                for (; scan <= i; scan++) {
+                    int w = layer[scan];
+                    for (int k = upStart[w]; k < upStart[w + 1]; k++) {
+                        int u = upNodes[k];
+                        if ((pos[u] < k0 || pos[u] > k1) &&
+                            !(isDummy(u) && isDummy(w))) {
+                            conflicts.add(pair(u, w));
+                        }
+                    }
+                }
+                k0 = k1;
+            }
+        }
+    }
+
+    // Brandes-Koepf: four alignments balanced into the final coordinates
+    private int[] assignX() {
+        int[][] xs = new int[4][];
+        int smallest = 0;
+        long smallestWidth = Long.MAX_VALUE;
+        for (int dir = 0; dir < 4; dir++) {
+            boolean up = dir < 2;
+            boolean rightToLeft = dir % 2 == 1;
+            int[][] order = new int[layers.length][];
+            for (int l = 0; l < layers.length; l++) {
+                int[] layer = layers[up ? l : layers.length - 1 - l];
+                if (rightToLeft) {
+                    layer = layer.clone();
+                    for (int a = 0, b = layer.length - 1; a < b; a++, b--) {
+                        int tmp = layer[a];
+                        layer[a] = layer[b];
+                        layer[b] = tmp;
+                    }
+                }
+                order[l] = layer;
+            }
+            int[] x = align(order, up ? upStart : downStart,
+                            up ? upNodes : downNodes, rightToLeft);
+            if (rightToLeft) {
+                for (int v = 0; v < count; v++) {
+                    x[v] = -x[v];
+                }
+            }
+            xs[dir] = x;
+            long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+            for (int v = 0; v < count; v++) {
+                min = Math.min(min, x[v] - width[v] / 2);
+                max = Math.max(max, x[v] + width[v] / 2);
+            }
+            if (max - min < smallestWidth) {
+                smallestWidth = max - min;
+                smallest = dir;
+            }
+        }
+        int targetMin = Integer.MAX_VALUE, targetMax = Integer.MIN_VALUE;
+        for (int v = 0; v < count; v++) {
+            targetMin = Math.min(targetMin, xs[smallest][v]);
+            targetMax = Math.max(targetMax, xs[smallest][v]);
+        }
+        for (int dir = 0; dir < 4; dir++) {
+            int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+            for (int v = 0; v < count; v++) {
+                min = Math.min(min, xs[dir][v]);
+                max = Math.max(max, xs[dir][v]);
+            }
+            int delta = dir % 2 == 0 ? targetMin - min : targetMax - max;
+            for (int v = 0; v < count; v++) {
+                xs[dir][v] += delta;
+            }
+        }
+        int[] result = new int[count];
+        int[] values = new int[4];
+        for (int v = 0; v < count; v++) {
+            for (int dir = 0; dir < 4; dir++) {
+                values[dir] = xs[dir][v];
+            }
+            Arrays.sort(values);
+            result[v] = (values[1] + values[2]) / 2;
+        }
+        return result;
+    }
+
+    // Vertical alignment to median neighbours of the previous layer of
+    // the given order, followed by compaction of the aligned blocks
+    private int[] align(int[][] order, int[] start, int[] peers,
+                        boolean rightToLeft) {
+        int[] at = new int[count];
+        for (int[] layer : order) {
+            for (int k = 0; k < layer.length; k++) {
+                at[layer[k]] = k;
+            }
+        }
+        int[] root = new int[count];
+        int[] align = new int[count];
+        for (int v = 0; v < count; v++) {
+            root[v] = v;
+            align[v] = v;
+        }
+        int[] medians = new int[2];
+        for (int l = 1; l < order.length; l++) {
+            int prev = -1;
+            for (int v : order[l]) {
+                int degree = start[v + 1] - start[v];
+                if (degree == 0) {
+                    continue;
+                }
+                int[] sorted = Arrays.copyOfRange(peers, start[v], start[v + 1]);
+                sortBy(sorted, at);
+                medians[0] = sorted[(degree - 1) / 2];
+                medians[1] = sorted[degree / 2];
+                for (int m = 0; m < 2; m++) {
+                    int w = medians[m];
+                    if (align[v] == v && prev < at[w] &&
+                        !conflicts.contains(pair(v, w))) {
+                        align[w] = v;
+                        root[v] = root[w];
+                        align[v] = root[v];
+                        prev = at[w];
+                    }
+                }
+            }
+        }
+        return compact(order, root, rightToLeft);
+    }
+
+    private static void sortBy(int[] items, final int[] key) {
+        // Degrees are small, insertion sort is enough
+        for (int i = 1; i < items.length; i++) {
+            int item = items[i];
+            int j = i - 1;
+            while (j >= 0 && key[items[j]] > key[item]) {
+                items[j + 1] = items[j];
+                j--;
+            }
+            items[j + 1] = item;
+        }
+    }
+
+    private int separation(int left, int right) {
+        return (width[left] + width[right]) / 2 + NODE_GAP;
+    }
+
+    // Places blocks as close as possible left to right, then pulls each
+    // block towards its right neighbours to close the gaps
+    private int[] compact(int[][] order, int[] root, boolean rightToLeft) {
+        int edges = 0;
+        for (int[] layer : order) {
+            edges += Math.max(layer.length - 1, 0);
+        }
+        int[] from = new int[edges], to = new int[edges], weight = new int[edges];
+        int e = 0;
+        for (int[] layer : order) {
+            for (int k = 1; k < layer.length; k++) {
+                from[e] = root[layer[k - 1]];
+                to[e] = root[layer[k]];
+                weight[e++] = rightToLeft ? separation(layer[k], layer[k - 1])
+                                          : separation(layer[k - 1], layer[k]);
+            }
+        }
+        int[] index = new int[edges];
+        for (int i = 0; i < edges; i++) {
+            index[i] = i;
+        }
+        int[] inStart = new int[count + 1];
+        int[] inEdges = group(to, index, inStart);
+        int[] outStart = new int[count + 1];
+        int[] outEdges = group(from, index, outStart);
+
+        // Topological order of the block graph
+        int[] degree = new int[count];
+        for (int i = 0; i < edges; i++) {
+            degree[to[i]]++;
+        }
+        int[] queue = new int[count];
+        int tail = 0;
+        for (int v = 0; v < count; v++) {
+            if (root[v] == v && degree[v] == 0) {
+                queue[tail++] = v;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int v = queue[head];
+            for (int k = outStart[v]; k < outStart[v + 1]; k++) {
+                if (--degree[to[outEdges[k]]] == 0) {
+                    queue[tail++] = to[outEdges[k]];
+                }
+            }
+        }
+
+        int[] x = new int[count];
+        for (int i = 0; i < tail; i++) {
+            int v = queue[i];
+            for (int k = inStart[v]; k < inStart[v + 1]; k++) {
+                int edge = inEdges[k];
+                x[v] = Math.max(x[v], x[from[edge]] + weight[edge]);
+            }
+        }
+        for (int i = tail - 1; i >= 0; i--) {
+            int v = queue[i];
+            int min = Integer.MAX_VALUE;
+            for (int k = outStart[v]; k < outStart[v + 1]; k++) {
+                int edge = outEdges[k];
+                min = Math.min(min, x[to[edge]] - weight[edge]);
+            }
+            if (min != Integer.MAX_VALUE && min > x[v]) {
+                x[v] = min;
+            }
+        }
+        int[] result = new int[count];
+        for (int v = 0; v < count; v++) {
+            result[v] = x[root[v]];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.SwingUtilities;
+import oss.jthinker.util.Mapping;
+
+/**
+ * Overlap resolver, that runs on a background thread. Node changes are
+ * reported on the event dispatch thread together with node's current
+ * bounds and are queued here. Requests, that were not processed yet,
+ * coalesce, so only the latest bounds of each node get resolved. The
+ * worker resolves overlaps against its own snapshot of node bounds and
+ * hands the resulting moves back to the event dispatch thread. A move
+ * is skipped when the node's bounds have changed meanwhile.
+ *
+ * @author iappel
+ * @param T type of node data
+ */
+public class LayoutWorker<T> {
+    private enum Kind { ADD, MOVE, RESIZE, REMOVE }
+
+    private static class Request {
+        final Kind kind;
+        final Rectangle bounds;
+
+        Request(Kind kind, Rectangle bounds) {
+            this.kind = kind;
+            this.bounds = bounds;
+        }
+    }
+
+    private static final ExecutorService executor =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread result = new Thread(r, "Layout worker");
+            result.setDaemon(true);
+            return result;
+        }
+    });
+
+    private static final Executor EVENT_DISPATCH = new Executor() {
+        public void execute(Runnable command) {
+            SwingUtilities.invokeLater(command);
+        }
+    };
+
+    private final NodeBundle<T> _data;
+    private final Executor _background, _foreground;
+
+    // Guarded by this
+    private LinkedHashMap<T, Request> _pending = new LinkedHashMap<T, Request>();
+    private Map<T, Rectangle> _rebuild;
+    private boolean _stale = true, _scheduled;
+
+    // Only accessed from the background executor
+    private final Map<T, Rectangle> _bounds = new HashMap<T, Rectangle>();
+    private Map<T, Rectangle[]> _moves;
+    private OverlapResolver<T> _resolver;
+
+    private final Mapping<T, Rectangle, Point> _snapshot =
+            new Mapping<T, Rectangle, Point>() {
+        /** {@inheritDoc} */
+        public Rectangle fetch(T node) {
+            return new Rectangle(_bounds.get(node));
+        }
+
+        /** {@inheritDoc} */
+        public Point convert(Rectangle value) {
+            return new Point(value.x + value.width / 2,
+                             value.y + value.height / 2);
+        }
+
+        /** {@inheritDoc} */
+        public void assign(T node, Rectangle value) {
+            Rectangle old = _bounds.put(node, new Rectangle(value));
+            Rectangle[] move = _moves.get(node);
+            if (move == null) {
+                _moves.put(node, new Rectangle[] {old, new Rectangle(value)});
+            } else {
+                move[1] = new Rectangle(value);
+            }
+        }
+
+        /** {@inheritDoc} */
+        public void inject(T node, Point value) {
+            Rectangle rect = fetch(node);
+            rect.setLocation(value.x - rect.width / 2, value.y - rect.height / 2);
+            assign(node, rect);
+        }
+    };
+
+    private final Runnable _drain = new Runnable() {
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Creates a new worker, that resolves overlaps on a shared background
+     * thread and moves nodes on the event dispatch thread.
+     *
+     * @param data bundle of nodes to service
+     */
+    public LayoutWorker(NodeBundle<T> data) {
+        this(data, executor, EVENT_DISPATCH);
+    }
+
+    /**
+     * Creates a new worker.
+     *
+     * @param data bundle of nodes to service
+     * @param background executor to resolve overlaps in
+     * @param foreground executor to move the nodes in, it should be the
+     * one, that reports node changes
+     */
+    public LayoutWorker(NodeBundle<T> data, Executor background,
+                        Executor foreground) {
+        _data = data;
+        _background = background;
+        _foreground = foreground;
+    }
+
+    /**
+     * Returns executor, that nodes are moved in.
+     *
+     * @return foreground executor
+     */
+    Executor getForeground() {
+        return _foreground;
+    }
+
+    /**
+     * Queues resolution of overlaps with a node, that was moved.
+     *
+     * @param node node that was moved
+     */
+    public void moved(T node) {
+        Rectangle bounds = _data.getMapping().fetch(node);
+        synchronized (this) {
+            captureSnapshot();
+            Request last = _pending.remove(node);
+            Kind kind = last != null && last.kind == Kind.ADD ? Kind.ADD : Kind.MOVE;
+            _pending.put(node, new Request(kind, bounds));
+            schedule();
+        }
+    }
+
+    /**
+     * Queues resolution of overlaps with a node, that was resized. Does
+     * nothing for nodes, that worker does not know of.
+     *
+     * @param node node that was resized
+     */
+    public void resized(T node) {
+        Rectangle bounds = _data.getMapping().fetch(node);
+        synchronized (this) {
+            if (_stale) {
+                return;
+            }
+            Request last = _pending.remove(node);
+            Kind kind = last == null ? Kind.RESIZE : last.kind;
+            _pending.put(node, new Request(kind, bounds));
+            schedule();
+        }
+    }
+
+    /**
+     * Notifies worker that a node was added.
+     *
+     * @param node node that was added
+     */
+    public void added(T node) {
+        Rectangle bounds = _data.getMapping().fetch(node);
+        synchronized (this) {
+            if (_stale) {
+                return;
+            }
+            _pending.remove(node);
+            _pending.put(node, new Request(Kind.ADD, bounds));
+            schedule();
+        }
+    }
+
+    /**
+     * Notifies worker that a node was removed.
+     *
+     * @param node node that was removed
+     */
+    public synchronized void removed(T node) {
+        if (_stale) {
+            return;
+        }
+        Request last = _pending.remove(node);
+        if (last == null || last.kind != Kind.ADD) {
+            _pending.put(node, new Request(Kind.REMOVE, null));
+            schedule();
+        }
+    }
+
+    /**
+     * Drops worker's snapshot, so that it is taken anew with the next
+     * move.
+     */
+    public synchronized void reset() {
+        _stale = true;
+        _rebuild = null;
+        _pending.clear();
+    }
+
+    private void captureSnapshot() {
+        if (!_stale) {
+            return;
+        }
+        Mapping<? super T, Rectangle, ?> mapping = _data.getMapping();
+        _rebuild = new HashMap<T, Rectangle>();
+        for (T node : _data.getAllNodes()) {
+            _rebuild.put(node, mapping.fetch(node));
+        }
+        _pending.clear();
+        _stale = false;
+    }
+
+    private void schedule() {
+        if (!_scheduled) {
+            _scheduled = true;
+            _background.execute(_drain);
+        }
+    }
+
+    private void drain() {
+        Map<T, Request> batch;
+        Map<T, Rectangle> rebuild;
+        synchronized (this) {
+            batch = _pending;
+            rebuild = _rebuild;
+            _pending = new LinkedHashMap<T, Request>();
+            _rebuild = null;
+            _scheduled = false;
+        }
+        _moves = new LinkedHashMap<T, Rectangle[]>();
+        boolean initial = false;
+        if (rebuild != null) {
+            _bounds.clear();
+            _bounds.putAll(rebuild);
+            _resolver = new OverlapResolver<T>(rebuild.keySet(), _snapshot);
+            initial = true;
+        }
+        if (_resolver == null) {
+            return;
+        }
+        for (Map.Entry<T, Request> entry : batch.entrySet()) {
+            T node = entry.getKey();
+            Request request = entry.getValue();
+            if (request.kind == Kind.REMOVE) {
+                _bounds.remove(node);
+                _moves.remove(node);
+                _resolver.removed(node);
+                continue;
+            }
+            if (request.kind == Kind.RESIZE && !_bounds.containsKey(node)) {
+                continue;
+            }
+            _bounds.put(node, request.bounds);
+            _moves.remove(node);
+            if (initial) {
+                // First resolution also fixes overlaps nodes had before
+                _resolver.fix(node);
+                _resolver.resolve();
+                initial = false;
+            } else if (request.kind == Kind.ADD) {
+                _resolver.added(node);
+            } else {
+                _resolver.moved(node);
+            }
+        }
+        if (!_moves.isEmpty()) {
+            final Map<T, Rectangle[]> moves = _moves;
+            _foreground.execute(new Runnable() {
+                public void run() {
+                    apply(moves);
+                }
+            });
+        }
+        _moves = null;
+    }
+
+    private void apply(Map<T, Rectangle[]> moves) {
+        Mapping<? super T, Rectangle, ?> mapping = _data.getMapping();
+        for (Map.Entry<T, Rectangle[]> entry : moves.entrySet()) {
+            T node = entry.getKey();
+            Rectangle[] move = entry.getValue();
+            if (mapping.fetch(node).equals(move[0])) {
+                mapping.assign(node, move[1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,651 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import oss.jthinker.datamodel.BorderType;
+import oss.jthinker.datamodel.DiagramDataSource;
+import oss.jthinker.datamodel.JEdgeData;
+import oss.jthinker.datamodel.JNodeData;
+import oss.jthinker.util.Mapping;
+import oss.jthinker.util.Pair;
+
+/**
+ * Widget-free graph model that keeps nodes and edges in primitive arrays.
+ * Nodes and edges are identified by their integer indexes, which stay
+ * stable over removals. Node texts are kept in a shared string pool,
+ * so a store of a hundred thousand nodes is a handful of arrays and
+ * layout, overlap resolution and the interactor may run over it without
+ * creating any Swing components. Views are expected to create widgets
+ * only for the nodes returned by {@link #nodesIn(Rectangle)}.
+ *
+ * @author iappel
+ */
+public class NodeStore extends AbstractGraphModel<Integer, Integer> {
+    private static final int NONE = -1;
+    private static final BorderType[] BORDERS = BorderType.values();
+
+    // Node attributes
+    private int[] _x, _y, _width, _height;
+    private byte[] _border;
+    private int[] _color;
+    private int[] _content, _comment, _group;
+    private final BitSet _editable = new BitSet();
+    private final BitSet _removedNodes = new BitSet();
+    private int _nodes, _nodeCount;
+
+    // Edges with intrusive per-node incoming and outgoing lists
+    private int[] _edgeA, _edgeZ, _nextOut, _nextIn;
+    private int[] _firstOut, _firstIn;
+    private final BitSet _conflict = new BitSet();
+    private final BitSet _removedEdges = new BitSet();
+    private int _edges, _edgeCount;
+
+    // String pool
+    private String[] _strings = new String[16];
+    private final Map<String, Integer> _stringIndex = new HashMap<String, Integer>();
+    private int _stringCount;
+
+    private final Mapping<Integer, Rectangle, Point> _mapping =
+            new Mapping<Integer, Rectangle, Point>() {
+        /** {@inheritDoc} */
+        public Rectangle fetch(Integer node) {
+            return getBounds(node);
+        }
+
+        /** {@inheritDoc} */
+        public Point convert(Rectangle value) {
+            return new Point(value.x + value.width / 2,
+                             value.y + value.height / 2);
+        }
+
+        /** {@inheritDoc} */
+        public void assign(Integer node, Rectangle value) {
+            setBounds(node, value.x, value.y, value.width, value.height);
+        }
+
+        /** {@inheritDoc} */
+        public void inject(Integer node, Point value) {
+            setCenter(node, value);
+        }
+    };
+
+    /**
+     * Creates a new empty store.
+     */
+    public NodeStore() {
+        this(16, 16);
+    }
+
+    /**
+     * Creates a new empty store with preallocated capacity.
+     *
+     * @param nodes expected number of nodes
+     * @param edges expected number of edges
+     */
+    public NodeStore(int nodes, int edges) {
+        nodes = Math.max(nodes, 1);
+        edges = Math.max(edges, 1);
+        _x = new int[nodes];
+        _y = new int[nodes];
+        _width = new int[nodes];
+        _height = new int[nodes];
+        _border = new byte[nodes];
+        _color = new int[nodes];
+        _content = new int[nodes];
+        _comment = new int[nodes];
+        _group = new int[nodes];
+        _firstOut = new int[nodes];
+        _firstIn = new int[nodes];
+        _edgeA = new int[edges];
+        _edgeZ = new int[edges];
+        _nextOut = new int[edges];
+        _nextIn = new int[edges];
+        intern("");
+    }
+
+    /**
+     * Creates a store with all nodes and edges of the given diagram.
+     * Node indexes and edge indexes of the store match the positions
+     * in the source lists. Node sizes are not part of the diagram data,
+     * so every node gets the given default size.
+     *
+     * @param source diagram to copy
+     * @param size size given to every node
+     * @return new store with diagram's content
+     */
+    public static NodeStore create(DiagramDataSource source, Dimension size) {
+        List<JNodeData> nodes = source.getNodeData();
+        List<JEdgeData> edges = source.getEdgeData();
+        NodeStore result = new NodeStore(nodes.size(), edges.size());
+        for (JNodeData data : nodes) {
+            result.addNode(data, size);
+        }
+        for (JEdgeData data : edges) {
+            result.addEdge(data.idxA, data.idxZ, data.conflict);
+        }
+        return result;
+    }
+
+    private int intern(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        Integer index = _stringIndex.get(value);
+        if (index != null) {
+            return index;
+        }
+        if (_stringCount == _strings.length) {
+            _strings = Arrays.copyOf(_strings, _stringCount * 2);
+        }
+        _strings[_stringCount] = value;
+        _stringIndex.put(value, _stringCount);
+        return _stringCount++;
+    }
+
+    private String string(int index) {
+        return index == NONE ? null : _strings[index];
+    }
+
+    private void growNodes() {
+        int size = _x.length * 2;
+        _x = Arrays.copyOf(_x, size);
+        _y = Arrays.copyOf(_y, size);
+        _width = Arrays.copyOf(_width, size);
+        _height = Arrays.copyOf(_height, size);
+        _border = Arrays.copyOf(_border, size);
+        _color = Arrays.copyOf(_color, size);
+        _content = Arrays.copyOf(_content, size);
+        _comment = Arrays.copyOf(_comment, size);
+        _group = Arrays.copyOf(_group, size);
+        _firstOut = Arrays.copyOf(_firstOut, size);
+        _firstIn = Arrays.copyOf(_firstIn, size);
+    }
+
+    private void growEdges() {
+        int size = _edgeA.length * 2;
+        _edgeA = Arrays.copyOf(_edgeA, size);
+        _edgeZ = Arrays.copyOf(_edgeZ, size);
+        _nextOut = Arrays.copyOf(_nextOut, size);
+        _nextIn = Arrays.copyOf(_nextIn, size);
+    }
+
+    /**
+     * Adds a new node to the store.
+     *
+     * @param bounds location and size of the node
+     * @param border type of node's border
+     * @param color background color of the node
+     * @param content node's text
+     * @return index of the new node
+     */
+    public int addNode(Rectangle bounds, BorderType border, Color color,
+                       String content) {
+        if (_nodes == _x.length) {
+            growNodes();
+        }
+        int node = _nodes++;
+        _x[node] = bounds.x;
+        _y[node] = bounds.y;
+        _width[node] = bounds.width;
+        _height[node] = bounds.height;
+        _border[node] = (byte)border.ordinal();
+        _color[node] = color.getRGB();
+        _content[node] = intern(content);
+        _comment[node] = 0;
+        _group[node] = NONE;
+        _firstOut[node] = NONE;
+        _firstIn[node] = NONE;
+        _editable.set(node);
+        _nodeCount++;
+        return node;
+    }
+
+    /**
+     * Adds a new node, that is described by given node data.
+     *
+     * @param data node's data
+     * @param size size of the node
+     * @return index of the new node
+     */
+    public int addNode(JNodeData data, Dimension size) {
+        Point center = data.getSlideCenter();
+        Rectangle bounds = new Rectangle(center.x - size.width / 2,
+                center.y - size.height / 2, size.width, size.height);
+        int node = addNode(bounds, data.getBorderType(),
+                data.getBackground(), data.getContent());
+        _comment[node] = intern(data.getComment());
+        _group[node] = intern(data.getGroup());
+        _editable.set(node, data.isEditable());
+        return node;
+    }
+
+    /**
+     * Removes a node together with all edges attached to it.
+     *
+     * @param node index of the node to remove
+     */
+    public void removeNode(int node) {
+        checkNode(node);
+        while (_firstOut[node] != NONE) {
+            removeEdge(_firstOut[node]);
+        }
+        while (_firstIn[node] != NONE) {
+            removeEdge(_firstIn[node]);
+        }
+        _removedNodes.set(node);
+        _nodeCount--;
+    }
+
+    /**
+     * Adds a new edge to the store.
+     *
+     * @param nodeA index of the source node
+     * @param nodeZ index of the target node
+     * @param conflict is edge a conflict one
+     * @return index of the new edge
+     */
+    public int addEdge(int nodeA, int nodeZ, boolean conflict) {
+        checkNode(nodeA);
+        checkNode(nodeZ);
+        if (_edges == _edgeA.length) {
+            growEdges();
+        }
+        int edge = _edges++;
+        _edgeA[edge] = nodeA;
+        _edgeZ[edge] = nodeZ;
+        _nextOut[edge] = _firstOut[nodeA];
+        _firstOut[nodeA] = edge;
+        _nextIn[edge] = _firstIn[nodeZ];
+        _firstIn[nodeZ] = edge;
+        _conflict.set(edge, conflict);
+        _edgeCount++;
+        return edge;
+    }
+
+    /**
+     * Removes an edge from the store.
+     *
+     * @param edge index of the edge to remove
+     */
+    public void removeEdge(int edge) {
+        checkEdge(edge);
+        int nodeA = _edgeA[edge];
+        int nodeZ = _edgeZ[edge];
+        if (_firstOut[nodeA] == edge) {
+            _firstOut[nodeA] = _nextOut[edge];
+        } else {
+            int e = _firstOut[nodeA];
+            while (_nextOut[e] != edge) {
+                e = _nextOut[e];
+            }
+            _nextOut[e] = _nextOut[edge];
+        }
+        if (_firstIn[nodeZ] == edge) {
+            _firstIn[nodeZ] = _nextIn[edge];
+        } else {
+            int e = _firstIn[nodeZ];
+            while (_nextIn[e] != edge) {
+                e = _nextIn[e];
+            }
+            _nextIn[e] = _nextIn[edge];
+        }
+        _removedEdges.set(edge);
+        _edgeCount--;
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= _nodes || _removedNodes.get(node)) {
+            throw new IllegalArgumentException("No node " + node);
+        }
+    }
+
+    private void checkEdge(int edge) {
+        if (edge < 0 || edge >= _edges || _removedEdges.get(edge)) {
+            throw new IllegalArgumentException("No edge " + edge);
+        }
+    }
+
+    /**
+     * Returns location and size of the node.
+     *
+     * @param node index of the node
+     * @return node's bounds
+     */
+    public Rectangle getBounds(int node) {
+        return new Rectangle(_x[node], _y[node], _width[node], _height[node]);
+    }
+
+    /**
+     * Sets location and size of the node.
+     *
+     * @param node index of the node
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width node's width
+     * @param height node's height
+     */
+    public void setBounds(int node, int x, int y, int width, int height) {
+        _x[node] = x;
+        _y[node] = y;
+        _width[node] = width;
+        _height[node] = height;
+    }
+
+    /**
+     * Returns center point of the node.
+     *
+     * @param node index of the node
+     * @return node's center
+     */
+    public Point getCenter(int node) {
+        return new Point(_x[node] + _width[node] / 2,
+                         _y[node] + _height[node] / 2);
+    }
+
+    /**
+     * Moves node so that its center is in the given point.
+     *
+     * @param node index of the node
+     * @param center new center of the node
+     */
+    public void setCenter(int node, Point center) {
+        _x[node] = center.x - _width[node] / 2;
+        _y[node] = center.y - _height[node] / 2;
+    }
+
+    /**
+     * Returns type of node's border.
+     *
+     * @param node index of the node
+     * @return node's border type
+     */
+    public BorderType getBorderType(int node) {
+        return BORDERS[_border[node]];
+    }
+
+    /**
+     * Returns background color of the node.
+     *
+     * @param node index of the node
+     * @return node's color
+     */
+    public Color getColor(int node) {
+        return new Color(_color[node], true);
+    }
+
+    /**
+     * Sets background color of the node.
+     *
+     * @param node index of the node
+     * @param color new color
+     */
+    public void setColor(int node, Color color) {
+        _color[node] = color.getRGB();
+    }
+
+    /**
+     * Returns text of the node.
+     *
+     * @param node index of the node
+     * @return node's text
+     */
+    public String getContent(int node) {
+        return string(_content[node]);
+    }
+
+    /**
+     * Sets text of the node.
+     *
+     * @param node index of the node
+     * @param content new text
+     */
+    public void setContent(int node, String content) {
+        _content[node] = intern(content);
+    }
+
+    /**
+     * Returns a data object describing the node, for example to create
+     * a widget for it when it becomes visible.
+     *
+     * @param node index of the node
+     * @return node's data
+     */
+    public JNodeData getNodeData(int node) {
+        checkNode(node);
+        return new JNodeData(getBorderType(node), _editable.get(node),
+                getContent(node), getCenter(node), getColor(node),
+                string(_comment[node]), string(_group[node]));
+    }
+
+    /**
+     * Is the edge a conflict one.
+     *
+     * @param edge index of the edge
+     * @return true if edge is a conflict
+     */
+    public boolean isConflict(int edge) {
+        return _conflict.get(edge);
+    }
+
+    /**
+     * Returns all nodes, that intersect the given area. Used by views
+     * to find out which nodes need widgets.
+     *
+     * @param area area to check
+     * @return list of indexes of the intersecting nodes
+     */
+    public List<Integer> nodesIn(Rectangle area) {
+        List<Integer> result = new ArrayList<Integer>();
+        int left = area.x, top = area.y;
+        int right = area.x + area.width, bottom = area.y + area.height;
+        for (int i = 0; i < _nodes; i++) {
+            if (_x[i] < right && _y[i] < bottom &&
+                _x[i] + _width[i] > left && _y[i] + _height[i] > top &&
+                !_removedNodes.get(i)) {
+                result.add(i);
+            }
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    public Collection<Integer> getAllNodes() {
+        return new Indexes(_nodes, _nodeCount, _removedNodes);
+    }
+
+    /** {@inheritDoc} */
+    public int nodeCount() {
+        return _nodeCount;
+    }
+
+    /** {@inheritDoc} */
+    public Mapping<Integer, Rectangle, Point> getMapping() {
+        return _mapping;
+    }
+
+    /** {@inheritDoc} */
+    public Dimension getAreaSize() {
+        int width = 0, height = 0;
+        for (int i = 0; i < _nodes; i++) {
+            if (!_removedNodes.get(i)) {
+                width = Math.max(width, _x[i] + _width[i]);
+                height = Math.max(height, _y[i] + _height[i]);
+            }
+        }
+        return new Dimension(width, height);
+    }
+
+    /** {@inheritDoc} */
+    public Collection<Integer> getIncomeNodes(Integer target) {
+        checkNode(target);
+        List<Integer> result = new ArrayList<Integer>();
+        for (int e = _firstIn[target]; e != NONE; e = _nextIn[e]) {
+            result.add(_edgeA[e]);
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    public Collection<Integer> getOutcomeNodes(Integer source) {
+        checkNode(source);
+        List<Integer> result = new ArrayList<Integer>();
+        for (int e = _firstOut[source]; e != NONE; e = _nextOut[e]) {
+            result.add(_edgeZ[e]);
+        }
+        return result;
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public synchronized List<Integer> getAllSources() {
+        List<Integer> result = new ArrayList<Integer>();
+        for (int i = 0; i < _nodes; i++) {
+            if (_firstIn[i] == NONE && !_removedNodes.get(i)) {
+                result.add(i);
+            }
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    public Collection<Integer> getAllEdges() {
+        return new Indexes(_edges, _edgeCount, _removedEdges);
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public int edgeCount() {
+        return _edgeCount;
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public boolean isNodeModelled(Integer node) {
+        return node != null && node >= 0 && node < _nodes &&
+               !_removedNodes.get(node);
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public boolean isEdgeModelled(Integer edge) {
+        return edge != null && edge >= 0 && edge < _edges &&
+               !_removedEdges.get(edge);
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public Integer connection(Integer node1, Integer node2) {
+        checkNode(node1);
+        for (int e = _firstOut[node1]; e != NONE; e = _nextOut[e]) {
+            if (_edgeZ[e] == node2) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    public Pair<Integer, Integer> endpoints(Integer edge) {
+        checkEdge(edge);
+        return new Pair<Integer, Integer>(_edgeA[edge], _edgeZ[edge]);
+    }
+
+    // Read-only view of indexes in [0, limit) that are not marked removed.
+    private static class Indexes extends AbstractCollection<Integer> {
+        private final int limit, size;
+        private final BitSet removed;
+
+        Indexes(int limit, int size, BitSet removed) {
+            this.limit = limit;
+            this.size = size;
+            this.removed = removed;
+        }
+
+        @Override
+        /** {@inheritDoc} */
+        public Iterator<Integer> iterator() {
+            return new Iterator<Integer>() {
+                private int next = removed.nextClearBit(0);
+
+                /** {@inheritDoc} */
+                public boolean hasNext() {
+                    return next < limit;
+                }
+
+                /** {@inheritDoc} */
+                public Integer next() {
+                    if (next >= limit) {
+                        throw new NoSuchElementException();
+                    }
+                    int result = next;
+                    next = removed.nextClearBit(next + 1);
+                    return result;
+                }
+
+                /** {@inheritDoc} */
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        /** {@inheritDoc} */
+        public int size() {
+            return size;
+        }
+
+        @Override
+        /** {@inheritDoc} */
+        public boolean contains(Object o) {
+            if (!(o instanceof Integer)) {
+                return false;
+            }
+            int index = (Integer)o;
+            return index >= 0 && index < limit && !removed.get(index);
+        }
+    }
+}
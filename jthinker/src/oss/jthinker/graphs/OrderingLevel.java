@@ -44,5 +44,16 @@ public enum OrderingLevel {
     /**
      * Node overlapping should be suppressed.
      */
-    SUPPRESS_OVERLAP
+    SUPPRESS_OVERLAP,
+    /**
+     * Nodes are arranged in layers once, with effects above their
+     * causes. Later moves are handled as with overlap suppression.
+     */
+    LAYERED,
+    /**
+     * Nodes are arranged by a force-directed layout once, later additions
+     * of nodes and links relax their neighbourhood. Moves are handled as
+     * with overlap suppression.
+     */
+    FORCE_DIRECTED
 }
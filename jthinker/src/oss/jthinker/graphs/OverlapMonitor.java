@@ -34,19 +34,271 @@ package oss.jthinker.graphs;
 import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.util.LinkedList;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import oss.jthinker.swingutils.GeometryUtils;
 
 /**
- * Overlaps monitoring container.
+ * Overlaps monitoring container. Rectangles are indexed by a uniform
+ * grid, so checking a rectangle against the container only looks at
+ * the rectangles in the grid cells it covers. Rectangles covering too
+ * many cells are kept aside in a plain list.
  * 
  * @author iappel
  */
-public class OverlapMonitor extends LinkedList<Rectangle> {
+public class OverlapMonitor extends AbstractCollection<Rectangle> {
+    private static final int DEFAULT_CELL_SIZE = 128;
+    private static final int MAX_CELLS = 64;
+
+    private final int cellSize;
+    private final Map<Long, List<Rectangle>> cells =
+            new HashMap<Long, List<Rectangle>>();
+    private final List<Rectangle> large = new ArrayList<Rectangle>();
+    private final Set<Rectangle> all =
+            Collections.newSetFromMap(new IdentityHashMap<Rectangle, Boolean>());
+
     /**
      * Creates a new instance of OverlapMonitor.
      */
     public OverlapMonitor() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Creates a new instance of OverlapMonitor with the given grid
+     * cell size. Cell size should be about the size of the usual
+     * rectangle.
+     *
+     * @param cellSize size of the grid cell
+     */
+    public OverlapMonitor(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    private int cell(int coordinate) {
+        return Math.floorDiv(coordinate, cellSize);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long)cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    // Cells range covered by the rectangle: {x0, y0, x1, y1}, inclusive.
+    private int[] range(Rectangle rect) {
+        int width = Math.max(rect.width, 1);
+        int height = Math.max(rect.height, 1);
+        return new int[] {cell(rect.x), cell(rect.y),
+                          cell(rect.x + width - 1), cell(rect.y + height - 1)};
+    }
+
+    private static boolean isLarge(int[] range) {
+        long count = (long)(range[2] - range[0] + 1) * (range[3] - range[1] + 1);
+        return count > MAX_CELLS;
+    }
+
+    /**
+     * Adds a copy of the rectangle to the container.
+     *
+     * @param rect rectangle to add
+     * @return true
+     */
+    @Override
+    public boolean add(Rectangle rect) {
+        store(rect);
+        return true;
+    }
+
+    /**
+     * Adds a copy of the rectangle to the container and returns the
+     * copy. Stored copy may later be removed with {@link #unstore}, it
+     * must not be modified.
+     *
+     * @param rect rectangle to add
+     * @return stored copy of the rectangle
+     */
+    protected synchronized Rectangle store(Rectangle rect) {
+        Rectangle copy = new Rectangle(rect);
+        all.add(copy);
+        int[] range = range(copy);
+        if (isLarge(range)) {
+            large.add(copy);
+            return copy;
+        }
+        for (int cx = range[0]; cx <= range[2]; cx++) {
+            for (int cy = range[1]; cy <= range[3]; cy++) {
+                Long key = key(cx, cy);
+                List<Rectangle> list = cells.get(key);
+                if (list == null) {
+                    list = new ArrayList<Rectangle>(4);
+                    cells.put(key, list);
+                }
+                list.add(copy);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Removes a rectangle, that was returned by {@link #store}.
+     *
+     * @param stored stored rectangle to remove
+     */
+    protected synchronized void unstore(Rectangle stored) {
+        if (all.remove(stored)) {
+            unindex(stored);
+        }
+    }
+
+    /**
+     * Removes a rectangle equal to the given one from the container.
+     *
+     * @param o rectangle to remove
+     * @return true if such rectangle was contained
+     */
+    @Override
+    public synchronized boolean remove(Object o) {
+        if (!(o instanceof Rectangle)) {
+            return false;
+        }
+        int[] range = range((Rectangle)o);
+        List<Rectangle> list = isLarge(range) ? large
+                : cells.get(key(range[0], range[1]));
+        if (list == null) {
+            return false;
+        }
+        for (Rectangle stored : list) {
+            if (stored.equals(o)) {
+                all.remove(stored);
+                unindex(stored);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Drops a stored rectangle, matched by identity, from the grid.
+    private void unindex(Rectangle stored) {
+        int[] range = range(stored);
+        if (isLarge(range)) {
+            removeSame(large, stored);
+            return;
+        }
+        for (int cx = range[0]; cx <= range[2]; cx++) {
+            for (int cy = range[1]; cy <= range[3]; cy++) {
+                Long key = key(cx, cy);
+                List<Rectangle> list = cells.get(key);
+                removeSame(list, stored);
+                if (list.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    private static void removeSame(List<Rectangle> list, Rectangle item) {
+        Iterator<Rectangle> iter = list.iterator();
+        while (iter.hasNext()) {
+            if (iter.next() == item) {
+                iter.remove();
+                return;
+            }
+        }
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public synchronized void clear() {
+        cells.clear();
+        large.clear();
+        all.clear();
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public synchronized int size() {
+        return all.size();
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public Iterator<Rectangle> iterator() {
+        final Iterator<Rectangle> iter = all.iterator();
+        return new Iterator<Rectangle>() {
+            private Rectangle last;
+
+            /** {@inheritDoc} */
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            /** {@inheritDoc} */
+            public Rectangle next() {
+                last = iter.next();
+                return last;
+            }
+
+            /** {@inheritDoc} */
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                synchronized (OverlapMonitor.this) {
+                    iter.remove();
+                    unindex(last);
+                }
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * Returns all contained rectangles that intersect the given one.
+     * Returned rectangles are the stored ones and must not be modified.
+     *
+     * @param rect rectangle to check
+     * @return list of the intersecting rectangles
+     */
+    public synchronized List<Rectangle> intersecting(Rectangle rect) {
+        Set<Rectangle> result =
+                Collections.newSetFromMap(new IdentityHashMap<Rectangle, Boolean>());
+        for (Rectangle r : large) {
+            if (r.intersects(rect)) {
+                result.add(r);
+            }
+        }
+        int[] range = range(rect);
+        if (isLarge(range)) {
+            for (Rectangle r : all) {
+                if (r.intersects(rect)) {
+                    result.add(r);
+                }
+            }
+        } else {
+            for (int cx = range[0]; cx <= range[2]; cx++) {
+                for (int cy = range[1]; cy <= range[3]; cy++) {
+                    List<Rectangle> list = cells.get(key(cx, cy));
+                    if (list == null) {
+                        continue;
+                    }
+                    for (Rectangle r : list) {
+                        if (r.intersects(rect)) {
+                            result.add(r);
+                        }
+                    }
+                }
+            }
+        }
+        return new ArrayList<Rectangle>(result);
     }
 
     /**
@@ -57,11 +309,36 @@ public class OverlapMonitor extends LinkedList<Rectangle> {
      * and false otherwise
      */
     public synchronized boolean overlapsSomething(Rectangle rect) {
-        for (Rectangle r : this) {
+        for (Rectangle r : large) {
             if (r.intersects(rect)) {
                 return true;
             }
         }
+        if (rect.width <= 0 || rect.height <= 0) {
+            return false;
+        }
+        int[] range = range(rect);
+        if (isLarge(range)) {
+            for (Rectangle r : all) {
+                if (r.intersects(rect)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (int cx = range[0]; cx <= range[2]; cx++) {
+            for (int cy = range[1]; cy <= range[3]; cy++) {
+                List<Rectangle> list = cells.get(key(cx, cy));
+                if (list == null) {
+                    continue;
+                }
+                for (Rectangle r : list) {
+                    if (r.intersects(rect)) {
+                        return true;
+                    }
+                }
+            }
+        }
         return false;
     }
 
@@ -34,14 +34,22 @@ package oss.jthinker.graphs;
 import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import oss.jthinker.util.Mapping;
 
 /**
- * Implementation of overlap-prevention algorithm.
+ * Implementation of overlap-prevention algorithm. Resolver may be used
+ * once, by fixing some nodes and resolving the rest, or kept alive and
+ * notified of node additions, removals and moves, in which case each
+ * move only resolves the overlaps with the moved node.
  * 
  * @author iappel
  * @param T node data type
@@ -49,6 +57,8 @@ import oss.jthinker.util.Mapping;
 public class OverlapResolver<T> extends OverlapMonitor {
     private final Mapping<? super T, Rectangle, ?> mapper;
     private final Set<T> rest;
+    private final Map<T, Rectangle> placed = new HashMap<T, Rectangle>();
+    private final Map<Rectangle, T> owners = new IdentityHashMap<Rectangle, T>();
 
     /**
      * Creates a new instance of OverlapResolver.
@@ -70,7 +80,7 @@ public class OverlapResolver<T> extends OverlapMonitor {
      */
     public void fix(T data) {
         rest.remove(data);
-        add(mapper.fetch(data));
+        place(data, mapper.fetch(data));
     }
 
     /**
@@ -78,7 +88,7 @@ public class OverlapResolver<T> extends OverlapMonitor {
      */
     public void fixEverything() {
         for (T item : rest) {
-            add(mapper.fetch(item));
+            place(item, mapper.fetch(item));
         }
         rest.clear();
     }
@@ -92,9 +102,74 @@ public class OverlapResolver<T> extends OverlapMonitor {
             if (overlapsSomething(rect)) {
                 resolvePosition(item);
             } else {
-                add(rect);
+                place(item, rect);
             }
         }
+        rest.clear();
+    }
+
+    private void place(T item, Rectangle rect) {
+        Rectangle stored = store(rect);
+        placed.put(item, stored);
+        owners.put(stored, item);
+    }
+
+    /**
+     * Adds a new node, that is fixed at its current place.
+     *
+     * @param item node to add
+     */
+    public synchronized void added(T item) {
+        removed(item);
+        place(item, mapper.fetch(item));
+    }
+
+    /**
+     * Forgets about a node.
+     *
+     * @param item node to remove
+     */
+    public synchronized void removed(T item) {
+        rest.remove(item);
+        Rectangle stored = placed.remove(item);
+        if (stored != null) {
+            owners.remove(stored);
+            unstore(stored);
+        }
+    }
+
+    /**
+     * Same as {@link #moved}, but only for nodes that resolver already
+     * knows about.
+     *
+     * @param item node that was moved or resized
+     */
+    public synchronized void changed(T item) {
+        if (placed.containsKey(item)) {
+            moved(item);
+        }
+    }
+
+    /**
+     * Takes node's new bounds and moves away the nodes it overlaps now.
+     * Moved node itself stays in place.
+     *
+     * @param item node that was moved or resized
+     */
+    public synchronized void moved(T item) {
+        removed(item);
+        Rectangle rect = mapper.fetch(item);
+        List<T> peers = new ArrayList<T>();
+        for (Rectangle other : intersecting(rect)) {
+            T peer = owners.remove(other);
+            placed.remove(peer);
+            unstore(other);
+            peers.add(peer);
+        }
+        place(item, rect);
+        for (T peer : peers) {
+            resolvePosition(peer);
+        }
     }
 
     private static final int SHIFT_STEP = 5;
@@ -128,7 +203,7 @@ public class OverlapResolver<T> extends OverlapMonitor {
                     result.y = start.y + SHIFT_STEP*y;
                     if (!overlapsSomething(result)) {
                         mapper.assign(item, result);
-                        add(result);
+                        place(item, result);
                         return;
                     }
                 }
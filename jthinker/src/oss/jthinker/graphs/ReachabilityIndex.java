@@ -0,0 +1,488 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reachability index of a directed graph. Strongly connected components
+ * are condensed, then for every component a bitset of the nodes it
+ * reaches and a bitset of the nodes that reach it are computed. Bitsets
+ * are computed level by level of the condensed graph, components of one
+ * level are processed in parallel on the common fork/join pool.
+ * <p>
+ * Index is built on first query. Edge additions, that don't close a
+ * cycle, and edge removals outside of a cycle update the bitsets of
+ * the affected components only; other changes make the index rebuild
+ * on next query. Queries take O(1) for {@link #reaches} and O(V/64)
+ * plus the size of the result for the sets.
+ *
+ * @author iappel
+ * @param T type of node data
+ */
+public class ReachabilityIndex<T> {
+    private static final int CHUNK = 64;
+
+    private final NodeBundle<T> data;
+    private boolean dirty = true;
+    // Topological positions of components are invalidated by additions
+    private boolean ordered;
+
+    private List<T> nodes;
+    private Map<T, Integer> index;
+    private int[] comp;
+    // Component ids are in reverse topological order, sinks first
+    private List<BitSet> members, reach, reachedBy;
+    private List<boolean[]> cyclic;
+
+    /**
+     * Creates a new index over the given bundle.
+     *
+     * @param data bundle of nodes to index
+     */
+    public ReachabilityIndex(NodeBundle<T> data) {
+        this.data = data;
+    }
+
+    /**
+     * Checks whether there is a path from one node to another. Node
+     * reaches itself only when it lies on a cycle.
+     *
+     * @param source start of the path
+     * @param target end of the path
+     * @return true if target is reachable from source
+     */
+    public synchronized boolean reaches(T source, T target) {
+        build();
+        Integer a = index.get(source), b = index.get(target);
+        return a != null && b != null && reach.get(comp[a]).get(b);
+    }
+
+    /**
+     * Returns all nodes reachable from the given node.
+     *
+     * @param node node to start from
+     * @return set of reachable nodes
+     */
+    public synchronized Set<T> descendants(T node) {
+        build();
+        Integer i = index.get(node);
+        return i == null ? new HashSet<T>() : toSet(reach.get(comp[i]));
+    }
+
+    /**
+     * Returns all nodes, from which the given node is reachable.
+     *
+     * @param node node to end in
+     * @return set of nodes, that reach the given one
+     */
+    public synchronized Set<T> ancestors(T node) {
+        build();
+        Integer i = index.get(node);
+        return i == null ? new HashSet<T>() : toSet(reachedBy.get(comp[i]));
+    }
+
+    /**
+     * Notifies index that a node was added to the bundle.
+     *
+     * @param node node that was added
+     */
+    public synchronized void nodeAdded(T node) {
+        if (dirty || index.containsKey(node)) {
+            return;
+        }
+        int i = nodes.size();
+        nodes.add(node);
+        index.put(node, i);
+        if (comp.length == i) {
+            comp = Arrays.copyOf(comp, 2 * i + 1);
+        }
+        comp[i] = members.size();
+        BitSet member = new BitSet();
+        member.set(i);
+        members.add(member);
+        reach.add(new BitSet());
+        reachedBy.add(new BitSet());
+        cyclic.add(new boolean[1]);
+    }
+
+    /**
+     * Notifies index that a node was removed from the bundle.
+     *
+     * @param node node that was removed
+     */
+    public synchronized void nodeRemoved(T node) {
+        dirty = true;
+    }
+
+    /**
+     * Notifies index that an edge was added to the bundle.
+     *
+     * @param source start of the edge
+     * @param target end of the edge
+     */
+    public synchronized void edgeAdded(T source, T target) {
+        if (dirty) {
+            return;
+        }
+        Integer a = index.get(source), b = index.get(target);
+        if (a == null || b == null) {
+            dirty = true;
+            return;
+        }
+        int ca = comp[a], cb = comp[b];
+        if (ca == cb || reach.get(cb).get(a)) {
+            // Edge closes a cycle, components merge
+            dirty = true;
+            return;
+        }
+        if (reach.get(ca).get(b)) {
+            return;
+        }
+        if (ca < cb) {
+            ordered = false;
+        }
+        BitSet down = (BitSet)reach.get(cb).clone();
+        down.or(members.get(cb));
+        BitSet up = (BitSet)reachedBy.get(ca).clone();
+        up.or(members.get(ca));
+        for (int c : components(up)) {
+            reach.get(c).or(down);
+        }
+        for (int c : components(down)) {
+            reachedBy.get(c).or(up);
+        }
+    }
+
+    /**
+     * Notifies index that an edge was removed from the bundle.
+     *
+     * @param source start of the edge
+     * @param target end of the edge
+     */
+    public synchronized void edgeRemoved(T source, T target) {
+        if (dirty) {
+            return;
+        }
+        Integer a = index.get(source), b = index.get(target);
+        if (a == null || b == null || comp[a] == comp[b] || !ordered) {
+            dirty = true;
+            return;
+        }
+        int ca = comp[a], cb = comp[b];
+        BitSet up = (BitSet)reachedBy.get(ca).clone();
+        up.or(members.get(ca));
+        BitSet down = (BitSet)reach.get(cb).clone();
+        down.or(members.get(cb));
+
+        // Sinks first, so successors are recomputed before predecessors
+        for (int c : components(up)) {
+            reach.set(c, collect(c, true));
+        }
+        List<Integer> below = components(down);
+        for (int k = below.size() - 1; k >= 0; k--) {
+            int c = below.get(k);
+            reachedBy.set(c, collect(c, false));
+        }
+    }
+
+    /**
+     * Drops the index, so that it is rebuilt on next query.
+     */
+    public synchronized void reset() {
+        dirty = true;
+    }
+
+    // Ids of the components of the given nodes, in ascending order
+    private List<Integer> components(BitSet set) {
+        BitSet result = new BitSet();
+        for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+            result.set(comp[i]);
+        }
+        List<Integer> list = new ArrayList<Integer>();
+        for (int c = result.nextSetBit(0); c >= 0; c = result.nextSetBit(c + 1)) {
+            list.add(c);
+        }
+        return list;
+    }
+
+    private Set<T> toSet(BitSet set) {
+        Set<T> result = new HashSet<T>();
+        for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+            result.add(nodes.get(i));
+        }
+        return result;
+    }
+
+    // Recomputes reach (or reachedBy) of a component from the current
+    // edges of the bundle and the sets of the neighbour components
+    private BitSet collect(int c, boolean forward) {
+        BitSet result = new BitSet();
+        BitSet own = members.get(c);
+        for (int i = own.nextSetBit(0); i >= 0; i = own.nextSetBit(i + 1)) {
+            T node = nodes.get(i);
+            for (T peer : forward ? data.getOutcomeNodes(node)
+                                  : data.getIncomeNodes(node)) {
+                Integer j = index.get(peer);
+                if (j == null) {
+                    continue;
+                }
+                int d = comp[j];
+                if (d != c) {
+                    result.or(forward ? reach.get(d) : reachedBy.get(d));
+                    result.or(members.get(d));
+                }
+            }
+        }
+        if (cyclic.get(c)[0]) {
+            result.or(own);
+        }
+        return result;
+    }
+
+    private void build() {
+        if (!dirty) {
+            return;
+        }
+        nodes = new ArrayList<T>(data.getAllNodes());
+        int n = nodes.size();
+        index = new HashMap<T, Integer>();
+        for (T node : nodes) {
+            index.put(node, index.size());
+        }
+        int[][] out = new int[n][];
+        boolean[] selfLoop = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            List<Integer> targets = new ArrayList<Integer>();
+            for (T peer : data.getOutcomeNodes(nodes.get(i))) {
+                Integer j = index.get(peer);
+                if (j != null) {
+                    targets.add(j);
+                    selfLoop[i] |= j == i;
+                }
+            }
+            out[i] = new int[targets.size()];
+            for (int k = 0; k < out[i].length; k++) {
+                out[i][k] = targets.get(k);
+            }
+        }
+
+        int count = condense(out);
+        members = new ArrayList<BitSet>(count);
+        reach = new ArrayList<BitSet>(count);
+        reachedBy = new ArrayList<BitSet>(count);
+        cyclic = new ArrayList<boolean[]>(count);
+        for (int c = 0; c < count; c++) {
+            members.add(new BitSet());
+            reach.add(new BitSet());
+            reachedBy.add(new BitSet());
+            cyclic.add(new boolean[1]);
+        }
+        for (int i = 0; i < n; i++) {
+            BitSet member = members.get(comp[i]);
+            if (!member.isEmpty() || selfLoop[i]) {
+                cyclic.get(comp[i])[0] = true;
+            }
+            member.set(i);
+        }
+
+        // Condensed graph and its levels both ways
+        List<Set<Integer>> succ = new ArrayList<Set<Integer>>(count);
+        List<Set<Integer>> pred = new ArrayList<Set<Integer>>(count);
+        for (int c = 0; c < count; c++) {
+            succ.add(new HashSet<Integer>());
+            pred.add(new HashSet<Integer>());
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j : out[i]) {
+                if (comp[i] != comp[j]) {
+                    succ.get(comp[i]).add(comp[j]);
+                    pred.get(comp[j]).add(comp[i]);
+                }
+            }
+        }
+        final int[][] successors = flatten(succ);
+        final int[][] predecessors = flatten(pred);
+        // Successors of a component always have smaller ids
+        int[] down = new int[count], up = new int[count];
+        for (int c = 0; c < count; c++) {
+            for (int d : successors[c]) {
+                down[c] = Math.max(down[c], down[d] + 1);
+            }
+        }
+        for (int c = count - 1; c >= 0; c--) {
+            for (int d : predecessors[c]) {
+                up[c] = Math.max(up[c], up[d] + 1);
+            }
+        }
+        propagate(byLevel(down), successors, reach);
+        propagate(byLevel(up), predecessors, reachedBy);
+        dirty = false;
+        ordered = true;
+    }
+
+    private static int[][] flatten(List<Set<Integer>> sets) {
+        int[][] result = new int[sets.size()][];
+        for (int c = 0; c < result.length; c++) {
+            result[c] = new int[sets.get(c).size()];
+            int k = 0;
+            for (int d : sets.get(c)) {
+                result[c][k++] = d;
+            }
+        }
+        return result;
+    }
+
+    private static int[][] byLevel(int[] level) {
+        int height = 0;
+        for (int l : level) {
+            height = Math.max(height, l + 1);
+        }
+        int[] sizes = new int[height];
+        for (int l : level) {
+            sizes[l]++;
+        }
+        int[][] result = new int[height][];
+        for (int l = 0; l < height; l++) {
+            result[l] = new int[sizes[l]];
+        }
+        int[] fill = new int[height];
+        for (int c = 0; c < level.length; c++) {
+            result[level[c]][fill[level[c]]++] = c;
+        }
+        return result;
+    }
+
+    private void propagate(int[][] levels, final int[][] peers,
+                           final List<BitSet> sets) {
+        for (final int[] level : levels) {
+            ForkJoinPool.commonPool().invoke(new LevelTask(level, 0, level.length, peers, sets));
+        }
+    }
+
+    private class LevelTask extends RecursiveAction {
+        private final int[] level;
+        private final int[][] peers;
+        private final int lo, hi;
+        private final List<BitSet> sets;
+
+        LevelTask(int[] level, int lo, int hi, int[][] peers, List<BitSet> sets) {
+            this.level = level;
+            this.lo = lo;
+            this.hi = hi;
+            this.peers = peers;
+            this.sets = sets;
+        }
+
+        @Override
+        /** {@inheritDoc} */
+        protected void compute() {
+            if (hi - lo > CHUNK) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new LevelTask(level, lo, mid, peers, sets),
+                          new LevelTask(level, mid, hi, peers, sets));
+                return;
+            }
+            for (int k = lo; k < hi; k++) {
+                int c = level[k];
+                BitSet result = sets.get(c);
+                for (int d : peers[c]) {
+                    result.or(sets.get(d));
+                    result.or(members.get(d));
+                }
+                if (cyclic.get(c)[0]) {
+                    result.or(members.get(c));
+                }
+            }
+        }
+    }
+
+    // Iterative Tarjan's algorithm, components are numbered sinks first
+    private int condense(int[][] out) {
+        int n = out.length;
+        comp = new int[n];
+        int[] low = new int[n], order = new int[n], next = new int[n];
+        Arrays.fill(order, -1);
+        int[] stack = new int[n], call = new int[n];
+        boolean[] onStack = new boolean[n];
+        int sp = 0, counter = 0, count = 0;
+        for (int start = 0; start < n; start++) {
+            if (order[start] != -1) {
+                continue;
+            }
+            int depth = 0;
+            call[depth++] = start;
+            order[start] = low[start] = counter++;
+            stack[sp++] = start;
+            onStack[start] = true;
+            while (depth > 0) {
+                int v = call[depth - 1];
+                if (next[v] < out[v].length) {
+                    int w = out[v][next[v]++];
+                    if (order[w] == -1) {
+                        order[w] = low[w] = counter++;
+                        stack[sp++] = w;
+                        onStack[w] = true;
+                        call[depth++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], order[w]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (depth > 0) {
+                    int parent = call[depth - 1];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+                if (low[v] == order[v]) {
+                    int w;
+                    do {
+                        w = stack[--sp];
+                        onStack[w] = false;
+                        comp[w] = count;
+                    } while (w != v);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
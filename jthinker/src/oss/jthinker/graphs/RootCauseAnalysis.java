@@ -0,0 +1,512 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Root cause analysis of a cause-and-effect graph. For every node it
+ * finds the effects, which the node leads to, and the length of the
+ * longest path from the node to any of them. Nodes are processed in
+ * reverse topological order, level by level: a node's set of effects is
+ * the union of its successors' sets, so every level is computed in
+ * parallel on the common fork/join pool once the levels below are done.
+ * <p>
+ * Analysis is computed on first query. Edge additions and removals
+ * recompute only the nodes, that lead to the changed edge. Changes of
+ * the effects and graphs with cycles make the analysis recompute on
+ * next query; edges closing a cycle are ignored then.
+ *
+ * @author iappel
+ * @param T type of node data
+ */
+public class RootCauseAnalysis<T> {
+    private static final int CHUNK = 64;
+
+    /**
+     * Score of a single node.
+     *
+     * @param T type of node data
+     */
+    public static class Score<T> {
+        private final T node;
+        private final int effects, depth;
+
+        Score(T node, int effects, int depth) {
+            this.node = node;
+            this.effects = effects;
+            this.depth = depth;
+        }
+
+        /**
+         * Returns node being scored.
+         *
+         * @return scored node
+         */
+        public T getNode() {
+            return node;
+        }
+
+        /**
+         * Returns number of effects, that node leads to.
+         *
+         * @return number of reached effects
+         */
+        public int getEffects() {
+            return effects;
+        }
+
+        /**
+         * Returns length of the longest path from node to an effect.
+         *
+         * @return depth of the node or -1 if node leads to no effects
+         */
+        public int getDepth() {
+            return depth;
+        }
+    }
+
+    private final NodeBundle<T> data;
+    private final Set<T> effects = new LinkedHashSet<T>();
+    private boolean dirty = true;
+    // Set when some edges were ignored to break cycles
+    private boolean cyclic;
+
+    private List<T> nodes;
+    private Map<T, Integer> index;
+    private List<T> effectList;
+    // Bit of a node in effect sets or -1 when node isn't an effect
+    private int[] bit;
+    private BitSet[] reached;
+    private int[] depth, level;
+
+    /**
+     * Creates a new analysis over the given bundle.
+     *
+     * @param data bundle of nodes to analyze
+     */
+    public RootCauseAnalysis(NodeBundle<T> data) {
+        this.data = data;
+    }
+
+    /**
+     * Sets nodes, that are the effects to find causes for. Does nothing
+     * when effects are the same as before.
+     *
+     * @param effects nodes that are the effects
+     */
+    public synchronized void setEffects(Collection<? extends T> effects) {
+        Set<T> updated = new LinkedHashSet<T>(effects);
+        if (!updated.equals(this.effects)) {
+            this.effects.clear();
+            this.effects.addAll(updated);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Returns scores of all nodes, that lead to at least one effect.
+     * Nodes leading to more effects come first, nodes leading to the
+     * same number of effects are ordered by depth, deeper ones first.
+     *
+     * @return list of scores
+     */
+    public synchronized List<Score<T>> getScores() {
+        build();
+        List<Score<T>> result = new ArrayList<Score<T>>();
+        for (Map.Entry<T, Integer> entry : index.entrySet()) {
+            int i = entry.getValue();
+            if (depth[i] >= 0) {
+                result.add(new Score<T>(entry.getKey(),
+                        reached[i].cardinality(), depth[i]));
+            }
+        }
+        Collections.sort(result, new Comparator<Score<T>>() {
+            public int compare(Score<T> a, Score<T> b) {
+                if (a.effects != b.effects) {
+                    return b.effects - a.effects;
+                }
+                return b.depth - a.depth;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns effects, that the given node leads to.
+     *
+     * @param node node to start from
+     * @return set of reached effects
+     */
+    public synchronized Set<T> getEffects(T node) {
+        build();
+        Set<T> result = new HashSet<T>();
+        Integer i = index.get(node);
+        if (i != null) {
+            BitSet set = reached[i];
+            for (int k = set.nextSetBit(0); k >= 0; k = set.nextSetBit(k + 1)) {
+                result.add(effectList.get(k));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns length of the longest path from the given node to an
+     * effect.
+     *
+     * @param node node to start from
+     * @return depth of the node or -1 if node leads to no effects
+     */
+    public synchronized int getDepth(T node) {
+        build();
+        Integer i = index.get(node);
+        return i == null ? -1 : depth[i];
+    }
+
+    /**
+     * Notifies analysis that a node was added to the bundle.
+     *
+     * @param node node that was added
+     */
+    public synchronized void nodeAdded(T node) {
+        if (dirty || index.containsKey(node)) {
+            return;
+        }
+        if (effects.contains(node)) {
+            dirty = true;
+            return;
+        }
+        int i = nodes.size();
+        nodes.add(node);
+        index.put(node, i);
+        if (i == bit.length) {
+            int size = 2 * i + 1;
+            bit = Arrays.copyOf(bit, size);
+            reached = Arrays.copyOf(reached, size);
+            depth = Arrays.copyOf(depth, size);
+            level = Arrays.copyOf(level, size);
+        }
+        bit[i] = -1;
+        reached[i] = new BitSet();
+        depth[i] = -1;
+        level[i] = 0;
+    }
+
+    /**
+     * Notifies analysis that a node was removed from the bundle. Edges
+     * of the node are expected to be removed beforehand.
+     *
+     * @param node node that was removed
+     */
+    public synchronized void nodeRemoved(T node) {
+        if (dirty) {
+            return;
+        }
+        Integer i = index.remove(node);
+        if (i == null) {
+            return;
+        }
+        nodes.set(i, null);
+        if (bit[i] >= 0) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Notifies analysis that an edge was added to the bundle.
+     *
+     * @param source start of the edge
+     * @param target end of the edge
+     */
+    public synchronized void edgeAdded(T source, T target) {
+        if (dirty || cyclic) {
+            dirty = true;
+            return;
+        }
+        Integer a = index.get(source), b = index.get(target);
+        if (a == null || b == null) {
+            dirty = true;
+            return;
+        }
+        // Values only grow, so recomputing till nothing changes is enough
+        LinkedList<Integer> queue = new LinkedList<Integer>();
+        queue.add(a);
+        while (!queue.isEmpty()) {
+            int i = queue.removeFirst();
+            if (!recompute(i)) {
+                continue;
+            }
+            if (level[i] >= nodes.size()) {
+                // Levels grow without bound only on a cycle
+                dirty = true;
+                return;
+            }
+            for (int j : peers(i, false)) {
+                queue.add(j);
+            }
+        }
+    }
+
+    /**
+     * Notifies analysis that an edge was removed from the bundle.
+     *
+     * @param source start of the edge
+     * @param target end of the edge
+     */
+    public synchronized void edgeRemoved(T source, T target) {
+        if (dirty || cyclic) {
+            dirty = true;
+            return;
+        }
+        Integer a = index.get(source);
+        if (a == null) {
+            dirty = true;
+            return;
+        }
+        Set<Integer> affected = new HashSet<Integer>();
+        LinkedList<Integer> queue = new LinkedList<Integer>();
+        affected.add(a);
+        queue.add(a);
+        while (!queue.isEmpty()) {
+            for (int j : peers(queue.removeFirst(), false)) {
+                if (affected.add(j)) {
+                    queue.add(j);
+                }
+            }
+        }
+        // Old levels still order the nodes, successors go first
+        List<Integer> order = new ArrayList<Integer>(affected);
+        Collections.sort(order, new Comparator<Integer>() {
+            public int compare(Integer i, Integer j) {
+                return level[i] - level[j];
+            }
+        });
+        for (int i : order) {
+            reached[i] = new BitSet();
+            depth[i] = -1;
+            level[i] = 0;
+            recompute(i);
+        }
+    }
+
+    /**
+     * Drops the analysis, so that it is recomputed on next query.
+     */
+    public synchronized void reset() {
+        dirty = true;
+    }
+
+    private int[] peers(int i, boolean forward) {
+        T node = nodes.get(i);
+        Collection<T> peers = forward ? data.getOutcomeNodes(node)
+                                      : data.getIncomeNodes(node);
+        int[] result = new int[peers.size()];
+        int k = 0;
+        for (T peer : peers) {
+            Integer j = index.get(peer);
+            if (j != null) {
+                result[k++] = j;
+            }
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    // Recomputes a node from the current edges, returns true on changes
+    private boolean recompute(int i) {
+        BitSet oldReached = reached[i];
+        int oldDepth = depth[i], oldLevel = level[i];
+        compute(i, peers(i, true));
+        return depth[i] != oldDepth || level[i] != oldLevel
+            || !reached[i].equals(oldReached);
+    }
+
+    private void compute(int i, int[] successors) {
+        BitSet result = new BitSet();
+        int deep = -1, height = 0;
+        for (int j : successors) {
+            result.or(reached[j]);
+            if (bit[j] >= 0) {
+                result.set(bit[j]);
+                deep = Math.max(deep, Math.max(depth[j], 0) + 1);
+            } else if (depth[j] >= 0) {
+                deep = Math.max(deep, depth[j] + 1);
+            }
+            height = Math.max(height, level[j] + 1);
+        }
+        reached[i] = result;
+        depth[i] = deep;
+        level[i] = height;
+    }
+
+    private void build() {
+        if (!dirty) {
+            return;
+        }
+        nodes = new ArrayList<T>(data.getAllNodes());
+        int n = nodes.size();
+        index = new HashMap<T, Integer>();
+        for (T node : nodes) {
+            index.put(node, index.size());
+        }
+        bit = new int[n];
+        Arrays.fill(bit, -1);
+        effectList = new ArrayList<T>();
+        for (T effect : effects) {
+            Integer i = index.get(effect);
+            if (i != null) {
+                bit[i] = effectList.size();
+                effectList.add(effect);
+            }
+        }
+        int[][] out = new int[n][];
+        for (int i = 0; i < n; i++) {
+            out[i] = peers(i, true);
+        }
+        int[] post = postorder(out);
+
+        // Successors precede their predecessors in the postorder
+        level = new int[n];
+        for (int i : post) {
+            for (int j : out[i]) {
+                level[i] = Math.max(level[i], level[j] + 1);
+            }
+        }
+        reached = new BitSet[n];
+        depth = new int[n];
+        for (int[] nodesOfLevel : byLevel(level)) {
+            ForkJoinPool.commonPool().invoke(new LevelTask(nodesOfLevel, 0, nodesOfLevel.length, out));
+        }
+        dirty = false;
+    }
+
+    // Iterative depth-first search, edges closing a cycle are dropped
+    private int[] postorder(int[][] out) {
+        int n = out.length;
+        int[] state = new int[n], next = new int[n], call = new int[n];
+        int[] result = new int[n];
+        int count = 0;
+        cyclic = false;
+        for (int start = 0; start < n; start++) {
+            if (state[start] != 0) {
+                continue;
+            }
+            int sp = 0;
+            call[sp++] = start;
+            state[start] = 1;
+            while (sp > 0) {
+                int v = call[sp - 1];
+                if (next[v] < out[v].length) {
+                    int w = out[v][next[v]];
+                    if (state[w] == 1) {
+                        out[v][next[v]] = out[v][out[v].length - 1];
+                        out[v] = Arrays.copyOf(out[v], out[v].length - 1);
+                        cyclic = true;
+                        continue;
+                    }
+                    next[v]++;
+                    if (state[w] == 0) {
+                        state[w] = 1;
+                        call[sp++] = w;
+                    }
+                    continue;
+                }
+                state[v] = 2;
+                result[count++] = v;
+                sp--;
+            }
+        }
+        return result;
+    }
+
+    private static int[][] byLevel(int[] level) {
+        int height = 0;
+        for (int l : level) {
+            height = Math.max(height, l + 1);
+        }
+        int[] sizes = new int[height];
+        for (int l : level) {
+            sizes[l]++;
+        }
+        int[][] result = new int[height][];
+        for (int l = 0; l < height; l++) {
+            result[l] = new int[sizes[l]];
+        }
+        int[] fill = new int[height];
+        for (int i = 0; i < level.length; i++) {
+            result[level[i]][fill[level[i]]++] = i;
+        }
+        return result;
+    }
+
+    private class LevelTask extends RecursiveAction {
+        private final int[] nodesOfLevel;
+        private final int[][] out;
+        private final int lo, hi;
+
+        LevelTask(int[] nodesOfLevel, int lo, int hi, int[][] out) {
+            this.nodesOfLevel = nodesOfLevel;
+            this.lo = lo;
+            this.hi = hi;
+            this.out = out;
+        }
+
+        @Override
+        /** {@inheritDoc} */
+        protected void compute() {
+            if (hi - lo > CHUNK) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new LevelTask(nodesOfLevel, lo, mid, out),
+                          new LevelTask(nodesOfLevel, mid, hi, out));
+                return;
+            }
+            for (int k = lo; k < hi; k++) {
+                int i = nodesOfLevel[k];
+                RootCauseAnalysis.this.compute(i, out[i]);
+            }
+        }
+    }
+}
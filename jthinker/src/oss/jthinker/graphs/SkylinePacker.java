@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import oss.jthinker.util.IntList;
+
+/**
+ * Packer, that places many rectangles in one pass. Free space is
+ * tracked by a skyline: a list of horizontal segments, each at the
+ * lowest level, where nothing was placed below. Every rectangle goes
+ * to the position, where its top is the highest, and the skyline rises
+ * under it. Rectangles, that were on the area before, are obstacles
+ * kept in an {@link OverlapMonitor}, so a position is moved below the
+ * obstacles it hits.
+ * <p>
+ * Placing a rectangle takes O(S log S) for S skyline segments, which
+ * are bounded by area's width divided by the width of the rectangles,
+ * instead of a scan over all the nodes of the area. Skyline level under
+ * every candidate position is a sliding window maximum over the
+ * segments, and obstacles are queried only while a candidate may still
+ * beat the best position found, most often for a single candidate.
+ *
+ * @author iappel
+ */
+public class SkylinePacker {
+    /** Space kept between the rectangles */
+    public static final int GAP = 10;
+
+    private final int width;
+    private final OverlapMonitor obstacles = new OverlapMonitor();
+    // Segment k covers [starts[k], starts[k+1]) at levels[k]
+    private final IntList starts = new IntList(), levels = new IntList();
+
+    /**
+     * Creates a new packer.
+     *
+     * @param width width of the area
+     * @param top nothing is placed above this line
+     * @param occupied rectangles, that are already on the area
+     */
+    public SkylinePacker(int width, int top, Collection<Rectangle> occupied) {
+        this.width = Math.max(width, 1);
+        for (Rectangle rect : occupied) {
+            obstacles.add(new Rectangle(rect));
+        }
+        starts.add(0);
+        levels.add(Math.max(top, 0));
+    }
+
+    /**
+     * Places rectangles of the given sizes. Taller rectangles are placed
+     * first, so that rows are filled more evenly.
+     *
+     * @param sizes sizes of the rectangles
+     * @return center points of the rectangles in order of the sizes
+     */
+    public List<Point> pack(final List<Dimension> sizes) {
+        Integer[] order = new Integer[sizes.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return sizes.get(b).height - sizes.get(a).height;
+            }
+        });
+        Point[] result = new Point[order.length];
+        for (int i : order) {
+            Rectangle rect = place(sizes.get(i));
+            result[i] = new Point(rect.x + rect.width / 2, rect.y + rect.height / 2);
+        }
+        return new ArrayList<Point>(Arrays.asList(result));
+    }
+
+    /**
+     * Places a single rectangle.
+     *
+     * @param size size of the rectangle
+     * @return placed rectangle
+     */
+    public Rectangle place(Dimension size) {
+        int count = 1;
+        while (count < starts.size() && starts.get(count) + size.width <= width) {
+            count++;
+        }
+        // Candidates keyed by skyline level in high bits and segment in
+        // low bits, levels come from a monotonic deque of segments
+        long[] order = new long[count];
+        int[] window = new int[starts.size()];
+        int head = 0, tail = 0, end = 0;
+        for (int k = 0; k < count; k++) {
+            // Segments within the gap on the right count as well
+            int right = starts.get(k) + size.width + GAP;
+            while (end < starts.size() && (end <= k || starts.get(end) < right)) {
+                while (tail > head && levels.get(window[tail - 1]) <= levels.get(end)) {
+                    tail--;
+                }
+                window[tail++] = end++;
+            }
+            while (window[head] < k) {
+                head++;
+            }
+            order[k] = ((long)levels.get(window[head]) << 32) | k;
+        }
+        Arrays.sort(order);
+
+        // Obstacles only push candidates down, so candidates above the
+        // best found position are the only ones left to check
+        Rectangle best = null;
+        int bestK = -1;
+        for (long key : order) {
+            int level = (int)(key >>> 32), k = (int)key;
+            if (best != null && (level > best.y || level == best.y && k > bestK)) {
+                break;
+            }
+            Rectangle candidate = candidate(starts.get(k), level, size);
+            if (best == null || candidate.y < best.y ||
+                    candidate.y == best.y && k < bestK) {
+                best = candidate;
+                bestK = k;
+            }
+        }
+        raise(best.x, best.x + best.width + GAP, best.y + best.height + GAP);
+        return best;
+    }
+
+    // Highest free rectangle at the skyline level or below it
+    private Rectangle candidate(int x, int y, Dimension size) {
+        Rectangle result = new Rectangle(x, y, size.width, size.height);
+        while (true) {
+            Rectangle margin = new Rectangle(result.x - GAP, result.y - GAP,
+                    result.width + 2 * GAP, result.height + 2 * GAP);
+            List<Rectangle> hits = obstacles.intersecting(margin);
+            if (hits.isEmpty()) {
+                return result;
+            }
+            for (Rectangle hit : hits) {
+                result.y = Math.max(result.y, hit.y + hit.height + GAP);
+            }
+        }
+    }
+
+    // Sets skyline to the level over [from, to)
+    private void raise(int from, int to, int level) {
+        IntList newStarts = new IntList(starts.size() + 2);
+        IntList newLevels = new IntList(levels.size() + 2);
+        boolean inserted = false;
+        for (int k = 0; k < starts.size(); k++) {
+            int start = starts.get(k);
+            int end = k + 1 < starts.size() ? starts.get(k + 1) : Integer.MAX_VALUE;
+            if (start < from) {
+                append(newStarts, newLevels, start, levels.get(k));
+            }
+            if (!inserted && end > from) {
+                append(newStarts, newLevels, from, level);
+                inserted = true;
+            }
+            if (end > to) {
+                append(newStarts, newLevels, Math.max(start, to), levels.get(k));
+            }
+        }
+        starts.clear();
+        levels.clear();
+        for (int k = 0; k < newStarts.size(); k++) {
+            starts.add(newStarts.get(k));
+            levels.add(newLevels.get(k));
+        }
+    }
+
+    private static void append(IntList starts, IntList levels, int start, int level) {
+        int last = starts.size() - 1;
+        if (last >= 0 && levels.get(last) == level) {
+            return;
+        }
+        if (last >= 0 && starts.get(last) == start) {
+            levels.set(last, level);
+            return;
+        }
+        starts.add(start);
+        levels.add(level);
+    }
+}
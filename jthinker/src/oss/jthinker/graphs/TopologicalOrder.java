@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Incrementally maintained topological order of a directed graph, after
+ * Pearce and Kelly. When a new edge goes against the order, only nodes
+ * positioned between its ends are searched: the ones reachable from the
+ * edge's target and the ones reaching the edge's source. When the first
+ * search meets the source, the edge closes a cycle, otherwise both
+ * groups swap their positions. So the cost of an insertion depends on
+ * the affected region only, and inserting edges along the order is
+ * constant-time.
+ * <p>
+ * Order is built on first use. When graph already contains a cycle,
+ * there is no order to keep and cycle checks fall back to a full search.
+ *
+ * @author iappel
+ * @param T type of node data
+ */
+public class TopologicalOrder<T> {
+    private final NodeBundle<T> data;
+    private final Map<T, Integer> ord = new HashMap<T, Integer>();
+    private int next;
+    private boolean dirty = true, cyclic;
+
+    private final Comparator<T> byOrder = new Comparator<T>() {
+        public int compare(T a, T b) {
+            return ord.get(a).compareTo(ord.get(b));
+        }
+    };
+
+    /**
+     * Creates a new order of the given bundle's nodes.
+     *
+     * @param data bundle of nodes to order
+     */
+    public TopologicalOrder(NodeBundle<T> data) {
+        this.data = data;
+    }
+
+    /**
+     * Makes room for a new edge in the order. Should be called before
+     * the edge is added to the bundle. Order is left intact when the
+     * edge would close a cycle.
+     *
+     * @param source start of the new edge
+     * @param target end of the new edge
+     * @return false if the edge would close a cycle and true otherwise
+     */
+    public synchronized boolean insert(T source, T target) {
+        build();
+        if (source.equals(target)) {
+            return false;
+        }
+        if (cyclic) {
+            return !search(target, source);
+        }
+        nodeAdded(source);
+        nodeAdded(target);
+        int lower = ord.get(target), upper = ord.get(source);
+        if (lower > upper) {
+            return true;
+        }
+
+        List<T> forward = new ArrayList<T>();
+        Set<T> visited = new HashSet<T>();
+        List<T> stack = new ArrayList<T>();
+        stack.add(target);
+        visited.add(target);
+        while (!stack.isEmpty()) {
+            T node = stack.remove(stack.size() - 1);
+            forward.add(node);
+            for (T peer : data.getOutcomeNodes(node)) {
+                if (peer.equals(source)) {
+                    return false;
+                }
+                Integer position = ord.get(peer);
+                if (position != null && position < upper && visited.add(peer)) {
+                    stack.add(peer);
+                }
+            }
+        }
+        List<T> backward = new ArrayList<T>();
+        stack.add(source);
+        visited.add(source);
+        while (!stack.isEmpty()) {
+            T node = stack.remove(stack.size() - 1);
+            backward.add(node);
+            for (T peer : data.getIncomeNodes(node)) {
+                Integer position = ord.get(peer);
+                if (position != null && position > lower && visited.add(peer)) {
+                    stack.add(peer);
+                }
+            }
+        }
+
+        // Nodes reaching the source take the lowest of the freed positions
+        Collections.sort(forward, byOrder);
+        Collections.sort(backward, byOrder);
+        List<Integer> positions = new ArrayList<Integer>();
+        for (T node : backward) {
+            positions.add(ord.get(node));
+        }
+        for (T node : forward) {
+            positions.add(ord.get(node));
+        }
+        Collections.sort(positions);
+        int k = 0;
+        for (T node : backward) {
+            ord.put(node, positions.get(k++));
+        }
+        for (T node : forward) {
+            ord.put(node, positions.get(k++));
+        }
+        return true;
+    }
+
+    /**
+     * Notifies order that an edge was added to the bundle. An edge,
+     * that closes a cycle, turns the order off until the cycle is gone.
+     *
+     * @param source start of the edge
+     * @param target end of the edge
+     */
+    public synchronized void edgeAdded(T source, T target) {
+        if (!dirty && !cyclic && !insert(source, target)) {
+            cyclic = true;
+        }
+    }
+
+    /**
+     * Notifies order that an edge was removed from the bundle.
+     *
+     * @param source start of the edge
+     * @param target end of the edge
+     */
+    public synchronized void edgeRemoved(T source, T target) {
+        // Order stays valid, but a cycle might have been broken
+        if (cyclic) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Notifies order that a node was added to the bundle.
+     *
+     * @param node node that was added
+     */
+    public synchronized void nodeAdded(T node) {
+        if (!dirty && !ord.containsKey(node)) {
+            ord.put(node, next++);
+        }
+    }
+
+    /**
+     * Notifies order that a node was removed from the bundle.
+     *
+     * @param node node that was removed
+     */
+    public synchronized void nodeRemoved(T node) {
+        ord.remove(node);
+        if (cyclic) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Checks whether graph contains a cycle.
+     *
+     * @return true if there is a cycle in the graph
+     */
+    public synchronized boolean isCyclic() {
+        build();
+        return cyclic;
+    }
+
+    /**
+     * Returns all nodes in topological order, so every edge goes from an
+     * earlier node to a later one. Returns null when graph contains a
+     * cycle.
+     *
+     * @return list of nodes in topological order or null
+     */
+    public synchronized List<T> getOrder() {
+        build();
+        if (cyclic) {
+            return null;
+        }
+        List<T> result = new ArrayList<T>(ord.keySet());
+        Collections.sort(result, byOrder);
+        return result;
+    }
+
+    /**
+     * Drops the order, so that it is rebuilt on next use.
+     */
+    public synchronized void reset() {
+        dirty = true;
+    }
+
+    private boolean search(T from, T to) {
+        Set<T> visited = new HashSet<T>();
+        List<T> stack = new ArrayList<T>();
+        stack.add(from);
+        visited.add(from);
+        while (!stack.isEmpty()) {
+            T node = stack.remove(stack.size() - 1);
+            for (T peer : data.getOutcomeNodes(node)) {
+                if (peer.equals(to)) {
+                    return true;
+                }
+                if (visited.add(peer)) {
+                    stack.add(peer);
+                }
+            }
+        }
+        return false;
+    }
+
+    // Kahn's algorithm
+    private void build() {
+        if (!dirty) {
+            return;
+        }
+        ord.clear();
+        next = 0;
+        Map<T, Integer> degree = new HashMap<T, Integer>();
+        List<T> queue = new ArrayList<T>();
+        for (T node : data.getAllNodes()) {
+            int count = data.getIncomeNodes(node).size();
+            degree.put(node, count);
+            if (count == 0) {
+                queue.add(node);
+            }
+        }
+        for (int head = 0; head < queue.size(); head++) {
+            T node = queue.get(head);
+            ord.put(node, next++);
+            for (T peer : data.getOutcomeNodes(node)) {
+                Integer count = degree.get(peer);
+                if (count != null) {
+                    degree.put(peer, count - 1);
+                    if (count == 1) {
+                        queue.add(peer);
+                    }
+                }
+            }
+        }
+        cyclic = ord.size() < degree.size();
+        dirty = false;
+    }
+}
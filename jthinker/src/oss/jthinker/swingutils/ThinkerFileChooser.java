@@ -81,7 +81,9 @@ public class ThinkerFileChooser {
     }
 
     public static SuffixFilter JTHINKER_FILES =
-            new SuffixFilter("jThinker files", ".jthinker");
+            new SuffixFilter("jThinker files", ".jthinker", ".jthinkerb");
+    public static SuffixFilter JTHINKER_BINARY_FILES =
+            new SuffixFilter("jThinker binary files", ".jthinkerb");
     public static SuffixFilter JPEG_FILES =
             new SuffixFilter("JPEG files", ".jpeg", ".jpg");
     public static SuffixFilter PNG_FILES =
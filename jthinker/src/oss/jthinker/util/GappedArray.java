@@ -31,10 +31,16 @@
 
 package oss.jthinker.util;
 
+import java.util.AbstractCollection;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * An array-like datatype that binds indexes to values. Differences from
@@ -47,11 +53,62 @@ import java.util.List;
  * additions
  * - any item is unique (like in set), so that it's index can be found
  * 
+ * Indexes of the items and positions of the gaps are kept in a hash map
+ * and a bit set, so lookups, additions and removals don't scan the array.
+ * 
  * @author iappel
  * @param T type of contained values
  */
 public class GappedArray<T> implements Iterable<T> {
     private final ArrayList<T> _content = new ArrayList<T>();
+    private final Map<T, Integer> _index = new HashMap<T, Integer>();
+    private final BitSet _gaps = new BitSet();
+
+    private final Collection<T> _view = new AbstractCollection<T>() {
+        @Override
+        /** {@inheritDoc} */
+        public int size() {
+            return _index.size();
+        }
+
+        @Override
+        /** {@inheritDoc} */
+        public boolean contains(Object o) {
+            return _index.containsKey(o);
+        }
+
+        @Override
+        /** {@inheritDoc} */
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private int next = skip(0);
+
+                private int skip(int i) {
+                    while (i < _content.size() && _content.get(i) == null) {
+                        i++;
+                    }
+                    return i;
+                }
+
+                public boolean hasNext() {
+                    return next < _content.size();
+                }
+
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    T result = _content.get(next);
+                    next = skip(next + 1);
+                    return result;
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    };
 
     /**
      * Gets item at the specified index.
@@ -73,13 +130,8 @@ public class GappedArray<T> implements Iterable<T> {
         if (item == null) {
             return locateGap();
         }
-        
-        for (int i=0;i<_content.size();i++) {
-            if (item.equals(_content.get(i))) {
-                return i;
-            }
-        }
-        return -1;
+        Integer result = _index.get(item);
+        return result == null ? -1 : result;
     }
 
     /** 
@@ -88,12 +140,7 @@ public class GappedArray<T> implements Iterable<T> {
      * @return first gap index
      */
     public int locateGap() {
-        for (int i=0;i<_content.size();i++) {
-            if (_content.get(i) == null) {
-                return i;
-            }
-        }
-        return -1;
+        return _gaps.nextSetBit(0);
     }
     
     /**
@@ -112,13 +159,15 @@ public class GappedArray<T> implements Iterable<T> {
         if (t != -1) {
             return t;
         }
-        for (int i=0;i<_content.size();i++) {
-            if (_content.get(i) == null) {
-                _content.set(i, item);
-                return i;
-            }
+        int gap = _gaps.nextSetBit(0);
+        if (gap != -1) {
+            _gaps.clear(gap);
+            _content.set(gap, item);
+            _index.put(item, gap);
+            return gap;
         }
         _content.add(item);
+        _index.put(item, _content.size() - 1);
         return _content.size() - 1;
     }
 
@@ -130,11 +179,12 @@ public class GappedArray<T> implements Iterable<T> {
      * were no such item initially
      */
     public boolean remove(T item) {
-        int t = locate(item);
-        if (t == -1) {
+        Integer t = _index.remove(item);
+        if (t == null) {
             return false;
         }
         _content.set(t, null);
+        _gaps.set(t);
         relaxTail();
         return true;
     }
@@ -144,6 +194,7 @@ public class GappedArray<T> implements Iterable<T> {
         while (idx >= 0) {
             if (_content.get(idx) == null) {
                 _content.remove(idx);
+                _gaps.clear(idx);
                 idx--;
             } else {
                 break;
@@ -167,6 +218,26 @@ public class GappedArray<T> implements Iterable<T> {
         return ret;
     }
     
+    /**
+     * Returns a read-only live view of container's content with gaps
+     * omitted. Unlike {@link #getContent()}, the view is not a copy, its
+     * size and membership checks take constant time.
+     * 
+     * @return read-only view of the content
+     */
+    public Collection<T> view() {
+        return _view;
+    }
+
+    /**
+     * Returns number of items in the container.
+     * 
+     * @return number of items in the container
+     */
+    public int size() {
+        return _index.size();
+    }
+
     /** {@inheritDoc} */
     public Iterator<T> iterator() {
         return getContent().iterator();
@@ -179,6 +250,11 @@ public class GappedArray<T> implements Iterable<T> {
         List<T> vector = getContent();
         _content.clear();
         _content.addAll(vector);
+        _index.clear();
+        _gaps.clear();
+        for (int i = 0; i < _content.size(); i++) {
+            _index.put(_content.get(i), i);
+        }
     }
 
     /**
@@ -188,6 +264,6 @@ public class GappedArray<T> implements Iterable<T> {
      * @return true if item is in the array and false otherwise.
      */
     public boolean contains(T item) {
-        return locate(item) != -1;
+        return item == null ? locateGap() != -1 : _index.containsKey(item);
     }
 }
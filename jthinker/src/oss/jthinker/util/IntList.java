@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive integers. Unlike a list of boxed integers,
+ * adding and reading items doesn't allocate, so a list may be reused
+ * as a result buffer by calling {@link #clear} between queries.
+ *
+ * @author iappel
+ */
+public class IntList {
+    private int[] _items;
+    private int _size;
+
+    /**
+     * Creates a new empty list.
+     */
+    public IntList() {
+        this(16);
+    }
+
+    /**
+     * Creates a new empty list with preallocated capacity.
+     *
+     * @param capacity expected number of items
+     */
+    public IntList(int capacity) {
+        _items = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Returns number of items in the list.
+     *
+     * @return size of the list
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Checks whether list has no items.
+     *
+     * @return true if list is empty
+     */
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * Appends an item to the end of the list.
+     *
+     * @param value item to add
+     */
+    public void add(int value) {
+        if (_size == _items.length) {
+            _items = Arrays.copyOf(_items, 2 * _size);
+        }
+        _items[_size++] = value;
+    }
+
+    /**
+     * Returns item at the given position.
+     *
+     * @param index position of the item
+     * @return item at the position
+     * @throws IndexOutOfBoundsException if there is no such position
+     */
+    public int get(int index) {
+        check(index);
+        return _items[index];
+    }
+
+    /**
+     * Replaces item at the given position.
+     *
+     * @param index position of the item
+     * @param value new item
+     * @return previous item at the position
+     * @throws IndexOutOfBoundsException if there is no such position
+     */
+    public int set(int index, int value) {
+        check(index);
+        int result = _items[index];
+        _items[index] = value;
+        return result;
+    }
+
+    /**
+     * Removes the last item of the list.
+     *
+     * @return removed item
+     * @throws IndexOutOfBoundsException if list is empty
+     */
+    public int removeLast() {
+        check(_size - 1);
+        return _items[--_size];
+    }
+
+    /**
+     * Checks whether list contains the given item. Takes O(size).
+     *
+     * @param value item to look for
+     * @return true if item is in the list
+     */
+    public boolean contains(int value) {
+        for (int i = 0; i < _size; i++) {
+            if (_items[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all items, capacity is kept.
+     */
+    public void clear() {
+        _size = 0;
+    }
+
+    /**
+     * Sorts items in ascending order.
+     */
+    public void sort() {
+        Arrays.sort(_items, 0, _size);
+    }
+
+    /**
+     * Copies items into a new array.
+     *
+     * @return array of the items
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(_items, _size);
+    }
+
+    private void check(int index) {
+        if (index < 0 || index >= _size) {
+            throw new IndexOutOfBoundsException(index + " of " + _size);
+        }
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public boolean equals(Object obj) {
+        if (obj instanceof IntList) {
+            IntList list = (IntList)obj;
+            if (list._size != _size) {
+                return false;
+            }
+            for (int i = 0; i < _size; i++) {
+                if (list._items[i] != _items[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < _size; i++) {
+            result = 31 * result + _items[i];
+        }
+        return result;
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.util;
+
+import java.util.Arrays;
+
+/**
+ * Hash set of primitive integers with open addressing and linear
+ * probing. Removals shift the following entries back, so there are no
+ * tombstones and lookups stay short under any mix of operations.
+ * Additions, removals and lookups don't allocate, except when the table
+ * grows.
+ *
+ * @author iappel
+ */
+public class IntSet {
+    private static final int FREE = Integer.MIN_VALUE;
+
+    private int[] _slots;
+    // Integer.MIN_VALUE marks free slots, so it is kept aside
+    private boolean _hasFree;
+    private int _size;
+
+    /**
+     * Creates a new empty set.
+     */
+    public IntSet() {
+        this(16);
+    }
+
+    /**
+     * Creates a new empty set with preallocated capacity.
+     *
+     * @param capacity expected number of items
+     */
+    public IntSet(int capacity) {
+        int size = 4;
+        while (size < 2 * capacity) {
+            size <<= 1;
+        }
+        _slots = new int[size];
+        Arrays.fill(_slots, FREE);
+    }
+
+    /**
+     * Returns number of items in the set.
+     *
+     * @return size of the set
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Checks whether set has no items.
+     *
+     * @return true if set is empty
+     */
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * Checks whether set contains the given item.
+     *
+     * @param value item to look for
+     * @return true if item is in the set
+     */
+    public boolean contains(int value) {
+        if (value == FREE) {
+            return _hasFree;
+        }
+        return _slots[find(value)] == value;
+    }
+
+    /**
+     * Adds an item to the set.
+     *
+     * @param value item to add
+     * @return true if item was not in the set before
+     */
+    public boolean add(int value) {
+        if (value == FREE) {
+            if (_hasFree) {
+                return false;
+            }
+            _hasFree = true;
+            _size++;
+            return true;
+        }
+        int slot = find(value);
+        if (_slots[slot] == value) {
+            return false;
+        }
+        _slots[slot] = value;
+        _size++;
+        if (2 * _size > _slots.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Removes an item from the set.
+     *
+     * @param value item to remove
+     * @return true if item was in the set
+     */
+    public boolean remove(int value) {
+        if (value == FREE) {
+            if (!_hasFree) {
+                return false;
+            }
+            _hasFree = false;
+            _size--;
+            return true;
+        }
+        int slot = find(value);
+        if (_slots[slot] != value) {
+            return false;
+        }
+        // Entries of the probe chain after the slot move back into it
+        int mask = _slots.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            int item = _slots[next];
+            if (item == FREE) {
+                break;
+            }
+            int home = hash(item) & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                _slots[slot] = item;
+                slot = next;
+            }
+        }
+        _slots[slot] = FREE;
+        _size--;
+        return true;
+    }
+
+    /**
+     * Removes all items, capacity is kept.
+     */
+    public void clear() {
+        Arrays.fill(_slots, FREE);
+        _hasFree = false;
+        _size = 0;
+    }
+
+    /**
+     * Appends all items to the given list in no particular order.
+     *
+     * @param target list to append items to
+     * @return the target list
+     */
+    public IntList addTo(IntList target) {
+        if (_hasFree) {
+            target.add(FREE);
+        }
+        for (int item : _slots) {
+            if (item != FREE) {
+                target.add(item);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Copies items into a new array in no particular order.
+     *
+     * @return array of the items
+     */
+    public int[] toArray() {
+        return addTo(new IntList(_size)).toArray();
+    }
+
+    // Slot of the item or the free slot, where it would be placed
+    private int find(int value) {
+        int mask = _slots.length - 1;
+        int slot = hash(value) & mask;
+        while (_slots[slot] != FREE && _slots[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void grow() {
+        int[] old = _slots;
+        _slots = new int[2 * old.length];
+        Arrays.fill(_slots, FREE);
+        for (int item : old) {
+            if (item != FREE) {
+                _slots[find(item)] = item;
+            }
+        }
+    }
+}
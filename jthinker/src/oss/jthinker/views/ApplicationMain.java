@@ -43,6 +43,7 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JToolBar;
 import javax.swing.UIManager;
+import oss.jthinker.diagrams.DiagramSaver;
 import oss.jthinker.diagrams.DiagramView;
 import oss.jthinker.diagrams.InteractorActionFactory;
 import oss.jthinker.interop.CommunicationCallback;
@@ -157,6 +158,11 @@ public class ApplicationMain implements CommunicationCallback {
         }
 
         if (_singleton._masterView.closeAll()) {
+            try {
+                DiagramSaver.flush();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
             System.exit(0);
         }
     }
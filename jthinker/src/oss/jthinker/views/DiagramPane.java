@@ -36,13 +36,17 @@ import oss.jthinker.swingutils.ClickAdapter;
 import oss.jthinker.widgets.WidgetFactory;
 import java.awt.Dimension;
 import java.awt.Point;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.io.File;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JOptionPane;
 import javax.swing.JPopupMenu;
+import javax.swing.Timer;
 import oss.jthinker.diagrams.DiagramController;
+import oss.jthinker.diagrams.DiagramSaver;
 import oss.jthinker.datamodel.DiagramOptionData;
 import oss.jthinker.datamodel.DiagramData;
 import oss.jthinker.graphs.GraphEngine;
@@ -67,12 +71,15 @@ import static oss.jthinker.swingutils.ThinkerFileChooser.*;
  */
 public class DiagramPane extends DocumentPane implements DiagramView {
     private static Logger logger = Logger.getAnonymousLogger();
+    private static final int MODIFIED_CHECK_DELAY = 300;
     
     private JLink mouseEdge = null;
     private final JXPopupMenu menu;
     private final DiagramController linker;
     private final DiagramType type;
     private final DiagramOptions options;
+    private final Timer modifiedCheck;
+    private long savedFingerprint;
     
     /**
      * Creates a new DiagramPane. Provided diagram description specifies, which
@@ -114,6 +121,14 @@ public class DiagramPane extends DocumentPane implements DiagramView {
         linker = new DiagramController(this, type);
         options = new DiagramOptions(this, optionSpec);
         linker.enableNodeNumbering(options.isNumberingEnabled());
+
+        modifiedCheck = new Timer(MODIFIED_CHECK_DELAY, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                checkModified();
+            }
+        });
+        modifiedCheck.setRepeats(false);
+        savedFingerprint = linker.getFingerprint();
     }
 
     /**
@@ -124,6 +139,7 @@ public class DiagramPane extends DocumentPane implements DiagramView {
     public DiagramPane(DiagramData data) {
         this(data.getDiagramType(), data.getFile().getName(), data.getOptions());
         linker.setDiagramSpec(data);
+        savedFingerprint = linker.getFingerprint();
         markModified(true);
         getFilenameTrigger().setState(data.getFile());
     }
@@ -275,6 +291,12 @@ public class DiagramPane extends DocumentPane implements DiagramView {
             markModified(false);
         }
     }
+
+    /** {@inheritDoc} */
+    public void showWarning(String message) {
+        JOptionPane.showMessageDialog(this, message, "Warning",
+                JOptionPane.WARNING_MESSAGE);
+    }
     
     /**
      * Attempts to save diagram.
@@ -301,7 +323,7 @@ public class DiagramPane extends DocumentPane implements DiagramView {
         
         switch (option) {
             case JOptionPane.YES_OPTION:
-                saveDiagram(false);
+                return saveDiagram(false) && awaitSaved();
             case JOptionPane.NO_OPTION:
                 return true;
             case JOptionPane.CANCEL_OPTION:
@@ -311,38 +333,86 @@ public class DiagramPane extends DocumentPane implements DiagramView {
     }
     
     /**
-     * Saves the diagram.
+     * Waits until all started saves of the diagram are finished.
+     *
+     * @return true if diagram was saved successfully
+     */
+    protected boolean awaitSaved() {
+        try {
+            return linker.awaitSaved();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Saves the diagram. Diagram's snapshot is taken immediately, while
+     * writing is done in background, pane is marked as saved when
+     * writing finishes.
      * 
      * @param askName should name be asked if it is already knows
-     * @return true if diagram was saved and false otherwise
+     * @return true if diagram's save was started and false otherwise
      */
     protected boolean saveDiagram(boolean askName) {
         if (this.isSaved() && !askName) {
             return true;
         }
         if (!getFilenameTrigger().hasState() || askName) {
-            File file = chooseSave(JTHINKER_FILES);
+            File file = chooseSave(JTHINKER_BINARY_FILES, JTHINKER_FILES);
             if (file == null) {
                 return false;
             }
             getFilenameTrigger().setState(file);
         }
 
-        File file = getFilenameTrigger().getState();
-        DiagramData spec = linker.getDiagramSpec();
-        
-        try {
-            spec.save(file);
-        } catch (Throwable t) {
-            logger.log(Level.SEVERE, "Exception", t);
-            JOptionPane.showMessageDialog(this, "Unable to save",
-                    "Unable to save", JOptionPane.ERROR_MESSAGE);
-            return false;
-        }
-        getModifiedTrigger().setState(false);
+        final long revision = getRevision();
+        // Taking a snapshot changes the fingerprint, so it's only known
+        // after the save was started
+        final long[] fingerprint = new long[1];
+        linker.save(getFilenameTrigger().getState(), new DiagramSaver.Callback() {
+            public void saved(File file) {
+                if (revision == getRevision()) {
+                    markModified(true);
+                    savedFingerprint = fingerprint[0];
+                }
+            }
+
+            public void failed(File file, Throwable error) {
+                logger.log(Level.SEVERE, "Exception", error);
+                JOptionPane.showMessageDialog(DiagramPane.this,
+                        "Unable to save " + file.getName(),
+                        "Unable to save", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+        fingerprint[0] = linker.getFingerprint();
         return true;
     }
 
+    /**
+     * Marks pane's content as modified. Checking, whether diagram is
+     * still different from the saved one, is scheduled after every
+     * modification, so that pane becomes saved again when the edits
+     * are reverted. Series of modifications are coalesced into a single
+     * check.
+     *
+     * @param saved true if content is saved
+     */
+    @Override
+    public void markModified(boolean saved) {
+        super.markModified(saved);
+        if (!saved && modifiedCheck != null) {
+            modifiedCheck.restart();
+        }
+    }
+
+    private void checkModified() {
+        if (!isSaved() &&
+            linker.getFingerprint() == savedFingerprint) {
+            super.markModified(true);
+        }
+    }
+
     /**
      * Returns the holder of diagram's optional settings.
      * 
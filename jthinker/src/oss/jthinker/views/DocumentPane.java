@@ -58,6 +58,7 @@ public abstract class DocumentPane extends JBackgroundPane
     private final MutableTrigger<Boolean> modifiedTrigger;
     private final Trigger<String> tabTitleTrigger;
     private HTMLProducer _imageMaker;
+    private long _revision;
 
     /**
      * Creates a new DocumentPane instance with given string as title.
@@ -99,9 +100,23 @@ public abstract class DocumentPane extends JBackgroundPane
      * @param saved
      */
     public void markModified(boolean saved) {
+        if (!saved) {
+            _revision++;
+        }
         modifiedTrigger.setState(!saved);
     }
 
+    /**
+     * Returns the number of times pane's content was marked as modified.
+     * Background save may only mark pane as saved when revision did not
+     * change since the save's snapshot was taken.
+     *
+     * @return pane's content revision
+     */
+    public long getRevision() {
+        return _revision;
+    }
+
     /**
      * Returns trigger that holds tab document filename.
      *
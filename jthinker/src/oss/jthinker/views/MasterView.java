@@ -64,6 +64,8 @@ public class MasterView extends DiagramDeck {
     private JMenuItem publishItem;
     private JCheckBoxMenuItem orderingOffItem;
     private JCheckBoxMenuItem orderingOverlapItem;
+    private JCheckBoxMenuItem orderingLayeredItem;
+    private JCheckBoxMenuItem orderingForceItem;
     private JCheckBoxMenuItem numberingItem;
 
     private class NumberingOptionAction extends AbstractAction {
@@ -84,8 +86,7 @@ public class MasterView extends DiagramDeck {
 
         public void actionPerformed(ActionEvent e) {
             getCurrentDiagram().getOptions().setOrderingLevel(OrderingLevel.OFF);
-            orderingOffItem.setSelected(true);
-            orderingOverlapItem.setSelected(false);
+            selectOrdering(OrderingLevel.OFF);
         }
     }
 
@@ -96,10 +97,38 @@ public class MasterView extends DiagramDeck {
 
         public void actionPerformed(ActionEvent e) {
             getCurrentDiagram().getOptions().setOrderingLevel(OrderingLevel.SUPPRESS_OVERLAP);
-            orderingOffItem.setSelected(false);
-            orderingOverlapItem.setSelected(true);
+            selectOrdering(OrderingLevel.SUPPRESS_OVERLAP);
         }
     }
+
+    private class OrderingLayeredAction extends AbstractAction {
+        private OrderingLayeredAction() {
+            super("Layered");
+        }
+
+        public void actionPerformed(ActionEvent e) {
+            getCurrentDiagram().getOptions().setOrderingLevel(OrderingLevel.LAYERED);
+            selectOrdering(OrderingLevel.LAYERED);
+        }
+    }
+
+    private class OrderingForceAction extends AbstractAction {
+        private OrderingForceAction() {
+            super("Force-directed");
+        }
+
+        public void actionPerformed(ActionEvent e) {
+            getCurrentDiagram().getOptions().setOrderingLevel(OrderingLevel.FORCE_DIRECTED);
+            selectOrdering(OrderingLevel.FORCE_DIRECTED);
+        }
+    }
+
+    private void selectOrdering(OrderingLevel level) {
+        orderingOffItem.setSelected(level == OrderingLevel.OFF);
+        orderingOverlapItem.setSelected(level == OrderingLevel.SUPPRESS_OVERLAP);
+        orderingLayeredItem.setSelected(level == OrderingLevel.LAYERED);
+        orderingForceItem.setSelected(level == OrderingLevel.FORCE_DIRECTED);
+    }
     
     private class GroupManagementAction extends AbstractAction {
         private GroupManagementAction() {
@@ -263,6 +292,10 @@ public class MasterView extends DiagramDeck {
         ordering.add(orderingOffItem);
         orderingOverlapItem = new JCheckBoxMenuItem(new OrderingOverlapAction());
         ordering.add(orderingOverlapItem);
+        orderingLayeredItem = new JCheckBoxMenuItem(new OrderingLayeredAction());
+        ordering.add(orderingLayeredItem);
+        orderingForceItem = new JCheckBoxMenuItem(new OrderingForceAction());
+        ordering.add(orderingForceItem);
         diaoptMenu.add(ordering);
         
         diaoptMenu.addSeparator();
@@ -280,6 +313,8 @@ public class MasterView extends DiagramDeck {
         groupingItem.setEnabled(flag);
         orderingOffItem.setEnabled(flag);
         orderingOverlapItem.setEnabled(flag);
+        orderingLayeredItem.setEnabled(flag);
+        orderingForceItem.setEnabled(flag);
     }
     
     @Override
@@ -294,9 +329,7 @@ public class MasterView extends DiagramDeck {
             numberingItem.setState(pane.getOptions().isNumberingEnabled());
             updateMenus(true);
             
-            OrderingLevel level = pane.getOptions().getOrderingLevel();
-            orderingOffItem.setState(level == OrderingLevel.OFF);
-            orderingOverlapItem.setState(level == OrderingLevel.SUPPRESS_OVERLAP);
+            selectOrdering(pane.getOptions().getOrderingLevel());
             container.updateToolBar(pane);
         }
     }
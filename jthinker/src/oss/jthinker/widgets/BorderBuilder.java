@@ -36,7 +36,9 @@ import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Insets;
 import java.awt.Rectangle;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Map;
 import javax.swing.border.LineBorder;
 import oss.jthinker.datamodel.BorderType;
 
@@ -167,6 +169,25 @@ public abstract class BorderBuilder {
         }
     }
 
+    private final static Map<BorderType, Insets> insets =
+            new EnumMap<BorderType, Insets>(BorderType.class);
+
+    /**
+     * Returns insets of the borders of given type. Insets don't depend
+     * on the bordered component, so they are computed once per type.
+     * 
+     * @param type type of the border
+     * @return insets of the border
+     */
+    public static synchronized Insets getInsets(BorderType type) {
+        Insets result = insets.get(type);
+        if (result == null) {
+            result = createBorder(type, Color.BLACK).getBorderInsets(null);
+            insets.put(type, result);
+        }
+        return (Insets)result.clone();
+    }
+
     /**
      * Creates a border of given color.
      * 
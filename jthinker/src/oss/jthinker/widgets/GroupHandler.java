@@ -132,6 +132,7 @@ public class GroupHandler {
         JNodeGroup group = getNodeGroup(name);
         group.addContent(node);
         grouping.put(node, group);
+        node.onGroupChanged();
     }
 
     /**
@@ -211,6 +212,7 @@ public class GroupHandler {
         if (group != null) {
             grouping.remove(node);
             group.removeContent(node);
+            node.onGroupChanged();
         }
     }
 
@@ -251,6 +253,7 @@ public class GroupHandler {
         }
         for (JComponent node : group.getContent()) {
             grouping.remove(node);
+            ((JNode) node).onGroupChanged();
         }
         groupNames.remove(name);
         group.destroy();
@@ -274,6 +277,9 @@ public class GroupHandler {
         group.setTitle(nameTo);
         groupNames.remove(nameFrom);
         groupNames.put(nameTo, group);
+        for (JComponent node : group.getContent()) {
+            ((JNode) node).onGroupChanged();
+        }
         return true;
     }
 
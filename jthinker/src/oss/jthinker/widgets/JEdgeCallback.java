@@ -43,6 +43,13 @@ public interface JEdgeCallback {
      * @param edge edge to reverse.
      */
     void reverse(JEdge edge);
+
+    /**
+     * Should be called when conflict state of an edge was changed.
+     *
+     * @param edge edge that was recently changed
+     */
+    void onEdgeEdited(JEdge edge);
     
     /**
      * Removes an edge from the container and stops and subsequent
@@ -36,15 +36,22 @@ import oss.jthinker.swingutils.GeometryUtils;
 import java.awt.Graphics;
 import java.awt.Point;
 import java.awt.Polygon;
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import javax.swing.JComponent;
 
 /**
- * An UI widget that is a movable line.
+ * An UI widget that is a movable line. Line may also be given a route,
+ * then it is drawn as a polyline through the route's points instead.
  * 
  * @author iappel
  */
 public class JLine extends JComponent {
     private Point _endA, _endZ;
+    // points of the polyline, null when line is drawn straight
+    private List<Point> _route;
     /**
      * orientation == true means line is drawn from upper-left corner
      * to downer-right
@@ -115,7 +122,7 @@ public class JLine extends JComponent {
             _endZ = z;
         }
 
-        if (flagA || flagZ) {
+        if ((flagA || flagZ) && _route == null) {
             updateBounds();
         }
     }
@@ -138,7 +145,75 @@ public class JLine extends JComponent {
         return _endZ;
     }
 
+    /**
+     * Sets route of the line. Routed line is drawn through all the
+     * route's points, ends of the line are ignored then.
+     * 
+     * @param route points of the route or null to draw line straight
+     */
+    public void setRoute(List<Point> route) {
+        List<Point> old = _route;
+        if (route == null || route.size() < 2) {
+            _route = null;
+        } else {
+            _route = new ArrayList<Point>(route);
+        }
+        if (old == null ? _route == null : old.equals(_route)) {
+            return;
+        }
+        updateBounds();
+        repaint();
+        firePropertyChange("route", old, _route);
+    }
+
+    /**
+     * Returns route of the line.
+     * 
+     * @return points of the route or null, when line is drawn straight
+     */
+    public List<Point> getRoute() {
+        return _route == null ? null : Collections.unmodifiableList(_route);
+    }
+
+    /**
+     * Returns point in the middle of the line's length.
+     * 
+     * @return middle point of the line
+     */
+    public Point getMidPoint() {
+        if (_route == null) {
+            return new Point((_endA.x + _endZ.x) / 2, (_endA.y + _endZ.y) / 2);
+        }
+        double length = 0;
+        for (int i = 1; i < _route.size(); i++) {
+            length += _route.get(i - 1).distance(_route.get(i));
+        }
+        double rest = length / 2;
+        for (int i = 1; i < _route.size(); i++) {
+            Point a = _route.get(i - 1), z = _route.get(i);
+            double part = a.distance(z);
+            if (rest <= part && part > 0) {
+                return new Point((int)(a.x + (z.x - a.x) * rest / part),
+                                 (int)(a.y + (z.y - a.y) * rest / part));
+            }
+            rest -= part;
+        }
+        return _route.get(_route.size() - 1).getLocation();
+    }
+
     private void updateBounds() {
+        if (_route != null) {
+            int minx = Integer.MAX_VALUE, miny = Integer.MAX_VALUE;
+            int maxx = Integer.MIN_VALUE, maxy = Integer.MIN_VALUE;
+            for (Point p : _route) {
+                minx = Math.min(minx, p.x);
+                miny = Math.min(miny, p.y);
+                maxx = Math.max(maxx, p.x);
+                maxy = Math.max(maxy, p.y);
+            }
+            setBounds(minx - 5, miny - 5, maxx - minx + 10, maxy - miny + 10);
+            return;
+        }
         int minx, miny, dx, dy;
         orientation = true;
 
@@ -194,6 +269,10 @@ public class JLine extends JComponent {
     public void paint(Graphics g) {
         int x = getWidth(), y = getHeight();
         g.setColor(getForeground());
+        if (_route != null) {
+            paintRoute(g);
+            return;
+        }
         if (orientation) {
             draw(g, x, 5, y - 5);
         } else {
@@ -230,20 +309,68 @@ public class JLine extends JComponent {
      * @return geometric distance from point to line.
      */    
     public double distanceToPoint(Point a) {
-        return GeometryUtils.distanceToLine(a, _endA, _endZ);
+        if (_route == null) {
+            return GeometryUtils.distanceToLine(a, _endA, _endZ);
+        }
+        double result = Double.MAX_VALUE;
+        for (int i = 1; i < _route.size(); i++) {
+            Point endA = _route.get(i - 1), endZ = _route.get(i);
+            result = Math.min(result, Line2D.ptSegDist(endA.x, endA.y,
+                                                       endZ.x, endZ.y,
+                                                       a.x, a.y));
+        }
+        return result;
+    }
+
+    // Draws the route, conflict's zigzag is put on the longest segment
+    private void paintRoute(Graphics g) {
+        int last = _route.size() - 1;
+        int longest = 1;
+        for (int i = 1; i <= last; i++) {
+            if (_route.get(i - 1).distance(_route.get(i)) >
+                _route.get(longest - 1).distance(_route.get(longest))) {
+                longest = i;
+            }
+        }
+        for (int i = 1; i <= last; i++) {
+            Point endA = _route.get(i - 1).getLocation();
+            Point endZ = _route.get(i).getLocation();
+            endA.translate(-getX(), -getY());
+            endZ.translate(-getX(), -getY());
+            if (_conflict && i == longest) {
+                double lineLen = endA.distance(endZ);
+                Point[] arr1 = GeometryUtils.perpendicular(endA, endZ,
+                        lineLen*3 / 5, 4, true);
+                Point[] arr2 = GeometryUtils.perpendicular(endA, endZ,
+                        lineLen*2 / 5, 4, false);
+                g.drawLine(endA.x, endA.y, arr1[1].x, arr1[1].y);
+                g.drawLine(arr1[1].x, arr1[1].y, arr2[1].x, arr2[1].y);
+                g.drawLine(arr2[1].x, arr2[1].y, endZ.x, endZ.y);
+            } else {
+                g.drawLine(endA.x, endA.y, endZ.x, endZ.y);
+            }
+        }
+        if (drawArrow) {
+            paintArrow(g, _route.get(last - 1), _route.get(last));
+            if (_conflict) {
+                paintArrow(g, _route.get(1), _route.get(0));
+            }
+        }
     }
 
     // Draws an arrowhead at endZ
     private void paintArrow(Graphics g, boolean atEndZ) {
-        Point endA, endZ;
-        
         if (atEndZ) {
-            endA = getEndA().getLocation();
-            endZ = getEndZ().getLocation();
+            paintArrow(g, getEndA(), getEndZ());
         } else {
-            endA = getEndZ().getLocation();
-            endZ = getEndA().getLocation();
+            paintArrow(g, getEndZ(), getEndA());
         }
+    }
+
+    // Draws an arrowhead at the end of the segment
+    private void paintArrow(Graphics g, Point from, Point to) {
+        Point endA = from.getLocation();
+        Point endZ = to.getLocation();
         
         endA.translate(-getX(), -getY());
         endZ.translate(-getX(), -getY());
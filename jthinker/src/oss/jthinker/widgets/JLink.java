@@ -121,6 +121,8 @@ public class JLink<T extends Component> extends JLine implements QuadripoleTrigg
         Trigger<Point> tb;
         if (peerZ == null) {
             tb = MouseLocator.getInstance();
+        } else if (peerZ instanceof JLine) {
+            tb = new LineMidpointTrigger((JLine)peerZ);
         } else {
             tb = new ComponentLocationTrigger(peerZ);
         }
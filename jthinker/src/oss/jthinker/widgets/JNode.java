@@ -31,10 +31,12 @@
 
 package oss.jthinker.widgets;
 
+import oss.jthinker.datamodel.DataInterner;
 import oss.jthinker.datamodel.JNodeData;
 import oss.jthinker.datamodel.BorderType;
 import java.awt.event.MouseEvent;
 import oss.jthinker.swingutils.WindowUtils;
+import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
@@ -87,7 +89,9 @@ public class JNode extends JSlide {
      * @param spec description of node's interior and content
      */
     protected JNode(JNodeCallback nodeHost, JNodeData spec) {
-        super(spec);
+        super(RenderComponentCache.getInstance().acquire(spec.getContent(),
+                spec.getBorderType(), spec.getBackground()),
+              spec.getBorderBuilder(), spec.getBackground());
         host = nodeHost;
         initListeners();
         this.spec = spec;
@@ -155,6 +159,21 @@ public class JNode extends JSlide {
         return spec.clone(content, WindowUtils.computeCenterPoint(this),
                 getColor(), comment, nodeGroup);
     }
+
+    /**
+     * Returns node's building specification, that shares equal strings
+     * and colors with other specifications via the interner.
+     *
+     * @param interner pool of shared attribute values
+     * @return node's building specification.
+     */
+    public JNodeData getNodeSpec(DataInterner interner) {
+        String nodeGroup = host.getGroupHandler().getNodeGroupName(this);
+        return spec.clone(interner.intern(content),
+                WindowUtils.computeCenterPoint(this),
+                interner.intern(getColor()), interner.intern(comment),
+                interner.intern(nodeGroup));
+    }
     
     /**
      * Gets textual content of the node.
@@ -171,12 +190,16 @@ public class JNode extends JSlide {
      * @param content textual content of the node.
      */    
     public void setContent(String content) {
+        boolean changed = !content.equals(this.content);
         this.content = content;        
         JLabelBundle bundle = (JLabelBundle)this.getComponent(0);
         bundle.setText(getDisplayContent());
         bundle.setSize(bundle.getPreferredSize());
         setSize(getPreferredSize());
         getParent().validate();
+        if (changed) {
+            host.onNodeEdited(this);
+        }
     }
 
     /**
@@ -208,6 +231,44 @@ public class JNode extends JSlide {
     public final void setComment(String comment) {
         setToolTipText(comment);
         this.comment = comment;
+        host.onNodeEdited(this);
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public void setColor(Color color) {
+        super.setColor(color);
+        // Called from the JSlide's constructor before host is assigned
+        if (host != null) {
+            host.onNodeEdited(this);
+        }
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public void setSwitched(boolean switching) {
+        super.setSwitched(switching);
+        host.onNodeHovered(this, switching);
+    }
+
+    /**
+     * Returns node's text component to the {@link RenderComponentCache},
+     * so it may be reused by another node. Called when node is removed
+     * from the diagram, node must not be displayed afterwards.
+     */
+    public void recycle() {
+        if (getComponentCount() != 0) {
+            JLabelBundle bundle = (JLabelBundle)getComponent(0);
+            RenderComponentCache.getInstance().release(bundle, content,
+                    spec.getBorderType(), getColor());
+        }
+    }
+
+    /**
+     * Notifies node's host that node's group has changed.
+     */
+    void onGroupChanged() {
+        host.onNodeEdited(this);
     }
     
     /**
@@ -45,6 +45,24 @@ public interface JNodeCallback {
      * @param node node that recently moved
      */    
     void onNodeMoved(JNode node);
+
+    /**
+     * Should be called when content, comment, color or group of some
+     * of hosted {@link JNode}s was changed.
+     *
+     * @param node node that was recently changed
+     */
+    void onNodeEdited(JNode node);
+
+    /**
+     * Should be called when mouse pointer enters or leaves some of
+     * hosted {@link JNode}s.
+     *
+     * @param node node under the mouse pointer
+     * @param hovered true if pointer entered the node and false if it
+     * left the node
+     */
+    void onNodeHovered(JNode node, boolean hovered);
     
     /**
      * Starts selecting peer to link with given node.
@@ -31,7 +31,6 @@
 
 package oss.jthinker.widgets;
 
-import oss.jthinker.datamodel.JSlideData;
 import oss.jthinker.swingutils.WindowUtils;
 import oss.jthinker.util.Switch;
 import java.awt.Color;
@@ -55,9 +54,9 @@ import javax.swing.border.Border;
  */
 public class JSlide extends JPanel implements Switch {
     private final JSlide slideInstance = this;
-    private final Border activeBorder,  inactiveBorder;
+    private final Border activeBorder,  inactiveBorder, highlightBorder;
     private Color background;
-    private boolean switched;
+    private boolean switched, highlighted;
 
     /**
      * Creates a new instance of slidable container. 
@@ -103,21 +102,12 @@ public class JSlide extends JPanel implements Switch {
         
         activeBorder = builder.createBorder(Color.RED);
         inactiveBorder = builder.createBorder(WindowUtils.getDefaultForeground());
+        highlightBorder = builder.createBorder(Color.ORANGE);
         setBorder(inactiveBorder);
         add(internal);
         setColor(background);
     }
 
-    /**
-     * Creates a new instance of slidable container.
-     * 
-     * @param slideSpec slide construction specification
-     */
-    public JSlide(JSlideData slideSpec) {
-        this(slideSpec.getComponent(), slideSpec.getBorderBuilder(),
-                slideSpec.getBackground());
-    }
-    
     /**
      * Checks either mouse pointer is over the slide or not.
      * @return true if mouse pointer is over the slide and false otherwise.
@@ -163,7 +153,26 @@ public class JSlide extends JPanel implements Switch {
 
     public void setSwitched(boolean switching) {
         switched = switching;        
-        setBorder(switched ? activeBorder : inactiveBorder);
+        updateBorder();
+    }
+
+    /**
+     * Marks slide as related to some other slide under the mouse
+     * pointer, highlighted slides have a frame of their own.
+     * 
+     * @param highlight should slide be highlighted or not
+     */
+    public void setHighlighted(boolean highlight) {
+        highlighted = highlight;
+        updateBorder();
+    }
+
+    private void updateBorder() {
+        if (switched) {
+            setBorder(activeBorder);
+        } else {
+            setBorder(highlighted ? highlightBorder : inactiveBorder);
+        }
     }
 
     /**
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package oss.jthinker.widgets;
+
+import java.awt.Point;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import oss.jthinker.util.Trigger;
+
+/**
+ * Trigger, that follows the middle point of a {@link JLine}. Unlike
+ * the center of the line's bounds, the middle point stays on the line
+ * when the line is routed.
+ * 
+ * @author iappel
+ */
+public final class LineMidpointTrigger extends Trigger<Point> {
+    private final JLine line;
+
+    /**
+     * Creates a new instance of LineMidpointTrigger around provided line.
+     * 
+     * @param line line to attach trigger to
+     */
+    public LineMidpointTrigger(JLine line) {
+        if (line == null) {
+            throw new IllegalArgumentException("Null line not allowed");
+        }
+        this.line = line;
+        line.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentMoved(ComponentEvent e) {
+                updateLocation();
+            }
+
+            @Override
+            public void componentResized(ComponentEvent e) {
+                updateLocation();
+            }
+        });
+        line.addPropertyChangeListener("route", new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent evt) {
+                updateLocation();
+            }
+        });
+        updateLocation();
+    }
+
+    /** 
+     * Immediately calculates line's middle point and updates trigger
+     * state accordingly.
+     */
+    public void updateLocation() {
+        setState(line.getMidPoint());
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.widgets;
+
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.UIManager;
+import oss.jthinker.datamodel.BorderType;
+import oss.jthinker.datamodel.DiagramDataSource;
+import oss.jthinker.datamodel.JEdgeData;
+import oss.jthinker.datamodel.JNodeData;
+import oss.jthinker.graphs.NodeStore;
+
+/**
+ * Estimates sizes of the {@link JNode}s without creating them. Text is
+ * sliced into lines with {@link JLabelBundle#sliceString} and measured
+ * with metrics of the label font, node's border adds the same insets as
+ * {@link BorderBuilder}'s borders and {@link JSlide} adds the same
+ * padding. No window is needed, so estimator works on headless
+ * systems as well.
+ * <p>
+ * Measured line widths are cached, as the same texts tend to repeat
+ * over diagrams.
+ *
+ * @author iappel
+ */
+public class NodeSizeEstimator {
+    private static final int CACHE_SIZE = 4096;
+    // Padding added by JSlide around its content
+    private static final int PADDING = 10;
+
+    private final FontMetrics _metrics;
+    private final Map<String, Integer> _widths =
+            new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Creates a new estimator for the current look and feel's label font.
+     */
+    public NodeSizeEstimator() {
+        this(defaultFont());
+    }
+
+    /**
+     * Creates a new estimator for the given font.
+     *
+     * @param font font of the node texts
+     */
+    public NodeSizeEstimator(Font font) {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            _metrics = g.getFontMetrics(font);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private static Font defaultFont() {
+        Font result = UIManager.getFont("Label.font");
+        return result == null ? new Font(Font.DIALOG, Font.PLAIN, 12) : result;
+    }
+
+    /**
+     * Estimates size of a node with given border and text.
+     *
+     * @param border type of node's border
+     * @param content node's text
+     * @return estimated size of the node
+     */
+    public synchronized Dimension estimate(BorderType border, String content) {
+        int width = 0, height = 0;
+        for (String line : JLabelBundle.sliceString(content)) {
+            // Empty labels take no space at all
+            if (line.length() != 0) {
+                width = Math.max(width, lineWidth(line));
+                height += _metrics.getHeight();
+            }
+        }
+        Insets insets = BorderBuilder.getInsets(border);
+        width += insets.left + insets.right + PADDING;
+        height += insets.top + insets.bottom + PADDING;
+        return new Dimension(width, height);
+    }
+
+    /**
+     * Estimates size of a node of the given data.
+     *
+     * @param data node's data
+     * @return estimated size of the node
+     */
+    public Dimension estimate(JNodeData data) {
+        return estimate(data.getBorderType(), data.getContent());
+    }
+
+    /**
+     * Estimates bounds of a node of the given data.
+     *
+     * @param data node's data
+     * @return estimated bounds of the node
+     */
+    public Rectangle bounds(JNodeData data) {
+        Dimension size = estimate(data);
+        Point center = data.getSlideCenter();
+        return new Rectangle(center.x - size.width / 2,
+                center.y - size.height / 2, size.width, size.height);
+    }
+
+    /**
+     * Creates a store with all nodes and edges of the given diagram,
+     * every node gets its estimated size. Node indexes and edge indexes
+     * of the store match the positions in the source lists.
+     *
+     * @param source diagram to copy
+     * @return new store with diagram's content
+     */
+    public NodeStore createStore(DiagramDataSource source) {
+        List<JNodeData> nodes = source.getNodeData();
+        List<JEdgeData> edges = source.getEdgeData();
+        NodeStore result = new NodeStore(nodes.size(), edges.size());
+        for (JNodeData data : nodes) {
+            result.addNode(data, estimate(data));
+        }
+        for (JEdgeData data : edges) {
+            result.addEdge(data.idxA, data.idxZ, data.conflict);
+        }
+        return result;
+    }
+
+    private int lineWidth(String line) {
+        Integer result = _widths.get(line);
+        if (result == null) {
+            result = _metrics.stringWidth(line);
+            _widths.put(line, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.widgets;
+
+import java.awt.Color;
+import java.awt.Container;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import oss.jthinker.datamodel.BorderType;
+
+/**
+ * Cache of the text components that are put inside nodes. Components
+ * of removed nodes are returned here and handed to new nodes with the
+ * same content, border and color instead of building a new label
+ * bundle. Cache holds at most one idle component per key, a bounded
+ * number of keys and only soft references, so it never keeps widgets
+ * alive under memory pressure.
+ *
+ * @author iappel
+ */
+public class RenderComponentCache {
+    private static final int DEFAULT_CAPACITY = 256;
+    private static final RenderComponentCache instance =
+            new RenderComponentCache(DEFAULT_CAPACITY);
+
+    private final Map<Key, SoftReference<JLabelBundle>> _idle;
+    private int _hits, _misses;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param capacity maximal number of idle components to keep
+     */
+    public RenderComponentCache(final int capacity) {
+        _idle = new LinkedHashMap<Key, SoftReference<JLabelBundle>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Key, SoftReference<JLabelBundle>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns application-wide cache instance.
+     *
+     * @return shared cache
+     */
+    public static RenderComponentCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns a component that displays the given content. Component
+     * is either taken from the cache or created anew, in both cases it
+     * is owned exclusively by the caller.
+     *
+     * @param content text to display
+     * @param border border of the node the component is for
+     * @param color background color
+     * @return component to put into the node
+     */
+    public synchronized JLabelBundle acquire(String content,
+                                             BorderType border, Color color) {
+        Key key = new Key(content, border, color);
+        SoftReference<JLabelBundle> ref = _idle.remove(key);
+        JLabelBundle result = ref == null ? null : ref.get();
+        if (result != null) {
+            _hits++;
+            // Component may still display its old node's number
+            if (!key.content.equals(result.getText())) {
+                result.setText(key.content);
+            }
+            return result;
+        }
+        _misses++;
+        return new JLabelBundle(content);
+    }
+
+    /**
+     * Returns a component, that is no longer used, to the cache.
+     * Component is detached from its parent. Component is cached under
+     * node's content rather than its displayed text, that may include
+     * node's number.
+     *
+     * @param bundle component to return
+     * @param content content of the node the component was in
+     * @param border border of the node the component was in
+     * @param color background color of the component
+     */
+    public synchronized void release(JLabelBundle bundle, String content,
+                                     BorderType border, Color color) {
+        Container parent = bundle.getParent();
+        if (parent != null) {
+            parent.remove(bundle);
+        }
+        _idle.put(new Key(content, border, color),
+                new SoftReference<JLabelBundle>(bundle));
+    }
+
+    /**
+     * Returns number of components taken from the cache.
+     *
+     * @return number of cache hits
+     */
+    public synchronized int getHits() {
+        return _hits;
+    }
+
+    /**
+     * Returns number of components that had to be created.
+     *
+     * @return number of cache misses
+     */
+    public synchronized int getMisses() {
+        return _misses;
+    }
+
+    /**
+     * Returns number of idle components in the cache, including ones
+     * already reclaimed by the garbage collector.
+     *
+     * @return number of cached entries
+     */
+    public synchronized int size() {
+        return _idle.size();
+    }
+
+    /**
+     * Drops all idle components.
+     */
+    public synchronized void clear() {
+        _idle.clear();
+    }
+
+    private static class Key {
+        private final String content;
+        private final BorderType border;
+        private final Color color;
+
+        Key(String content, BorderType border, Color color) {
+            this.content = content == null ? "" : content;
+            this.border = border;
+            this.color = color;
+        }
+
+        @Override
+        /** {@inheritDoc} */
+        public boolean equals(Object obj) {
+            if (obj instanceof Key) {
+                Key key = (Key)obj;
+                return key.content.equals(content) &&
+                       key.border == border &&
+                       (color == null ? key.color == null
+                                      : color.equals(key.color));
+            }
+            return false;
+        }
+
+        @Override
+        /** {@inheritDoc} */
+        public int hashCode() {
+            return content.hashCode() * 31 + border.hashCode() * 7 +
+                   (color == null ? 0 : color.hashCode());
+        }
+    }
+}
@@ -201,12 +201,14 @@ public class WidgetFactory {
                 menu.add(new AbstractAction("Not a conflict") {
                     public void actionPerformed(ActionEvent e) {
                         edge.setConflict(false);
+                        edgeCallback.onEdgeEdited(edge);
                     }
                 });
             } else {
                 menu.add(new AbstractAction("Conflict") {
                     public void actionPerformed(ActionEvent e) {
                         edge.setConflict(true);
+                        edgeCallback.onEdgeEdited(edge);
                     }
                 });
             }
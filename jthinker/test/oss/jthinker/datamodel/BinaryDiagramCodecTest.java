@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.datamodel;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.graphs.OrderingLevel;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for BinaryDiagramCodec class.
+ *
+ * @author iappel
+ */
+public class BinaryDiagramCodecTest {
+    public BinaryDiagramCodecTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static byte[] encode(DiagramDataSource source) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        BinaryDiagramCodec.encode(source, stream);
+        return stream.toByteArray();
+    }
+
+    /**
+     * Test of round-trip through binary form on a diagram large enough
+     * to be split into several blocks.
+     */
+    @Test
+    public void roundTrip() throws Exception {
+        System.out.println("roundTrip");
+        DummyDiagramDataSource source =
+                new DummyDiagramDataSource(DiagramType.CONFLICT_RESOLUTION);
+        source.set(new DiagramOptionData(false, OrderingLevel.OFF));
+        Color custom = new Color(12, 34, 56);
+        int count = 10000;
+        for (int i = 0; i < count; i++) {
+            Color color = i % 3 == 0 ? custom : Color.YELLOW;
+            String group = i % 7 == 0 ? "группа" : null;
+            source.add(new JNodeData(BorderType.values()[i % BorderType.values().length],
+                    i % 5 != 0, "Узел " + (i % 100), new Point(i - 500, -i * 3),
+                    color, i % 2 == 0 ? "" : "comment " + i, group));
+        }
+        for (int i = 1; i < count; i++) {
+            source.add(new JEdgeData(i - 1, i, i % 11 == 0));
+        }
+        for (int i = 2; i < count; i += 2) {
+            source.add(new JLegData(i, i - 1));
+        }
+
+        DiagramDataSource result = BinaryDiagramCodec.decode(encode(source));
+        assertEquals(source.getDiagramType(), result.getDiagramType());
+        assertEquals(source.getOptions(), result.getOptions());
+        assertEquals(source.getNodeData(), result.getNodeData());
+        assertEquals(source.getEdgeData(), result.getEdgeData());
+        assertEquals(source.getLegData(), result.getLegData());
+        for (int i = 0; i < count; i++) {
+            JNodeData expected = source.getNodeData().get(i);
+            JNodeData actual = result.getNodeData().get(i);
+            assertEquals(expected.getGroup(), actual.getGroup());
+            assertEquals(expected.getBackground(), actual.getBackground());
+            assertEquals(expected.getComment(), actual.getComment());
+        }
+        for (int i = 0; i < count - 1; i++) {
+            assertEquals(source.getEdgeData().get(i).conflict,
+                         result.getEdgeData().get(i).conflict);
+        }
+    }
+
+    /**
+     * Test that equal attributes of decoded nodes share instances.
+     */
+    @Test
+    public void interning() throws Exception {
+        System.out.println("interning");
+        DummyDiagramDataSource source = new DummyDiagramDataSource(DiagramType.FREEFORM_DIAGRAM);
+        for (int i = 0; i < 4; i++) {
+            source.add(new JNodeData(BorderType.ROUND_RECT, true,
+                    new String("same text"), new Point(i, i),
+                    new Color(1, 2, 3), "", "group"));
+        }
+        DataInterner interner = new DataInterner();
+        DiagramDataSource result = BinaryDiagramCodec.decode(encode(source), interner);
+        JNodeData first = result.getNodeData().get(0);
+        JNodeData last = result.getNodeData().get(3);
+        assertSame(first.getContent(), last.getContent());
+        assertSame(first.getBackground(), last.getBackground());
+        assertTrue(interner.getSavedBytes() > 0);
+
+        JNodeData copy = interner.intern(new JNodeData(BorderType.ROUND_RECT, true,
+                new String("same text"), new Point(0, 0), new Color(1, 2, 3), "", null));
+        assertSame(first.getContent(), copy.getContent());
+        assertSame(first.getBackground(), copy.getBackground());
+    }
+
+    /**
+     * Test of empty diagram without options.
+     */
+    @Test
+    public void empty() throws Exception {
+        System.out.println("empty");
+        DummyDiagramDataSource source = new DummyDiagramDataSource(DiagramType.CURRENT_REALITY_TREE);
+        DiagramDataSource result = BinaryDiagramCodec.decode(encode(source));
+        assertEquals(DiagramType.CURRENT_REALITY_TREE, result.getDiagramType());
+        assertNull(result.getOptions());
+        assertEquals(0, result.getNodeData().size());
+    }
+
+    /**
+     * Test on malformed and truncated data.
+     */
+    @Test
+    public void malformed() throws Exception {
+        System.out.println("malformed");
+        DummyDiagramDataSource source = new DummyDiagramDataSource(DiagramType.FUTURE_REALITY_TREE);
+        source.add(new JNodeData(BorderType.ELLIPSE, true, "text", new Point(1, 2)));
+        source.add(new JNodeData(BorderType.ELLIPSE, true, "more", new Point(3, 4)));
+        source.add(new JEdgeData(0, 1, false));
+        byte[] data = encode(source);
+        try {
+            BinaryDiagramCodec.decode(Arrays.copyOf(data, data.length - 2));
+            fail("Exception must be thrown");
+        } catch (IOException ex) {
+        }
+        try {
+            BinaryDiagramCodec.decode("<?xml".getBytes("UTF-8"));
+            fail("Exception must be thrown");
+        } catch (IOException ex) {
+        }
+        // Directory entries of the edge block and the leg block
+        source.add(new JLegData(0, 0));
+        data = encode(source);
+        int kind = -1;
+        for (int i = 0; i + 6 < data.length && kind < 0; i++) {
+            if (data[i] == 1 && data[i + 1] == 0 && data[i + 2] == 1 &&
+                data[i + 4] == 2 && data[i + 5] == 0 && data[i + 6] == 1) {
+                kind = i + 4;
+            }
+        }
+        assertTrue(kind > 0);
+        assertEquals(1, BinaryDiagramCodec.decode(data).getLegData().size());
+        data[kind] = (byte)0x80;
+        try {
+            BinaryDiagramCodec.decode(data);
+            fail("Exception must be thrown");
+        } catch (IOException ex) {
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.datamodel;
+
+import java.awt.Color;
+import java.awt.Point;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.graphs.OrderingLevel;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for DiagramData class.
+ *
+ * @author iappel
+ */
+public class DiagramDataTest {
+
+    public DiagramDataTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static DiagramData diagram(String content, String group,
+                                       boolean conflict) {
+        DummyDiagramDataSource source =
+                new DummyDiagramDataSource(DiagramType.CURRENT_REALITY_TREE);
+        source.add(new JNodeData(BorderType.ROUND_RECT, true, "first",
+                new Point(10, 20), Color.WHITE, "", null));
+        source.add(new JNodeData(BorderType.ELLIPSE, true, content,
+                new Point(30, 40), Color.PINK, "note", group));
+        source.add(new JEdgeData(0, 1, conflict));
+        source.add(new JLegData(0, 0));
+        DiagramData result = new DiagramData(DiagramType.CURRENT_REALITY_TREE);
+        result.load(source);
+        return result;
+    }
+
+    /**
+     * Test of fingerprint method and of equality based on it.
+     */
+    @Test
+    public void fingerprint() {
+        System.out.println("fingerprint");
+        DiagramData data = diagram("second", null, false);
+        DiagramData same = diagram(new String("second"), null, false);
+        assertEquals(data.fingerprint(), same.fingerprint());
+        assertEquals(data, same);
+        assertEquals(data.hashCode(), same.hashCode());
+
+        assertFalse(data.equals(diagram("other", null, false)));
+        assertFalse(data.equals(diagram("second", "group", false)));
+        assertFalse(data.equals(diagram("second", null, true)));
+        assertFalse(data.equals(new DiagramData(DiagramType.CURRENT_REALITY_TREE)));
+
+        long before = data.fingerprint();
+        data.getOptions().orderingLevel = OrderingLevel.OFF;
+        assertTrue(before != data.fingerprint());
+        assertFalse(data.equals(same));
+        data.getOptions().fill(same.getOptions());
+        assertEquals(before, data.fingerprint());
+
+        data.load(diagram("other", null, false));
+        assertEquals(diagram("other", null, false).fingerprint(), data.fingerprint());
+    }
+
+    /**
+     * Node fingerprints must agree with node equality.
+     */
+    @Test
+    public void nodeFingerprint() {
+        System.out.println("nodeFingerprint");
+        JNodeData node = new JNodeData(BorderType.HEXAGON, false, "text",
+                new Point(1, 2), Color.WHITE, "", "group");
+        JNodeData same = node.clone("text", new Point(1, 2), Color.WHITE, "", "group");
+        assertEquals(node, same);
+        assertEquals(node.fingerprint(), same.fingerprint());
+        assertEquals(node.hashCode(), same.hashCode());
+        assertFalse(node.equals(node.clone("text", new Point(2, 1), Color.WHITE, "", "group")));
+        assertFalse(node.equals(node.clone("text", new Point(1, 2), Color.WHITE, "", null)));
+        assertFalse(node.equals(node.clone("text", new Point(1, 2), Color.WHITE, "note", "group")));
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.datamodel;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.File;
+import java.io.RandomAccessFile;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.graphs.OrderingLevel;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for DiagramJournal class.
+ *
+ * @author iappel
+ */
+public class DiagramJournalTest {
+    private File file;
+
+    public DiagramJournalTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("journal", ".jthinker");
+        DiagramData data = new DiagramData(DiagramType.FUTURE_REALITY_TREE);
+        DummyDiagramDataSource source =
+                new DummyDiagramDataSource(DiagramType.FUTURE_REALITY_TREE);
+        for (int i = 0; i < 3; i++) {
+            source.add(new JNodeData(BorderType.ROUND_RECT, true, "node " + i,
+                    new Point(10 * i, 20 * i), Color.WHITE, "", null));
+        }
+        source.add(new JEdgeData(0, 1, false));
+        source.add(new JEdgeData(1, 2, false));
+        source.add(new JLegData(0, 1));
+        data.load(source);
+        data.save(file);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        DiagramJournal.discard(file);
+        file.delete();
+    }
+
+    private boolean append(DiagramJournal journal) throws Exception {
+        return journal.appendTo(file, file.length(), file.lastModified());
+    }
+
+    /**
+     * Test of replaying several batches over the snapshot.
+     */
+    @Test
+    public void replay() throws Exception {
+        System.out.println("replay");
+        DiagramJournal journal = new DiagramJournal();
+        journal.moveNode(2, new Point(-5, 7));
+        journal.removeNode(1);
+        journal.removeEdge(0);
+        journal.removeEdge(1);
+        assertTrue(append(journal));
+        assertTrue(journal.isEmpty());
+
+        journal.setNode(3, new JNodeData(BorderType.ELLIPSE, false, "",
+                new Point(1, 2), Color.PINK, "note", "group"));
+        journal.setEdge(2, 3, 0, true);
+        journal.setLeg(1, 2, 2);
+        journal.setOptions(new DiagramOptionData(false, OrderingLevel.OFF));
+        assertTrue(append(journal));
+
+        DiagramData data = new DiagramData(file);
+        assertEquals(3, data.getNodeData().size());
+        assertEquals("node 0", data.getNodeData().get(0).getContent());
+        assertEquals(new Point(-5, 7), data.getNodeData().get(1).getSlideCenter());
+        assertEquals("node 2", data.getNodeData().get(1).getContent());
+        JNodeData added = data.getNodeData().get(2);
+        assertEquals(Color.PINK, added.getBackground());
+        assertEquals("group", added.getGroup());
+        assertEquals(1, data.getEdgeData().size());
+        assertEquals(new JEdgeData(2, 0, true), data.getEdgeData().get(0));
+        assertTrue(data.getEdgeData().get(0).conflict);
+        assertEquals(1, data.getLegData().size());
+        assertEquals(new JLegData(1, 0), data.getLegData().get(0));
+        assertFalse(data.getOptions().numbering);
+
+        DiagramJournal.Ids ids = data.getJournalIds();
+        assertArrayEquals(new int[] {0, 2, 3}, ids.nodes);
+        assertArrayEquals(new int[] {2}, ids.edges);
+        assertArrayEquals(new int[] {1}, ids.legs);
+        assertEquals(4, ids.nextNode);
+        assertEquals(3, ids.nextEdge);
+        assertEquals(2, ids.nextLeg);
+    }
+
+    /**
+     * Test that a partially written batch is dropped as a whole.
+     */
+    @Test
+    public void truncated() throws Exception {
+        System.out.println("truncated");
+        DiagramJournal journal = new DiagramJournal();
+        journal.removeNode(0);
+        assertTrue(append(journal));
+        journal.removeNode(1);
+        journal.removeNode(2);
+        assertTrue(append(journal));
+
+        File journalFile = DiagramJournal.journalFile(file);
+        RandomAccessFile raf = new RandomAccessFile(journalFile, "rw");
+        raf.setLength(raf.length() - 1);
+        raf.close();
+
+        DiagramData data = new DiagramData(file);
+        assertEquals(2, data.getNodeData().size());
+        assertEquals("node 1", data.getNodeData().get(0).getContent());
+    }
+
+    /**
+     * Test that journal of another snapshot is neither appended to nor
+     * replayed.
+     */
+    @Test
+    public void stale() throws Exception {
+        System.out.println("stale");
+        DiagramJournal journal = new DiagramJournal();
+        journal.removeNode(0);
+        long length = file.length(), modified = file.lastModified();
+        assertTrue(append(journal));
+        assertFalse(journal.appendTo(file, length + 1, modified));
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(raf.length());
+        raf.write('\n');
+        raf.close();
+        DiagramData data = new DiagramData(file);
+        assertEquals(3, data.getNodeData().size());
+        assertNull(data.getJournalIds());
+    }
+}
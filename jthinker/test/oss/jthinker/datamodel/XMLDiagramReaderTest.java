@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.datamodel;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.graphs.OrderingLevel;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for XMLDiagramReader class.
+ *
+ * @author iappel
+ */
+public class XMLDiagramReaderTest {
+    private static final String SAMPLE =
+        "\n  <?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<diagram type=\"FUTURE_REALITY_TREE\">\n" +
+        "  <node editable=\"true\" type=\"ROUND_RECT\">\n" +
+        "    <center x=\"10\" y=\"20\"/>\n" +
+        "    <content text=\"&quot;Пример&quot; текста\"/>\n" +
+        "    <comment text=\"note\"/>\n" +
+        "    <color name=\"pink\"/>\n" +
+        "    <group-name text=\"causes\"/>\n" +
+        "  </node>\n" +
+        "  <node editable=\"false\" type=\"ELLIPSE\">\n" +
+        "    <center x=\"30\" y=\"40\"/>\n" +
+        "    <content text=\"ignored\"/>\n" +
+        "    <comment text=\"\"/>\n" +
+        "    <color name=\"white\"/>\n" +
+        "  </node>\n" +
+        "  <edge conflict=\"true\" end=\"1\" start=\"0\"/>\n" +
+        "  <edge end=\"0\" start=\"1\"/>\n" +
+        "  <leg end=\"0\" start=\"1\"/>\n" +
+        "  <options>\n" +
+        "    <option name=\"numbering\" value=\"false\"/>\n" +
+        "    <option name=\"ordering-level\" value=\"OFF\"/>\n" +
+        "  </options>\n" +
+        "</diagram>\n";
+
+    public XMLDiagramReaderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static InputStream stream(String text) throws Exception {
+        return new ByteArrayInputStream(text.getBytes("UTF-8"));
+    }
+
+    /**
+     * Streaming loader must produce exactly what DOM-based one does.
+     */
+    @Test
+    public void sameAsDOM() throws Exception {
+        System.out.println("sameAsDOM");
+        DiagramDataSource dom = XMLUtils.decodeXML(XMLUtils.parseXML(SAMPLE.trim()));
+        DiagramDataSource stax = XMLUtils.load(stream(SAMPLE));
+
+        assertEquals(dom.getDiagramType(), stax.getDiagramType());
+        assertEquals(dom.getNodeData(), stax.getNodeData());
+        assertEquals(dom.getEdgeData(), stax.getEdgeData());
+        assertEquals(dom.getLegData(), stax.getLegData());
+        assertEquals(dom.getOptions(), stax.getOptions());
+
+        JNodeData node = stax.getNodeData().get(0);
+        assertEquals("\"Пример\" текста", node.getContent());
+        assertEquals("causes", node.getGroup());
+        assertEquals(Color.PINK, node.getBackground());
+        assertEquals(new Point(10, 20), node.getSlideCenter());
+        assertEquals("", stax.getNodeData().get(1).getContent());
+        assertTrue(stax.getEdgeData().get(0).conflict);
+        assertFalse(stax.getEdgeData().get(1).conflict);
+        assertEquals(OrderingLevel.OFF, stax.getOptions().orderingLevel);
+    }
+
+    /**
+     * Test on malformed diagram roots.
+     */
+    @Test
+    public void wrongRoot() throws Exception {
+        System.out.println("wrongRoot");
+        try {
+            XMLUtils.load(stream("<?xml version=\"1.0\"?><diagram> </diagram>"));
+            fail("Exception must be thrown");
+        } catch (IllegalArgumentException ex) {
+        }
+        DiagramDataSource data = XMLUtils.load(stream(
+            "<diagram type=\"CURRENT_REALITY_TREE\"> </diagram>"));
+        assertEquals(0, data.getNodeData().size());
+        assertNull(data.getOptions());
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.datamodel;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for streaming XML saving.
+ *
+ * @author iappel
+ */
+public class XMLWriterTest {
+
+    public XMLWriterTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static DiagramData sample() {
+        DiagramData data = new DiagramData(DiagramType.FREEFORM_DIAGRAM);
+        DummyDiagramDataSource source = new DummyDiagramDataSource(DiagramType.FREEFORM_DIAGRAM);
+        source.add(new JNodeData(BorderType.ROUND_RECT, true,
+                "Пример \"текста\"\nв две строки & <тег>", new Point(10, 20),
+                Color.PINK, "tab\there", "group"));
+        source.add(new JNodeData(BorderType.ELLIPSE, false, "", new Point(5, 5),
+                Color.WHITE, "", null));
+        source.add(new JNodeData(BorderType.HEXAGON, true, "third", new Point(0, 90),
+                Color.CYAN, "", null));
+        source.add(new JEdgeData(0, 2, true));
+        source.add(new JEdgeData(2, 1, false));
+        source.add(new JLegData(1, 0));
+        source.set(new DiagramOptionData());
+        data.load(source);
+        return data;
+    }
+
+    /**
+     * Streamed output must be readable by both loaders.
+     */
+    @Test
+    public void roundTrip() throws Exception {
+        System.out.println("roundTrip");
+        DiagramData data = sample();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        XMLUtils.saveToStream(data, bytes);
+
+        DiagramDataSource stax = XMLUtils.load(new ByteArrayInputStream(bytes.toByteArray()));
+        DiagramDataSource dom = XMLUtils.decodeXML(
+                XMLUtils.parseXML(new String(bytes.toByteArray(), "UTF-8")));
+
+        for (DiagramDataSource loaded : new DiagramDataSource[] {stax, dom}) {
+            assertEquals(data.getDiagramType(), loaded.getDiagramType());
+            assertEquals(data.getNodeData(), loaded.getNodeData());
+            assertEquals(data.getEdgeData(), loaded.getEdgeData());
+            assertEquals(data.getLegData(), loaded.getLegData());
+            assertEquals(data.getOptions(), loaded.getOptions());
+            assertEquals("group", loaded.getNodeData().get(0).getGroup());
+            assertTrue(loaded.getEdgeData().get(0).conflict);
+        }
+    }
+
+    /**
+     * Test of element nesting and indentation.
+     */
+    @Test
+    public void indentation() throws Exception {
+        System.out.println("indentation");
+        StringWriter out = new StringWriter();
+        XMLWriter writer = new XMLWriter(out);
+        writer.startDocument();
+        writer.startElement("a").attribute("x", "1");
+        writer.startElement("b").endElement();
+        writer.startElement("c");
+        writer.startElement("d").attribute("y", "\"").endElement();
+        writer.endDocument();
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n" +
+                "<a x=\"1\">\n" +
+                "    <b/>\n" +
+                "    <c>\n" +
+                "        <d y=\"&quot;\"/>\n" +
+                "    </c>\n" +
+                "</a>\n", out.toString());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.diagrams;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.datamodel.BorderType;
+import oss.jthinker.datamodel.DiagramData;
+import oss.jthinker.datamodel.DiagramDataSource;
+import oss.jthinker.datamodel.DiagramOptionData;
+import oss.jthinker.datamodel.DiagramType;
+import oss.jthinker.datamodel.JEdgeData;
+import oss.jthinker.datamodel.JLegData;
+import oss.jthinker.datamodel.JNodeData;
+import oss.jthinker.graphs.OrderingLevel;
+import oss.jthinker.widgets.NodeSizeEstimator;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for DiagramRelayout class.
+ *
+ * @author iappel
+ */
+public class DiagramRelayoutTest {
+    private final NodeSizeEstimator estimator = new NodeSizeEstimator();
+    private DiagramData diagram;
+
+    public DiagramRelayoutTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+        // All nodes are stacked in one place
+        final List<JNodeData> nodes = new ArrayList<JNodeData>();
+        final List<JEdgeData> edges = new ArrayList<JEdgeData>();
+        for (int i = 0; i < 12; i++) {
+            nodes.add(new JNodeData(BorderType.ROUND_RECT, true, "Statement " + i,
+                    new Point(300, 300), Color.WHITE, "", null));
+            if (i > 0) {
+                edges.add(new JEdgeData((i - 1) / 2, i, false));
+            }
+        }
+        diagram = new DiagramData(DiagramType.CURRENT_REALITY_TREE);
+        diagram.load(new DiagramDataSource() {
+            public DiagramType getDiagramType() {
+                return DiagramType.CURRENT_REALITY_TREE;
+            }
+
+            public List<JNodeData> getNodeData() {
+                return nodes;
+            }
+
+            public List<JEdgeData> getEdgeData() {
+                return edges;
+            }
+
+            public List<JLegData> getLegData() {
+                return Collections.emptyList();
+            }
+
+            public DiagramOptionData getOptions() {
+                return new DiagramOptionData();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private void assertNoOverlaps(DiagramData result) {
+        List<JNodeData> nodes = result.getNodeData();
+        assertEquals(diagram.getNodeData().size(), nodes.size());
+        assertEquals(diagram.getEdgeData(), result.getEdgeData());
+        for (int i = 0; i < nodes.size(); i++) {
+            assertEquals(diagram.getNodeData().get(i).getContent(),
+                    nodes.get(i).getContent());
+            Rectangle a = estimator.bounds(nodes.get(i));
+            for (int j = i + 1; j < nodes.size(); j++) {
+                assertFalse(a.intersects(estimator.bounds(nodes.get(j))));
+            }
+        }
+    }
+
+    /**
+     * Test of overlap resolution.
+     */
+    @Test
+    public void suppressOverlap() {
+        System.out.println("suppressOverlap");
+        DiagramRelayout relayout = new DiagramRelayout(estimator);
+        assertNoOverlaps(relayout.relayout(diagram, OrderingLevel.SUPPRESS_OVERLAP));
+    }
+
+    /**
+     * Test of layered layout.
+     */
+    @Test
+    public void layered() {
+        System.out.println("layered");
+        DiagramRelayout relayout = new DiagramRelayout(estimator);
+        assertNoOverlaps(relayout.relayout(diagram, OrderingLevel.LAYERED));
+    }
+}
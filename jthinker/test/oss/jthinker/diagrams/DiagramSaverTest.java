@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.diagrams;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.datamodel.BorderType;
+import oss.jthinker.datamodel.DiagramData;
+import oss.jthinker.datamodel.DiagramDataSource;
+import oss.jthinker.datamodel.DiagramJournal;
+import oss.jthinker.datamodel.DiagramOptionData;
+import oss.jthinker.datamodel.DiagramType;
+import oss.jthinker.datamodel.JEdgeData;
+import oss.jthinker.datamodel.JLegData;
+import oss.jthinker.datamodel.JNodeData;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for DiagramSaver class.
+ *
+ * @author iappel
+ */
+public class DiagramSaverTest {
+    private static final Executor DIRECT = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private File file;
+    private final List<String> results = new ArrayList<String>();
+    private int snapshots;
+
+    public DiagramSaverTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("saver", ".jthinker");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        DiagramJournal.discard(file);
+        file.delete();
+    }
+
+    /**
+     * Diagram, that counts its saves and may block while saving.
+     */
+    private static class CountingData extends DiagramData {
+        private final CountDownLatch latch;
+        private volatile int saves;
+
+        CountingData(int count, CountDownLatch latch) {
+            super(DiagramType.FUTURE_REALITY_TREE);
+            this.latch = latch;
+            DummySource source = new DummySource();
+            for (int i = 0; i < count; i++) {
+                source.nodes.add(new JNodeData(BorderType.ELLIPSE, true,
+                        "node " + i, new Point(i, i)));
+            }
+            load(source);
+        }
+
+        @Override
+        public void save(File f) throws IOException {
+            saves++;
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            }
+            super.save(f);
+        }
+    }
+
+    private static class DummySource implements DiagramDataSource {
+        final List<JNodeData> nodes = new ArrayList<JNodeData>();
+
+        public DiagramType getDiagramType() {
+            return DiagramType.FUTURE_REALITY_TREE;
+        }
+
+        public List<JNodeData> getNodeData() {
+            return nodes;
+        }
+
+        public List<JEdgeData> getEdgeData() {
+            return new ArrayList<JEdgeData>();
+        }
+
+        public List<JLegData> getLegData() {
+            return new ArrayList<JLegData>();
+        }
+
+        public DiagramOptionData getOptions() {
+            return null;
+        }
+    }
+
+    private DiagramSaver.Callback callback(final String name) {
+        return new DiagramSaver.Callback() {
+            public void saved(File f) {
+                synchronized (results) {
+                    results.add(name + " saved");
+                }
+            }
+
+            public void failed(File f, Throwable error) {
+                synchronized (results) {
+                    results.add(name + " failed");
+                }
+            }
+        };
+    }
+
+    private DiagramSaver saver(final DiagramData fallback) {
+        return new DiagramSaver(new DiagramSaver.SnapshotSource() {
+            public DiagramData takeSnapshot(File f) {
+                snapshots++;
+                return fallback;
+            }
+        }, DIRECT);
+    }
+
+    /**
+     * Test that saves queued while another one runs coalesce.
+     */
+    @Test
+    public void coalesce() throws Exception {
+        System.out.println("coalesce");
+        CountDownLatch latch = new CountDownLatch(1);
+        CountingData first = new CountingData(1, latch);
+        CountingData second = new CountingData(2, null);
+        CountingData third = new CountingData(3, null);
+        DiagramSaver saver = saver(null);
+
+        saver.save(file, first, callback("first"));
+        while (first.saves == 0) {
+            Thread.sleep(1);
+        }
+        saver.save(file, second, callback("second"));
+        saver.save(file, third, callback("third"));
+        latch.countDown();
+        assertTrue(saver.await());
+
+        assertEquals(1, first.saves);
+        assertEquals(0, second.saves);
+        assertEquals(1, third.saves);
+        assertEquals(3, results.size());
+        assertEquals(3, new DiagramData(file).getNodeData().size());
+    }
+
+    /**
+     * Test that batch of a replaced snapshot causes a fresh snapshot.
+     */
+    @Test
+    public void staleBatch() throws Exception {
+        System.out.println("staleBatch");
+        CountingData fallback = new CountingData(2, null);
+        DiagramSaver saver = saver(fallback);
+        new CountingData(1, null).save(file);
+        saver.setSnapshot(file);
+
+        DiagramJournal batch = new DiagramJournal();
+        batch.removeNode(0);
+        saver.append(file, batch, callback("append"));
+        assertTrue(saver.await());
+        assertEquals(0, snapshots);
+        assertEquals(0, new DiagramData(file).getNodeData().size());
+
+        file.setLastModified(file.lastModified() - 10000);
+        batch = new DiagramJournal();
+        batch.removeNode(0);
+        saver.append(file, batch, callback("stale"));
+        assertTrue(saver.await());
+        assertEquals(1, snapshots);
+        assertEquals(1, fallback.saves);
+        assertEquals(2, new DiagramData(file).getNodeData().size());
+        assertEquals("stale saved", results.get(results.size() - 1));
+    }
+
+    /**
+     * Test that batches are not appended after a failed append.
+     */
+    @Test
+    public void failedBatch() throws Exception {
+        System.out.println("failedBatch");
+        CountingData fallback = new CountingData(2, null);
+        DiagramSaver saver = saver(fallback);
+        new CountingData(1, null).save(file);
+        saver.setSnapshot(file);
+
+        DiagramJournal broken = new DiagramJournal() {
+            @Override
+            public boolean appendTo(File snapshot, long length, long modified)
+                    throws IOException {
+                throw new IOException("Disk full");
+            }
+        };
+        broken.removeNode(0);
+        saver.append(file, broken, callback("broken"));
+        assertFalse(saver.await());
+        assertEquals("broken failed", results.get(0));
+
+        DiagramJournal batch = new DiagramJournal();
+        batch.moveNode(0, new Point(5, 5));
+        saver.append(file, batch, callback("next"));
+        assertTrue(saver.await());
+        assertEquals(1, snapshots);
+        assertEquals(1, fallback.saves);
+        assertEquals(2, new DiagramData(file).getNodeData().size());
+        assertEquals("next saved", results.get(results.size() - 1));
+    }
+
+    /**
+     * Test that errors are reported rather than thrown.
+     */
+    @Test
+    public void failure() throws Exception {
+        System.out.println("failure");
+        DiagramSaver saver = saver(null);
+        File missing = new File(file.getPath() + ".missing", "diagram.jthinker");
+        saver.save(missing, new CountingData(1, null), callback("missing"));
+        assertFalse(saver.await());
+        assertEquals("missing failed", results.get(0));
+    }
+}
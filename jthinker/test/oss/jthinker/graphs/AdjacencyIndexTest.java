@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.datamodel.BorderType;
+import oss.jthinker.datamodel.DiagramDataSource;
+import oss.jthinker.datamodel.DiagramOptionData;
+import oss.jthinker.datamodel.DiagramType;
+import oss.jthinker.datamodel.JEdgeData;
+import oss.jthinker.datamodel.JLegData;
+import oss.jthinker.datamodel.JNodeData;
+import oss.jthinker.util.IntList;
+import oss.jthinker.util.Pair;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for AdjacencyIndex class.
+ *
+ * @author iappel
+ */
+public class AdjacencyIndexTest {
+
+    public AdjacencyIndexTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static Set<Integer> set(IntList list) {
+        Set<Integer> result = new HashSet<Integer>();
+        for (int i = 0; i < list.size(); i++) {
+            result.add(list.get(i));
+        }
+        return result;
+    }
+
+    private static DiagramDataSource diagram(final List<JEdgeData> edges,
+                                             final List<JLegData> legs) {
+        final List<JNodeData> nodes = new ArrayList<JNodeData>();
+        for (int i = 0; i < 4; i++) {
+            nodes.add(new JNodeData(BorderType.ROUND_RECT, true, "node " + i,
+                    new Point(100 * i, 10 * i), Color.WHITE, "", null));
+        }
+        return new DiagramDataSource() {
+            public DiagramType getDiagramType() {
+                return DiagramType.CURRENT_REALITY_TREE;
+            }
+
+            public List<JNodeData> getNodeData() {
+                return nodes;
+            }
+
+            public List<JEdgeData> getEdgeData() {
+                return edges;
+            }
+
+            public List<JLegData> getLegData() {
+                return legs;
+            }
+
+            public DiagramOptionData getOptions() {
+                return new DiagramOptionData();
+            }
+        };
+    }
+
+    // 0 -> 2, 1 -> 2, 0 -> 1, 2 -> 3 with legs from node 3 to edge 0
+    // and from nodes 0 and 3 to edge 1
+    private static AdjacencyIndex sample() {
+        return new AdjacencyIndex(diagram(
+                Arrays.asList(new JEdgeData(0, 2, false),
+                              new JEdgeData(1, 2, false),
+                              new JEdgeData(0, 1, false),
+                              new JEdgeData(2, 3, true)),
+                Arrays.asList(new JLegData(3, 0),
+                              new JLegData(0, 1),
+                              new JLegData(3, 1))));
+    }
+
+    /**
+     * Test of edge and leg grouping by nodes and edges.
+     */
+    @Test
+    public void grouping() {
+        System.out.println("grouping");
+        AdjacencyIndex index = sample();
+        assertEquals(4, index.nodeCount());
+        assertEquals(4, index.edgeCount());
+        assertEquals(3, index.legCount());
+
+        assertEquals(Arrays.asList(2, 0), index.outEdges(0));
+        assertEquals(Arrays.asList(3), index.outEdges(2));
+        assertEquals(Arrays.asList(), index.outEdges(3));
+        assertEquals(Arrays.asList(0, 1), index.inEdges(2));
+        assertEquals(Arrays.asList(), index.inEdges(0));
+        assertEquals(2, index.outEdge(0, 0));
+        assertEquals(1, index.inEdge(2, 1));
+        assertEquals(2, index.outDegree(0));
+        assertEquals(2, index.inDegree(2));
+        assertEquals(0, index.inDegree(Integer.valueOf(0)));
+
+        assertEquals(Arrays.asList(1, 2), index.getOutcomeNodes(Integer.valueOf(0)));
+        assertEquals(Arrays.asList(0, 1), index.getIncomeNodes(Integer.valueOf(2)));
+        assertEquals(Arrays.asList(2), index.getIncomeNodes(Integer.valueOf(3)));
+
+        assertEquals(Arrays.asList(0), index.edgeLegs(0));
+        assertEquals(Arrays.asList(1, 2), index.edgeLegs(1));
+        assertEquals(Arrays.asList(), index.edgeLegs(3));
+        assertEquals(Arrays.asList(0, 2), index.nodeLegs(3));
+        assertEquals(Arrays.asList(1), index.nodeLegs(0));
+        assertEquals(3, index.legNode(2));
+        assertEquals(1, index.legEdge(2));
+        assertEquals(2, index.source(3));
+        assertEquals(3, index.target(3));
+
+        assertEquals(new Pair<Integer, Integer>(1, 2), index.endpoints(1));
+        assertEquals(new Point(200, 20),
+                index.getMapping().convert(index.getMapping().fetch(2)));
+    }
+
+    /**
+     * Test of connection and source lookups of a diagram's index.
+     */
+    @Test
+    public void connections() {
+        System.out.println("connections");
+        AdjacencyIndex index = sample();
+        assertEquals(Integer.valueOf(0), index.connection(Integer.valueOf(0), Integer.valueOf(2)));
+        assertEquals(Integer.valueOf(2), index.connection(Integer.valueOf(0), Integer.valueOf(1)));
+        assertEquals(Integer.valueOf(3), index.connection(Integer.valueOf(2), Integer.valueOf(3)));
+        assertNull(index.connection(Integer.valueOf(2), Integer.valueOf(0)));
+        assertNull(index.connection(Integer.valueOf(3), Integer.valueOf(3)));
+        assertEquals(Arrays.asList(0), index.getAllSources());
+        assertEquals(1, index.sourceCount());
+    }
+
+    /**
+     * Node and edge collections are views of index ranges.
+     */
+    @Test
+    public void rangeView() {
+        System.out.println("rangeView");
+        AdjacencyIndex index = sample();
+        assertEquals(4, index.getAllNodes().size());
+        assertTrue(index.getAllNodes().contains(3));
+        assertFalse(index.getAllNodes().contains(4));
+        assertFalse(index.getAllNodes().contains(-1));
+        assertFalse(index.getAllNodes().contains("3"));
+        assertTrue(index.isEdgeModelled(0));
+        assertFalse(index.isNodeModelled(4));
+        assertEquals(Arrays.asList(0, 1, 2, 3),
+                new ArrayList<Integer>(index.getAllEdges()));
+
+        Iterator<Integer> iterator = index.getAllNodes().iterator();
+        for (int i = 0; i < 4; i++) {
+            assertTrue(iterator.hasNext());
+            assertEquals(Integer.valueOf(i), iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            fail("Iterator went past the range");
+        } catch (NoSuchElementException ex) {
+        }
+    }
+
+    /**
+     * Edges and legs must refer to existing nodes and edges.
+     */
+    @Test
+    public void dangling() {
+        System.out.println("dangling");
+        List<JLegData> noLegs = new ArrayList<JLegData>();
+        List<JEdgeData> edge = Arrays.asList(new JEdgeData(0, 1, false));
+        try {
+            new AdjacencyIndex(diagram(
+                    Arrays.asList(new JEdgeData(0, 4, false)), noLegs));
+            fail("Edge to a missing node was accepted");
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            new AdjacencyIndex(diagram(
+                    Arrays.asList(new JEdgeData(-1, 0, false)), noLegs));
+            fail("Edge from a missing node was accepted");
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            new AdjacencyIndex(diagram(edge, Arrays.asList(new JLegData(2, 1))));
+            fail("Leg to a missing edge was accepted");
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            new AdjacencyIndex(diagram(edge, Arrays.asList(new JLegData(4, 0))));
+            fail("Leg from a missing node was accepted");
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            new AdjacencyIndex(3, new int[] {0, 1}, new int[] {1});
+            fail("Edge without an end was accepted");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    /**
+     * Test of adjacency queries.
+     */
+    @Test
+    public void queries() {
+        System.out.println("queries");
+        AdjacencyIndex graph = new AdjacencyIndex(5,
+                new int[] {0, 0, 1, 3, 2, 0},
+                new int[] {4, 2, 2, 2, 4, 1});
+        assertEquals(5, graph.nodeCount());
+        assertEquals(6, graph.edgeCount());
+        assertEquals(3, graph.outDegree(0));
+        assertEquals(3, graph.inDegree(2));
+        assertEquals(0, graph.inDegree(0));
+
+        assertEquals(1, graph.connection(0, 2));
+        assertEquals(5, graph.connection(0, 1));
+        assertEquals(0, graph.connection(0, 4));
+        assertEquals(-1, graph.connection(4, 0));
+        assertEquals(-1, graph.connection(1, 4));
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            assertEquals(e, graph.connection(graph.source(e), graph.target(e)));
+        }
+
+        IntList buffer = new IntList();
+        assertEquals("[1, 2, 4]", graph.getOutcomeNodes(0, buffer).toString());
+        buffer.clear();
+        graph.getIncomeNodes(2, buffer).sort();
+        assertEquals("[0, 1, 3]", buffer.toString());
+        buffer.clear();
+        graph.getAllSources(buffer).sort();
+        assertEquals("[0, 3]", buffer.toString());
+        assertEquals(2, graph.sourceCount());
+    }
+
+    /**
+     * Test of random picks.
+     */
+    @Test
+    public void sampling() {
+        System.out.println("sampling");
+        AdjacencyIndex graph = new AdjacencyIndex(6,
+                new int[] {0, 1, 2, 3, 4},
+                new int[] {5, 5, 5, 4, 3});
+        IntList buffer = new IntList();
+        for (int k = 0; k < 50; k++) {
+            buffer.clear();
+            assertTrue(graph.getRandomSources(3, buffer));
+            assertEquals(3, set(buffer).size());
+            assertTrue(set(buffer).contains(0));
+            buffer.clear();
+            assertEquals(5, graph.getRandomIncomings(2, buffer));
+            assertEquals(2, set(buffer).size());
+            assertTrue(set(buffer).iterator().next() < 3);
+            buffer.clear();
+            int target = graph.getRandomIncomings(1, buffer);
+            assertTrue(target == 5 || target == 4 || target == 3);
+            assertEquals(1, buffer.size());
+            assertTrue(graph.connection(buffer.get(0), target) >= 0);
+        }
+        assertFalse(graph.getRandomSources(4, buffer));
+        assertEquals(-1, graph.getRandomIncomings(4, buffer));
+    }
+
+    /**
+     * Snapshot must agree with the model it was taken of.
+     */
+    @Test
+    public void snapshot() {
+        System.out.println("snapshot");
+        NodeStore store = new NodeStore();
+        for (int i = 0; i < 6; i++) {
+            store.addNode(new Rectangle(i * 200, 0, 100, 40),
+                    BorderType.ROUND_RECT, Color.WHITE, "node");
+        }
+        store.addEdge(0, 1, false);
+        store.addEdge(2, 1, false);
+        int removed = store.addEdge(3, 4, false);
+        store.addEdge(4, 5, false);
+        store.removeEdge(removed);
+        store.removeNode(3);
+
+        List<Integer> nodes = new ArrayList<Integer>(store.getAllNodes());
+        AdjacencyIndex graph = AdjacencyIndex.snapshot(store, nodes);
+        assertEquals(store.nodeCount(), graph.nodeCount());
+        assertEquals(store.edgeCount(), graph.edgeCount());
+        IntList buffer = new IntList();
+        for (int id = 0; id < nodes.size(); id++) {
+            int node = nodes.get(id);
+            assertEquals(store.inDegree(node), graph.inDegree(id));
+            assertEquals(store.outDegree(node), graph.outDegree(id));
+            buffer.clear();
+            graph.getOutcomeNodes(id, buffer);
+            Set<Integer> expected = new HashSet<Integer>();
+            for (int peer : store.getOutcomeNodes(node)) {
+                expected.add(nodes.indexOf(peer));
+            }
+            assertEquals(expected, set(buffer));
+        }
+        assertEquals(store.getAllSources().size(), graph.sourceCount());
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package oss.jthinker.graphs;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.datamodel.BorderType;
+import oss.jthinker.util.Pair;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for EdgeRouter class.
+ *
+ * @author iappel
+ */
+public class EdgeRouterTest {
+
+    public EdgeRouterTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static int node(NodeStore store, int x, int y) {
+        return store.addNode(new Rectangle(x, y, 100, 40),
+                BorderType.ROUND_RECT, Color.WHITE, "node");
+    }
+
+    private static boolean onBorder(Rectangle rect, Point p) {
+        boolean inX = p.x >= rect.x && p.x <= rect.x + rect.width;
+        boolean inY = p.y >= rect.y && p.y <= rect.y + rect.height;
+        return (inY && (p.x == rect.x || p.x == rect.x + rect.width)) ||
+               (inX && (p.y == rect.y || p.y == rect.y + rect.height));
+    }
+
+    private static void assertRouted(NodeStore store, int edge, List<Point> route) {
+        assertNotNull(route);
+        Pair<Integer, Integer> ends = store.endpoints(edge);
+        assertTrue(onBorder(store.getBounds(ends.first), route.get(0)));
+        assertTrue(onBorder(store.getBounds(ends.second), route.get(route.size() - 1)));
+        for (int i = 1; i < route.size(); i++) {
+            Point a = route.get(i - 1), z = route.get(i);
+            assertTrue(a.x == z.x || a.y == z.y);
+            Rectangle area = new Rectangle(a);
+            area.add(z);
+            area.grow(EdgeRouter.MARGIN, EdgeRouter.MARGIN);
+            Line2D line = new Line2D.Double(a, z);
+            for (int node : store.nodesIn(area)) {
+                if (node == ends.first || node == ends.second) {
+                    continue;
+                }
+                Rectangle rect = store.getBounds(node);
+                rect.grow(EdgeRouter.MARGIN - 1, EdgeRouter.MARGIN - 1);
+                assertFalse(route.toString(), line.intersects(rect));
+            }
+        }
+    }
+
+    /**
+     * Test of routing around a node.
+     */
+    @Test
+    public void obstacles() {
+        System.out.println("obstacles");
+        NodeStore store = new NodeStore();
+        int a = node(store, 0, 100);
+        int z = node(store, 600, 100);
+        node(store, 300, 80);
+        int edge = store.addEdge(a, z, false);
+        EdgeRouter<Integer, Integer> router = new EdgeRouter<Integer, Integer>(store);
+        List<Point> route = router.getRoute(edge);
+        assertRouted(store, edge, route);
+        assertTrue(route.size() > 2);
+
+        // Nodes side by side are linked straight
+        store.setBounds(z, 200, 100, 100, 40);
+        router.nodeMoved(z);
+        route = router.getRoute(edge);
+        assertRouted(store, edge, route);
+        assertEquals(2, route.size());
+
+        router.edgeRemoved(edge);
+        try {
+            router.getRoute(edge);
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    /**
+     * Test of invalidation of the cached routes.
+     */
+    @Test
+    public void invalidation() {
+        System.out.println("invalidation");
+        NodeStore store = new NodeStore();
+        int a = node(store, 0, 0);
+        int z = node(store, 0, 400);
+        int far = node(store, 1000, 1000);
+        int edge = store.addEdge(a, z, false);
+        EdgeRouter<Integer, Integer> router = new EdgeRouter<Integer, Integer>(store);
+        assertEquals(1, router.refresh().size());
+        assertTrue(router.isRouted(edge));
+
+        store.setBounds(far, 1200, 1000, 100, 40);
+        router.nodeMoved(far);
+        assertTrue(router.isRouted(edge));
+        assertTrue(router.refresh().isEmpty());
+
+        store.setBounds(far, 0, 200, 100, 40);
+        router.nodeMoved(far);
+        assertFalse(router.isRouted(edge));
+        Map<Integer, List<Point>> routes = router.refresh();
+        assertEquals(1, routes.size());
+        assertRouted(store, edge, routes.get(edge));
+        assertEquals(routes.get(edge), router.getRoute(edge));
+
+        int other = node(store, 2000, 0);
+        router.nodeAdded(other);
+        assertTrue(router.isRouted(edge));
+        router.nodeRemoved(far);
+        store.removeNode(far);
+        assertFalse(router.isRouted(edge));
+        assertEquals(2, router.getRoute(edge).size());
+    }
+
+    /**
+     * Test of routing many edges, that move together.
+     */
+    @Test
+    public void large() {
+        System.out.println("large");
+        Random random = new Random(5);
+        int side = 30;
+        NodeStore store = new NodeStore();
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                node(store, i * 180 + random.nextInt(30), j * 100 + random.nextInt(20));
+            }
+        }
+        List<Integer> edges = new ArrayList<Integer>();
+        for (int k = 0; k < 1500; k++) {
+            int i = random.nextInt(side - 3), j = random.nextInt(side - 3);
+            int a = i * side + j;
+            int z = (i + random.nextInt(4)) * side + j + random.nextInt(4);
+            if (a != z && store.connection(a, z) == null) {
+                edges.add(store.addEdge(a, z, false));
+            }
+        }
+        EdgeRouter<Integer, Integer> router = new EdgeRouter<Integer, Integer>(store);
+        long start = System.currentTimeMillis();
+        Map<Integer, List<Point>> routes = router.refresh();
+        System.out.println("Time: " + (System.currentTimeMillis() - start) + " ms");
+        assertEquals(edges.size(), routes.size());
+        for (int edge : edges) {
+            assertRouted(store, edge, routes.get(edge));
+        }
+
+        List<Integer> moved = new ArrayList<Integer>();
+        for (int i = 10; i < 13; i++) {
+            for (int j = 10; j < 13; j++) {
+                int node = i * side + j;
+                Point center = store.getCenter(node);
+                center.translate(0, 20);
+                store.setCenter(node, center);
+                moved.add(node);
+            }
+        }
+        router.nodesMoved(moved);
+        start = System.currentTimeMillis();
+        routes = router.refresh();
+        System.out.println("Time: " + (System.currentTimeMillis() - start) + " ms");
+        assertFalse(routes.isEmpty());
+        assertTrue(routes.size() < edges.size() / 2);
+        for (int edge : edges) {
+            assertRouted(store, edge, router.getRoute(edge));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.datamodel.BorderType;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for ForceLayout class.
+ *
+ * @author iappel
+ */
+public class ForceLayoutTest {
+
+    public ForceLayoutTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static int add(NodeStore store, int x, int y) {
+        return store.addNode(new Rectangle(x, y, 100, 40),
+                BorderType.ROUND_RECT, Color.WHITE, "node");
+    }
+
+    private static double distance(NodeStore store, int a, int b) {
+        return store.getCenter(a).distance(store.getCenter(b));
+    }
+
+    /**
+     * Linked nodes must end up closer than unlinked ones.
+     */
+    @Test
+    public void apply() {
+        System.out.println("apply");
+        NodeStore store = new NodeStore(1, 1);
+        int a = add(store, 0, 0);
+        int b = add(store, 0, 0);
+        int c = add(store, 900, 900);
+        int d = add(store, 10, 900);
+        store.addEdge(a, b, false);
+        store.addEdge(c, d, false);
+
+        new ForceLayout<Integer>(store).apply();
+        for (int node : store.getAllNodes()) {
+            assertTrue(store.getBounds(node).x >= 0);
+            assertTrue(store.getBounds(node).y >= 0);
+        }
+        assertTrue(distance(store, a, b) > 10);
+        assertTrue(distance(store, a, b) < distance(store, a, c));
+        assertTrue(distance(store, c, d) < distance(store, b, d));
+    }
+
+    /**
+     * Relaxation must move only the neighbourhood of a change.
+     */
+    @Test
+    public void relax() {
+        System.out.println("relax");
+        NodeStore store = new NodeStore(1, 1);
+        int[] chain = new int[6];
+        for (int i = 0; i < chain.length; i++) {
+            chain[i] = add(store, 300 * i, 0);
+            if (i > 0) {
+                store.addEdge(chain[i - 1], chain[i], false);
+            }
+        }
+        Point far = store.getCenter(chain[5]);
+        int added = add(store, 0, 0);
+        store.addEdge(added, chain[0], false);
+
+        List<Integer> moved = new ForceLayout<Integer>(store).relax(Arrays.asList(added));
+        Collection<Integer> expected = new HashSet<Integer>(
+                Arrays.asList(added, chain[0], chain[1]));
+        assertEquals(expected, new HashSet<Integer>(moved));
+        assertEquals(far, store.getCenter(chain[5]));
+        assertTrue(distance(store, added, chain[0]) > 50);
+    }
+
+    /**
+     * Layout of a large graph must stay close to O(n log n).
+     */
+    @Test
+    public void large() {
+        System.out.println("large");
+        Random random = new Random(42);
+        NodeStore store = new NodeStore(10000, 15000);
+        for (int i = 0; i < 10000; i++) {
+            add(store, random.nextInt(5000), random.nextInt(5000));
+            if (i > 0) {
+                store.addEdge(i, random.nextInt(i), false);
+            }
+        }
+        long start = System.nanoTime();
+        new ForceLayout<Integer>(store).apply();
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        System.out.println("10000 nodes: " + elapsed + " ms");
+        for (int node : store.getAllNodes()) {
+            assertTrue(store.getBounds(node).x >= 0);
+        }
+    }
+}
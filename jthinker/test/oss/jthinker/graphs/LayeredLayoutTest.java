@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.datamodel.BorderType;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for LayeredLayout class.
+ *
+ * @author iappel
+ */
+public class LayeredLayoutTest {
+
+    public LayeredLayoutTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static int add(NodeStore store, int width) {
+        return store.addNode(new Rectangle(0, 0, width, 40),
+                BorderType.ROUND_RECT, Color.WHITE, "node");
+    }
+
+    private static void assertNoOverlaps(NodeStore store) {
+        List<Rectangle> bounds = new ArrayList<Rectangle>();
+        for (int node : store.getAllNodes()) {
+            bounds.add(store.getBounds(node));
+        }
+        OverlapMonitor monitor = new OverlapMonitor();
+        for (Rectangle rect : bounds) {
+            assertFalse(monitor.overlapsSomething(rect));
+            monitor.add(rect);
+        }
+    }
+
+    /**
+     * Causes must be placed below their effects, nodes must not overlap.
+     */
+    @Test
+    public void layers() {
+        System.out.println("layers");
+        NodeStore store = new NodeStore(1, 1);
+        int a = add(store, 100);
+        int b = add(store, 150);
+        int c = add(store, 80);
+        int d = add(store, 120);
+        store.addEdge(a, b, false);
+        store.addEdge(b, d, false);
+        store.addEdge(c, d, false);
+        store.addEdge(a, d, false);
+
+        new LayeredLayout<Integer>(store).apply();
+        assertNoOverlaps(store);
+        assertTrue(store.getCenter(a).y > store.getCenter(b).y);
+        assertTrue(store.getCenter(b).y > store.getCenter(d).y);
+        assertTrue(store.getCenter(c).y > store.getCenter(d).y);
+        assertEquals(store.getCenter(b).y, store.getCenter(c).y);
+    }
+
+    /**
+     * Cycles must not prevent the layout.
+     */
+    @Test
+    public void cycle() {
+        System.out.println("cycle");
+        NodeStore store = new NodeStore(1, 1);
+        int a = add(store, 100);
+        int b = add(store, 100);
+        int c = add(store, 100);
+        store.addEdge(a, b, false);
+        store.addEdge(b, c, false);
+        store.addEdge(c, a, false);
+
+        Map<Integer, Point> result = new LayeredLayout<Integer>(store).compute();
+        assertEquals(3, result.size());
+        new LayeredLayout<Integer>(store).apply();
+        assertNoOverlaps(store);
+    }
+
+    /**
+     * Layout of a large random graph must stay near-linear.
+     */
+    @Test
+    public void large() {
+        System.out.println("large");
+        Random random = new Random(42);
+        NodeStore store = new NodeStore(10000, 15000);
+        for (int i = 0; i < 10000; i++) {
+            add(store, 60 + random.nextInt(100));
+            if (i > 0) {
+                store.addEdge(i, random.nextInt(i), false);
+            }
+            if (i > 100 && i % 2 == 0) {
+                store.addEdge(i, i - 1 - random.nextInt(100), false);
+            }
+        }
+        long start = System.nanoTime();
+        new LayeredLayout<Integer>(store).apply();
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        System.out.println("10000 nodes: " + elapsed + " ms");
+        assertNoOverlaps(store);
+        assertTrue(elapsed < 5000);
+    }
+}
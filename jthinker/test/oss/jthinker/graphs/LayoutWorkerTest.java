@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.datamodel.BorderType;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for LayoutWorker class.
+ *
+ * @author iappel
+ */
+public class LayoutWorkerTest {
+    private NodeStore store;
+    private Queue background, foreground;
+    private LayoutWorker<Integer> worker;
+
+    public LayoutWorkerTest() {
+    }
+
+    private static class Queue extends LinkedList<Runnable> implements Executor {
+        public void execute(Runnable command) {
+            add(command);
+        }
+
+        int runAll() {
+            int count = 0;
+            while (!isEmpty()) {
+                removeFirst().run();
+                count++;
+            }
+            return count;
+        }
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+        store = new NodeStore();
+        for (int i = 0; i < 5; i++) {
+            store.addNode(new Rectangle(i * 200, 0, 100, 40),
+                    BorderType.ROUND_RECT, Color.WHITE, "");
+        }
+        background = new Queue();
+        foreground = new Queue();
+        worker = new LayoutWorker<Integer>(store, background, foreground);
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Burst of moves must be resolved once, for the latest position.
+     */
+    @Test
+    public void coalesce() {
+        System.out.println("coalesce");
+        store.getMapping().inject(0, new Point(250, 20));
+        worker.moved(0);
+        store.getMapping().inject(0, new Point(450, 20));
+        worker.moved(0);
+        assertEquals(1, background.runAll());
+
+        Rectangle node1 = store.getBounds(1);
+        Rectangle node2 = store.getBounds(2);
+        assertEquals(1, foreground.runAll());
+        assertEquals(node1, store.getBounds(1));
+        assertFalse(node2.equals(store.getBounds(2)));
+        assertFalse(store.getBounds(0).intersects(store.getBounds(2)));
+        assertEquals(new Point(450, 20), store.getCenter(0));
+    }
+
+    /**
+     * Force-directed relaxation of a burst of changes is done once, in
+     * the foreground executor.
+     */
+    @Test
+    public void deferredRelax() {
+        System.out.println("deferredRelax");
+        GraphEngine<Integer> engine =
+                new GraphEngine<Integer>(store, OrderingLevel.FORCE_DIRECTED);
+        engine.setWorker(worker);
+        Rectangle bounds = new Rectangle(0, 0, 100, 40);
+        int a = store.addNode(bounds, BorderType.ROUND_RECT, Color.WHITE, "");
+        engine.nodeAdded(a);
+        int b = store.addNode(bounds, BorderType.ROUND_RECT, Color.WHITE, "");
+        engine.nodeAdded(b);
+        store.addEdge(a, b, false);
+        engine.nodesLinked(a, b);
+        assertEquals(bounds, store.getBounds(a));
+        assertEquals(bounds, store.getBounds(b));
+
+        assertEquals(1, foreground.runAll());
+        assertFalse(store.getBounds(a).intersects(store.getBounds(b)));
+        assertFalse(store.getBounds(a).intersects(store.getBounds(0)));
+        assertFalse(store.getBounds(b).intersects(store.getBounds(0)));
+        assertEquals(0, foreground.runAll());
+    }
+
+    /**
+     * Moves computed for nodes that were changed meanwhile are skipped.
+     */
+    @Test
+    public void staleMove() {
+        System.out.println("staleMove");
+        worker.moved(0);
+        background.runAll();
+        assertEquals(0, foreground.runAll());
+
+        store.getMapping().inject(0, new Point(250, 20));
+        worker.moved(0);
+        background.runAll();
+        store.getMapping().inject(1, new Point(650, 200));
+        foreground.runAll();
+        assertEquals(new Point(650, 200), store.getCenter(1));
+
+        worker.moved(1);
+        worker.removed(4);
+        store.removeNode(4);
+        store.getMapping().inject(3, new Point(850, 20));
+        worker.moved(3);
+        background.runAll();
+        assertEquals(0, foreground.runAll());
+        assertEquals(new Point(850, 20), store.getCenter(3));
+    }
+}
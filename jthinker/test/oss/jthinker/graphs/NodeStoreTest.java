@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.datamodel.BorderType;
+import oss.jthinker.util.Pair;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for NodeStore class.
+ *
+ * @author iappel
+ */
+public class NodeStoreTest {
+
+    public NodeStoreTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static int add(NodeStore store, int x, int y) {
+        return store.addNode(new Rectangle(x, y, 100, 40),
+                BorderType.ROUND_RECT, Color.WHITE, "node " + x);
+    }
+
+    private static Collection<Integer> set(Integer... items) {
+        return new HashSet<Integer>(Arrays.asList(items));
+    }
+
+    /**
+     * Test of adjacency queries over added and removed edges.
+     */
+    @Test
+    public void adjacency() {
+        System.out.println("adjacency");
+        NodeStore store = new NodeStore(1, 1);
+        int a = add(store, 0, 0);
+        int b = add(store, 200, 0);
+        int c = add(store, 400, 0);
+        int ab = store.addEdge(a, b, false);
+        int cb = store.addEdge(c, b, true);
+        store.addEdge(b, c, false);
+
+        assertEquals(3, store.nodeCount());
+        assertEquals(3, store.edgeCount());
+        assertEquals(set(a, c), set(store.getIncomeNodes(b).toArray(new Integer[0])));
+        assertEquals(set(c), set(store.getOutcomeNodes(b).toArray(new Integer[0])));
+        assertEquals(Integer.valueOf(cb), store.connection(c, b));
+        assertNull(store.connection(b, a));
+        assertTrue(store.isConflict(cb));
+        assertEquals(Arrays.asList(a), store.getAllSources());
+
+        store.removeEdge(ab);
+        assertFalse(store.isEdgeModelled(ab));
+        assertEquals(set(a), new HashSet<Integer>(store.getAllSources()));
+        assertEquals(set(c), set(store.getIncomeNodes(b).toArray(new Integer[0])));
+
+        store.removeNode(c);
+        assertEquals(2, store.nodeCount());
+        assertEquals(0, store.edgeCount());
+        assertEquals(set(a, b), new HashSet<Integer>(store.getAllNodes()));
+        assertFalse(store.getAllNodes().contains(c));
+        assertTrue(store.getIncomeNodes(b).isEmpty());
+    }
+
+    /**
+     * Test of node attributes, string pooling and visible range queries.
+     */
+    @Test
+    public void attributes() {
+        System.out.println("attributes");
+        NodeStore store = new NodeStore();
+        int a = add(store, 0, 0);
+        int b = add(store, 1000, 1000);
+        store.setContent(b, "node 0");
+
+        assertSame(store.getContent(a), store.getContent(b));
+        assertEquals(BorderType.ROUND_RECT, store.getBorderType(a));
+        assertEquals(Color.WHITE, store.getColor(a));
+        Color translucent = new Color(10, 20, 30, 40);
+        store.setColor(b, translucent);
+        assertEquals(translucent, store.getColor(b));
+        assertEquals(40, store.getColor(b).getAlpha());
+        assertEquals(new Point(50, 20), store.getCenter(a));
+        assertEquals(new Dimension(1100, 1040), store.getAreaSize());
+        assertEquals(Arrays.asList(a), store.nodesIn(new Rectangle(0, 0, 500, 500)));
+        assertEquals(Arrays.asList(b), store.nodesIn(new Rectangle(1050, 1030, 10, 10)));
+
+        store.getMapping().inject(a, new Point(500, 500));
+        assertEquals(new Rectangle(450, 480, 100, 40), store.getMapping().fetch(a));
+        assertEquals(new Point(500, 500), store.getNodeData(a).getSlideCenter());
+    }
+
+    /**
+     * Overlap resolution must work on the store without any widgets.
+     */
+    @Test
+    public void engine() {
+        System.out.println("engine");
+        NodeStore store = new NodeStore();
+        for (int i = 0; i < 50; i++) {
+            add(store, 0, 0);
+        }
+        GraphEngine<Integer> engine =
+                new GraphEngine<Integer>(store, OrderingLevel.SUPPRESS_OVERLAP);
+        engine.updatePosition(0);
+        for (int i = 0; i < 50; i++) {
+            for (int j = i + 1; j < 50; j++) {
+                assertFalse(store.getBounds(i).intersects(store.getBounds(j)));
+            }
+        }
+        assertEquals(new Point(50, 20), store.getCenter(0));
+    }
+
+    /**
+     * Engine must keep its resolver in sync with moves, additions and
+     * removals of nodes.
+     */
+    @Test
+    public void incrementalEngine() {
+        System.out.println("incrementalEngine");
+        NodeStore store = new NodeStore();
+        for (int i = 0; i < 10; i++) {
+            add(store, i * 200, 0);
+        }
+        GraphEngine<Integer> engine =
+                new GraphEngine<Integer>(store, OrderingLevel.SUPPRESS_OVERLAP);
+        engine.updatePosition(0);
+        assertEquals(new Rectangle(0, 0, 100, 40), store.getBounds(0));
+
+        store.getMapping().inject(0, new Point(450, 30));
+        engine.updatePosition(0);
+        assertEquals(new Point(450, 30), store.getCenter(0));
+        assertFalse(store.getBounds(0).intersects(store.getBounds(2)));
+
+        int added = add(store, 2000, 0);
+        engine.nodeAdded(added);
+        store.getMapping().inject(0, new Point(2050, 20));
+        engine.updatePosition(0);
+        assertFalse(store.getBounds(0).intersects(store.getBounds(added)));
+
+        engine.nodeRemoved(5);
+        store.removeNode(5);
+        store.getMapping().inject(0, new Point(1050, 20));
+        engine.updatePosition(0);
+        assertEquals(new Point(1050, 20), store.getCenter(0));
+        for (int i : store.getAllNodes()) {
+            for (int j : store.getAllNodes()) {
+                assertTrue(i == j || !store.getBounds(i).intersects(store.getBounds(j)));
+            }
+        }
+    }
+
+    /**
+     * Test of random sampling of sources and incoming nodes.
+     */
+    @Test
+    public void sampling() {
+        System.out.println("sampling");
+        NodeStore store = new NodeStore(1, 1);
+        for (int i = 0; i < 100; i++) {
+            add(store, i * 200, 0);
+        }
+        store.addEdge(10, 50, false);
+        store.addEdge(20, 50, false);
+        store.addEdge(30, 50, false);
+        store.addEdge(10, 60, false);
+        assertEquals(3, store.inDegree(50));
+        assertEquals(2, store.outDegree(10));
+        assertEquals(98, store.getAllSources().size());
+
+        for (int k = 0; k < 20; k++) {
+            Pair<Integer, List<Integer>> entry = store.getRandomIncomings(2);
+            assertEquals(Integer.valueOf(50), entry.first);
+            assertEquals(2, new HashSet<Integer>(entry.second).size());
+            assertTrue(set(10, 20, 30).containsAll(entry.second));
+
+            List<Integer> sources = store.getRandomSources(5);
+            assertEquals(5, new HashSet<Integer>(sources).size());
+            assertFalse(sources.contains(50));
+            assertFalse(sources.contains(60));
+        }
+        assertNull(store.getRandomIncomings(4));
+
+        List<Integer> all = Arrays.asList(1, 2, 3, 4);
+        assertEquals(set(1, 2, 3, 4), new HashSet<Integer>(AbstractGraphModel.pickRandom(all, 4)));
+        assertEquals(Arrays.asList(1, 2, 3, 4), all);
+        assertEquals(3, new HashSet<Integer>(AbstractGraphModel.pickRandom(set(1, 2, 3, 4), 3)).size());
+        assertNull(AbstractGraphModel.pickRandom(all, 5));
+    }
+}
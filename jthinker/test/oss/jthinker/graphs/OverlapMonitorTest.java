@@ -116,4 +116,28 @@ public class OverlapMonitorTest {
         assertTrue(instance.overlapsSomething(rect));
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Test of removal and of rectangles spanning many grid cells.
+     */
+    @Test
+    public void remove() {
+        System.out.println("remove");
+        OverlapMonitor instance = new OverlapMonitor(10);
+
+        Rectangle small = new Rectangle(-15, -15, 10, 10);
+        Rectangle huge = new Rectangle(100, 100, 1000, 1000);
+        instance.add(small);
+        instance.add(huge);
+        assertEquals(2, instance.size());
+        assertTrue(instance.overlapsSomething(new Rectangle(-10, -10, 1, 1)));
+        assertTrue(instance.overlapsSomething(new Rectangle(500, 500, 1, 1)));
+
+        assertTrue(instance.remove(new Rectangle(-15, -15, 10, 10)));
+        assertFalse(instance.remove(new Rectangle(-15, -15, 10, 10)));
+        assertFalse(instance.overlapsSomething(new Rectangle(-10, -10, 1, 1)));
+        assertTrue(instance.remove(huge));
+        assertFalse(instance.overlapsSomething(new Rectangle(500, 500, 1, 1)));
+        assertTrue(instance.isEmpty());
+    }
+}
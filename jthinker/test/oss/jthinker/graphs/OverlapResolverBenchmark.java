@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Random;
+import oss.jthinker.datamodel.BorderType;
+
+/**
+ * Benchmark of overlap resolution on large diagrams: resolution of
+ * a whole diagram and a series of single node moves. Not a unit-test,
+ * run it with <code>java oss.jthinker.graphs.OverlapResolverBenchmark
+ * [nodes] [rounds]</code>.
+ *
+ * @author iappel
+ */
+public class OverlapResolverBenchmark {
+    private static final int MOVES = 1000;
+
+    private static NodeStore randomStore(int count, long seed) {
+        Random rng = new Random(seed);
+        int side = (int)Math.sqrt(count) * 150;
+        NodeStore store = new NodeStore(count, 1);
+        for (int i = 0; i < count; i++) {
+            store.addNode(new Rectangle(rng.nextInt(side), rng.nextInt(side),
+                    60 + rng.nextInt(80), 30 + rng.nextInt(30)),
+                    BorderType.ROUND_RECT, Color.WHITE, "");
+        }
+        return store;
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        for (int round = 0; round < rounds; round++) {
+            NodeStore store = randomStore(count, round);
+            long start = System.nanoTime();
+            OverlapResolver<Integer> resolver = new OverlapResolver<Integer>(
+                    store.getAllNodes(), store.getMapping());
+            resolver.fix(0);
+            resolver.resolve();
+            long time = System.nanoTime() - start;
+            System.out.println(count + " nodes resolved in " +
+                    time / 1000000 + " ms");
+
+            GraphEngine<Integer> engine = new GraphEngine<Integer>(store,
+                    OrderingLevel.SUPPRESS_OVERLAP);
+            engine.updatePosition(0);
+            Random rng = new Random(round);
+            Rectangle area = new Rectangle(store.getAreaSize());
+            start = System.nanoTime();
+            for (int i = 0; i < MOVES; i++) {
+                int node = rng.nextInt(count);
+                store.getMapping().inject(node, new Point(
+                        rng.nextInt(area.width), rng.nextInt(area.height)));
+                engine.updatePosition(node);
+            }
+            time = System.nanoTime() - start;
+            System.out.println(MOVES + " moves resolved in " +
+                    time / 1000000 + " ms");
+        }
+    }
+}
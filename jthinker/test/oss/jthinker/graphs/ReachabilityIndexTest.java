@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.datamodel.BorderType;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for ReachabilityIndex class.
+ *
+ * @author iappel
+ */
+public class ReachabilityIndexTest {
+
+    public ReachabilityIndexTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static NodeStore store(int count) {
+        NodeStore store = new NodeStore(count, count);
+        for (int i = 0; i < count; i++) {
+            store.addNode(new Rectangle(i * 200, 0, 100, 40),
+                    BorderType.ROUND_RECT, Color.WHITE, "node");
+        }
+        return store;
+    }
+
+    private static Set<Integer> set(Integer... items) {
+        return new HashSet<Integer>(Arrays.asList(items));
+    }
+
+    /**
+     * Test of queries over a graph with a cycle.
+     */
+    @Test
+    public void queries() {
+        System.out.println("queries");
+        NodeStore store = store(5);
+        store.addEdge(0, 1, false);
+        store.addEdge(1, 2, false);
+        store.addEdge(2, 1, false);
+        store.addEdge(2, 3, false);
+        ReachabilityIndex<Integer> index = new ReachabilityIndex<Integer>(store);
+
+        assertTrue(index.reaches(0, 3));
+        assertFalse(index.reaches(3, 0));
+        assertFalse(index.reaches(0, 0));
+        assertTrue(index.reaches(1, 1));
+        assertFalse(index.reaches(0, 4));
+        assertEquals(set(1, 2, 3), index.descendants(0));
+        assertEquals(set(0, 1, 2), index.ancestors(3));
+        assertEquals(set(0, 1, 2), index.ancestors(2));
+    }
+
+    /**
+     * Incremental updates must agree with a rebuilt index.
+     */
+    @Test
+    public void incremental() {
+        System.out.println("incremental");
+        Random random = new Random(7);
+        int count = 60;
+        NodeStore store = store(count);
+        ReachabilityIndex<Integer> index = new ReachabilityIndex<Integer>(store);
+        index.reaches(0, 1);
+        List<Integer> edges = new ArrayList<Integer>();
+        for (int step = 0; step < 400; step++) {
+            if (edges.isEmpty() || random.nextInt(3) != 0) {
+                // Mostly acyclic edges, so updates stay incremental
+                int a = random.nextInt(count), b = random.nextInt(count);
+                if (random.nextInt(10) != 0 && a < b) {
+                    int t = a;
+                    a = b;
+                    b = t;
+                }
+                if (a == b) {
+                    continue;
+                }
+                edges.add(store.addEdge(a, b, false));
+                index.edgeAdded(a, b);
+            } else {
+                int edge = edges.remove(random.nextInt(edges.size()));
+                int a = store.endpoints(edge).first;
+                int b = store.endpoints(edge).second;
+                store.removeEdge(edge);
+                index.edgeRemoved(a, b);
+            }
+            ReachabilityIndex<Integer> fresh = new ReachabilityIndex<Integer>(store);
+            int node = random.nextInt(count);
+            assertEquals(fresh.descendants(node), index.descendants(node));
+            assertEquals(fresh.ancestors(node), index.ancestors(node));
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.datamodel.BorderType;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for RootCauseAnalysis class.
+ *
+ * @author iappel
+ */
+public class RootCauseAnalysisTest {
+
+    public RootCauseAnalysisTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static NodeStore store(int count) {
+        NodeStore store = new NodeStore(count, count);
+        for (int i = 0; i < count; i++) {
+            store.addNode(new Rectangle(i * 200, 0, 100, 40),
+                    BorderType.ROUND_RECT, Color.WHITE, "node");
+        }
+        return store;
+    }
+
+    private static Set<Integer> set(Integer... items) {
+        return new HashSet<Integer>(Arrays.asList(items));
+    }
+
+    /**
+     * Test of scores over a small tree.
+     */
+    @Test
+    public void scores() {
+        System.out.println("scores");
+        NodeStore store = store(6);
+        store.addEdge(0, 1, false);
+        store.addEdge(1, 3, false);
+        store.addEdge(1, 4, false);
+        store.addEdge(2, 4, false);
+        store.addEdge(0, 4, false);
+        store.addEdge(3, 5, false);
+        RootCauseAnalysis<Integer> analysis = new RootCauseAnalysis<Integer>(store);
+        analysis.setEffects(Arrays.asList(3, 4));
+
+        assertEquals(set(3, 4), analysis.getEffects(0));
+        assertEquals(set(4), analysis.getEffects(2));
+        assertEquals(set(), analysis.getEffects(5));
+        assertEquals(2, analysis.getDepth(0));
+        assertEquals(1, analysis.getDepth(1));
+        assertEquals(-1, analysis.getDepth(3));
+        assertEquals(-1, analysis.getDepth(5));
+
+        List<RootCauseAnalysis.Score<Integer>> scores = analysis.getScores();
+        assertEquals(3, scores.size());
+        assertEquals(Integer.valueOf(0), scores.get(0).getNode());
+        assertEquals(2, scores.get(0).getEffects());
+        assertEquals(Integer.valueOf(1), scores.get(1).getNode());
+        assertEquals(Integer.valueOf(2), scores.get(2).getNode());
+    }
+
+    /**
+     * Incremental updates must agree with a recomputed analysis.
+     */
+    @Test
+    public void incremental() {
+        System.out.println("incremental");
+        Random random = new Random(5);
+        int count = 80;
+        NodeStore store = store(count);
+        List<Integer> effects = new ArrayList<Integer>();
+        for (int i = 0; i < count; i += 7) {
+            effects.add(i);
+        }
+        RootCauseAnalysis<Integer> analysis = new RootCauseAnalysis<Integer>(store);
+        analysis.setEffects(effects);
+        analysis.getScores();
+        List<Integer> edges = new ArrayList<Integer>();
+        for (int step = 0; step < 500; step++) {
+            if (edges.isEmpty() || random.nextInt(3) != 0) {
+                // Edges go to higher ids only, so graph stays acyclic
+                int a = random.nextInt(count), b = random.nextInt(count);
+                if (a == b) {
+                    continue;
+                }
+                edges.add(store.addEdge(Math.min(a, b), Math.max(a, b), false));
+                analysis.edgeAdded(Math.min(a, b), Math.max(a, b));
+            } else {
+                int edge = edges.remove(random.nextInt(edges.size()));
+                int a = store.endpoints(edge).first;
+                int b = store.endpoints(edge).second;
+                store.removeEdge(edge);
+                analysis.edgeRemoved(a, b);
+            }
+            RootCauseAnalysis<Integer> fresh = new RootCauseAnalysis<Integer>(store);
+            fresh.setEffects(effects);
+            int node = random.nextInt(count);
+            assertEquals(fresh.getEffects(node), analysis.getEffects(node));
+            assertEquals(fresh.getDepth(node), analysis.getDepth(node));
+        }
+    }
+
+    /**
+     * Test of analysis over a large layered graph.
+     */
+    @Test
+    public void large() {
+        System.out.println("large");
+        Random random = new Random(3);
+        int count = 50000, width = 500;
+        NodeStore store = store(count);
+        for (int i = width; i < count; i++) {
+            int layer = i / width;
+            for (int k = 0; k < 2; k++) {
+                int j = (layer - 1) * width + random.nextInt(width);
+                store.addEdge(j, i, false);
+            }
+        }
+        List<Integer> effects = new ArrayList<Integer>();
+        for (int i = count - width; i < count; i += 5) {
+            effects.add(i);
+        }
+        RootCauseAnalysis<Integer> analysis = new RootCauseAnalysis<Integer>(store);
+        analysis.setEffects(effects);
+        long start = System.currentTimeMillis();
+        List<RootCauseAnalysis.Score<Integer>> scores = analysis.getScores();
+        System.out.println("Time: " + (System.currentTimeMillis() - start) + " ms");
+        assertEquals(count / width - 1, scores.get(0).getDepth());
+        assertTrue(scores.get(0).getEffects() <= effects.size());
+
+        start = System.currentTimeMillis();
+        store.addEdge(0, count - 1, false);
+        analysis.edgeAdded(0, count - 1);
+        System.out.println("Update: " + (System.currentTimeMillis() - start) + " ms");
+    }
+}
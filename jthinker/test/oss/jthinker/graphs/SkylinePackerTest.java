@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.datamodel.BorderType;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for SkylinePacker class.
+ *
+ * @author iappel
+ */
+public class SkylinePackerTest {
+
+    public SkylinePackerTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static List<Dimension> sizes(Random random, int count) {
+        List<Dimension> result = new ArrayList<Dimension>();
+        for (int i = 0; i < count; i++) {
+            result.add(new Dimension(60 + random.nextInt(120), 30 + random.nextInt(50)));
+        }
+        return result;
+    }
+
+    private static List<Rectangle> rectangles(List<Dimension> sizes, List<Point> centers) {
+        List<Rectangle> result = new ArrayList<Rectangle>();
+        for (int i = 0; i < sizes.size(); i++) {
+            Dimension size = sizes.get(i);
+            Point center = centers.get(i);
+            result.add(new Rectangle(center.x - size.width / 2,
+                    center.y - size.height / 2, size.width, size.height));
+        }
+        return result;
+    }
+
+    private static void assertDisjoint(List<Rectangle> placed, List<Rectangle> occupied) {
+        OverlapMonitor monitor = new OverlapMonitor();
+        monitor.addAll(occupied);
+        for (Rectangle rect : placed) {
+            assertFalse(rect.toString(), monitor.overlapsSomething(rect));
+            monitor.add(rect);
+        }
+    }
+
+    /**
+     * Test of the space kept between packed rectangles.
+     */
+    @Test
+    public void spacing() {
+        System.out.println("spacing");
+        List<Dimension> sizes = Collections.nCopies(3, new Dimension(100, 40));
+        List<Point> centers = new SkylinePacker(1000, 0,
+                new ArrayList<Rectangle>()).pack(sizes);
+        assertEquals(new Point(50, 20), centers.get(0));
+        assertEquals(new Point(160, 20), centers.get(1));
+        assertEquals(new Point(270, 20), centers.get(2));
+
+        Random random = new Random(5);
+        sizes = sizes(random, 500);
+        List<Rectangle> spaced = new ArrayList<Rectangle>();
+        for (Rectangle rect : rectangles(sizes, new SkylinePacker(1500, 0,
+                new ArrayList<Rectangle>()).pack(sizes))) {
+            spaced.add(new Rectangle(rect.x, rect.y,
+                    rect.width + SkylinePacker.GAP, rect.height + SkylinePacker.GAP));
+        }
+        assertDisjoint(spaced, new ArrayList<Rectangle>());
+    }
+
+    /**
+     * Test of packing around rectangles already on the area.
+     */
+    @Test
+    public void obstacles() {
+        System.out.println("obstacles");
+        Random random = new Random(9);
+        List<Rectangle> occupied = new ArrayList<Rectangle>();
+        for (int i = 0; i < 40; i++) {
+            occupied.add(new Rectangle(random.nextInt(900), 100 + random.nextInt(900), 100, 40));
+        }
+        List<Dimension> sizes = sizes(random, 300);
+        List<Point> centers = new SkylinePacker(1000, 50, occupied).pack(sizes);
+        assertEquals(sizes.size(), centers.size());
+        List<Rectangle> placed = rectangles(sizes, centers);
+        assertDisjoint(placed, occupied);
+        for (Rectangle rect : placed) {
+            assertTrue(rect.y >= 50);
+            assertTrue(rect.x >= 0 && rect.x + rect.width <= 1000);
+        }
+    }
+
+    /**
+     * Test of batch placement in the engine.
+     */
+    @Test
+    public void engine() {
+        System.out.println("engine");
+        NodeStore store = new NodeStore();
+        int anchor = store.addNode(new Rectangle(0, 0, 100, 40),
+                BorderType.ROUND_RECT, Color.WHITE, "anchor");
+        store.addNode(new Rectangle(300, 200, 100, 40),
+                BorderType.ROUND_RECT, Color.WHITE, "node");
+        GraphEngine<Integer> engine =
+                new GraphEngine<Integer>(store, OrderingLevel.SUPPRESS_OVERLAP);
+        List<Dimension> sizes = Collections.nCopies(50, new Dimension(100, 40));
+        List<Point> centers = engine.newNodePoints(sizes,
+                Collections.singleton(anchor));
+        List<Rectangle> placed = rectangles(sizes, centers);
+        List<Rectangle> occupied = new ArrayList<Rectangle>();
+        for (int node : store.getAllNodes()) {
+            occupied.add(store.getBounds(node));
+        }
+        assertDisjoint(placed, occupied);
+        for (Rectangle rect : placed) {
+            assertTrue(rect.y >= 40);
+        }
+    }
+
+    /**
+     * Test of packing a large batch.
+     */
+    @Test
+    public void large() {
+        System.out.println("large");
+        Random random = new Random(1);
+        List<Dimension> sizes = sizes(random, 20000);
+        long start = System.currentTimeMillis();
+        List<Point> centers = new SkylinePacker(20000, 0,
+                new ArrayList<Rectangle>()).pack(sizes);
+        System.out.println("Time: " + (System.currentTimeMillis() - start) + " ms");
+        assertDisjoint(rectangles(sizes, centers), new ArrayList<Rectangle>());
+    }
+}
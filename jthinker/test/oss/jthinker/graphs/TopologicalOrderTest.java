@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.graphs;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.datamodel.BorderType;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for TopologicalOrder class.
+ *
+ * @author iappel
+ */
+public class TopologicalOrderTest {
+
+    public TopologicalOrderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static NodeStore store(int count) {
+        NodeStore store = new NodeStore(count, count);
+        for (int i = 0; i < count; i++) {
+            store.addNode(new Rectangle(i * 200, 0, 100, 40),
+                    BorderType.ROUND_RECT, Color.WHITE, "node");
+        }
+        return store;
+    }
+
+    private static void assertOrdered(NodeStore store, List<Integer> order) {
+        Map<Integer, Integer> position = new HashMap<Integer, Integer>();
+        for (int i = 0; i < order.size(); i++) {
+            position.put(order.get(i), i);
+        }
+        for (Integer node : store.getAllNodes()) {
+            for (Integer peer : store.getOutcomeNodes(node)) {
+                assertTrue(position.get(node) < position.get(peer));
+            }
+        }
+    }
+
+    /**
+     * Test of cycle detection on a chain.
+     */
+    @Test
+    public void rejectsCycles() {
+        System.out.println("rejectsCycles");
+        NodeStore store = store(4);
+        TopologicalOrder<Integer> order = new TopologicalOrder<Integer>(store);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(order.insert(i, i + 1));
+            store.addEdge(i, i + 1, false);
+            order.edgeAdded(i, i + 1);
+        }
+        assertFalse(order.insert(3, 0));
+        assertFalse(order.insert(2, 1));
+        assertFalse(order.insert(2, 2));
+        assertTrue(order.insert(0, 3));
+        assertFalse(order.isCyclic());
+        assertOrdered(store, order.getOrder());
+
+        // Cycle added regardless turns the order off until it's broken
+        int edge = store.addEdge(3, 0, false);
+        order.edgeAdded(3, 0);
+        assertTrue(order.isCyclic());
+        assertNull(order.getOrder());
+        assertFalse(order.insert(1, 0));
+        store.removeEdge(edge);
+        order.edgeRemoved(3, 0);
+        assertFalse(order.isCyclic());
+        assertFalse(order.insert(3, 0));
+    }
+
+    /**
+     * Order must stay valid over random insertions and agree with a
+     * full search on which edges close a cycle.
+     */
+    @Test
+    public void randomInsertions() {
+        System.out.println("randomInsertions");
+        Random random = new Random(11);
+        int count = 200;
+        NodeStore store = store(count);
+        TopologicalOrder<Integer> order = new TopologicalOrder<Integer>(store);
+        ReachabilityIndex<Integer> index = new ReachabilityIndex<Integer>(store);
+        List<Integer> edges = new ArrayList<Integer>();
+        for (int step = 0; step < 2000; step++) {
+            if (!edges.isEmpty() && random.nextInt(5) == 0) {
+                int edge = edges.remove(random.nextInt(edges.size()));
+                int a = store.endpoints(edge).first;
+                int b = store.endpoints(edge).second;
+                store.removeEdge(edge);
+                order.edgeRemoved(a, b);
+                index.edgeRemoved(a, b);
+                continue;
+            }
+            int a = random.nextInt(count), b = random.nextInt(count);
+            if (a == b) {
+                continue;
+            }
+            boolean accepted = order.insert(a, b);
+            assertEquals(!index.reaches(b, a), accepted);
+            if (accepted) {
+                edges.add(store.addEdge(a, b, false));
+                order.edgeAdded(a, b);
+                index.edgeAdded(a, b);
+            }
+        }
+        assertFalse(order.isCyclic());
+        assertOrdered(store, order.getOrder());
+    }
+
+    /**
+     * Edges along a long chain are accepted without reordering.
+     */
+    @Test
+    public void large() {
+        System.out.println("large");
+        int count = 100000;
+        NodeStore store = store(count);
+        TopologicalOrder<Integer> order = new TopologicalOrder<Integer>(store);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i + 1 < count; i++) {
+            assertTrue(order.insert(i, i + 1));
+            store.addEdge(i, i + 1, false);
+            order.edgeAdded(i, i + 1);
+        }
+        assertFalse(order.insert(count - 1, 0));
+        System.out.println("Time: " + (System.currentTimeMillis() - start) + " ms");
+        assertOrdered(store, order.getOrder());
+    }
+}
@@ -31,7 +31,8 @@
 
 package oss.jthinker.util;
 
-import java.util.Vector;
+import java.util.Collection;
+import java.util.List;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -138,7 +139,7 @@ public class GappedArrayTest {
         System.out.println("getContent");
         testEntry.add("foo");
         testEntry.add("baz");
-        Vector<String> entry = testEntry.getContent();
+        List<String> entry = testEntry.getContent();
         assertEquals(3, entry.size());
     }
 
@@ -157,6 +158,95 @@ public class GappedArrayTest {
         assertEquals("baz-bar-foo-", ret);
     }
 
+    /**
+     * Removed items leave gaps, that get filled by later additions.
+     */
+    @Test
+    public void refillGaps() {
+        System.out.println("refillGaps");
+        assertEquals(0, testEntry.add("baz"));
+        assertEquals(2, testEntry.add("qux"));
+        assertEquals(3, testEntry.add("quux"));
+        assertTrue(testEntry.remove("bar"));
+        assertTrue(testEntry.remove("baz"));
+        assertFalse(testEntry.remove("baz"));
+        assertEquals(0, testEntry.locateGap());
+        assertEquals(0, testEntry.add("bar"));
+        assertEquals(1, testEntry.add("baz"));
+        assertEquals(-1, testEntry.locateGap());
+        assertEquals("bar", testEntry.get(0));
+        assertEquals("baz", testEntry.get(1));
+        assertEquals("qux", testEntry.get(2));
+        assertEquals(4, testEntry.size());
+    }
+
+    /**
+     * Duplicate additions keep the item at its index.
+     */
+    @Test
+    public void duplicates() {
+        System.out.println("duplicates");
+        assertEquals(1, testEntry.add("bar"));
+        assertEquals(1, testEntry.add(new String("bar")));
+        assertEquals(1, testEntry.size());
+        assertEquals(0, testEntry.locateGap());
+        assertEquals(1, testEntry.getContent().size());
+        assertTrue(testEntry.remove("bar"));
+        assertFalse(testEntry.contains("bar"));
+    }
+
+    /**
+     * Test of locate method after removals.
+     */
+    @Test
+    public void locateRemoved() {
+        System.out.println("locateRemoved");
+        testEntry.add("foo");
+        testEntry.add("baz");
+        assertEquals(0, testEntry.locate("foo"));
+        assertEquals(2, testEntry.locate("baz"));
+        testEntry.remove("bar");
+        assertEquals(-1, testEntry.locate("bar"));
+        assertEquals(1, testEntry.locate(null));
+        assertEquals(2, testEntry.locate("baz"));
+        testEntry.remove("baz");
+        assertEquals(-1, testEntry.locate("baz"));
+        assertEquals(0, testEntry.locate("foo"));
+        // Trailing gaps are trimmed
+        assertEquals(-1, testEntry.locate(null));
+        assertEquals(1, testEntry.add("baz"));
+    }
+
+    /**
+     * Test of view method.
+     */
+    @Test
+    public void view() {
+        System.out.println("view");
+        Collection<String> view = testEntry.view();
+        assertEquals(1, view.size());
+        assertTrue(view.contains("bar"));
+        assertFalse(view.contains("foo"));
+        assertFalse(view.contains(null));
+        testEntry.add("foo");
+        testEntry.add("baz");
+        assertEquals(3, view.size());
+        assertTrue(view.contains("foo"));
+        testEntry.remove("bar");
+        assertEquals(2, view.size());
+        assertFalse(view.contains("bar"));
+        String ret = "";
+        for (String s : view) {
+            ret += s+"-";
+        }
+        assertEquals("foo-baz-", ret);
+        try {
+            view.add("qux");
+            fail("view must be read-only");
+        } catch (UnsupportedOperationException ex) {
+        }
+    }
+
     /**
      * Test on clearing array.
      */
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.util;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Pack of tests for {@see IntSet} and {@see IntList}.
+ *
+ * @author iappel
+ */
+public class IntSetTest {
+
+    public IntSetTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Random operations must agree with a set of boxed integers.
+     */
+    @Test
+    public void randomOperations() {
+        System.out.println("randomOperations");
+        Random random = new Random(17);
+        IntSet set = new IntSet();
+        Set<Integer> expected = new HashSet<Integer>();
+        for (int step = 0; step < 20000; step++) {
+            int value = random.nextInt(500) - 250;
+            if (random.nextInt(10) == 0) {
+                value = Integer.MIN_VALUE;
+            }
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(value), set.add(value));
+            } else {
+                assertEquals(expected.remove(value), set.remove(value));
+            }
+            assertEquals(expected.size(), set.size());
+            int probe = random.nextInt(500) - 250;
+            assertEquals(expected.contains(probe), set.contains(probe));
+        }
+        Set<Integer> items = new HashSet<Integer>();
+        for (int value : set.toArray()) {
+            items.add(value);
+        }
+        assertEquals(expected, items);
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(Integer.MIN_VALUE));
+    }
+
+    /**
+     * Test of IntList class.
+     */
+    @Test
+    public void list() {
+        System.out.println("list");
+        IntList list = new IntList(1);
+        for (int i = 0; i < 100; i++) {
+            list.add(99 - i);
+        }
+        assertEquals(100, list.size());
+        assertEquals(99, list.get(0));
+        assertTrue(list.contains(50));
+        list.sort();
+        assertEquals(0, list.get(0));
+        assertEquals(99, list.removeLast());
+        assertEquals(5, list.set(5, -1));
+        assertEquals(-1, list.get(5));
+        try {
+            list.get(99);
+            fail();
+        } catch (IndexOutOfBoundsException ex) {
+        }
+        list.clear();
+        assertTrue(list.isEmpty());
+    }
+}
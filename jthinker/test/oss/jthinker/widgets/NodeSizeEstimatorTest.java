@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.widgets;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.datamodel.BorderType;
+import oss.jthinker.datamodel.JNodeData;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for NodeSizeEstimator class.
+ *
+ * @author iappel
+ */
+public class NodeSizeEstimatorTest {
+
+    public NodeSizeEstimatorTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Estimated sizes must match sizes of the real widgets.
+     */
+    @Test
+    public void matchesWidgets() {
+        System.out.println("matchesWidgets");
+        NodeSizeEstimator estimator = new NodeSizeEstimator();
+        String[] contents = {"", "Short", "Some text that is long enough to wrap",
+            "A very long statement about an undesired effect, that is sliced into several lines"};
+        for (BorderType border : BorderType.values()) {
+            for (String content : contents) {
+                JSlide slide = new JSlide(new JLabelBundle(content),
+                        BorderBuilder.getInstance(border));
+                assertEquals(border + " " + content, slide.getPreferredSize(),
+                        estimator.estimate(border, content));
+            }
+        }
+    }
+
+    /**
+     * Test of bounds method, of class NodeSizeEstimator.
+     */
+    @Test
+    public void bounds() {
+        System.out.println("bounds");
+        NodeSizeEstimator estimator = new NodeSizeEstimator();
+        JNodeData data = new JNodeData(BorderType.ELLIPSE, false, "",
+                new Point(100, 100), Color.WHITE, "", null);
+        Dimension size = estimator.estimate(data);
+        assertEquals(2 * 31 + 10, size.width);
+        Rectangle bounds = estimator.bounds(data);
+        assertEquals(size, bounds.getSize());
+        assertEquals(100, (int)bounds.getCenterX());
+        assertEquals(100, (int)bounds.getCenterY());
+    }
+}
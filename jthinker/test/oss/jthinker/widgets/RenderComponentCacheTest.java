@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2010, Ivan Appel <ivan.appel@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of Ivan Appel nor the names of any other jThinker
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package oss.jthinker.widgets;
+
+import java.awt.Color;
+import javax.swing.JPanel;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import oss.jthinker.datamodel.BorderType;
+import static org.junit.Assert.*;
+
+/**
+ * Unit-tests for RenderComponentCache class.
+ *
+ * @author iappel
+ */
+public class RenderComponentCacheTest {
+
+    public RenderComponentCacheTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Released components are handed out again only for equal keys
+     * and only once.
+     */
+    @Test
+    public void reuse() {
+        System.out.println("reuse");
+        RenderComponentCache cache = new RenderComponentCache(2);
+        JLabelBundle bundle = cache.acquire("text", BorderType.ELLIPSE, Color.WHITE);
+        JPanel parent = new JPanel();
+        parent.add(bundle);
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        cache.release(bundle, "text", BorderType.ELLIPSE, Color.WHITE);
+        assertNull(bundle.getParent());
+        assertNotSame(bundle, cache.acquire("text", BorderType.HEXAGON, Color.WHITE));
+        assertNotSame(bundle, cache.acquire("text", BorderType.ELLIPSE, Color.PINK));
+        assertSame(bundle, cache.acquire("text", BorderType.ELLIPSE, Color.WHITE));
+        assertNotSame(bundle, cache.acquire("text", BorderType.ELLIPSE, Color.WHITE));
+        assertEquals(1, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    /**
+     * Components are keyed by node's content, not by numbered text.
+     */
+    @Test
+    public void numbered() {
+        System.out.println("numbered");
+        RenderComponentCache cache = new RenderComponentCache(2);
+        JLabelBundle bundle = cache.acquire("text", BorderType.ELLIPSE, Color.WHITE);
+        bundle.setText("3. text");
+        cache.release(bundle, "text", BorderType.ELLIPSE, Color.WHITE);
+        assertSame(bundle, cache.acquire("text", BorderType.ELLIPSE, Color.WHITE));
+        assertEquals("text", bundle.getText());
+        assertEquals(1, cache.getHits());
+    }
+
+    /**
+     * Cache must not grow over its capacity.
+     */
+    @Test
+    public void capacity() {
+        System.out.println("capacity");
+        RenderComponentCache cache = new RenderComponentCache(2);
+        for (int i = 0; i < 5; i++) {
+            cache.release(new JLabelBundle("text " + i), "text " + i,
+                    BorderType.SHARP_RECT, Color.WHITE);
+        }
+        assertEquals(2, cache.size());
+        cache.acquire("text 0", BorderType.SHARP_RECT, Color.WHITE);
+        cache.acquire("text 4", BorderType.SHARP_RECT, Color.WHITE);
+        assertEquals(1, cache.getHits());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}